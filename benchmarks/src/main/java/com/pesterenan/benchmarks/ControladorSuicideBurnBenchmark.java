@@ -0,0 +1,132 @@
+package com.pesterenan.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pesterenan.funcoes.ControladorSuicideBurn;
+import com.pesterenan.utils.FonteTelemetria;
+import com.pesterenan.utils.SaidaDeComandos;
+
+/**
+ * Previsão da distância da queima e ciclo completo do Suicide Burn, sobre uma
+ * descida fixa na Mun, sem o kRPC, com a aceleração calculada pelos PIDs ou
+ * pelo controle preditivo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControladorSuicideBurnBenchmark {
+
+	private static final int AMOSTRAS = 1024;
+
+	/**
+	 * Descida com valores calculados antes do benchmark, trocados a cada ciclo.
+	 */
+	private static class Descida implements FonteTelemetria, SaidaDeComandos {
+		final double[] altitudes = new double[AMOSTRAS], velocidades = new double[AMOSTRAS];
+		int amostra;
+		double ut, aceleracao;
+
+		void avancar() {
+			amostra = (amostra + 1) & (AMOSTRAS - 1);
+			ut += 0.025;
+		}
+
+		@Override
+		public double getTempoUniversal() {
+			return ut;
+		}
+
+		@Override
+		public double getAltitude() {
+			return altitudes[amostra];
+		}
+
+		@Override
+		public double getVelVertical() {
+			return velocidades[amostra];
+		}
+
+		@Override
+		public double getVelHorizontal() {
+			return 2;
+		}
+
+		@Override
+		public double getMassa() {
+			return 5000;
+		}
+
+		@Override
+		public double getEmpuxoDisponivel() {
+			return 60000;
+		}
+
+		@Override
+		public void setAceleracao(double acel) {
+			aceleracao = acel;
+		}
+
+		@Override
+		public void setTremDePouso(boolean ativo) {
+		}
+
+		@Override
+		public void setInclinacaoEDirecaoAlvo(double inclinacao, double direcao) {
+		}
+	}
+
+	@Param({ "false", "true" })
+	boolean controlePreditivo;
+
+	private Descida descida;
+	private ControladorSuicideBurn controlador;
+
+	@Setup
+	public void preparar() {
+		descida = new Descida();
+		for (int i = 0; i < AMOSTRAS; i++) {
+			descida.altitudes[i] = 3000 - i * 2.9;
+			descida.velocidades[i] = -100 + i * 0.09;
+		}
+		controlador = new ControladorSuicideBurn(1.63, 200000, 320, 2,
+				new double[] { 0.025, 0.05, 0.05, 0.025, 0.05, 0.05 });
+		controlador.setControlePreditivo(controlePreditivo);
+	}
+
+	/**
+	 * Distância da queima e entradas dos PIDs, calculadas em todos os ciclos dos
+	 * dois loops do módulo.
+	 */
+	@Benchmark
+	public double atualizar() {
+		descida.avancar();
+		controlador.atualizar(descida);
+		return controlador.getDistanciaDaQueima();
+	}
+
+	/**
+	 * Ciclo do loop de queima: atualização e cálculo da aceleração.
+	 */
+	@Benchmark
+	public double cicloDeQueima() {
+		descida.avancar();
+		controlador.atualizar(descida);
+		controlador.controlar(descida, descida);
+		return descida.aceleracao;
+	}
+}
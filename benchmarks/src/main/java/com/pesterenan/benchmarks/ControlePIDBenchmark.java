@@ -0,0 +1,82 @@
+package com.pesterenan.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pesterenan.utils.ControlePID;
+import com.pesterenan.utils.ControlePIDEscalonado;
+
+/**
+ * Um cálculo do ControlePID por chamada, com o tempo avançando como em um
+ * loop de controle de 25ms e a entrada variando a cada amostra. A versão
+ * escalonada também interpola os ganhos pelo TEP e pela altitude antes de cada
+ * cálculo, como o PID de velocidade do Suicide Burn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlePIDBenchmark {
+
+	private static final int AMOSTRAS = 1024;
+
+	private final double[] entradas = new double[AMOSTRAS];
+	private final double[] teps = new double[AMOSTRAS], altitudes = new double[AMOSTRAS];
+	private ControlePID pid;
+	private ControlePIDEscalonado pidEscalonado;
+	private double tempo;
+	private int amostra;
+
+	@Setup
+	public void preparar() {
+		pid = new ControlePID();
+		pid.setAmostraTempo(25);
+		pid.ajustarPID(0.025, 0.05, 0.05);
+		pid.limitarSaida(0, 1);
+		pid.setLimitePID(-5);
+		for (int i = 0; i < AMOSTRAS; i++) {
+			entradas[i] = -5 + 3 * Math.sin(i * 0.05);
+			teps[i] = 4 + 2 * Math.sin(i * 0.01);
+			altitudes[i] = 10000 - i * 9.7;
+		}
+		pidEscalonado = new ControlePIDEscalonado(0, 10, 11, 0, 10000, 5);
+		for (int i = 0; i < pidEscalonado.getPontosX(); i++) {
+			for (int j = 0; j < pidEscalonado.getPontosY(); j++) {
+				double tep = pidEscalonado.getX(i);
+				pidEscalonado.setGanhos(i, j, tep * 0.025, 0.05, tep * 0.05);
+			}
+		}
+		pidEscalonado.setAmostraTempo(25);
+		pidEscalonado.limitarSaida(0, 1);
+		pidEscalonado.setLimitePID(-5);
+	}
+
+	@Benchmark
+	public double computarPID() {
+		tempo += 0.025;
+		amostra = (amostra + 1) & (AMOSTRAS - 1);
+		pid.setEntradaPID(entradas[amostra]);
+		return pid.computarPID(tempo);
+	}
+
+	@Benchmark
+	public double computarPIDEscalonado() {
+		tempo += 0.025;
+		amostra = (amostra + 1) & (AMOSTRAS - 1);
+		pidEscalonado.escalonar(teps[amostra], altitudes[amostra]);
+		pidEscalonado.setEntradaPID(entradas[amostra]);
+		return pidEscalonado.computarPID(tempo);
+	}
+}
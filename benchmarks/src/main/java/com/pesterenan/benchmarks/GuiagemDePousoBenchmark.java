@@ -0,0 +1,54 @@
+package com.pesterenan.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pesterenan.utils.GuiagemDePouso;
+import com.pesterenan.utils.Vetor;
+
+/**
+ * Ciclo da guiagem do pouso sobre uma descida fixa na Mun, com o alvo a algumas
+ * centenas de metros, sem o kRPC.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuiagemDePousoBenchmark {
+
+	private static final int AMOSTRAS = 1024;
+
+	private final Vetor[] posicoes = new Vetor[AMOSTRAS], velocidades = new Vetor[AMOSTRAS];
+	private GuiagemDePouso guiagem;
+	private int amostra;
+
+	@Setup
+	public void preparar() {
+		for (int i = 0; i < AMOSTRAS; i++) {
+			posicoes[i] = new Vetor(3000 - i * 2.9, -400 + i * 0.35, 150 - i * 0.14);
+			velocidades[i] = new Vetor(-100 + i * 0.09, 30 - i * 0.025, -10 + i * 0.008);
+		}
+		guiagem = new GuiagemDePouso(10, 1);
+	}
+
+	/**
+	 * Ciclo do loop de queima: direção e aceleração do motor.
+	 */
+	@Benchmark
+	public double calcular() {
+		amostra = (amostra + 1) & (AMOSTRAS - 1);
+		return guiagem.calcular(posicoes[amostra], velocidades[amostra], 1.63, 12);
+	}
+}
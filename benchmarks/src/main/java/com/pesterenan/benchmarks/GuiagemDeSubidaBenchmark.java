@@ -0,0 +1,62 @@
+package com.pesterenan.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pesterenan.utils.GuiagemDeSubida;
+
+/**
+ * Ciclo da guiagem da subida sobre uma queima de inserção fixa em Kerbin, até
+ * a órbita de 80km, sem o kRPC. A guiagem é recriada a cada volta pelas
+ * amostras, para que a solução não fique fixa perto do corte.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuiagemDeSubidaBenchmark {
+
+	private static final int AMOSTRAS = 1024;
+	private static final double RAIO_KERBIN = 600000, MU_KERBIN = 3.5316e12;
+
+	private final double[] raios = new double[AMOSTRAS], velVerticais = new double[AMOSTRAS],
+			velHorizontais = new double[AMOSTRAS], aceleracoes = new double[AMOSTRAS];
+	private GuiagemDeSubida guiagem;
+	private int amostra;
+
+	@Setup
+	public void preparar() {
+		for (int i = 0; i < AMOSTRAS; i++) {
+			raios[i] = RAIO_KERBIN + 74000 + i * 5.5;
+			velVerticais[i] = 270 - i * 0.17;
+			velHorizontais[i] = 930 + i * 1.1;
+			aceleracoes[i] = 40 + i * 0.05;
+		}
+		guiagem = new GuiagemDeSubida(MU_KERBIN, RAIO_KERBIN + 80000, 300);
+	}
+
+	/**
+	 * Ciclo da queima de inserção: solução de A, B e T a partir do estado atual.
+	 */
+	@Benchmark
+	public boolean atualizar() {
+		amostra = (amostra + 1) & (AMOSTRAS - 1);
+		if (amostra == 0) {
+			guiagem = new GuiagemDeSubida(MU_KERBIN, RAIO_KERBIN + 80000, 300);
+		}
+		return guiagem.atualizar(amostra * 0.05, raios[amostra], velVerticais[amostra], velHorizontais[amostra],
+				aceleracoes[amostra]);
+	}
+}
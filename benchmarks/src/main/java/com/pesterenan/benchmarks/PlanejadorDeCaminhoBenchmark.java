@@ -0,0 +1,115 @@
+package com.pesterenan.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pesterenan.utils.PlanejadorDeCaminho;
+
+/**
+ * Planejamento de um caminho de 50km por um terreno com colinas e crateras,
+ * na grade que o AutoRover monta para essa distância (células de 790m) e em
+ * uma grade de células de 100m. Compara a busca desde o início com os
+ * replanejamentos que aproveitam a busca anterior.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanejadorDeCaminhoBenchmark {
+
+	private static final double DISTANCIA = 50000, LARGURA = 25000, MARGEM = 6250;
+	private static final int CRATERAS = 40, DESVIO = 3;
+
+	@Param({ "790", "100" })
+	double tamanhoCelula;
+
+	private PlanejadorDeCaminho planejador;
+	// Centro, raio e inclinação das paredes de cada cratera:
+	private final double[][] crateras = new double[CRATERAS][];
+	private int colunaOrigem, colunaDestino, linhaOrigem;
+	// Célula no meio da rota, onde o rover é desviado e o terreno é alterado:
+	private int colunaMeio, linhaMeio;
+	private boolean alterado;
+
+	@Setup
+	public void preparar() {
+		colunaOrigem = (int) Math.ceil(MARGEM / tamanhoCelula);
+		colunaDestino = colunaOrigem + (int) Math.round(DISTANCIA / tamanhoCelula);
+		linhaOrigem = (int) Math.ceil(LARGURA / 2 / tamanhoCelula);
+		int colunas = colunaDestino + colunaOrigem + 1, linhas = 2 * linhaOrigem + 1;
+		planejador = new PlanejadorDeCaminho(colunas, linhas, tamanhoCelula, 20, 10);
+
+		Random aleatorio = new Random(42);
+		for (int i = 0; i < CRATERAS; i++) {
+			crateras[i] = new double[] { aleatorio.nextDouble() * DISTANCIA + MARGEM, aleatorio.nextDouble() * LARGURA,
+					1000 + aleatorio.nextDouble() * 3000, 0.05 + aleatorio.nextDouble() * 0.2 };
+		}
+		for (int linha = 0; linha < linhas; linha++) {
+			for (int coluna = 0; coluna < colunas; coluna++) {
+				planejador.setAltura(coluna, linha, altura(coluna, linha));
+			}
+		}
+		int[] caminho = planejador.planejar(colunaOrigem, linhaOrigem, colunaDestino, linhaOrigem);
+		colunaMeio = caminho[caminho.length / 2] % colunas;
+		linhaMeio = caminho[caminho.length / 2] / colunas;
+	}
+
+	private double altura(int coluna, int linha) {
+		double x = coluna * tamanhoCelula, y = linha * tamanhoCelula;
+		double altura = 400 * Math.sin(x / 7000) * Math.cos(y / 5000) + 150 * Math.sin((x + y) / 2300);
+		for (double[] cratera : crateras) {
+			double distancia = Math.hypot(x - cratera[0], y - cratera[1]) / cratera[2];
+			if (distancia < 1.3) {
+				// Bacia com borda elevada, com paredes de 6° a 27°:
+				altura += cratera[2] * cratera[3] * (distancia < 1 ? distancia * distancia - 0.7 : 1.3 - distancia);
+			}
+		}
+		return altura;
+	}
+
+	/**
+	 * Busca da posição do rover até o alvo desde o início, seguida da
+	 * suavização do caminho.
+	 */
+	@Benchmark
+	public int[] planejar() {
+		int[] caminho = planejador.planejar(colunaOrigem, linhaOrigem, colunaDestino, linhaOrigem);
+		return caminho == null ? null : planejador.suavizar(caminho);
+	}
+
+	/**
+	 * Rover alternando entre o meio da rota e algumas células ao lado dela.
+	 */
+	@Benchmark
+	public int[] replanejarAposDesvio() {
+		alterado = !alterado;
+		planejador.moverOrigem(colunaMeio, alterado ? Math.max(0, linhaMeio - DESVIO) : linhaMeio);
+		int[] caminho = planejador.replanejar();
+		return caminho == null ? null : planejador.suavizar(caminho);
+	}
+
+	/**
+	 * Um morro de 500m aparecendo e sumindo no meio da rota.
+	 */
+	@Benchmark
+	public int[] replanejarAposMudancaDoTerreno() {
+		alterado = !alterado;
+		planejador.setAltura(colunaMeio, linhaMeio, altura(colunaMeio, linhaMeio) + (alterado ? 500 : 0));
+		int[] caminho = planejador.replanejar();
+		return caminho == null ? null : planejador.suavizar(caminho);
+	}
+}
@@ -0,0 +1,95 @@
+package com.pesterenan.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pesterenan.utils.Vetor;
+
+/**
+ * Operações do Vetor usadas pela Navegacao a cada ciclo. Rodar com "-prof gc"
+ * para ver quantos bytes cada operação aloca.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VetorBenchmark {
+
+	private Vetor a, b;
+	private final Vetor resultado = new Vetor(0, 0, 0), velocidade = new Vetor(0, 0, 0);
+
+	@Setup
+	public void preparar() {
+		a = new Vetor(3, 4, 5);
+		b = new Vetor(-1, 2, 0.5);
+	}
+
+	@Benchmark
+	public Vetor soma() {
+		return a.soma(b);
+	}
+
+	@Benchmark
+	public Vetor subtrai() {
+		return a.subtrai(b);
+	}
+
+	@Benchmark
+	public Vetor multiplica() {
+		return a.multiplica(2.5);
+	}
+
+	@Benchmark
+	public Vetor normalizar() {
+		return a.Normalizar();
+	}
+
+	@Benchmark
+	public double magnitude() {
+		return a.Magnitude3d();
+	}
+
+	/**
+	 * Mesmas contas que a Navegacao fazia uma vez por ciclo ao mirar a nave,
+	 * criando um Vetor a cada operação.
+	 */
+	@Benchmark
+	public double elevacaoDirecao() {
+		Vetor vetorVelocidade = new Vetor(b.y, b.z, b.x);
+		Vetor alvo = a.subtrai(vetorVelocidade);
+		return Vetor.anguloDirecao(alvo) + Math.max(30, (int) (90 - alvo.Magnitude()));
+	}
+
+	@Benchmark
+	public Vetor subtraiEm() {
+		return resultado.setVetor(a).subtraiEm(b);
+	}
+
+	@Benchmark
+	public Vetor normalizarEm() {
+		return resultado.setVetor(a).normalizarEm();
+	}
+
+	/**
+	 * As mesmas contas de elevacaoDirecao, reaproveitando os vetores como em
+	 * Navegacao.calcularElevacaoDirecao.
+	 */
+	@Benchmark
+	public double elevacaoDirecaoEm() {
+		velocidade.setVetor(b.y, b.z, b.x);
+		resultado.setVetor(a).subtraiEm(velocidade);
+		return Vetor.anguloDirecao(resultado) + Math.max(30, (int) (90 - resultado.Magnitude()));
+	}
+}
@@ -0,0 +1,195 @@
+package com.pesterenan.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.Timeout.ThreadMode;
+
+/**
+ * Compara as rotas do otimizador com a melhor ordem encontrada testando todas
+ * as permutações, em conjuntos pequenos de pontos aleatórios. Um erro nos
+ * índices dos movimentos pode fazer a otimização nunca terminar, por isso os
+ * testes têm tempo limite.
+ */
+@Timeout(value = 10, threadMode = ThreadMode.SEPARATE_THREAD)
+class OtimizadorDeRotaTest {
+
+	private static final int CONJUNTOS = 200;
+	private static final double LADO = 1000, TOLERANCIA = 1e-9;
+
+	private final Random aleatorio = new Random(3);
+
+	@Test
+	void semMarcadores() {
+		assertArrayEquals(new int[0], new OtimizadorDeRota(distancias(pontos(1))).otimizar());
+	}
+
+	@Test
+	void umMarcador() {
+		assertArrayEquals(new int[] { 1 }, new OtimizadorDeRota(distancias(pontos(2))).otimizar());
+	}
+
+	@Test
+	void doisMarcadoresComecaPeloMaisProximo() {
+		// Com dois marcadores, a rota aberta mais curta sempre visita primeiro o
+		// mais próximo, dos dois lados da partida:
+		double[][] pontos = { { 0, 0 }, { 0, 10 }, { 0, -9 } };
+		assertArrayEquals(new int[] { 2, 1 }, new OtimizadorDeRota(distancias(pontos)).otimizar());
+		pontos = new double[][] { { 0, 0 }, { 0, 10 }, { 0, 25 } };
+		assertArrayEquals(new int[] { 1, 2 }, new OtimizadorDeRota(distancias(pontos)).otimizar());
+		pontos = new double[][] { { 0, 0 }, { 30, 40 }, { -20, 5 } };
+		assertArrayEquals(new int[] { 2, 1 }, new OtimizadorDeRota(distancias(pontos)).otimizar());
+	}
+
+	@Test
+	void ateTresMarcadoresChegamAoOtimo() {
+		// Com até três marcadores, qualquer ordem está a um movimento 2-opt ou
+		// Or-opt de qualquer outra, então a rota final é sempre a melhor:
+		for (int marcadores = 1; marcadores <= 3; marcadores++) {
+			for (int conjunto = 0; conjunto < CONJUNTOS; conjunto++) {
+				double[][] distancias = distancias(pontos(marcadores + 1));
+				OtimizadorDeRota otimizador = new OtimizadorDeRota(distancias);
+				int[] ordem = otimizador.otimizar();
+				verificarPermutacao(ordem, marcadores);
+				assertEquals(melhorComprimento(distancias), otimizador.comprimento(ordem), TOLERANCIA,
+						marcadores + " marcadores, conjunto " + conjunto);
+			}
+		}
+	}
+
+	@Test
+	void rotasPequenasFicamPertoDoOtimo() {
+		for (int marcadores = 4; marcadores <= 8; marcadores++) {
+			double somaDasDiferencas = 0;
+			for (int conjunto = 0; conjunto < CONJUNTOS; conjunto++) {
+				double[][] distancias = distancias(pontos(marcadores + 1));
+				OtimizadorDeRota otimizador = new OtimizadorDeRota(distancias);
+				int[] ordem = otimizador.otimizar();
+				verificarPermutacao(ordem, marcadores);
+				double comprimento = otimizador.comprimento(ordem), melhor = melhorComprimento(distancias);
+				assertTrue(comprimento >= melhor - TOLERANCIA, "a rota não pode ser menor que a melhor");
+				assertTrue(comprimento <= melhor * 1.2, marcadores + " marcadores, conjunto " + conjunto
+						+ ": " + comprimento + " contra " + melhor);
+				assertTrue(semMovimentoQueEncurte(distancias, ordem),
+						marcadores + " marcadores, conjunto " + conjunto + ": a rota ainda pode ser encurtada");
+				somaDasDiferencas += comprimento / melhor - 1;
+			}
+			assertTrue(somaDasDiferencas / CONJUNTOS < 0.01,
+					marcadores + " marcadores: diferença média de " + 100 * somaDasDiferencas / CONJUNTOS + "%");
+		}
+	}
+
+	/**
+	 * Confere, testando cada inversão e cada mudança de trecho de até três
+	 * pontos, que nenhum movimento encurta a rota devolvida.
+	 */
+	private static boolean semMovimentoQueEncurte(double[][] distancias, int[] ordem) {
+		double atual = comprimento(distancias, ordem);
+		int n = ordem.length;
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				int[] invertida = ordem.clone();
+				for (int a = i, b = j; a < b; a++, b--) {
+					invertida[a] = ordem[b];
+					invertida[b] = ordem[a];
+				}
+				if (comprimento(distancias, invertida) < atual - 1e-6) {
+					return false;
+				}
+			}
+		}
+		for (int tamanho = 1; tamanho <= 3; tamanho++) {
+			for (int i = 0; i + tamanho <= n; i++) {
+				int[] trecho = Arrays.copyOfRange(ordem, i, i + tamanho);
+				int[] resto = new int[n - tamanho];
+				System.arraycopy(ordem, 0, resto, 0, i);
+				System.arraycopy(ordem, i + tamanho, resto, i, n - i - tamanho);
+				for (int posicao = 0; posicao <= resto.length; posicao++) {
+					for (int sentido = 0; sentido < 2; sentido++) {
+						int[] nova = new int[n];
+						System.arraycopy(resto, 0, nova, 0, posicao);
+						for (int t = 0; t < tamanho; t++) {
+							nova[posicao + t] = trecho[sentido == 0 ? t : tamanho - 1 - t];
+						}
+						System.arraycopy(resto, posicao, nova, posicao + tamanho, resto.length - posicao);
+						if (comprimento(distancias, nova) < atual - 1e-6) {
+							return false;
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void verificarPermutacao(int[] ordem, int marcadores) {
+		int[] ordenada = ordem.clone();
+		Arrays.sort(ordenada);
+		int[] esperada = new int[marcadores];
+		for (int i = 0; i < marcadores; i++) {
+			esperada[i] = i + 1;
+		}
+		assertArrayEquals(esperada, ordenada, "cada marcador deve ser visitado uma vez");
+	}
+
+	/**
+	 * @return Comprimento da melhor rota aberta, testando todas as ordens.
+	 */
+	private static double melhorComprimento(double[][] distancias) {
+		return melhorComprimento(distancias, new boolean[distancias.length], 0, 1, 0, Double.POSITIVE_INFINITY);
+	}
+
+	private static double melhorComprimento(double[][] distancias, boolean[] visitados, int anterior,
+			int visitadosAteAgora, double percorrido, double melhor) {
+		if (percorrido >= melhor) {
+			return melhor;
+		}
+		if (visitadosAteAgora == distancias.length) {
+			return percorrido;
+		}
+		for (int ponto = 1; ponto < distancias.length; ponto++) {
+			if (!visitados[ponto]) {
+				visitados[ponto] = true;
+				melhor = melhorComprimento(distancias, visitados, ponto, visitadosAteAgora + 1,
+						percorrido + distancias[anterior][ponto], melhor);
+				visitados[ponto] = false;
+			}
+		}
+		return melhor;
+	}
+
+	private static double comprimento(double[][] distancias, int[] ordem) {
+		double total = 0;
+		int anterior = 0;
+		for (int ponto : ordem) {
+			total += distancias[anterior][ponto];
+			anterior = ponto;
+		}
+		return total;
+	}
+
+	private double[][] pontos(int quantidade) {
+		double[][] pontos = new double[quantidade][2];
+		for (double[] ponto : pontos) {
+			ponto[0] = aleatorio.nextDouble() * LADO;
+			ponto[1] = aleatorio.nextDouble() * LADO;
+		}
+		return pontos;
+	}
+
+	private static double[][] distancias(double[][] pontos) {
+		double[][] distancias = new double[pontos.length][pontos.length];
+		for (int i = 0; i < pontos.length; i++) {
+			for (int j = 0; j < pontos.length; j++) {
+				distancias[i][j] = Math.hypot(pontos[i][0] - pontos[j][0], pontos[i][1] - pontos[j][1]);
+			}
+		}
+		return distancias;
+	}
+}
@@ -0,0 +1,145 @@
+package com.pesterenan.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compara os caminhos do planejador, na primeira busca e depois de cada
+ * replanejar, com um Dijkstra feito do zero sobre as mesmas alturas.
+ */
+class PlanejadorDeCaminhoTest {
+
+	private static final int COLUNAS = 60, LINHAS = 40, GRADES = 30, MUDANCAS_POR_GRADE = 20;
+	private static final double TAMANHO_CELULA = 200, INCLINACAO_MAXIMA = 20, PESO_INCLINACAO = 10;
+	private static final double INFINITO = Double.POSITIVE_INFINITY;
+
+	private final double[] alturas = new double[COLUNAS * LINHAS];
+
+	@Test
+	void replanejarEncontraOMesmoCustoQueUmaBuscaDoZero() {
+		Random aleatorio = new Random(1);
+		for (int grade = 0; grade < GRADES; grade++) {
+			for (int no = 0; no < alturas.length; no++) {
+				// Ondulações suaves, com picos espalhados que bloqueiam alguns passos:
+				alturas[no] = 60 * Math.sin(no % COLUNAS / 3.0 + grade) * Math.cos(no / COLUNAS / 4.0)
+						+ (aleatorio.nextDouble() < 0.08 ? aleatorio.nextDouble() * 150 : 0);
+			}
+			PlanejadorDeCaminho planejador = new PlanejadorDeCaminho(COLUNAS, LINHAS, TAMANHO_CELULA,
+					INCLINACAO_MAXIMA, PESO_INCLINACAO);
+			for (int no = 0; no < alturas.length; no++) {
+				planejador.setAltura(no % COLUNAS, no / COLUNAS, alturas[no]);
+			}
+			int colunaOrigem = 2, linhaOrigem = LINHAS / 2;
+			int destino = LINHAS / 2 * COLUNAS + COLUNAS - 3;
+			int[] caminho = planejador.planejar(colunaOrigem, linhaOrigem, destino % COLUNAS, destino / COLUNAS);
+			verificarCaminho(caminho, linhaOrigem * COLUNAS + colunaOrigem, destino, "grade " + grade);
+
+			for (int mudanca = 0; mudanca < MUDANCAS_POR_GRADE; mudanca++) {
+				if (aleatorio.nextBoolean()) {
+					// O rover sai da rota:
+					colunaOrigem = Math.max(0, Math.min(COLUNAS - 1, colunaOrigem + aleatorio.nextInt(7) - 2));
+					linhaOrigem = Math.max(0, Math.min(LINHAS - 1, linhaOrigem + aleatorio.nextInt(7) - 3));
+					planejador.moverOrigem(colunaOrigem, linhaOrigem);
+				}
+				int alturasMudadas = aleatorio.nextInt(4);
+				for (int k = 0; k < alturasMudadas; k++) {
+					int no = aleatorio.nextInt(alturas.length);
+					alturas[no] += aleatorio.nextDouble() * 200 - 100;
+					planejador.setAltura(no % COLUNAS, no / COLUNAS, alturas[no]);
+				}
+				caminho = planejador.replanejar();
+				verificarCaminho(caminho, linhaOrigem * COLUNAS + colunaOrigem, destino,
+						"grade " + grade + ", mudança " + mudanca);
+			}
+		}
+	}
+
+	@Test
+	void replanejarAbreEFechaUmaPassagemNumaParede() {
+		PlanejadorDeCaminho planejador = new PlanejadorDeCaminho(COLUNAS, LINHAS, TAMANHO_CELULA, INCLINACAO_MAXIMA,
+				PESO_INCLINACAO);
+		int colunaParede = COLUNAS / 2, passagem = LINHAS / 2 * COLUNAS + colunaParede;
+		for (int linha = 0; linha < LINHAS; linha++) {
+			alturas[linha * COLUNAS + colunaParede] = 1000;
+			planejador.setAltura(colunaParede, linha, 1000);
+		}
+		int origem = LINHAS / 2 * COLUNAS + 2, destino = LINHAS / 2 * COLUNAS + COLUNAS - 3;
+		assertNull(planejador.planejar(2, LINHAS / 2, COLUNAS - 3, LINHAS / 2), "parede inteira");
+
+		alturas[passagem] = 0;
+		planejador.setAltura(colunaParede, LINHAS / 2, 0);
+		verificarCaminho(planejador.replanejar(), origem, destino, "passagem aberta");
+
+		alturas[passagem] = 1000;
+		planejador.setAltura(colunaParede, LINHAS / 2, 1000);
+		assertNull(planejador.replanejar(), "passagem fechada de novo");
+	}
+
+	private void verificarCaminho(int[] caminho, int origem, int destino, String descricao) {
+		double otimo = dijkstra(origem, destino);
+		if (otimo == INFINITO) {
+			assertNull(caminho, descricao + ": o destino não pode ser alcançado");
+			return;
+		}
+		assertNotNull(caminho, descricao + ": o destino pode ser alcançado");
+		assertEquals(origem, caminho[0], descricao + ": início do caminho");
+		assertEquals(destino, caminho[caminho.length - 1], descricao + ": fim do caminho");
+		double custo = 0;
+		for (int i = 1; i < caminho.length; i++) {
+			custo += custoDoPasso(caminho[i - 1], caminho[i]);
+		}
+		assertEquals(otimo, custo, 1e-6 * Math.max(1, otimo), descricao + ": custo do caminho");
+	}
+
+	/**
+	 * Custo mínimo da origem ao destino, buscando do destino com uma fila de
+	 * prioridade comum.
+	 */
+	private double dijkstra(int origem, int destino) {
+		double[] custos = new double[alturas.length];
+		Arrays.fill(custos, INFINITO);
+		custos[destino] = 0;
+		PriorityQueue<double[]> fila = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+		fila.add(new double[] { 0, destino });
+		while (!fila.isEmpty()) {
+			double[] atual = fila.poll();
+			int no = (int) atual[1];
+			if (atual[0] > custos[no]) {
+				continue;
+			}
+			for (int deltaColuna = -1; deltaColuna <= 1; deltaColuna++) {
+				for (int deltaLinha = -1; deltaLinha <= 1; deltaLinha++) {
+					int coluna = no % COLUNAS + deltaColuna, linha = no / COLUNAS + deltaLinha;
+					if ((deltaColuna == 0 && deltaLinha == 0) || coluna < 0 || coluna >= COLUNAS || linha < 0
+							|| linha >= LINHAS) {
+						continue;
+					}
+					int vizinho = linha * COLUNAS + coluna;
+					double custo = custos[no] + custoDoPasso(no, vizinho);
+					if (custo < custos[vizinho]) {
+						custos[vizinho] = custo;
+						fila.add(new double[] { custo, vizinho });
+					}
+				}
+			}
+		}
+		return custos[origem];
+	}
+
+	private double custoDoPasso(int de, int para) {
+		boolean diagonal = de % COLUNAS != para % COLUNAS && de / COLUNAS != para / COLUNAS;
+		double distancia = diagonal ? TAMANHO_CELULA * Math.sqrt(2) : TAMANHO_CELULA;
+		double inclinacao = Math.abs(alturas[para] - alturas[de]) / distancia;
+		if (inclinacao > Math.tan(Math.toRadians(INCLINACAO_MAXIMA))) {
+			return INFINITO;
+		}
+		return distancia * (1 + PESO_INCLINACAO * inclinacao * inclinacao);
+	}
+}
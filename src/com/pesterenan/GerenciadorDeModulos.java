@@ -0,0 +1,130 @@
+package com.pesterenan;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pesterenan.gui.Arquivos;
+import com.pesterenan.gui.GUI;
+import com.pesterenan.gui.Status;
+
+import krpc.client.services.SpaceCenter.Vessel;
+
+/**
+ * Executa os módulos do MechPeste como tarefas independentes, identificadas por
+ * um número. Cada tarefa guarda as naves que controla, então módulos em naves
+ * diferentes podem rodar ao mesmo tempo sem disputar a mesma nave, e cancelar
+ * os módulos apenas interrompe as suas tarefas, sem fechar a conexão.
+ */
+public class GerenciadorDeModulos {
+
+	/**
+	 * Código de um módulo, executado na sua própria tarefa.
+	 */
+	public interface Modulo {
+		void executar() throws Exception;
+	}
+
+	private static class Tarefa {
+		final List<Vessel> naves;
+		Future<?> futuro;
+
+		Tarefa(List<Vessel> naves) {
+			this.naves = naves;
+		}
+	}
+
+	private final ExecutorService executor = criarExecutor();
+	private final Map<Integer, Tarefa> tarefas = new ConcurrentHashMap<>();
+	private final AtomicInteger proximoId = new AtomicInteger(1);
+
+	/**
+	 * Usa threads virtuais quando a versão do Java tiver, ou uma thread comum por
+	 * módulo caso contrário.
+	 */
+	private static ExecutorService criarExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger contador = new AtomicInteger(1);
+			return Executors.newCachedThreadPool(tarefa -> {
+				Thread thread = new Thread(tarefa, "MechPeste-Modulo-" + contador.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Inicia um módulo em uma nova tarefa.
+	 *
+	 * @param naves    - Naves controladas pelo módulo
+	 * @param execucao - Status mostrado ao iniciar o módulo
+	 * @param erro     - Status mostrado caso o módulo falhe
+	 * @param modulo   - Código do módulo
+	 */
+	public void iniciar(List<Vessel> naves, Status execucao, Status erro, Modulo modulo) {
+		int id = proximoId.getAndIncrement();
+		Tarefa tarefa = new Tarefa(naves);
+		tarefas.put(id, tarefa);
+		tarefa.futuro = executor.submit(() -> {
+			try {
+				GUI.setStatus(execucao.get());
+				modulo.executar();
+				GUI.setStatus(Status.PRONTO.get());
+			} catch (InterruptedException e) {
+				GUI.setStatus(Status.CANCELADO.get());
+			} catch (Exception e) {
+				try {
+					Arquivos.criarLogDeErros(e.getStackTrace());
+				} catch (IOException e1) {
+				}
+				e.printStackTrace();
+				GUI.setStatus(erro.get());
+				GUI.botConectarVisivel(true);
+			} finally {
+				tarefas.remove(id);
+			}
+		});
+	}
+
+	/**
+	 * Cancela todos os módulos em execução, interrompendo as suas tarefas.
+	 */
+	public void cancelarTodos() {
+		for (Integer id : tarefas.keySet()) {
+			Tarefa tarefa = tarefas.remove(id);
+			if (tarefa != null && tarefa.futuro != null) {
+				tarefa.futuro.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * @return true caso algum módulo esteja em execução
+	 */
+	public boolean emExecucao() {
+		return !tarefas.isEmpty();
+	}
+
+	/**
+	 * @param naves - Naves a serem verificadas
+	 * @return true caso algum módulo já esteja controlando alguma dessas naves
+	 */
+	public boolean emExecucao(Collection<Vessel> naves) {
+		for (Tarefa tarefa : tarefas.values()) {
+			for (Vessel nave : naves) {
+				if (tarefa.naves.contains(nave)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -3,41 +3,228 @@ package com.pesterenan;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 import javax.swing.JFrame;
 
 import com.pesterenan.funcoes.AutoRover;
+import com.pesterenan.funcoes.ControladorSuicideBurn;
 import com.pesterenan.funcoes.DecolagemOrbital;
 import com.pesterenan.funcoes.Manobras;
+import com.pesterenan.funcoes.ReproducaoSuicideBurn;
 import com.pesterenan.funcoes.SuicideBurn;
+import com.pesterenan.funcoes.SuicideBurnMultiplo;
 import com.pesterenan.gui.Arquivos;
 import com.pesterenan.gui.GUI;
 import com.pesterenan.gui.Status;
+import com.pesterenan.simulacao.AjusteDeGanhos;
+import com.pesterenan.simulacao.CorpoCeleste;
+import com.pesterenan.simulacao.DesempenhoKRPC;
+import com.pesterenan.simulacao.SimulacaoDecolagem;
+import com.pesterenan.simulacao.SimulacaoSuicideBurn;
+import com.pesterenan.simulacao.SimuladorDeVoo;
+import com.pesterenan.utils.GerenciadorDeConexao;
+import com.pesterenan.utils.GravadorDeVoo;
 
 import krpc.client.Connection;
 import krpc.client.RPCException;
 import krpc.client.StreamException;
+import krpc.client.services.SpaceCenter;
+import krpc.client.services.SpaceCenter.Vessel;
 
 public class MechPeste implements PropertyChangeListener {
-	public static Connection conexao;
-	public static Thread threadModulos;
+	private static final GerenciadorDeConexao conexoes = GerenciadorDeConexao.getInstancia();
+	// Trocada pela thread de reconexão e lida pela thread da interface:
+	private static volatile Connection conexao;
+	private static final GerenciadorDeModulos modulos = new GerenciadorDeModulos();
 	private static JFrame gui;
 
 	public static void main(String[] args) throws StreamException, RPCException, IOException, InterruptedException {
+		if (args.length == 2 && args[0].equals("--exportar")) {
+			exportarVoo(Paths.get(args[1]));
+			return;
+		}
+		if ((args.length == 2 || args.length == 8) && args[0].equals("--reproduzir")) {
+			reproduzirVoo(Paths.get(args[1]), args);
+			return;
+		}
+		if (args.length == 4 && args[0].equals("--simular") && args[2].equals("alvo")) {
+			simularPousoGuiado(Double.parseDouble(args[3]));
+			return;
+		}
+		if ((args.length == 2 || args.length == 3) && args[0].equals("--simular")) {
+			String variante = args[1].equals("decolagem") ? "peg" : "preditivo";
+			simular(args[1], args.length == 3 && args[2].equals(variante));
+			return;
+		}
+		if ((args.length == 2 || args.length == 3) && args[0].equals("--desempenho")) {
+			medirDesempenho(args[1], args.length == 3 ? Long.parseLong(args[2]) : 20);
+			return;
+		}
+		if ((args.length == 2 || args.length == 3) && args[0].equals("--ajustar")) {
+			ajustarGanhos(args[1], args.length == 3 ? Integer.parseInt(args[2]) : 400);
+			return;
+		}
 		new MechPeste();
 	}
 
+	/**
+	 * Ajusta os ganhos dos PIDs de um módulo com voos simulados, a partir dos
+	 * gravados no arquivo de config, e grava os melhores no mesmo arquivo.
+	 *
+	 * @param modulo     - "suicideburn" ou "decolagem", ou "regimes" para ajustar
+	 *                   os ganhos do Suicide Burn em cada regime de voo
+	 * @param avaliacoes - Quantidade de conjuntos de ganhos avaliados
+	 */
+	private static void ajustarGanhos(String modulo, int avaliacoes) throws IOException {
+		long inicio = System.nanoTime();
+		boolean decolagem = modulo.equals("decolagem"), regimes = modulo.equals("regimes");
+		Arquivos.carregarGanhos();
+		AjusteDeGanhos ajuste = decolagem ? AjusteDeGanhos.paraDecolagem(DecolagemOrbital.getGanhos())
+				: AjusteDeGanhos.paraSuicideBurn(regimes ? SuicideBurn.getGanhosPorRegime() : SuicideBurn.getGanhos());
+		int partidas = Math.max(4, Runtime.getRuntime().availableProcessors());
+		AjusteDeGanhos.Resultado resultado = ajuste.ajustar(avaliacoes, partidas, System.out::println);
+		System.out.println(resultado);
+		System.out.printf("Ajustado em %.1fs%n", (System.nanoTime() - inicio) / 1e9);
+
+		String[] dados;
+		if (regimes) {
+			// Os regimes são gravados como fatores dos ganhos da GUI:
+			double[] ganhos = SuicideBurn.getGanhos();
+			dados = new String[ControladorSuicideBurn.REGIMES + 1];
+			dados[0] = Arquivos.SBR;
+			for (int r = 1; r < dados.length; r++) {
+				StringBuilder fatores = new StringBuilder();
+				for (int k = 0; k < ganhos.length; k++) {
+					double ganho = resultado.getGanhos()[(r - 1) * ganhos.length + k];
+					fatores.append(String.format(Locale.ROOT, k == 0 ? "%.4g" : " %.4g", ganho / ganhos[k]));
+				}
+				dados[r] = fatores.toString();
+			}
+		} else {
+			dados = new String[resultado.getGanhos().length + 1];
+			dados[0] = decolagem ? Arquivos.DG : Arquivos.SB;
+			for (int i = 1; i < dados.length; i++) {
+				dados[i] = String.format(Locale.ROOT, "%.4g", resultado.getGanhos()[i - 1]);
+			}
+		}
+		Arquivos.gravarDadosConfig(dados);
+		System.out.println("Ganhos gravados em mp_config.cfg");
+	}
+
+	/**
+	 * Executa um módulo no simulador, sem o jogo, e mostra o resultado.
+	 *
+	 * @param modulo   - "suicideburn" ou "decolagem"
+	 * @param variante - true para o Suicide Burn controlar a queima por previsão,
+	 *                 ou para a Decolagem guiar a subida até a órbita circular
+	 */
+	private static void simular(String modulo, boolean variante) {
+		long inicio = System.nanoTime();
+		Object resultado;
+		double tempoDeVoo;
+		if (modulo.equals("decolagem")) {
+			// Foguete de 20t com TEP de 2 em Kerbin:
+			SimuladorDeVoo simulador = new SimuladorDeVoo(CorpoCeleste.KERBIN, 20000, 5000, 400000, 300, 1.0);
+			resultado = SimulacaoDecolagem.simular(simulador, DecolagemOrbital.altApoastroFinal,
+					DecolagemOrbital.getGanhos(), variante, 600);
+			tempoDeVoo = simulador.getTempoUniversal();
+		} else {
+			// Módulo de pouso de 6t descendo na Mun:
+			SimuladorDeVoo simulador = new SimuladorDeVoo(CorpoCeleste.MUN, 6000, 3500, 60000, 320, 0);
+			simulador.posicionar(8000, -150, 30);
+			resultado = SimulacaoSuicideBurn.simular(simulador, 2, SuicideBurn.getGanhos(), variante, 600);
+			tempoDeVoo = simulador.getTempoUniversal();
+		}
+		double tempoReal = (System.nanoTime() - inicio) / 1e9;
+		System.out.println(resultado);
+		System.out.printf("Simulado em %.1fms (%.0fx mais rápido que o tempo real)%n", tempoReal * 1000,
+				tempoDeVoo / tempoReal);
+	}
+
+	/**
+	 * Executa o pouso guiado no simulador, com o mesmo módulo de pouso de
+	 * simular, e mostra o resultado.
+	 *
+	 * @param alvo - Distância do alvo pela superfície a partir do ponto inicial,
+	 *             em metros
+	 */
+	private static void simularPousoGuiado(double alvo) {
+		long inicio = System.nanoTime();
+		SimuladorDeVoo simulador = new SimuladorDeVoo(CorpoCeleste.MUN, 6000, 3500, 60000, 320, 0);
+		simulador.posicionar(8000, -150, 30);
+		Object resultado = SimulacaoSuicideBurn.simularPousoGuiado(simulador, 2, alvo, 600);
+		double tempoReal = (System.nanoTime() - inicio) / 1e9;
+		System.out.println(resultado);
+		System.out.printf("Simulado em %.1fms (%.0fx mais rápido que o tempo real)%n", tempoReal * 1000,
+				simulador.getTempoUniversal() / tempoReal);
+	}
+
+	/**
+	 * Executa um módulo contra o servidor kRPC falso com cada latência de rede e
+	 * mostra as chamadas RPC por ciclo e os tempos dos ciclos.
+	 *
+	 * @param modulo   - "suicideburn" ou "decolagem"
+	 * @param segundos - Tempo máximo de execução do módulo em cada latência
+	 */
+	private static void medirDesempenho(String modulo, long segundos) throws IOException, InterruptedException {
+		for (long latencia : DesempenhoKRPC.LATENCIAS) {
+			System.out.println(DesempenhoKRPC.medir(modulo, latencia, segundos * 1000));
+		}
+	}
+
+	/**
+	 * Reproduz um voo gravado pelo Suicide Burn com os ganhos informados, ou com
+	 * os ganhos padrão do módulo.
+	 *
+	 * @param voo  - Arquivo de voo (.mpv)
+	 * @param args - Argumentos da linha de comando, com os ganhos altP, altI,
+	 *             altD, velP, velI e velD a partir do terceiro
+	 */
+	private static void reproduzirVoo(Path voo, String[] args) throws IOException {
+		double[] ganhos = SuicideBurn.getGanhos();
+		for (int i = 2; i < args.length; i++) {
+			ganhos[i - 2] = Double.parseDouble(args[i]);
+		}
+		long inicio = System.nanoTime();
+		ReproducaoSuicideBurn.Resultado resultado = new ReproducaoSuicideBurn(voo).reproduzir(ganhos);
+		System.out.println(resultado);
+		System.out.printf("Reproduzido em %.1fms%n", (System.nanoTime() - inicio) / 1e6);
+	}
+
+	/**
+	 * Converte um arquivo de voo gravado pelos módulos em CSV, na mesma pasta.
+	 *
+	 * @param voo - Arquivo de voo (.mpv)
+	 */
+	private static void exportarVoo(Path voo) throws IOException {
+		String nomeCsv = voo.getFileName().toString().replace(GravadorDeVoo.EXTENSAO, "") + ".csv";
+		Path csv = voo.resolveSibling(nomeCsv);
+		long registros = GravadorDeVoo.exportarCSV(voo, csv);
+		System.out.println(registros + " registros exportados para " + csv);
+	}
+
 	private MechPeste() {
 		gui = new GUI();
 		gui.addPropertyChangeListener(this);
 		new Arquivos();
+		conexoes.setInformarStatus(GUI::setStatus);
+		conexoes.adicionarOuvinte(novaConexao -> conexao = novaConexao);
 	}
 
+	/**
+	 * Conecta ao kRPC caso ainda não haja uma conexão. A mesma conexão é usada por
+	 * todos os módulos, e o GerenciadorDeConexao a reabre caso ela caia.
+	 */
 	public static void iniciarConexao() {
 		if (conexao == null) {
 			try {
 				GUI.setStatus(Status.CONECTANDO.get());
-				conexao = Connection.newInstance("MechPeste");
+				conexao = conexoes.obterConexao();
 				GUI.setStatus(Status.CONECTADO.get());
 				GUI.botConectarVisivel(false);
 			} catch (IOException e) {
@@ -57,145 +244,75 @@ public class MechPeste implements PropertyChangeListener {
 			GUI.botConectarVisivel(false);
 			iniciarConexao();
 		}
-		if (threadModulos == null) {
-			iniciarConexao();
-			switch (evt.getPropertyName()) {
-			case GUI.decolagemOrbital:
-				rodarDecolagemOrbital();
-				break;
-			case GUI.suicideBurn:
-				rodarSuicideBurn();
-				break;
-			case GUI.autoRover:
-				rodarAutoRover();
-				break;
-			case GUI.manobras:
-				rodarManobras();
-				break;
+		switch (evt.getPropertyName()) {
+		case GUI.decolagemOrbital:
+			rodarModulo(Status.EXECDECOLAGEM, Status.ERRODECOLAGEM, () -> new DecolagemOrbital(conexao));
+			break;
+		case GUI.suicideBurn:
+			if (SuicideBurn.isPousoMultiplo()) {
+				rodarPousoMultiplo();
+			} else {
+				rodarModulo(Status.EXECSUICIDE, Status.ERROSUICIDE, () -> new SuicideBurn(conexao));
 			}
-		} else {
-			GUI.setStatus(Status.JAEXEC.get());
+			break;
+		case GUI.autoRover:
+			rodarModulo(Status.EXECROVER, Status.ERROROVER, () -> new AutoRover(conexao));
+			break;
+		case GUI.manobras:
+			rodarModulo(Status.EXECMANOBRAS, Status.ERROMANOBRAS, () -> new Manobras(conexao, true));
+			break;
 		}
-
-	}
-
-	private void rodarDecolagemOrbital() {
-		threadModulos = new Thread(new Runnable() {
-			public void run() {
-				try {
-					GUI.setStatus(Status.EXECDECOLAGEM.get());
-					new DecolagemOrbital(conexao);
-					GUI.setStatus(Status.PRONTO.get());
-					threadModulos = null;
-				} catch (Exception e) {
-					try {
-						Arquivos.criarLogDeErros(e.getStackTrace());
-					} catch (IOException e1) {
-					}
-					GUI.setStatus(Status.ERRODECOLAGEM.get());
-					GUI.botConectarVisivel(true);
-					threadModulos = null;
-				}
-			}
-		});
-		threadModulos.start();
 	}
 
-	private void rodarSuicideBurn() {
-		threadModulos = new Thread(new Runnable() {
-			public void run() {
-				try {
-					GUI.setStatus(Status.EXECSUICIDE.get());
-					new SuicideBurn(conexao);
-					GUI.setStatus(Status.PRONTO.get());
-					threadModulos = null;
-				} catch (Exception e) {
-					try {
-						Arquivos.criarLogDeErros(e.getStackTrace());
-					} catch (IOException e1) {
-					}
-					e.printStackTrace();
-					GUI.setStatus(Status.ERROSUICIDE.get());
-					GUI.botConectarVisivel(true);
-					threadModulos = null;
-				}
-			}
-		});
-		threadModulos.start();
+	/**
+	 * Inicia um módulo na nave ativa, caso nenhum outro módulo já a esteja
+	 * controlando. Módulos em naves diferentes podem rodar ao mesmo tempo.
+	 */
+	private void rodarModulo(Status execucao, Status erro, GerenciadorDeModulos.Modulo modulo) {
+		iniciarConexao();
+		if (conexao == null) {
+			return;
+		}
+		try {
+			Vessel naveAtiva = SpaceCenter.newInstance(conexao).getActiveVessel();
+			rodarModulo(Collections.singletonList(naveAtiva), execucao, erro, modulo);
+		} catch (RPCException e) {
+			GUI.setStatus(Status.ERROCONEXAO.get());
+			GUI.botConectarVisivel(true);
+		}
 	}
 
-	private void rodarAutoRover() {
-		threadModulos = new Thread(new Runnable() {
-			public void run() {
-				try {
-					GUI.setStatus(Status.EXECROVER.get());
-					new AutoRover(conexao);
-					GUI.setStatus(Status.PRONTO.get());
-					threadModulos = null;
-				} catch (Exception e) {
-					try {
-						Arquivos.criarLogDeErros(e.getStackTrace());
-					} catch (IOException e1) {
-					}
-					GUI.setStatus(Status.ERROROVER.get());
-					GUI.botConectarVisivel(true);
-					threadModulos = null;
-				}
+	/**
+	 * Inicia o Suicide Burn em todas as naves com o nome da nave ativa, e registra
+	 * todas elas como controladas pelo módulo.
+	 */
+	private void rodarPousoMultiplo() {
+		iniciarConexao();
+		if (conexao == null) {
+			return;
+		}
+		try {
+			List<Vessel> naves = SuicideBurnMultiplo.buscarNaves(conexao);
+			if (naves.isEmpty()) {
+				GUI.setStatus("Não há naves em voo com o nome da nave ativa.");
+				return;
 			}
-		});
-		threadModulos.start();
+			rodarModulo(naves, Status.EXECSUICIDEMULTI, Status.ERROSUICIDE,
+					() -> new SuicideBurnMultiplo(conexao, naves));
+		} catch (RPCException e) {
+			GUI.setStatus(Status.ERROCONEXAO.get());
+			GUI.botConectarVisivel(true);
+		}
 	}
 
-	private void rodarManobras() {
-		threadModulos = new Thread(new Runnable() {
-			public void run() {
-				try {
-					GUI.setStatus(Status.EXECMANOBRAS.get());
-					new Manobras(conexao, true);
-					GUI.setStatus(Status.PRONTO.get());
-					threadModulos = null;
-				} catch (Exception e) {
-					try {
-						Arquivos.criarLogDeErros(e.getStackTrace());
-					} catch (IOException e1) {
-					}
-					GUI.setStatus(Status.ERROMANOBRAS.get());
-					GUI.botConectarVisivel(true);
-					threadModulos = null;
-				}
-			}
-		});
-		threadModulos.start();
+	private void rodarModulo(List<Vessel> naves, Status execucao, Status erro, GerenciadorDeModulos.Modulo modulo) {
+		if (modulos.emExecucao(naves)) {
+			GUI.setStatus(Status.JAEXEC.get());
+			return;
+		}
+		modulos.iniciar(naves, execucao, erro, modulo);
 	}
 
-//		case "botSuicideMulti":
-//			Vessel naveAtual = null;
-//			try {
-//				naveAtual = SpaceCenter.newInstance(conexao).getActiveVessel();
-//			} catch (RPCException e2) {
-//				GUI.setStatus(Status.ERROCONEXAO.get());
-//			}
-//			try {
-//				for (Vessel nave : centroEspacial.getVessels()) {
-//					if (nave.getName().contains(naveAtual.getName())) {
-//						new Thread(new Runnable() {
-//							@Override
-//							public void run() {
-//								try {
-//									System.out.println("Executando Suicide Burn para: " + nave.getName());
-//									new SuicideBurn(conexao, nave);
-//								} catch (StreamException | RPCException | IOException | InterruptedException e) {
-//									GUI.setStatus(Status.ERROCONEXAO.get());
-//								}
-//							}
-//						}).start();
-//					}
-//				}
-//			} catch (RPCException e1) {
-//				GUI.setStatus(Status.ERROCONEXAO.get());
-//			}
-//			break;
-
 //		case "botVooAutonomo":
 //			GUI.setStatus(Status.EXECSUICIDE.get());
 //			if (t_VooAutonomo == null) {
@@ -215,12 +332,15 @@ public class MechPeste implements PropertyChangeListener {
 //			}
 //			break;
 //		}
-	public static void finalizarTarefa() throws IOException {
-		if (threadModulos.isAlive()) {
-			threadModulos.interrupt();
-			threadModulos = null;
-			conexao.close();
-			conexao = null;
-		}
+	public static boolean moduloEmExecucao() {
+		return modulos.emExecucao();
+	}
+
+	/**
+	 * Cancela todos os módulos iniciados pela GUI, inclusive os que controlam
+	 * outras naves, mantendo a conexão aberta para os próximos módulos.
+	 */
+	public static void finalizarTarefa() {
+		modulos.cancelarTodos();
 	}
 }
@@ -5,17 +5,26 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-import com.pesterenan.MechPeste;
 import com.pesterenan.gui.GUI;
+import com.pesterenan.gui.Parametro;
+import com.pesterenan.utils.AlturaDoCorpo;
+import com.pesterenan.utils.CacheDeTerreno;
+import com.pesterenan.utils.CicloDeControle;
+import com.pesterenan.utils.ComandosNave;
 import com.pesterenan.utils.ControlePID;
+import com.pesterenan.utils.GravadorDeVoo;
+import com.pesterenan.utils.OtimizadorDeRota;
+import com.pesterenan.utils.PlanejadorDeCaminho;
+import com.pesterenan.utils.Telemetria;
 import com.pesterenan.utils.Vetor;
 
+import org.javatuples.Triplet;
+
 import krpc.client.Connection;
 import krpc.client.RPCException;
-import krpc.client.Stream;
 import krpc.client.StreamException;
 import krpc.client.services.SpaceCenter;
-import krpc.client.services.SpaceCenter.Flight;
+import krpc.client.services.SpaceCenter.CelestialBody;
 import krpc.client.services.SpaceCenter.ReferenceFrame;
 import krpc.client.services.SpaceCenter.SASMode;
 import krpc.client.services.SpaceCenter.SolarPanel;
@@ -31,16 +40,55 @@ import krpc.client.services.SpaceCenter.WaypointManager;
 
 public class AutoRover {
 	private static final int DISTANCIA_DE_PROCURA = 4400000;
+	private static final String[] CAMPOS_GRAVACAO = { "ut", "velHorizontal", "cargaEletrica", "distanciaRestante",
+			"anguloAlvo", "anguloRover", "acelEntrada", "acelLimite", "acelSaida", "dirEntrada", "dirLimite",
+			"dirSaida", "inclinacaoTerreno" };
+	// Terreno amostrado a cada 10m, em blocos de 40m, e verificado 20m à frente:
+	private static final double ESPACAMENTO_TERRENO = 10, DISTANCIA_TERRENO = 20, INCLINACAO_MAXIMA = 15;
+	// Leituras do terreno por segundo, no máximo, para não disputar a conexão com
+	// o loop de controle:
+	private static final double LEITURAS_TERRENO = 8;
+	private static final int AMOSTRAS_TERRENO = 4, BLOCOS_TERRENO = 256;
+	// Grade do planejador de caminho, com no máximo 2500 células de pelo menos 100m,
+	// das quais cerca de um quarto tem a altura lida, evitando passos com mais de
+	// 20° de inclinação:
+	private static final int CELULAS_CAMINHO = 2500;
+	private static final double CELULA_MINIMA = 100, LARGURA_MINIMA = 2000, DISTANCIA_MINIMA_CAMINHO = 1000,
+			INCLINACAO_CAMINHO = 20, PESO_INCLINACAO = 10;
+	// Afastamento da rota, em células da grade, a partir do qual o caminho é replanejado:
+	private static final double DESVIO_MAXIMO = 1;
 	// Declaração de variáveis:
 	static private SpaceCenter centroEspacial;
 	WaypointManager gerenciadorMarcadores;
 	List<Waypoint> listaDeMarcadoresASeguir = new ArrayList<Waypoint>();
+	// Latitude e longitude dos marcadores, na mesma ordem da lista:
+	private List<double[]> coordenadasDosMarcadores = new ArrayList<double[]>();
 	private List<Vetor> pontosASeguir = new ArrayList<Vetor>();
 	private static Vessel rover, naveAlvo;
 	Waypoint alvoMarcador;
 	private ReferenceFrame pontoRefRover, pontoRefOrbital, pontoRefSuperficie;
-	Flight parametrosRover;
-	Vetor posicaoRover, posicaoAnguloRover, posicaoAlvo, direcaoRover, direcaoTrajeto;
+	private Telemetria telemetria;
+	private ComandosNave comandos;
+	private boolean modoVelocidadeAjustado = false;
+	private CicloDeControle ciclo = new CicloDeControle(250);
+	private GravadorDeVoo gravador;
+	private final double[] registro = new double[CAMPOS_GRAVACAO.length];
+	Vetor posicaoRover, posicaoAnguloRover;
+	// Vetores reaproveitados a cada ciclo de controle:
+	final Vetor posicaoAlvo = new Vetor(0, 0, 0), direcaoRover = new Vetor(0, 0, 0),
+			direcaoTrajeto = new Vetor(0, 0, 0), distParaAlvo = new Vetor(0, 0, 0);
+	// Posição do marcador atual no referencial do corpo, fixa enquanto ele for o alvo:
+	private final Vetor posicaoMarcador = new Vetor(0, 0, 0);
+	private final Vetor direcaoNaSuperficie = new Vetor(0, 0, 0);
+	private AlturaDoCorpo alturaDoCorpo;
+	private CacheDeTerreno terreno;
+	private double inclinacaoTerreno = 0;
+	// Posição e alinhamento da grade do planejador de caminho, e as células da rota
+	// seguida, da origem ao alvo:
+	private double latitudeGrade, longitudeGrade, rumoGrade, tamanhoCelula;
+	private int colunaOrigem, linhaOrigem;
+	private PlanejadorDeCaminho planejador;
+	private int[] rota;
 	double anguloAlvo = 0, anguloRover = 0;
 	float limiteDistanciaAlvo = 100;
 	static float velocidadeMaxima = 6;
@@ -49,15 +97,12 @@ public class AutoRover {
 	private static String nomeMarcador = "ALVO";
 	public static boolean buscandoMarcadores = true;
 	private boolean executandoAutoRover = true;
-	Stream<Double> velocidadeRover;
 	private int nivelMinBateria = 10;
 	double cargaTotal = 100;
 	double cargaAtual = 10;
 
-	Vetor distParaAlvo;
 	int pontos;
 	private boolean carregando;
-	private Stream<Double> tempoDoJogo;
 	private float kmsPercorridos;
 	private double tempoAnterior;
 	private double tempoDeMissao;
@@ -65,8 +110,18 @@ public class AutoRover {
 
 	public AutoRover(Connection conexao) throws IOException, RPCException, InterruptedException, StreamException {
 		iniciarParametros(conexao);
-		definirAlvo();
-		controlarRover();
+		gravador = new GravadorDeVoo("AutoRover_" + telemetria.getNomeNave(), CAMPOS_GRAVACAO);
+		try {
+			definirAlvo();
+			controlarRover();
+		} finally {
+			// Caso o módulo seja cancelado, libera os Streams sem fechar a conexão:
+			comandos.cancelar();
+			telemetria.remover();
+			terreno.fechar();
+			alturaDoCorpo.remover();
+			gravador.fechar();
+		}
 	}
 
 	private void iniciarParametros(Connection conexao) throws RPCException, StreamException {
@@ -79,21 +134,29 @@ public class AutoRover {
 		pontoRefOrbital = rover.getOrbit().getBody().getReferenceFrame();
 		// REFERENCIA PARA BUSCAR POSICOES DE ALVO:
 		pontoRefSuperficie = rover.getSurfaceReferenceFrame();
-		parametrosRover = rover.flight(pontoRefOrbital);
-		velocidadeRover = conexao.addStream(parametrosRover, "getHorizontalSpeed");
-		tempoDoJogo = conexao.addStream(centroEspacial.getClass(), "getUT");
+		telemetria = new Telemetria(conexao, rover);
+		telemetria.registrarCargaEletrica();
+		telemetria.registrarReferenciais();
+		// A direção do rover no seu próprio referencial não muda:
+		direcaoRover.setVetor(rover.direction(pontoRefRover));
+		alturaDoCorpo = new AlturaDoCorpo(rover);
+		terreno = new CacheDeTerreno(alturaDoCorpo, telemetria.getRaioCorpo(), ESPACAMENTO_TERRENO, AMOSTRAS_TERRENO,
+				BLOCOS_TERRENO, LEITURAS_TERRENO);
+		comandos = new ComandosNave(rover);
 		// AJUSTAR CONTROLES PID:
+		ctrlAceleracao.setAmostraTempo(250);
 		ctrlAceleracao.ajustarPID(0.5, 0.1, 0.01);
 		ctrlAceleracao.limitarSaida(0, 1);
+		ctrlDirecao.setAmostraTempo(250);
 		ctrlDirecao.ajustarPID(0.03, 0.05, 0.3);
 		ctrlDirecao.limitarSaida(-1, 1);
-		tempoAnterior = tempoDoJogo.get();
+		tempoAnterior = telemetria.getTempoUniversal();
 		tempoRestante = 0;
 		kmsPercorridos = 0;
 
 	}
 
-	private void definirAlvo() throws IOException, RPCException {
+	private void definirAlvo() throws IOException, RPCException, StreamException, InterruptedException {
 		if (buscandoMarcadores) {
 			for (Waypoint marcador : gerenciadorMarcadores.getWaypoints()) {
 				if (marcador.getName().contains(nomeMarcador)) {
@@ -104,15 +167,20 @@ public class AutoRover {
 				executandoAutoRover = false;
 				GUI.setStatus("Sem alvos disponíveis");
 			} else {
-				checarDistancia();
+				ordenarMarcadores();
+				seguirProximoMarcador();
 			}
 		} else {
 			try {
 				naveAlvo = centroEspacial.getTargetVessel();
 				GUI.setStatus("Está indo na direção de: " + naveAlvo.getName());
 				GUI.setParametros("nome", naveAlvo.getName());
-				distParaAlvo = new Vetor(naveAlvo.position(pontoRefSuperficie));
-				fazerListaDoCaminho();
+				distParaAlvo.setVetor(naveAlvo.position(pontoRefSuperficie));
+				telemetria.registrarPosicaoAlvo(naveAlvo);
+				Triplet<Double, Double, Double> posicaoNaveAlvo = telemetria.getPosicaoAlvo().paraTriplet();
+				CelestialBody corpo = alturaDoCorpo.getCorpo();
+				fazerListaDoCaminho(corpo.latitudeAtPosition(posicaoNaveAlvo, pontoRefOrbital),
+						corpo.longitudeAtPosition(posicaoNaveAlvo, pontoRefOrbital));
 			} catch (NullPointerException e) {
 				executandoAutoRover = false;
 				GUI.setStatus("Sem alvos disponíveis");
@@ -121,18 +189,19 @@ public class AutoRover {
 	}
 
 	private void carregarBaterias() throws RPCException, IOException, StreamException, InterruptedException {
-		cargaTotal = rover.getResources().max("ElectricCharge");
-		cargaAtual = rover.getResources().amount("ElectricCharge");
+		cargaTotal = telemetria.getCargaEletricaMaxima();
+		cargaAtual = telemetria.getCargaEletrica();
 		int porcentagemCarga = (int) Math.ceil(cargaAtual * 100 / cargaTotal);
 		if (porcentagemCarga > nivelMinBateria) {
 			carregando = false;
 		} else {
 			carregando = true;
 			acelerarRover(0);
-			rover.getControl().setLights(false);
-			rover.getControl().setBrakes(true);
-			rover.getControl().setWheelSteering(0.0f);
-			if (velocidadeRover.get() < 1 && rover.getControl().getBrakes()) {
+			comandos.setLuzes(false);
+			comandos.setFreios(true);
+			comandos.setDirecaoRodas(0.0f);
+			comandos.enviarAgora();
+			if (telemetria.getVelHorizontal() < 1) {
 				Thread.sleep(1000);
 				GUI.setStatus("Carregando Baterias...");
 				double segCarga = 0;
@@ -155,31 +224,231 @@ public class AutoRover {
 				if (segCarga < 1 || segCarga > 21600) {
 					segCarga = 3600;
 				}
-				centroEspacial.warpTo((centroEspacial.getUT() + segCarga), 10000, 4);
-				tempoAnterior = tempoDoJogo.get();
-				rover.getControl().setLights(true);
+				centroEspacial.warpTo((telemetria.getTempoUniversal() + segCarga), 10000, 4);
+				telemetria.atualizar();
+				tempoAnterior = telemetria.getTempoUniversal();
+				comandos.setLuzes(true);
+				ciclo.reiniciar();
 			}
 		}
-		GUI.setParametros("carga", porcentagemCarga);
+		GUI.setParametros(Parametro.CARGA, porcentagemCarga);
 	}
 
-	private void checarDistancia() throws RPCException, IOException {
-		double distanciaProcura = DISTANCIA_DE_PROCURA;
+	/**
+	 * Lê a posição de cada marcador uma única vez e ordena a lista de marcadores
+	 * na ordem de visita do OtimizadorDeRota, com as distâncias calculadas pelo
+	 * círculo máximo. Descarta os marcadores além da distância de procura.
+	 */
+	private void ordenarMarcadores() throws RPCException {
+		List<Waypoint> marcadores = new ArrayList<Waypoint>();
+		List<double[]> coordenadas = new ArrayList<double[]>();
+		coordenadas.add(new double[] { telemetria.getLatitude(), telemetria.getLongitude() });
 		for (Waypoint marcador : listaDeMarcadoresASeguir) {
-			double distanciaMarcador = posicionarMarcador(marcador).Magnitude3d();
-			if (distanciaProcura > distanciaMarcador) {
-				distanciaProcura = distanciaMarcador;
-				alvoMarcador = marcador;
+			double latitude = marcador.getLatitude(), longitude = marcador.getLongitude();
+			if (terreno.distanciaAte(coordenadas.get(0)[0], coordenadas.get(0)[1], latitude,
+					longitude) <= DISTANCIA_DE_PROCURA) {
+				marcadores.add(marcador);
+				coordenadas.add(new double[] { latitude, longitude });
+			}
+		}
+		double[][] distancias = new double[coordenadas.size()][coordenadas.size()];
+		for (int i = 0; i < distancias.length; i++) {
+			for (int j = i + 1; j < distancias.length; j++) {
+				distancias[i][j] = distancias[j][i] = terreno.distanciaAte(coordenadas.get(i)[0],
+						coordenadas.get(i)[1], coordenadas.get(j)[0], coordenadas.get(j)[1]);
 			}
 		}
-		distParaAlvo = (posicionarMarcador(alvoMarcador));
-		fazerListaDoCaminho();
-		GUI.setStatus("Localizado marcador mais próximo: " + alvoMarcador.getName());
-		GUI.setParametros("nome", alvoMarcador.getName());
+		OtimizadorDeRota otimizador = new OtimizadorDeRota(distancias);
+		int[] ordem = otimizador.otimizar();
+		listaDeMarcadoresASeguir.clear();
+		coordenadasDosMarcadores.clear();
+		for (int ponto : ordem) {
+			listaDeMarcadoresASeguir.add(marcadores.get(ponto - 1));
+			coordenadasDosMarcadores.add(coordenadas.get(ponto));
+		}
+		GUI.setStatus(String.format("Rota por %d marcadores: %.1fkm", ordem.length,
+				otimizador.comprimento(ordem) / 1000));
+	}
+
+	/**
+	 * Segue para o primeiro marcador da lista ordenada.
+	 */
+	private void seguirProximoMarcador() throws RPCException, IOException, InterruptedException {
+		if (listaDeMarcadoresASeguir.isEmpty()) {
+			executandoAutoRover = false;
+			GUI.setStatus("Sem alvos disponíveis");
+			return;
+		}
+		alvoMarcador = listaDeMarcadoresASeguir.get(0);
+		double[] coordenadas = coordenadasDosMarcadores.get(0);
+		posicaoMarcador
+				.setVetor(alturaDoCorpo.getCorpo().surfacePosition(coordenadas[0], coordenadas[1], pontoRefOrbital));
+		fazerListaDoCaminho(coordenadas[0], coordenadas[1]);
+		String nome = alvoMarcador.getName();
+		GUI.setStatus("Seguindo para o marcador: " + nome);
+		GUI.setParametros("nome", nome);
+	}
+
+	/**
+	 * Planeja o caminho até o alvo com o PlanejadorDeCaminho, sobre uma grade
+	 * de alturas do terreno alinhada com a linha reta até o alvo, e guarda as
+	 * curvas do caminho em pontosASeguir. Caso o alvo não possa ser alcançado
+	 * sem passar por terreno inclinado demais, segue em linha reta.
+	 */
+	private void fazerListaDoCaminho(double latitudeAlvo, double longitudeAlvo)
+			throws IOException, RPCException, InterruptedException {
+		pontosASeguir.clear();
+		rota = null;
+		latitudeGrade = telemetria.getLatitude();
+		longitudeGrade = telemetria.getLongitude();
+		double distancia = terreno.distanciaAte(latitudeGrade, longitudeGrade, latitudeAlvo, longitudeAlvo);
+		if (distancia < DISTANCIA_MINIMA_CAMINHO) {
+			return;
+		}
+		rumoGrade = terreno.direcaoAte(latitudeGrade, longitudeGrade, latitudeAlvo, longitudeAlvo);
+		// A grade cobre uma faixa com metade da largura da distância, e um quarto
+		// da largura atrás do rover e depois do alvo:
+		double largura = Math.max(LARGURA_MINIMA, distancia / 2), margem = largura / 4;
+		tamanhoCelula = Math.max(CELULA_MINIMA, Math.sqrt((distancia + 2 * margem) * largura / CELULAS_CAMINHO));
+		colunaOrigem = (int) Math.ceil(margem / tamanhoCelula);
+		int colunaDestino = colunaOrigem + (int) Math.round(distancia / tamanhoCelula);
+		int colunas = colunaDestino + colunaOrigem + 1;
+		linhaOrigem = (int) Math.ceil(largura / 2 / tamanhoCelula);
+		int linhas = 2 * linhaOrigem + 1;
+
+		// As alturas são lidas pela mesma conexão do controle, então o rover espera
+		// parado, com os freios já enviados:
+		comandos.setAceleracaoRodas(0);
+		comandos.setFreios(true);
+		comandos.enviarAgora();
+		GUI.setStatus("Planejando o caminho até o alvo...");
+		long inicio = System.nanoTime();
+		int leituras = 0;
+		// Só as células de linhas e colunas alternadas são lidas, com uma chamada
+		// cada, e as outras são interpoladas entre as vizinhas:
+		double[] alturas = new double[colunas * linhas];
+		for (int linha = 0; linha < linhas; linha++) {
+			if (!amostrada(linha, linhas)) {
+				continue;
+			}
+			for (int coluna = 0; coluna < colunas; coluna++) {
+				if (amostrada(coluna, colunas)) {
+					double[] coordenadas = coordenadasDaCelula(coluna, linha);
+					alturas[linha * colunas + coluna] = alturaDoCorpo.alturaDoTerreno(coordenadas[0], coordenadas[1]);
+					leituras++;
+				}
+			}
+			for (int coluna = 0; coluna < colunas; coluna++) {
+				if (!amostrada(coluna, colunas)) {
+					int celula = linha * colunas + coluna;
+					alturas[celula] = (alturas[celula - 1] + alturas[celula + 1]) / 2;
+				}
+			}
+		}
+		planejador = new PlanejadorDeCaminho(colunas, linhas, tamanhoCelula, INCLINACAO_CAMINHO,
+				PESO_INCLINACAO);
+		for (int linha = 0; linha < linhas; linha++) {
+			for (int coluna = 0; coluna < colunas; coluna++) {
+				int celula = linha * colunas + coluna;
+				if (!amostrada(linha, linhas)) {
+					alturas[celula] = (alturas[celula - colunas] + alturas[celula + colunas]) / 2;
+				}
+				planejador.setAltura(coluna, linha, alturas[celula]);
+			}
+		}
+		int[] caminho = planejador.planejar(colunaOrigem, linhaOrigem, colunaDestino, linhaOrigem);
+		GUI.setStatus(String.format("Caminho planejado em %.1fs, com %d alturas lidas",
+				(System.nanoTime() - inicio) / 1e9, leituras));
+		if (caminho == null) {
+			posicionarMarcador(latitudeAlvo, longitudeAlvo, distParaAlvo);
+			fazerListaEmLinhaReta();
+			return;
+		}
+		seguirRota(caminho);
+	}
+
+	/**
+	 * Troca os pontos a seguir pelas curvas de um caminho do planejador. A origem
+	 * é a posição atual, e o alvo é seguido diretamente ao fim da lista.
+	 */
+	private void seguirRota(int[] caminho) throws RPCException {
+		rota = planejador.suavizar(caminho);
+		pontosASeguir.clear();
+		CelestialBody corpo = alturaDoCorpo.getCorpo();
+		for (int i = 1; i < rota.length - 1; i++) {
+			double[] coordenadas = coordenadasDaCelula(rota[i] % planejador.getColunas(),
+					rota[i] / planejador.getColunas());
+			pontosASeguir.add(new Vetor(corpo.surfacePosition(coordenadas[0], coordenadas[1], pontoRefOrbital)));
+		}
+	}
+
+	/**
+	 * Replaneja o caminho quando o rover se afasta do trecho da rota que está
+	 * seguindo, movendo a origem do planejador para a célula do rover. O
+	 * planejador aproveita a busca anterior, então só a parte da busca perto
+	 * do desvio é refeita.
+	 */
+	private void checarDesvio() throws RPCException {
+		if (rota == null) {
+			return;
+		}
+		// Posição do rover na grade, a partir da distância e da direção até a origem:
+		double latitude = telemetria.getLatitude(), longitude = telemetria.getLongitude();
+		double distancia = terreno.distanciaAte(latitudeGrade, longitudeGrade, latitude, longitude) / tamanhoCelula;
+		double angulo = Math
+				.toRadians(terreno.direcaoAte(latitudeGrade, longitudeGrade, latitude, longitude) - rumoGrade);
+		double coluna = colunaOrigem + distancia * Math.cos(angulo), linha = linhaOrigem + distancia * Math.sin(angulo);
+		int proximo = rota.length - 1 - pontosASeguir.size();
+		int colunaRover = (int) Math.round(coluna), linhaRover = (int) Math.round(linha);
+		if (distanciaAoTrecho(coluna, linha, rota[proximo - 1], rota[proximo]) <= DESVIO_MAXIMO || colunaRover < 0
+				|| colunaRover >= planejador.getColunas() || linhaRover < 0 || linhaRover >= planejador.getLinhas()) {
+			return;
+		}
+		planejador.moverOrigem(colunaRover, linhaRover);
+		int[] caminho = planejador.replanejar();
+		if (caminho != null) {
+			seguirRota(caminho);
+		}
+	}
+
+	/**
+	 * @return Latitude e longitude, em graus, do centro de uma célula da grade
+	 *         do planejador de caminho.
+	 */
+	private double[] coordenadasDaCelula(int coluna, int linha) {
+		double aFrente = (coluna - colunaOrigem) * tamanhoCelula, aoLado = (linha - linhaOrigem) * tamanhoCelula;
+		double latitude = terreno.latitudeAFrente(latitudeGrade, rumoGrade, aFrente);
+		double longitude = terreno.longitudeAFrente(latitudeGrade, longitudeGrade, rumoGrade, aFrente);
+		return new double[] { terreno.latitudeAFrente(latitude, rumoGrade + 90, aoLado),
+				terreno.longitudeAFrente(latitude, longitude, rumoGrade + 90, aoLado) };
+	}
 
+	/**
+	 * @return Se a altura da linha ou coluna da grade é lida do terreno: as de
+	 *         índice par e a última.
+	 */
+	private static boolean amostrada(int indice, int total) {
+		return indice % 2 == 0 || indice == total - 1;
 	}
 
-	private void fazerListaDoCaminho() throws IOException, RPCException {
+	/**
+	 * @return Distância, em células, de um ponto da grade ao trecho entre duas
+	 *         células.
+	 */
+	private double distanciaAoTrecho(double coluna, double linha, int inicio, int fim) {
+		int colunas = planejador.getColunas();
+		double colunaInicio = inicio % colunas, linhaInicio = inicio / colunas;
+		double deltaColuna = fim % colunas - colunaInicio, deltaLinha = fim / colunas - linhaInicio;
+		double comprimento = deltaColuna * deltaColuna + deltaLinha * deltaLinha;
+		double fracao = 0;
+		if (comprimento > 0) {
+			fracao = ((coluna - colunaInicio) * deltaColuna + (linha - linhaInicio) * deltaLinha) / comprimento;
+			fracao = Math.max(0, Math.min(1, fracao));
+		}
+		return Math.hypot(coluna - colunaInicio - fracao * deltaColuna, linha - linhaInicio - fracao * deltaLinha);
+	}
+
+	private void fazerListaEmLinhaReta() throws IOException, RPCException {
 
 		System.out.println("distParaAlvo" + distParaAlvo);
 
@@ -188,20 +457,23 @@ public class AutoRover {
 		Vetor ponto = distParaAlvo.divide((double) pontos);
 		System.out.println("ponto" + ponto);
 		System.out.println();
-		pontosASeguir.add(posicionarVetor(ponto));
+		pontosASeguir.add(posicionarPonto(posicionarVetor(ponto)));
 		System.out.println(pontosASeguir.get(0));
 		for (int i = 1; i < pontos; i++) {
-			Vetor pontoSeguinte = (posicionarVetor(ponto.multiplica(i)));
+			Vetor pontoSeguinte = (posicionarPonto(posicionarVetor(ponto.multiplica(i))));
 			pontosASeguir.add(pontoSeguinte);
 		}
 	}
 
 	private void controlarRover() throws IOException, RPCException, InterruptedException, StreamException {
+		ciclo.reiniciar();
 		while (executandoAutoRover) {
+			telemetria.atualizar();
 			try {
 				definirVetorDirecao();
-				ctrlAceleracao.setEntradaPID(velocidadeRover.get());
+				ctrlAceleracao.setEntradaPID(telemetria.getVelHorizontal());
 				checarTerreno();
+				checarDesvio();
 				logarDados();
 			} catch (Exception erro) {
 				GUI.setStatus("Sem alvo selecionado");
@@ -210,13 +482,13 @@ public class AutoRover {
 			carregarBaterias();
 			if (!carregando) {
 				if (posicaoAlvo.Magnitude3d() > limiteDistanciaAlvo) {
-					if (rover.getControl().getBrakes()) {
-						rover.getControl().setBrakes(false);
+					if (telemetria.getFreios()) {
+						comandos.setFreios(false);
 					}
-					acelerarRover(ctrlAceleracao.computarPID());
+					acelerarRover(ctrlAceleracao.computarPID(telemetria.getTempoUniversal()));
 					pilotarRover();
 				} else {
-					rover.getControl().setBrakes(true);
+					comandos.setFreios(true);
 					if (!pontosASeguir.isEmpty()) {
 						pontosASeguir.remove(0);
 					} else {
@@ -224,76 +496,76 @@ public class AutoRover {
 							if (!alvoMarcador.getHasContract()) {
 								alvoMarcador.remove();
 							}
-							listaDeMarcadoresASeguir.remove(alvoMarcador);
-							checarDistancia();
+							listaDeMarcadoresASeguir.remove(0);
+							coordenadasDosMarcadores.remove(0);
+							seguirProximoMarcador();
 						} else {
 							executandoAutoRover = false;
 						}
 					}
 				}
 			}
-			Thread.sleep(250);
+			comandos.enviar();
+			ciclo.aguardarProximoCiclo();
 		}
+		comandos.finalizar();
 		rover.getAutoPilot().disengage();
-		velocidadeRover.remove();
+		telemetria.remover();
 		Thread.sleep(1000);
-		MechPeste.finalizarTarefa();
 	}
 
-	private void acelerarRover(double arg) throws IOException, RPCException, StreamException {
-		if (velocidadeRover.get() < (velocidadeMaxima * 1.01)) {
-			rover.getControl().setBrakes(false);
-			rover.getControl().setWheelThrottle((float) arg);
+	private void acelerarRover(double arg) {
+		if (telemetria.getVelHorizontal() < (velocidadeMaxima * 1.01)) {
+			comandos.setFreios(false);
+			comandos.setAceleracaoRodas(arg);
 		} else {
-			rover.getControl().setBrakes(true);
+			comandos.setFreios(true);
 		}
 	}
 
 	private void pilotarRover() throws IOException, RPCException, StreamException {
 		// Calcular diferença de angulo entre o alvo e o rover
 		double diferencaAngulo = Math.abs(anguloAlvo - anguloRover);
-		if (velocidadeRover.get() > velocidadeCurva && diferencaAngulo < 20) {
+		if (telemetria.getVelHorizontal() > velocidadeCurva && diferencaAngulo < 20) {
 			try {
-				if (rover.getControl().getSpeedMode() == SpeedMode.TARGET) {
-					rover.getControl().setSpeedMode(SpeedMode.SURFACE);
+				if (!modoVelocidadeAjustado) {
+					if (rover.getControl().getSpeedMode() == SpeedMode.TARGET) {
+						rover.getControl().setSpeedMode(SpeedMode.SURFACE);
+					}
+					modoVelocidadeAjustado = true;
 				}
-				rover.getControl().setSAS(true);
-				rover.getControl().setSASMode(SASMode.PROGRADE);
 			} catch (Exception e) {
 			}
+			comandos.setSAS(true);
+			comandos.setModoSAS(SASMode.PROGRADE);
 		} else {
-			rover.getControl().setSAS(false);
+			comandos.setSAS(false);
 		}
 
-		// Controlar a velocidade para fazer curvas
-		if (diferencaAngulo > 20) {
+		// Controlar a velocidade para fazer curvas e em terreno inclinado
+		if (diferencaAngulo > 20 || Math.abs(inclinacaoTerreno) > INCLINACAO_MAXIMA) {
 			ctrlAceleracao.setLimitePID(velocidadeCurva);
 		} else {
 			ctrlAceleracao.setLimitePID(velocidadeMaxima);
 		}
 		if (diferencaAngulo > 3) {
 			// Dirigir o Rover ao Alvo
-			rover.getControl().setWheelSteering((float) ctrlDirecao.computarPID());
+			comandos.setDirecaoRodas(ctrlDirecao.computarPID(telemetria.getTempoUniversal()));
 		} else {
-			rover.getControl().setWheelSteering(0f);
+			comandos.setDirecaoRodas(0f);
 		}
 	}
 
-	private void definirVetorDirecao() throws IOException, RPCException {
+	private void definirVetorDirecao() {
 		// Definir posicao do Alvo, sendo ele um Waypoint, ou um Vessel
 		if (!pontosASeguir.isEmpty()) {
-			posicaoAlvo = posParaRover(posicionarPonto(pontosASeguir.get(0)));
+			posParaRover(pontosASeguir.get(0), posicaoAlvo);
 		} else {
-			if (buscandoMarcadores) {
-				posicaoAlvo = posParaRover(posicionarMarcador(alvoMarcador));
-			} else {
-				posicaoAlvo = posParaRover(new Vetor(naveAlvo.position(pontoRefSuperficie)));
-			}
+			posParaRover(posicionarAlvo(), posicaoAlvo);
 		}
 
-		// Definir a direcao do Rover e do Trajeto
-		direcaoRover = new Vetor(rover.direction(pontoRefRover));
-		direcaoTrajeto = posicaoAlvo.Normalizar();
+		// Definir a direcao do Trajeto
+		direcaoTrajeto.setVetor(posicaoAlvo).normalizarEm();
 		// Definir o angulo entre os dois
 		anguloAlvo = (Vetor.anguloDirecao(direcaoTrajeto));
 		anguloRover = (Vetor.anguloDirecao(direcaoRover));
@@ -301,56 +573,82 @@ public class AutoRover {
 		ctrlDirecao.setLimitePID(anguloAlvo * 0.5);
 	}
 
-	private void checarTerreno() throws RPCException {
-//		Vetor dirEsq = new Vetor(rover.direction(pontoRefRover)).soma(new Vetor(-0.8, 0.1, 0.0));
-//		Vetor dirDir = new Vetor(rover.direction(pontoRefRover)).soma(new Vetor(-0.8, -0.1, 0.0));
-//		double distEsq = centroEspacial.raycastDistance(
-//				new Vetor(rover.position(pontoRefSuperficie)).soma(new Vetor(0, 0, 100)).paraTriplet(),
-//				dirEsq.paraTriplet(), pontoRefSuperficie);
-//		double distDir = centroEspacial.raycastDistance(
-//				new Vetor(rover.position(pontoRefSuperficie)).soma(new Vetor(0, 0, 100)).paraTriplet(),
-//				dirDir.paraTriplet(), pontoRefSuperficie);
-//
-////		rover.getControl().setRoll((float) -(distEsq - distDir));
-//		System.out.println("distEsq " + distEsq);
-//		System.out.println("distDir " + distDir);
-//		System.out.println("difDeE  " + (distEsq - distDir));
+	/**
+	 * Calcula a inclinação do terreno à frente do rover com as alturas do cache
+	 * de terreno, e pede os blocos do caminho à frente. Enquanto os blocos não
+	 * forem carregados, considera o terreno plano.
+	 */
+	private void checarTerreno() {
+		telemetria.getReferencialNave().direcaoParaCorpo(direcaoRover, direcaoNaSuperficie);
+		telemetria.getReferencialSuperficie().direcaoDoCorpo(direcaoNaSuperficie, direcaoNaSuperficie);
+		// No referencial da superfície, y aponta para o norte e z para o leste:
+		double direcao = Math.toDegrees(Math.atan2(direcaoNaSuperficie.z, direcaoNaSuperficie.y));
+		double latitude = telemetria.getLatitude(), longitude = telemetria.getLongitude();
+		terreno.carregarTrajeto(latitude, longitude, direcao, DISTANCIA_TERRENO * 4);
+		double alturaAqui = terreno.getAltura(latitude, longitude);
+		double alturaAFrente = terreno.getAltura(terreno.latitudeAFrente(latitude, direcao, DISTANCIA_TERRENO),
+				terreno.longitudeAFrente(latitude, longitude, direcao, DISTANCIA_TERRENO));
+		double desnivel = alturaAFrente - alturaAqui;
+		inclinacaoTerreno = Double.isNaN(desnivel) ? 0 : Math.toDegrees(Math.atan2(desnivel, DISTANCIA_TERRENO));
 	}
 
 	private void logarDados() throws IOException, RPCException, StreamException {
-		if (buscandoMarcadores) {
-			distParaAlvo = posParaRover(posicionarMarcador(alvoMarcador));
-		} else {
-			distParaAlvo = posParaRover(new Vetor(naveAlvo.position(pontoRefSuperficie)));
-		}
+		posParaRover(posicionarAlvo(), distParaAlvo);
 		double distanciaRestante = distParaAlvo.Magnitude3d();
-		double mudancaDeTempo = tempoDoJogo.get() - tempoAnterior;
+		double mudancaDeTempo = telemetria.getTempoUniversal() - tempoAnterior;
 		if (mudancaDeTempo > 1) {
-			kmsPercorridos += (float) (mudancaDeTempo * velocidadeRover.get());
+			kmsPercorridos += (float) (mudancaDeTempo * telemetria.getVelHorizontal());
 			tempoRestante = distanciaRestante / velocidadeMaxima;
 			tempoDeMissao += mudancaDeTempo;
-			tempoAnterior = tempoDoJogo.get();
-			GUI.setParametros("distancia", distanciaRestante);
-			GUI.setParametros("distPercorrida", kmsPercorridos);
-			GUI.setParametros("tempoRestante", tempoRestante);
-			GUI.setParametros("tempoDeMissao", tempoDeMissao);
+			tempoAnterior = telemetria.getTempoUniversal();
+			GUI.setParametros(Parametro.DISTANCIA, distanciaRestante);
+			GUI.setParametros(Parametro.DISTANCIA_PERCORRIDA, kmsPercorridos);
+			GUI.setParametros(Parametro.TEMPO_RESTANTE, tempoRestante);
+			GUI.setParametros(Parametro.TEMPO_DE_MISSAO, tempoDeMissao);
 		}
+		registro[0] = telemetria.getTempoUniversal();
+		registro[1] = telemetria.getVelHorizontal();
+		registro[2] = telemetria.getCargaEletrica();
+		registro[3] = distanciaRestante;
+		registro[4] = anguloAlvo;
+		registro[5] = anguloRover;
+		registro[6] = ctrlAceleracao.getEntradaPID();
+		registro[7] = ctrlAceleracao.getLimitePID();
+		registro[8] = ctrlAceleracao.getSaidaPID();
+		registro[9] = ctrlDirecao.getEntradaPID();
+		registro[10] = ctrlDirecao.getLimitePID();
+		registro[11] = ctrlDirecao.getSaidaPID();
+		registro[12] = inclinacaoTerreno;
+		gravador.gravar(registro);
+	}
+
+	/**
+	 * @return Posição do alvo atual, marcador ou nave, no referencial do corpo.
+	 */
+	private Vetor posicionarAlvo() {
+		return buscandoMarcadores ? posicaoMarcador : telemetria.getPosicaoAlvo();
 	}
 
-	private Vetor posicionarMarcador(Waypoint marcador) throws RPCException {
-		return new Vetor(rover.getOrbit().getBody().surfacePosition(marcador.getLatitude(), marcador.getLongitude(),
-				pontoRefSuperficie));
+	private Vetor posicionarMarcador(double latitude, double longitude, Vetor destino) throws RPCException {
+		return destino.setVetor(alturaDoCorpo.getCorpo().surfacePosition(latitude, longitude, pontoRefSuperficie));
 	}
 
+	/**
+	 * @param vetor - Posição no referencial do corpo
+	 * @return Ponto da superfície abaixo da posição, no referencial do corpo
+	 */
 	private Vetor posicionarPonto(Vetor vetor) throws RPCException {
-		return new Vetor(rover.getOrbit().getBody().surfacePosition(
-				rover.getOrbit().getBody().latitudeAtPosition(vetor.paraTriplet(), pontoRefOrbital),
-				rover.getOrbit().getBody().longitudeAtPosition(vetor.paraTriplet(), pontoRefOrbital),
-				pontoRefSuperficie));
+		CelestialBody corpo = alturaDoCorpo.getCorpo();
+		return new Vetor(corpo.surfacePosition(corpo.latitudeAtPosition(vetor.paraTriplet(), pontoRefOrbital),
+				corpo.longitudeAtPosition(vetor.paraTriplet(), pontoRefOrbital), pontoRefOrbital));
 	}
 
-	private Vetor posParaRover(Vetor vetor) throws IOException, RPCException {
-		return new Vetor(centroEspacial.transformPosition(vetor.paraTriplet(), pontoRefSuperficie, pontoRefRover));
+	/**
+	 * Converte uma posição do referencial do corpo para o do rover, com o
+	 * referencial do rover lido pela telemetria no ciclo.
+	 */
+	private Vetor posParaRover(Vetor vetor, Vetor destino) {
+		return telemetria.getReferencialNave().doCorpo(vetor, destino);
 	}
 
 	private Vetor posicionarVetor(Vetor vetor) throws IOException, RPCException {
@@ -361,6 +659,10 @@ public class AutoRover {
 		nomeMarcador = alvo;
 	}
 
+	public static String getAlvo() {
+		return nomeMarcador;
+	}
+
 	public static void setVelMaxima(float velMax) {
 		velocidadeMaxima = velMax;
 	}
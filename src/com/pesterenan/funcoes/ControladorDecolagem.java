@@ -0,0 +1,197 @@
+package com.pesterenan.funcoes;
+
+import java.util.function.Consumer;
+
+import com.pesterenan.utils.ControlePID;
+import com.pesterenan.utils.FonteTelemetriaOrbital;
+import com.pesterenan.utils.GuiagemDeSubida;
+import com.pesterenan.utils.SaidaDeComandos;
+
+/**
+ * Lógica de controle da subida da Decolagem Orbital, sem nenhuma chamada ao
+ * kRPC: lançamento, giro gravitacional e corte do motor ao alcançar o apoastro.
+ * A circularização continua sendo feita pelas Manobras, no jogo. Com a guiagem
+ * ativada, a GuiagemDeSubida assume a inclinação e o corte do motor assim que
+ * encontra uma solução, e leva a nave à órbita circular sem a manobra de
+ * circularização.
+ */
+public class ControladorDecolagem {
+
+	public static final int DECOLAR = 0, GIRO_GRAVITACIONAL = 1, PLANEJAR_ORBITA = 2, ORBITA_ALCANCADA = 3;
+	public static final double[] GANHOS_PADRAO = { 0.25, 0.01, 0.025 };
+	// Fração do apoastro desejado a partir da qual a guiagem pode assumir:
+	private static final double FRACAO_APOASTRO_GUIAGEM = 0.5;
+
+	private final ControlePID ctrlAcel = new ControlePID();
+	private final double altApoastroFinal, direcao;
+	private final Consumer<String> informarStatus;
+	private double altInicioCurva = 100;
+	private int inclinacao = 90;
+	private double anguloGiro = 0;
+	private int etapaAtual = DECOLAR;
+	private GuiagemDeSubida guiagem;
+	private double raioCorpo, parametroGravitacional;
+	private boolean guiando, aguardandoGuiagem;
+
+	/**
+	 * @param altApoastroFinal - Altitude do apoastro da órbita desejada
+	 * @param direcao          - Direção da subida, em graus
+	 * @param informarStatus   - Recebe as mensagens de status da subida
+	 */
+	public ControladorDecolagem(double altApoastroFinal, double direcao, Consumer<String> informarStatus) {
+		this(altApoastroFinal, direcao, GANHOS_PADRAO, informarStatus);
+	}
+
+	/**
+	 * @param altApoastroFinal - Altitude do apoastro da órbita desejada
+	 * @param direcao          - Direção da subida, em graus
+	 * @param ganhos           - Ganhos do PID de aceleração: P, I, D
+	 * @param informarStatus   - Recebe as mensagens de status da subida
+	 */
+	public ControladorDecolagem(double altApoastroFinal, double direcao, double[] ganhos,
+			Consumer<String> informarStatus) {
+		this.altApoastroFinal = altApoastroFinal;
+		this.direcao = direcao;
+		this.informarStatus = informarStatus;
+		ctrlAcel.setAmostraTempo(50);
+		ctrlAcel.setLimitePID(20);
+		ctrlAcel.ajustarPID(ganhos[0], ganhos[1], ganhos[2]);
+		ctrlAcel.limitarSaida(0.1, 1.0);
+	}
+
+	/**
+	 * Calcula os comandos de um ciclo da subida.
+	 *
+	 * @param telemetria - Valores de voo do ciclo atual
+	 * @param comandos   - Recebe a aceleração e a inclinação da nave
+	 * @return Etapa da subida depois deste ciclo
+	 */
+	public int controlar(FonteTelemetriaOrbital telemetria, SaidaDeComandos comandos) {
+		switch (etapaAtual) {
+		case DECOLAR:
+			comandos.setInclinacaoEDirecaoAlvo(inclinacao, direcao);
+			comandos.setAceleracao(1.0f); // acelerar ao máximo
+			etapaAtual = GIRO_GRAVITACIONAL;
+			break;
+		case GIRO_GRAVITACIONAL:
+			giroGravitacional(telemetria, comandos);
+			break;
+		}
+		return etapaAtual;
+	}
+
+	/**
+	 * Ativa a guiagem em malha fechada até a órbita circular na altitude do
+	 * apoastro desejado.
+	 *
+	 * @param acelGravidade     - Aceleração da gravidade na superfície do corpo
+	 * @param raioCorpo         - Raio do corpo celeste
+	 * @param impulsoEspecifico - Impulso específico do motor, em segundos
+	 */
+	public void ativarGuiagem(double acelGravidade, double raioCorpo, double impulsoEspecifico) {
+		this.raioCorpo = raioCorpo;
+		parametroGravitacional = acelGravidade * raioCorpo * raioCorpo;
+		guiagem = new GuiagemDeSubida(parametroGravitacional, raioCorpo + altApoastroFinal, impulsoEspecifico);
+	}
+
+	private void giroGravitacional(FonteTelemetriaOrbital telemetria, SaidaDeComandos comandos) {
+		double altitudeAtual = telemetria.getAltitudeNivelMar();
+		double apoastroAtual = telemetria.getApoastro();
+		boolean podeGuiar = guiagem != null && apoastroAtual > altApoastroFinal * FRACAO_APOASTRO_GUIAGEM;
+		if (podeGuiar && guiar(telemetria, comandos)) {
+			return;
+		}
+		if (guiagem != null && (aguardandoGuiagem || apoastroAtual >= altApoastroFinal)) {
+			// Com empuxo alto a subida até a órbita não cabe na queima, então a nave
+			// sobe sem motor até a guiagem encontrar a queima de inserção:
+			if (!aguardandoGuiagem) {
+				aguardandoGuiagem = true;
+				informarStatus.accept("Apoastro alcançado, aguardando a guiagem...");
+			}
+			comandos.setAceleracao(0.0f);
+			comandos.setInclinacaoEDirecaoAlvo(0, direcao);
+			return;
+		}
+		double pressaoAtual = telemetria.getPressaoDinamica() / 1000;
+		ctrlAcel.setEntradaPID(pressaoAtual);
+		if (altitudeAtual > altInicioCurva && altitudeAtual < altApoastroFinal) {
+			double incremento = Math.sqrt((altitudeAtual - altInicioCurva) / (altApoastroFinal - altInicioCurva));
+			double novoAnguloGiro = incremento * inclinacao;
+			if (Math.abs(novoAnguloGiro - anguloGiro) > 0.5) {
+				anguloGiro = novoAnguloGiro;
+				comandos.setInclinacaoEDirecaoAlvo(inclinacao - anguloGiro, direcao);
+				comandos.setAceleracao((float) ctrlAcel.computarPID(telemetria.getTempoUniversal()));
+				informarStatus.accept(String.format("Ângulo de Inclinação: %1$.1f °", anguloGiro));
+			}
+		}
+		// Diminuir aceleração ao chegar perto do apoastro
+		if (apoastroAtual > altApoastroFinal * 0.95) {
+			informarStatus.accept("Se aproximando do apoastro...");
+			ctrlAcel.setEntradaPID(altitudeAtual);
+			ctrlAcel.setLimitePID(altApoastroFinal);
+			comandos.setAceleracao((float) ctrlAcel.computarPID(telemetria.getTempoUniversal()));
+		}
+		// Sair do giro ao chegar na altitude de apoastro:
+		if (apoastroAtual >= altApoastroFinal) {
+			informarStatus.accept("Apoastro alcançado.");
+			comandos.setAceleracao(0.0f);
+			etapaAtual = PLANEJAR_ORBITA;
+		}
+	}
+
+	/**
+	 * Segue a guiagem quando a solução converge, e desliga o motor ao alcançar o
+	 * momento angular da órbita circular.
+	 *
+	 * @return true caso a guiagem esteja controlando a nave.
+	 */
+	private boolean guiar(FonteTelemetriaOrbital telemetria, SaidaDeComandos comandos) {
+		double raio = raioCorpo + telemetria.getAltitudeNivelMar();
+		double velHorizontal = velocidadeHorizontalOrbital(telemetria, raio);
+		double aceleracaoMaxima = telemetria.getEmpuxoDisponivel() / telemetria.getMassa();
+		boolean convergiu = guiagem.atualizar(telemetria.getTempoUniversal(), raio, telemetria.getVelVertical(),
+				velHorizontal, aceleracaoMaxima);
+		// A guiagem só assume quando não pede a nave abaixo do horizonte, o que
+		// com empuxo alto centraliza a queima de inserção no apoastro:
+		if (!guiando && !(convergiu && guiagem.getInclinacao() >= 0)) {
+			return false;
+		}
+		if (!guiando) {
+			guiando = true;
+			informarStatus.accept("Guiando até a órbita...");
+		}
+		if (guiagem.deveCortar(raio, velHorizontal)) {
+			informarStatus.accept("Órbita alcançada.");
+			comandos.setAceleracao(0.0f);
+			etapaAtual = ORBITA_ALCANCADA;
+			return true;
+		}
+		anguloGiro = inclinacao - guiagem.getInclinacao();
+		comandos.setInclinacaoEDirecaoAlvo(guiagem.getInclinacao(), direcao);
+		comandos.setAceleracao(1.0f);
+		return true;
+	}
+
+	/**
+	 * Velocidade horizontal em relação ao centro do corpo, sem a rotação dele,
+	 * pelo momento angular da órbita atual: h = √(2μ·ra·rp / (ra + rp)).
+	 */
+	private double velocidadeHorizontalOrbital(FonteTelemetriaOrbital telemetria, double raio) {
+		double raioApoastro = raioCorpo + telemetria.getApoastro();
+		double raioPeriastro = Math.max(0, raioCorpo + telemetria.getPeriastro());
+		return Math.sqrt(2 * parametroGravitacional * raioApoastro * raioPeriastro / (raioApoastro + raioPeriastro))
+				/ raio;
+	}
+
+	public int getEtapaAtual() {
+		return etapaAtual;
+	}
+
+	public double getAnguloGiro() {
+		return anguloGiro;
+	}
+
+	public ControlePID getCtrlAcel() {
+		return ctrlAcel;
+	}
+}
@@ -0,0 +1,91 @@
+package com.pesterenan.funcoes;
+
+import com.pesterenan.utils.FonteTelemetria;
+import com.pesterenan.utils.GuiagemDePouso;
+import com.pesterenan.utils.SaidaDeComandos;
+import com.pesterenan.utils.Vetor;
+
+/**
+ * Lógica de controle do pouso guiado até um alvo, sem nenhuma chamada ao
+ * kRPC. Recebe a posição da nave em relação ao ponto de pouso e os valores de
+ * voo de uma FonteTelemetria, e escreve a aceleração, a direção do motor e o
+ * trem de pouso em uma SaidaDeComandos, então pode controlar a nave no jogo
+ * ou ser executada sobre um voo simulado.
+ *
+ * Os vetores estão no referencial da superfície: x para cima, y para o norte e
+ * z para o leste.
+ */
+public class ControladorPousoGuiado {
+
+	// Ponto acima do alvo onde o pouso guiado passa a descer na vertical, e a
+	// velocidade dessa descida:
+	public static final double ALTURA_FINAL = 10, VELOCIDADE_FINAL = 1;
+
+	private final GuiagemDePouso guiagem = new GuiagemDePouso(ALTURA_FINAL, VELOCIDADE_FINAL);
+	private final double acelGravidade, alturaNave;
+	private final Vetor posicao = new Vetor(0, 0, 0), velocidade = new Vetor(0, 0, 0);
+	private boolean executandoQueima = false;
+
+	/**
+	 * @param acelGravidade - Gravidade na superfície do corpo celeste
+	 * @param alturaNave    - Distância do centro de massa até a base da nave
+	 */
+	public ControladorPousoGuiado(double acelGravidade, double alturaNave) {
+		this.acelGravidade = acelGravidade;
+		this.alturaNave = alturaNave;
+	}
+
+	/**
+	 * Informa a posição e a velocidade da nave no ciclo atual. A altura usada é
+	 * a menor entre a altura acima do ponto de pouso e acima do terreno sob a
+	 * nave, para que um terreno mais alto no caminho não seja atingido em alta
+	 * velocidade.
+	 *
+	 * @param posicaoNave    - Posição do centro de massa em relação ao ponto de
+	 *                       pouso
+	 * @param velocidadeNave - Velocidade em relação à superfície
+	 * @param telemetria     - Valores de voo do ciclo atual
+	 */
+	public void atualizar(Vetor posicaoNave, Vetor velocidadeNave, FonteTelemetria telemetria) {
+		posicao.setVetor(posicaoNave);
+		posicao.x = Math.min(posicao.x, telemetria.getAltitude()) - alturaNave;
+		velocidade.setVetor(velocidadeNave);
+	}
+
+	/**
+	 * @param telemetria - Valores de voo do ciclo atual
+	 * @return true quando a nave chegou ao ponto de iniciar a descida
+	 *         motorizada até o alvo.
+	 */
+	public boolean verificarInicioDaQueima(FonteTelemetria telemetria) {
+		if (!executandoQueima) {
+			executandoQueima = guiagem.deveIniciar(posicao.x, velocidade.x, acelGravidade,
+					getAceleracaoMaxima(telemetria));
+		}
+		return executandoQueima;
+	}
+
+	/**
+	 * Calcula os comandos de um ciclo da descida guiada.
+	 *
+	 * @param telemetria - Valores de voo do ciclo atual
+	 * @param comandos   - Recebe a aceleração, a direção do motor e o trem de
+	 *                   pouso
+	 */
+	public void controlar(FonteTelemetria telemetria, SaidaDeComandos comandos) {
+		if (telemetria.getAltitude() < ControladorSuicideBurn.ALTITUDE_TREM_DE_POUSO) {
+			comandos.setTremDePouso(true);
+		}
+		double acel = guiagem.calcular(posicao, velocidade, acelGravidade, getAceleracaoMaxima(telemetria));
+		comandos.setInclinacaoEDirecaoAlvo(guiagem.getInclinacao(), guiagem.getRumo());
+		comandos.setAceleracao(acel);
+	}
+
+	private static double getAceleracaoMaxima(FonteTelemetria telemetria) {
+		return telemetria.getEmpuxoDisponivel() / telemetria.getMassa();
+	}
+
+	public boolean isExecutandoQueima() {
+		return executandoQueima;
+	}
+}
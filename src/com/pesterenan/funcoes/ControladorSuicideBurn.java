@@ -0,0 +1,287 @@
+package com.pesterenan.funcoes;
+
+import com.pesterenan.utils.ControlePIDEscalonado;
+import com.pesterenan.utils.ControlePreditivo;
+import com.pesterenan.utils.FonteTelemetria;
+import com.pesterenan.utils.PrevisorDeQueima;
+import com.pesterenan.utils.SaidaDeComandos;
+
+/**
+ * Lógica de controle do Suicide Burn, sem nenhuma chamada ao kRPC. Recebe os
+ * valores de voo de uma FonteTelemetria e escreve a aceleração e o trem de
+ * pouso em uma SaidaDeComandos, então pode controlar a nave no jogo ou ser
+ * executada sobre um voo gravado ou simulado.
+ */
+public class ControladorSuicideBurn {
+
+	static final int ALTITUDE_SUICIDEBURN = 10000;
+	public static final int ALTITUDE_TREM_DE_POUSO = 1000;
+	// Parte do empuxo usada na previsão da queima. O restante fica como margem
+	// para os PIDs corrigirem a descida:
+	static final double FRACAO_EMPUXO_PREVISTA = 0.9;
+	// Pontos das tabelas de ganhos, no TEP e na altitude:
+	private static final double TEP_MAXIMO_TABELA = 10;
+	private static final int PONTOS_TEP = 11, PONTOS_ALTITUDE = 5;
+	// Regimes de voo que podem ter ganhos próprios, nos cantos de TEP e altitude.
+	// Os pontos da tabela entre eles são interpolados, e os de fora seguem o
+	// regime mais próximo:
+	public static final double[] TEP_REGIMES = { 1.5, 4 }, ALTITUDE_REGIMES = { 0, 5000 };
+	public static final int REGIMES = TEP_REGIMES.length * ALTITUDE_REGIMES.length, GANHOS_POR_REGIME = 6;
+	// Horizonte do controle preditivo, velocidade de toque e fração da
+	// aceleração máxima usada na curva de frenagem:
+	private static final int PASSOS_PREDITIVO = 20, ITERACOES_PREDITIVO = 30;
+	private static final double PASSO_PREDITIVO = 0.1, VELOCIDADE_DE_TOQUE = 1, FRACAO_FRENAGEM = 0.95;
+
+	private final ControlePIDEscalonado altitudePID = novaTabela(), velocidadePID = novaTabela();
+	private final PrevisorDeQueima previsor;
+	private final double acelGravidade, alturaNave;
+	private ControlePreditivo preditivo;
+	private double valorTEP = 1.0, distanciaDaQueima = 0.0, desnivelTerreno = 0.0;
+	private boolean executandoQueima = false;
+
+	/**
+	 * Cria o controlador sem conhecer o raio do corpo e o impulso específico do
+	 * motor: a queima é prevista com gravidade constante e sem perda de massa.
+	 *
+	 * @param acelGravidade - Gravidade na superfície do corpo celeste
+	 * @param alturaNave    - Distância do centro de massa até a base da nave
+	 * @param ganhos        - Ganhos dos PIDs: altP, altI, altD, velP, velI, velD
+	 */
+	public ControladorSuicideBurn(double acelGravidade, double alturaNave, double[] ganhos) {
+		this(acelGravidade, 0, 0, alturaNave, ganhos);
+	}
+
+	/**
+	 * @param acelGravidade - Gravidade na superfície do corpo celeste
+	 * @param raioCorpo     - Raio do corpo celeste, ou 0 se for desconhecido
+	 * @param isp           - Impulso específico do motor, ou 0 se for
+	 *                      desconhecido
+	 * @param alturaNave    - Distância do centro de massa até a base da nave
+	 * @param ganhos        - Ganhos dos PIDs: altP, altI, altD, velP, velI, velD,
+	 *                      iguais em todos os regimes, ou os mesmos seis para
+	 *                      cada um dos REGIMES, com o TEP variando primeiro
+	 */
+	public ControladorSuicideBurn(double acelGravidade, double raioCorpo, double isp, double alturaNave,
+			double[] ganhos) {
+		previsor = new PrevisorDeQueima(acelGravidade, raioCorpo, isp);
+		this.acelGravidade = acelGravidade;
+		this.alturaNave = alturaNave;
+		// Os ganhos dos regimes são interpolados em cada ponto da tabela, e os
+		// proporcional e derivativo do PID de velocidade crescem com o TEP:
+		double[] ponto = new double[GANHOS_POR_REGIME];
+		for (int i = 0; i < PONTOS_TEP; i++) {
+			double tep = velocidadePID.getX(i);
+			for (int j = 0; j < PONTOS_ALTITUDE; j++) {
+				interpolarRegimes(ganhos, tep, altitudePID.getY(j), ponto);
+				altitudePID.setGanhos(i, j, ponto[0], ponto[1], ponto[2]);
+				velocidadePID.setGanhos(i, j, tep * ponto[3], ponto[4], tep * ponto[5]);
+			}
+		}
+		altitudePID.setAmostraTempo(25);
+		altitudePID.escalonar(valorTEP, ALTITUDE_SUICIDEBURN);
+		altitudePID.limitarSaida(0, 1);
+		altitudePID.setLimitePID(0);
+		velocidadePID.setAmostraTempo(25);
+		velocidadePID.escalonar(valorTEP, ALTITUDE_SUICIDEBURN);
+		velocidadePID.limitarSaida(0, 1);
+		velocidadePID.setLimitePID(0);
+	}
+
+	/**
+	 * Interpola os ganhos dos quatro regimes em volta de um ponto da tabela.
+	 *
+	 * @param ganhos   - Ganhos de todos os regimes, ou os mesmos para todos
+	 * @param tep      - TEP do ponto
+	 * @param altitude - Altitude do ponto
+	 * @param ponto    - Recebe os seis ganhos do ponto
+	 */
+	private static void interpolarRegimes(double[] ganhos, double tep, double altitude, double[] ponto) {
+		if (ganhos.length == GANHOS_POR_REGIME) {
+			System.arraycopy(ganhos, 0, ponto, 0, GANHOS_POR_REGIME);
+			return;
+		}
+		double fx = Math.max(0, Math.min(1, (tep - TEP_REGIMES[0]) / (TEP_REGIMES[1] - TEP_REGIMES[0])));
+		double fy = Math.max(0,
+				Math.min(1, (altitude - ALTITUDE_REGIMES[0]) / (ALTITUDE_REGIMES[1] - ALTITUDE_REGIMES[0])));
+		for (int k = 0; k < GANHOS_POR_REGIME; k++) {
+			double abaixo = ganhos[k] + (ganhos[GANHOS_POR_REGIME + k] - ganhos[k]) * fx;
+			double acima = ganhos[2 * GANHOS_POR_REGIME + k]
+					+ (ganhos[3 * GANHOS_POR_REGIME + k] - ganhos[2 * GANHOS_POR_REGIME + k]) * fx;
+			ponto[k] = abaixo + (acima - abaixo) * fy;
+		}
+	}
+
+	/**
+	 * Repete os mesmos ganhos em todos os regimes.
+	 *
+	 * @param ganhos - Ganhos dos PIDs: altP, altI, altD, velP, velI, velD
+	 * @return Ganhos de cada um dos REGIMES, com o TEP variando primeiro
+	 */
+	public static double[] ganhosPorRegime(double[] ganhos) {
+		double[] regimes = new double[REGIMES * GANHOS_POR_REGIME];
+		for (int r = 0; r < REGIMES; r++) {
+			System.arraycopy(ganhos, 0, regimes, r * GANHOS_POR_REGIME, GANHOS_POR_REGIME);
+		}
+		return regimes;
+	}
+
+	private static ControlePIDEscalonado novaTabela() {
+		return new ControlePIDEscalonado(0, TEP_MAXIMO_TABELA, PONTOS_TEP, 0, ALTITUDE_SUICIDEBURN, PONTOS_ALTITUDE);
+	}
+
+	/**
+	 * Recalcula a distância da queima e informa os PIDs com os valores do ciclo
+	 * atual.
+	 *
+	 * @param telemetria - Valores de voo do ciclo atual
+	 */
+	public void atualizar(FonteTelemetria telemetria) {
+		distanciaDaQueima = calcularDistanciaDaQueima(telemetria) + desnivelTerreno;
+		informarPIDs(telemetria, distanciaDaQueima);
+	}
+
+	/**
+	 * @param telemetria - Valores de voo do ciclo atual
+	 * @return true quando a nave chegou à distância da queima e deve começar o
+	 *         Suicide Burn.
+	 */
+	public boolean verificarInicioDaQueima(FonteTelemetria telemetria) {
+		if (telemetria.getAltitude() < ALTITUDE_SUICIDEBURN) {
+			if ((telemetria.getAltitude() < distanciaDaQueima) && telemetria.getVelVertical() < -1) {
+				executandoQueima = true;
+			}
+		}
+		return executandoQueima;
+	}
+
+	/**
+	 * Calcula os comandos de um ciclo do Suicide Burn.
+	 *
+	 * @param telemetria - Valores de voo do ciclo atual
+	 * @param comandos   - Recebe a aceleração e o trem de pouso
+	 */
+	public void controlar(FonteTelemetria telemetria, SaidaDeComandos comandos) {
+		// Desce o trem de pouso da nave
+		if (telemetria.getAltitude() < ALTITUDE_TREM_DE_POUSO) {
+			comandos.setTremDePouso(true);
+		}
+		// Corrigir aceleração da nave:
+		double tempoAmostra = telemetria.getTempoUniversal();
+		if (preditivo != null) {
+			comandos.setAceleracao((float) controlarPorPrevisao(telemetria, tempoAmostra));
+			return;
+		}
+		comandos.setAceleracao(
+				(float) ((altitudePID.computarPID(tempoAmostra)) + (velocidadePID.computarPID(tempoAmostra))));
+	}
+
+	/**
+	 * Aceleração escolhida pelo controle preditivo. Com a nave apontada para o
+	 * retrógrado, só a parte vertical do empuxo entra no modelo.
+	 */
+	private double controlarPorPrevisao(FonteTelemetria telemetria, double tempoAmostra) {
+		double velVertical = telemetria.getVelVertical(), velHorizontal = telemetria.getVelHorizontal();
+		double fracaoVertical = velHorizontal > 2 ? -velVertical / Math.hypot(velVertical, velHorizontal) : 1;
+		double aceleracaoMaxima = Math.max(0, fracaoVertical) * telemetria.getEmpuxoDisponivel()
+				/ telemetria.getMassa();
+		double altura = telemetria.getAltitude() - alturaNave - desnivelTerreno;
+		return preditivo.calcular(tempoAmostra, altura, velVertical, aceleracaoMaxima, acelGravidade);
+	}
+
+	/**
+	 * Prevê a altitude perdida em uma queima contra a velocidade a partir de
+	 * agora, com a margem de empuxo de FRACAO_EMPUXO_PREVISTA.
+	 */
+	private double calcularDistanciaDaQueima(FonteTelemetria telemetria) {
+		double empuxoDisponivel = telemetria.getEmpuxoDisponivel() / 1000;
+		valorTEP = empuxoDisponivel / ((telemetria.getMassa() / 1000) * acelGravidade);
+		double distancia = previsor.prever(telemetria.getVelVertical(), telemetria.getVelHorizontal(),
+				telemetria.getMassa(), telemetria.getEmpuxoDisponivel() * FRACAO_EMPUXO_PREVISTA);
+		if (Double.isInfinite(distancia)) {
+			// O empuxo não vence a gravidade, então a queima deve começar o quanto antes:
+			return ALTITUDE_SUICIDEBURN;
+		}
+		return distancia;
+	}
+
+	/**
+	 * Informa aos PIDs de altitude e velocidade, os limites e velocidade da nave,
+	 * utilizando a distancia da queima para ajustar velocidade limite.
+	 *
+	 * @param telemetria        - Valores de voo do ciclo atual
+	 * @param distanciaDaQueima - A distância calculada para a queima
+	 */
+	private void informarPIDs(FonteTelemetria telemetria, double distanciaDaQueima) {
+		// Informa aos PIDs de altitude e velocidade, os limites e velocidade da nave
+		altitudePID.escalonar(valorTEP, telemetria.getAltitude());
+		velocidadePID.escalonar(valorTEP, telemetria.getAltitude());
+		altitudePID.setEntradaPID(telemetria.getAltitude() - distanciaDaQueima);
+		altitudePID.setLimitePID(alturaNave);
+		velocidadePID.setEntradaPID(telemetria.getVelVertical());
+		double velFinal = (telemetria.getAltitude() + (distanciaDaQueima)) / -10;
+		if (velFinal <= -5) {
+			velocidadePID.setLimitePID(velFinal);
+		} else {
+			velFinal = -5;
+			velocidadePID.setLimitePID(velFinal);
+		}
+	}
+
+	/**
+	 * Informa quanto o terreno no ponto de pouso previsto é mais alto que o
+	 * terreno sob a nave, para que a queima pare a descida acima dele. Vale a
+	 * partir da próxima atualização.
+	 *
+	 * @param desnivel - Diferença de altura do terreno, em metros
+	 */
+	public void setDesnivelTerreno(double desnivel) {
+		desnivelTerreno = desnivel;
+	}
+
+	/**
+	 * Troca os PIDs de altitude e velocidade pelo controle preditivo durante a
+	 * queima, ou volta a usá-los.
+	 *
+	 * @param usar - true para controlar a aceleração por previsão
+	 */
+	public void setControlePreditivo(boolean usar) {
+		preditivo = usar ? new ControlePreditivo(PASSOS_PREDITIVO, PASSO_PREDITIVO, ITERACOES_PREDITIVO,
+				VELOCIDADE_DE_TOQUE, FRACAO_FRENAGEM) : null;
+	}
+
+	public boolean isExecutandoQueima() {
+		return executandoQueima;
+	}
+
+	public double getValorTEP() {
+		return valorTEP;
+	}
+
+	public double getDistanciaDaQueima() {
+		return distanciaDaQueima;
+	}
+
+	/**
+	 * @return Distância horizontal até o ponto de pouso previsto, caso a queima
+	 *         comece agora.
+	 */
+	public double getDistanciaAtePouso() {
+		return previsor.getDistanciaHorizontal();
+	}
+
+	/**
+	 * @return PID de altitude, com a tabela de ganhos por TEP e altitude, que
+	 *         pode ser ajustada por ponto.
+	 */
+	public ControlePIDEscalonado getAltitudePID() {
+		return altitudePID;
+	}
+
+	/**
+	 * @return PID de velocidade, com a tabela de ganhos por TEP e altitude, que
+	 *         pode ser ajustada por ponto.
+	 */
+	public ControlePIDEscalonado getVelocidadePID() {
+		return velocidadePID;
+	}
+}
@@ -2,165 +2,176 @@ package com.pesterenan.funcoes;
 
 import java.io.IOException;
 
-import com.pesterenan.MechPeste;
 import com.pesterenan.gui.GUI;
+import com.pesterenan.gui.Parametro;
 import com.pesterenan.gui.Status;
-import com.pesterenan.utils.ControlePID;
+import com.pesterenan.utils.CicloDeControle;
+import com.pesterenan.utils.ComandosNave;
+import com.pesterenan.utils.GravadorDeVoo;
+import com.pesterenan.utils.Telemetria;
 
 import krpc.client.Connection;
 import krpc.client.RPCException;
-import krpc.client.Stream;
 import krpc.client.StreamException;
 import krpc.client.services.SpaceCenter;
-import krpc.client.services.SpaceCenter.Flight;
 import krpc.client.services.SpaceCenter.Node;
 import krpc.client.services.SpaceCenter.Vessel;
 import krpc.client.services.SpaceCenter.VesselSituation;
 
 public class DecolagemOrbital {
 
+	private static final String[] CAMPOS_GRAVACAO = { "ut", "altitude", "velVertical", "velHorizontal", "massa",
+			"empuxo", "aceleracao", "apoastro", "periastro", "pressaoDinamica", "anguloGiro", "acelEntrada",
+			"acelLimite", "acelSaida" };
+	// O impulso específico só é conhecido com os motores ativos, então é lido de
+	// novo a cada segundo de jogo até que algum esteja ligado:
+	private static final double INTERVALO_LEITURA_ISP = 1;
+
 	private static SpaceCenter centroEspacial;
 	private static Vessel naveAtual;
-	private Flight parametrosVoo;
-
-	Stream<Double> tempoMissao;
-	Stream<Double> altitude;
-	Stream<Double> apoastro;
-	Stream<Double> periastro;
-	double pressaoAtual;
+	private Telemetria telemetria;
+	private ComandosNave comandos;
 
-	private float altInicioCurva = 100;
 	public static float altApoastroFinal = 80000;
 	private int etapaAtual = 0;
-	private int inclinacao = 90;
 	private static int direcao = 90;
-	private double anguloGiro;
+	private static double acelP = 0.25, acelI = 0.01, acelD = 0.025;
 	private static boolean executando = true;
+	private static boolean guiagemFechada = false;
 	private Manobras manobras;
-	ControlePID ctrlAcel = new ControlePID();
+	private ControladorDecolagem controlador;
+	private GravadorDeVoo gravador;
+	private final double[] registro = new double[CAMPOS_GRAVACAO.length];
+	private boolean guiagemAtivada = false;
+	private double proximaLeituraIsp = 0;
 
 	public DecolagemOrbital(Connection conexao)
 			throws IOException, RPCException, InterruptedException, StreamException {
+		// Um voo anterior no mesmo processo pode ter terminado em órbita:
+		executando = true;
 		// Declarar Variáveis:
 		centroEspacial = SpaceCenter.newInstance(conexao);
 		naveAtual = centroEspacial.getActiveVessel();
-		parametrosVoo = naveAtual.flight(naveAtual.getOrbit().getBody().getReferenceFrame());
 		naveAtual.getAutoPilot().setReferenceFrame(naveAtual.getSurfaceReferenceFrame());
-		manobras = new Manobras(conexao, false);
-		ctrlAcel.setAmostraTempo(50);
-		ctrlAcel.setLimitePID(20);
-		ctrlAcel.ajustarPID(0.25, 0.01, 0.025);
-		ctrlAcel.limitarSaida(0.1, 1.0);
 		// Iniciar Streams:
-		tempoMissao = conexao.addStream(SpaceCenter.class, "getUT");
-		altitude = conexao.addStream(parametrosVoo, "getMeanAltitude");
-		apoastro = conexao.addStream(naveAtual.getOrbit(), "getApoapsisAltitude");
-		periastro = conexao.addStream(naveAtual.getOrbit(), "getPeriapsisAltitude");
-
-		anguloGiro = 0;
-
-		GUI.setParametros("nome", naveAtual.getName());
-		// Loop principal de subida
-		while (executando) { // loop while sempre funcionando até um break
-			switch (etapaAtual) {
-			case 0:
-				decolar();
-				break;
-			case 1:
-				giroGravitacional();
-				break;
-			case 2:
-				planejarOrbita();
-				break;
-			case 3:
-				GUI.setStatus(Status.PRONTO.get());
-				etapaAtual = 0;
-				executando = false;
-				break;
+		telemetria = new Telemetria(conexao, naveAtual);
+		comandos = new ComandosNave(naveAtual);
+		manobras = new Manobras(conexao, telemetria, comandos);
+		controlador = new ControladorDecolagem(altApoastroFinal, direcao, getGanhos(), GUI::setStatus);
+
+		GUI.setParametros("nome", telemetria.getNomeNave());
+		gravador = new GravadorDeVoo("DecolagemOrbital_" + telemetria.getNomeNave(), CAMPOS_GRAVACAO);
+		try {
+			CicloDeControle ciclo = new CicloDeControle(50);
+			// Loop principal de subida
+			while (executando) { // loop while sempre funcionando até um break
+				telemetria.atualizar();
+				switch (etapaAtual) {
+				case 0:
+					decolar();
+					break;
+				case 1:
+					ativarGuiagem();
+					etapaAtual = controlador.controlar(telemetria, comandos);
+					break;
+				case 2:
+					planejarOrbita();
+					break;
+				case 3:
+					naveAtual.getAutoPilot().disengage();
+					comandos.setSAS(true);
+					comandos.setRCS(false);
+					GUI.setStatus(Status.PRONTO.get());
+					etapaAtual = 0;
+					executando = false;
+					break;
+				}
+				atualizarParametros();
+				comandos.enviar();
+				gravarRegistro();
+				ciclo.aguardarProximoCiclo();
 			}
-			atualizarParametros();
-			Thread.sleep(50);
+			comandos.finalizar();
+		} finally {
+			// Caso o módulo seja cancelado, libera os Streams sem fechar a conexão:
+			comandos.cancelar();
+			telemetria.remover();
+			gravador.fechar();
 		}
-		tempoMissao.remove();
-		altitude.remove();
-		apoastro.remove();
-		periastro.remove();
-		MechPeste.finalizarTarefa();
 	}
 
 	private void decolar() throws RPCException, StreamException, InterruptedException {
 		GUI.setStatus("Iniciando Decolagem...");
-		naveAtual.getControl().setSAS(false); // desligar SAS
-		naveAtual.getControl().setRCS(false); // desligar RCS
+		comandos.setSAS(false); // desligar SAS
+		comandos.setRCS(false); // desligar RCS
 		// Ligar Piloto Automatico e Mirar a Direção:
 		naveAtual.getAutoPilot().engage(); // ativa o piloto auto
-		naveAtual.getAutoPilot().targetPitchAndHeading(inclinacao, direcao); // direção
 		GUI.setStatus("Lançamento!");
-		if (naveAtual.getSituation().equals(VesselSituation.PRE_LAUNCH)) {
-			aceleracao(1.0f); // acelerar ao máximo
+		// Mirar a direção e acelerar ao máximo:
+		etapaAtual = controlador.controlar(telemetria, comandos);
+		if (telemetria.getSituacao().equals(VesselSituation.PRE_LAUNCH)) {
+			comandos.enviarAgora();
 			naveAtual.getControl().activateNextStage();
-		} else {
-			aceleracao(1.0f); // acelerar ao máximo
 		}
-		etapaAtual = 1;
+		ativarGuiagem();
 	}
 
-	private void giroGravitacional() throws RPCException, StreamException, InterruptedException {
-		double altitudeAtual = altitude.get();
-		double apoastroAtual = apoastro.get();
-		pressaoAtual = parametrosVoo.getDynamicPressure() / 1000;
-		ctrlAcel.setEntradaPID(pressaoAtual);
-		if (altitudeAtual > altInicioCurva && altitudeAtual < altApoastroFinal) {
-			double incremento = Math.sqrt((altitudeAtual - altInicioCurva) / (altApoastroFinal - altInicioCurva));
-			double novoAnguloGiro = incremento * inclinacao;
-			if (Math.abs(novoAnguloGiro - anguloGiro) > 0.5) {
-				anguloGiro = novoAnguloGiro;
-				naveAtual.getAutoPilot().targetPitchAndHeading((float) (inclinacao - anguloGiro), direcao);
-				aceleracao((float) ctrlAcel.computarPID());
-				GUI.setStatus(String.format("Ângulo de Inclinação: %1$.1f °", anguloGiro));
-			}
+	/**
+	 * Ativa a guiagem até a órbita circular, caso tenha sido escolhida na GUI,
+	 * assim que o impulso específico dos motores ativos for conhecido.
+	 */
+	private void ativarGuiagem() throws RPCException {
+		if (!guiagemFechada || guiagemAtivada || telemetria.getTempoUniversal() < proximaLeituraIsp) {
+			return;
 		}
-		// Diminuir aceleração ao chegar perto do apoastro
-		if (apoastroAtual > altApoastroFinal * 0.95) {
-			GUI.setStatus("Se aproximando do apoastro...");
-			ctrlAcel.setEntradaPID(altitudeAtual);
-			ctrlAcel.setLimitePID(altApoastroFinal);
-			aceleracao((float) ctrlAcel.computarPID());
-		}
-		// Sair do giro ao chegar na altitude de apoastro:
-		if (apoastroAtual >= altApoastroFinal) {
-			GUI.setStatus("Apoastro alcançado.");
-			aceleracao(0.0f);
-			Thread.sleep(25);
-			etapaAtual = 2;
+		proximaLeituraIsp = telemetria.getTempoUniversal() + INTERVALO_LEITURA_ISP;
+		double impulsoEspecifico = naveAtual.getSpecificImpulse();
+		if (impulsoEspecifico > 0) {
+			controlador.ativarGuiagem(telemetria.getAcelGravidade(), telemetria.getRaioCorpo(), impulsoEspecifico);
+			guiagemAtivada = true;
 		}
 	}
 
 	private void planejarOrbita() throws RPCException, StreamException, InterruptedException, IOException {
-		GUI.setStatus("Esperando sair da atmosfera.");
-		if (altitude.get() > (altApoastroFinal * 0.8)) {
+		if (guiagemFechada && !guiagemAtivada) {
+			GUI.setStatus("Guiagem não ativada, sem impulso específico dos motores. Esperando sair da atmosfera.");
+		} else {
+			GUI.setStatus("Esperando sair da atmosfera.");
+		}
+		if (telemetria.getAltitudeNivelMar() > (altApoastroFinal * 0.8)) {
 			GUI.setStatus("Planejando Manobra de circularização...");
 			Node noDeManobra = manobras.circularizarApoastro();
 			double duracaoDaQueima = manobras.calcularTempoDeQueima(noDeManobra);
 			manobras.orientarNave(noDeManobra);
 			GUI.setStatus("Executando Manobra de circularização...");
 			manobras.executarQueima(noDeManobra, duracaoDaQueima);
-			naveAtual.getAutoPilot().disengage();
-			naveAtual.getControl().setSAS(true);
-			naveAtual.getControl().setRCS(false);
 			noDeManobra.remove();
 			etapaAtual = 3;
 		}
 	}
 
-	private void aceleracao(float acel) throws RPCException {
-		naveAtual.getControl().setThrottle((float) acel);
+	private void atualizarParametros() {
+		GUI.setParametros(Parametro.ALTITUDE, telemetria.getAltitudeNivelMar());
+		GUI.setParametros(Parametro.APOASTRO, telemetria.getApoastro());
+		GUI.setParametros(Parametro.PERIASTRO, telemetria.getPeriastro());
 	}
 
-	private void atualizarParametros() throws RPCException, StreamException {
-		GUI.setParametros("altitude", altitude.get());
-		GUI.setParametros("apoastro", apoastro.get());
-		GUI.setParametros("periastro", periastro.get());
+	private void gravarRegistro() {
+		registro[0] = telemetria.getTempoUniversal();
+		registro[1] = telemetria.getAltitudeNivelMar();
+		registro[2] = telemetria.getVelVertical();
+		registro[3] = telemetria.getVelHorizontal();
+		registro[4] = telemetria.getMassa();
+		registro[5] = telemetria.getEmpuxoDisponivel();
+		registro[6] = comandos.getAceleracao();
+		registro[7] = telemetria.getApoastro();
+		registro[8] = telemetria.getPeriastro();
+		registro[9] = telemetria.getPressaoDinamica();
+		registro[10] = controlador.getAnguloGiro();
+		registro[11] = controlador.getCtrlAcel().getEntradaPID();
+		registro[12] = controlador.getCtrlAcel().getLimitePID();
+		registro[13] = controlador.getCtrlAcel().getSaidaPID();
+		gravador.gravar(registro);
 	}
 
 	public static void setAltApoastro(float apoastroFinal) {
@@ -173,6 +184,33 @@ public class DecolagemOrbital {
 
 	}
 
+	/**
+	 * @return Ganhos do PID de aceleração da subida: P, I, D
+	 */
+	public static double[] getGanhos() {
+		return new double[] { acelP, acelI, acelD };
+	}
+
+	public static void setAjusteAcelPID(double P, double I, double D) {
+		if (P > 0) {
+			acelP = P;
+		}
+		if (I >= 0) {
+			acelI = I;
+		}
+		if (D >= 0) {
+			acelD = D;
+		}
+	}
+
+	/**
+	 * @param guiar - true para guiar a subida até a órbita circular, sem a
+	 *              manobra de circularização
+	 */
+	public static void setGuiagemFechada(boolean guiar) {
+		guiagemFechada = guiar;
+	}
+
 	public static void setExecutar(boolean estado) {
 		executando = estado;
 	}
@@ -7,14 +7,16 @@ import javax.swing.SwingWorker;
 
 import org.javatuples.Triplet;
 
-import com.pesterenan.MechPeste;
 import com.pesterenan.gui.GUI;
+import com.pesterenan.gui.Parametro;
 import com.pesterenan.gui.Status;
+import com.pesterenan.utils.CicloDeControle;
+import com.pesterenan.utils.ComandosNave;
 import com.pesterenan.utils.ControlePID;
+import com.pesterenan.utils.Telemetria;
 
 import krpc.client.Connection;
 import krpc.client.RPCException;
-import krpc.client.Stream;
 import krpc.client.StreamException;
 import krpc.client.services.SpaceCenter;
 import krpc.client.services.SpaceCenter.Engine;
@@ -29,18 +31,49 @@ public class Manobras extends SwingWorker<String, String> {
 	private static Vessel naveAtual;
 	private Node noDeManobra;
 	private ControlePID ctrlAcel;
+	private Telemetria telemetria;
+	private ComandosNave comandos;
 
 	public Manobras(Connection con, boolean executar)
 			throws RPCException, StreamException, IOException, InterruptedException {
 		conexao = con;
 		centroEspacial = SpaceCenter.newInstance(conexao);
 		naveAtual = centroEspacial.getActiveVessel();
+		telemetria = new Telemetria(conexao, naveAtual);
+		comandos = new ComandosNave(naveAtual);
+		iniciarPID();
+		if (executar) {
+			try {
+				executarProximaManobra();
+			} finally {
+				// Caso o módulo seja cancelado, libera os Streams sem fechar a conexão:
+				comandos.cancelar();
+				telemetria.remover();
+			}
+		}
+	}
+
+	/**
+	 * Cria as Manobras para serem usadas por outro módulo, compartilhando a
+	 * telemetria e os comandos que ele já usa para a nave.
+	 *
+	 * @param con            - Conexão com o kRPC
+	 * @param telemetriaNave - Telemetria da nave atual
+	 * @param comandosNave   - Comandos da nave atual
+	 */
+	public Manobras(Connection con, Telemetria telemetriaNave, ComandosNave comandosNave) throws RPCException {
+		conexao = con;
+		centroEspacial = SpaceCenter.newInstance(conexao);
+		naveAtual = telemetriaNave.getNave();
+		telemetria = telemetriaNave;
+		comandos = comandosNave;
+		iniciarPID();
+	}
+
+	private void iniciarPID() {
 		ctrlAcel = new ControlePID();
 		ctrlAcel.ajustarPID(0.025, 0.01, 0.1);
 		ctrlAcel.limitarSaida(0.1, 1);
-		if (executar) {
-			executarProximaManobra();
-		}
 	}
 
 	private void executarProximaManobra() throws RPCException, StreamException, IOException, InterruptedException {
@@ -50,11 +83,11 @@ public class Manobras extends SwingWorker<String, String> {
 			noDeManobra = naveAtual.getControl().getNodes().get(0);
 		} catch (IndexOutOfBoundsException e) {
 			GUI.setStatus("Não há Manobras disponíveis");
-			MechPeste.finalizarTarefa();
+			return;
 		}
 		// Caso haja, calcular e executar
 		if (noDeManobra != null) {
-			GUI.setParametros("altitude", noDeManobra.getDeltaV());
+			GUI.setParametros(Parametro.ALTITUDE, noDeManobra.getDeltaV());
 			System.out.println("DELTA-V DA MANOBRA: " + noDeManobra.getDeltaV());
 
 			double duracaoDaQueima = calcularTempoDeQueima(noDeManobra);
@@ -62,11 +95,12 @@ public class Manobras extends SwingWorker<String, String> {
 			executarQueima(noDeManobra, duracaoDaQueima);
 
 			naveAtual.getAutoPilot().disengage();
-			naveAtual.getControl().setSAS(true);
-			naveAtual.getControl().setRCS(false);
+			comandos.setSAS(true);
+			comandos.setRCS(false);
+			comandos.finalizar();
 			noDeManobra.remove();
+			telemetria.remover();
 			GUI.setStatus(Status.PRONTO.get());
-			MechPeste.finalizarTarefa();
 		}
 	}
 
@@ -99,33 +133,40 @@ public class Manobras extends SwingWorker<String, String> {
 	public void executarQueima(Node noDeManobra, double duracaoDaQueima)
 			throws RPCException, InterruptedException, StreamException {
 		double inicioDaQueima = 1;
+		telemetria.registrarManobra(noDeManobra);
 		// Caso estiver muito distante da manobra, dar Warp:
-		if (noDeManobra.getTimeTo() + duracaoDaQueima > 120) {
-			centroEspacial.warpTo((centroEspacial.getUT() + noDeManobra.getTimeTo() - duracaoDaQueima - 10), 100000, 4);
+		if (telemetria.getTempoAteManobra() + duracaoDaQueima > 120) {
+			centroEspacial.warpTo(
+					(telemetria.getTempoUniversal() + telemetria.getTempoAteManobra() - duracaoDaQueima - 10), 100000,
+					4);
 		}
 		// Mostrar tempo de ignição:
 		GUI.setStatus("Duração da queima: " + duracaoDaQueima + " segundos.");
+		CicloDeControle ciclo = new CicloDeControle(100);
 		while (inicioDaQueima > 0) {
-			inicioDaQueima = noDeManobra.getTimeTo() - (duracaoDaQueima / 2.0);
+			telemetria.atualizar();
+			inicioDaQueima = telemetria.getTempoAteManobra() - (duracaoDaQueima / 2.0);
 			GUI.setStatus(String.format("Ignição em: %1$.1f segundos...", inicioDaQueima));
-			Thread.sleep(100);
+			ciclo.aguardarProximoCiclo();
 		}
 		// Executar a manobra:
-		Stream<Triplet<Double, Double, Double>> queimaRestante = conexao.addStream(noDeManobra, "remainingBurnVector",
-				noDeManobra.getReferenceFrame());
 		GUI.setStatus("Executando manobra!");
 		ctrlAcel.setLimitePID(1);
+		ciclo.setPeriodo(25);
 		while (noDeManobra != null) {
-			ctrlAcel.setEntradaPID(-queimaRestante.get().getValue1());
-			if (queimaRestante.get().getValue1() > 1
-					|| queimaRestante.get().getValue1() > (noDeManobra.getDeltaV() * 0.01)) {
-				naveAtual.getControl().setThrottle((float) ctrlAcel.computarPID());
+			telemetria.atualizar();
+			double queimaRestante = telemetria.getQueimaRestante();
+			ctrlAcel.setEntradaPID(-queimaRestante);
+			if (queimaRestante > 1 || queimaRestante > (telemetria.getDeltaVManobra() * 0.01)) {
+				comandos.setAceleracao(ctrlAcel.computarPID(telemetria.getTempoUniversal()));
 			} else {
-				naveAtual.getControl().setThrottle(0.0f);
-				queimaRestante.remove();
+				comandos.setAceleracao(0.0f);
+				comandos.enviarAgora();
+				telemetria.removerManobra();
 				break;
 			}
-			Thread.sleep(25);
+			comandos.enviar();
+			ciclo.aguardarProximoCiclo();
 		}
 	}
 
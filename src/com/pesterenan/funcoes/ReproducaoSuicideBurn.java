@@ -0,0 +1,187 @@
+package com.pesterenan.funcoes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.pesterenan.utils.LeitorDeVoo;
+import com.pesterenan.utils.SaidaDeComandos;
+import com.pesterenan.utils.TelemetriaGravada;
+
+/**
+ * Executa o ControladorSuicideBurn sobre um voo gravado, sem o jogo, o mais
+ * rápido possível. Os valores de voo são os gravados, então a nave não reage
+ * aos novos comandos: a reprodução mostra como outros ganhos teriam comandado
+ * a aceleração diante da mesma situação, para comparar vários ajustes dos PIDs
+ * em pouco tempo.
+ */
+public class ReproducaoSuicideBurn {
+
+	/**
+	 * Resumo dos comandos calculados em uma reprodução.
+	 */
+	public static class Resultado {
+		boolean controlePreditivo;
+		long ciclos, ciclosDeQueima;
+		double inicioDaQueima = Double.NaN;
+		double aceleracaoMedia, diferencaMedia, saturacao, variacaoTotal;
+
+		/**
+		 * @return true caso a queima tenha sido controlada por previsão, como no
+		 *         voo gravado, em vez dos PIDs.
+		 */
+		public boolean isControlePreditivo() {
+			return controlePreditivo;
+		}
+
+		public long getCiclosDeQueima() {
+			return ciclosDeQueima;
+		}
+
+		/**
+		 * @return Tempo universal em que a queima começou, ou NaN caso não tenha
+		 *         começado.
+		 */
+		public double getInicioDaQueima() {
+			return inicioDaQueima;
+		}
+
+		/**
+		 * @return Diferença média entre a aceleração calculada e a gravada.
+		 */
+		public double getDiferencaMedia() {
+			return diferencaMedia;
+		}
+
+		/**
+		 * @return Fração dos ciclos de queima com a aceleração em 0 ou 1.
+		 */
+		public double getSaturacao() {
+			return saturacao;
+		}
+
+		/**
+		 * @return Soma das mudanças de aceleração entre ciclos seguidos.
+		 */
+		public double getVariacaoTotal() {
+			return variacaoTotal;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"Controle: %s, ciclos: %d, de queima: %d, início da queima: %.2f, aceleração média: %.3f, "
+							+ "diferença média da gravada: %.3f, saturação: %.1f%%, variação total: %.2f",
+					controlePreditivo ? "preditivo" : "PID", ciclos, ciclosDeQueima, inicioDaQueima, aceleracaoMedia,
+					diferencaMedia, saturacao * 100, variacaoTotal);
+		}
+	}
+
+	private static class SaidaReproducao implements SaidaDeComandos {
+		double aceleracao;
+
+		@Override
+		public void setAceleracao(double acel) {
+			aceleracao = acel;
+		}
+
+		@Override
+		public void setTremDePouso(boolean ativo) {
+		}
+
+		@Override
+		public void setInclinacaoEDirecaoAlvo(double inclinacao, double direcao) {
+		}
+	}
+
+	private final TelemetriaGravada telemetria;
+	private final int campoAceleracao, campoDesnivel;
+	private final double acelGravidade, alturaNave, raioCorpo, isp;
+	private final boolean controlePreditivo;
+
+	/**
+	 * @param arquivo - Voo gravado pelo módulo de Suicide Burn
+	 * @throws IOException - Caso o arquivo não seja um voo de Suicide Burn
+	 */
+	public ReproducaoSuicideBurn(Path arquivo) throws IOException {
+		LeitorDeVoo voo = new LeitorDeVoo(arquivo);
+		if (voo.getRegistros() == 0) {
+			throw new IOException("O voo " + arquivo + " não tem registros.");
+		}
+		telemetria = new TelemetriaGravada(voo);
+		campoAceleracao = telemetria.buscarCampo("aceleracao");
+		acelGravidade = voo.getValor(0, telemetria.buscarCampo("acelGravidade"));
+		alturaNave = voo.getValor(0, telemetria.buscarCampo("alturaNave"));
+		// Voos gravados antes destes campos são reproduzidos com gravidade
+		// constante e sem perda de massa:
+		raioCorpo = lerConstante(voo, "raioCorpo");
+		isp = lerConstante(voo, "isp");
+		// Voos gravados antes do cache de terreno são reproduzidos com o terreno
+		// plano:
+		campoDesnivel = voo.indiceDoCampo("desnivelTerreno");
+		// Voos gravados antes do controle preditivo são reproduzidos com os PIDs:
+		controlePreditivo = lerConstante(voo, "controlePreditivo") > 0;
+	}
+
+	private static double lerConstante(LeitorDeVoo voo, String campo) {
+		int indice = voo.indiceDoCampo(campo);
+		return indice < 0 ? 0 : voo.getValor(0, indice);
+	}
+
+	/**
+	 * Executa o controlador com os ganhos informados sobre todo o voo, no modo
+	 * de controle da queima gravado no voo.
+	 *
+	 * @param ganhos - Ganhos dos PIDs: altP, altI, altD, velP, velI, velD
+	 * @return Resumo dos comandos calculados
+	 */
+	public Resultado reproduzir(double[] ganhos) {
+		ControladorSuicideBurn controlador = new ControladorSuicideBurn(acelGravidade, raioCorpo, isp, alturaNave,
+				ganhos);
+		controlador.setControlePreditivo(controlePreditivo);
+		SaidaReproducao saida = new SaidaReproducao();
+		Resultado resultado = new Resultado();
+		resultado.controlePreditivo = controlePreditivo;
+		double somaAceleracao = 0, somaDiferenca = 0, aceleracaoAnterior = Double.NaN;
+		long comparacoes = 0, saturados = 0;
+
+		telemetria.reiniciar();
+		while (telemetria.avancar()) {
+			resultado.ciclos++;
+			// Como no módulo, o desnível do ciclo é informado antes de atualizar:
+			if (campoDesnivel >= 0) {
+				controlador.setDesnivelTerreno(telemetria.getValor(campoDesnivel));
+			}
+			controlador.atualizar(telemetria);
+			if (!controlador.isExecutandoQueima()) {
+				if (controlador.verificarInicioDaQueima(telemetria)) {
+					resultado.inicioDaQueima = telemetria.getTempoUniversal();
+				}
+				continue;
+			}
+			controlador.controlar(telemetria, saida);
+			double aceleracao = saida.aceleracao;
+			resultado.ciclosDeQueima++;
+			somaAceleracao += aceleracao;
+			if (aceleracao <= 0 || aceleracao >= 1) {
+				saturados++;
+			}
+			if (!Double.isNaN(aceleracaoAnterior)) {
+				resultado.variacaoTotal += Math.abs(aceleracao - aceleracaoAnterior);
+			}
+			aceleracaoAnterior = aceleracao;
+			double aceleracaoGravada = telemetria.getValor(campoAceleracao);
+			if (!Double.isNaN(aceleracaoGravada)) {
+				somaDiferenca += Math.abs(aceleracao - aceleracaoGravada);
+				comparacoes++;
+			}
+		}
+		if (resultado.ciclosDeQueima > 0) {
+			resultado.aceleracaoMedia = somaAceleracao / resultado.ciclosDeQueima;
+			resultado.saturacao = (double) saturados / resultado.ciclosDeQueima;
+		}
+		if (comparacoes > 0) {
+			resultado.diferencaMedia = somaDiferenca / comparacoes;
+		}
+		return resultado;
+	}
+}
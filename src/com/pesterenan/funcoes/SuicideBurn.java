@@ -1,186 +1,412 @@
 package com.pesterenan.funcoes;
 
 import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.javatuples.Pair;
+import org.javatuples.Triplet;
 
-import com.pesterenan.MechPeste;
 import com.pesterenan.gui.GUI;
-import com.pesterenan.utils.ControlePID;
+import com.pesterenan.gui.Parametro;
+import com.pesterenan.utils.AlturaDoCorpo;
+import com.pesterenan.utils.CacheDeTerreno;
+import com.pesterenan.utils.CicloDeControle;
+import com.pesterenan.utils.ComandosNave;
+import com.pesterenan.utils.GravadorDeVoo;
 import com.pesterenan.utils.Navegacao;
+import com.pesterenan.utils.Referencial;
+import com.pesterenan.utils.Telemetria;
 import com.pesterenan.utils.Vetor;
 
 import krpc.client.Connection;
 import krpc.client.RPCException;
-import krpc.client.Stream;
 import krpc.client.StreamException;
 import krpc.client.services.SpaceCenter;
-import krpc.client.services.SpaceCenter.Flight;
+import krpc.client.services.SpaceCenter.CelestialBody;
+import krpc.client.services.SpaceCenter.ReferenceFrame;
 import krpc.client.services.SpaceCenter.Vessel;
+import krpc.client.services.SpaceCenter.Waypoint;
 
 public class SuicideBurn {
 
-	private static final int ALTITUDE_SUICIDEBURN = 10000, ALTITUDE_TREM_DE_POUSO = 1000;
-	private static SpaceCenter centroEspacial;
+	static final String[] CAMPOS_GRAVACAO = { "ut", "altitude", "velVertical", "velHorizontal", "massa", "empuxo",
+			"aceleracao", "distanciaDaQueima", "altEntrada", "altLimite", "altSaida", "velEntrada", "velLimite",
+			"velSaida", "acelGravidade", "alturaNave", "raioCorpo", "isp", "distanciaAtePouso", "desnivelTerreno",
+			"controlePreditivo" };
+	// Amostras do terreno a cada 50m, em blocos de 200m, lidas no máximo 4 por
+	// segundo para não disputar a conexão com o loop de controle:
+	private static final double ESPACAMENTO_TERRENO = 50, LEITURAS_TERRENO = 4;
+	private static final int AMOSTRAS_TERRENO = 4, BLOCOS_TERRENO = 64;
+	// Espaço livre entre a nave e o alvo do pouso guiado, ou entre duas naves do
+	// pouso múltiplo, além dos raios das naves:
+	private static double margemAlvo = 10;
+	private SpaceCenter centroEspacial;
 	private Vessel naveAtual;
-	private Stream<Double> altitude, velVertical, velHorizontal;
-	private Stream<Float> massaTotal;
-	private float acelGravidade;
-	private ControlePID altitudePID = new ControlePID(), velocidadePID = new ControlePID();
+	private Consumer<String> informarStatus;
+	private boolean exibirParametros = true;
+	private Telemetria telemetria;
+	private ComandosNave comandos;
+	private GravadorDeVoo gravador;
+	private final double[] registro = new double[CAMPOS_GRAVACAO.length];
+	private ControladorSuicideBurn controlador;
+	private AlturaDoCorpo alturaDoCorpo;
+	private CacheDeTerreno terreno;
+	private final Vetor direcaoVelocidade = new Vetor(0, 0, 0);
+	private double desnivelTerreno;
+	private ControladorPousoGuiado guiagem;
+	// Posição do marcador no referencial do corpo, quando o alvo não é uma nave:
+	private Vetor posicaoMarcador;
+	// Ponto de pouso no chão ao lado do alvo, no referencial do corpo, e o seu
+	// afastamento da posição do alvo, para que acompanhe uma nave alvo que se move:
+	private final Vetor pontoDePouso = new Vetor(0, 0, 0), deslocamentoPouso = new Vetor(0, 0, 0);
+	// Posição desta nave entre as que pousam juntas, e quantas são:
+	private final int indicePouso, navesPousando;
+	private final Vetor posicaoGuiagem = new Vetor(0, 0, 0), velocidadeGuiagem = new Vetor(0, 0, 0);
 	boolean executandoSuicideBurn = false;
-	double valorTEP = 1.0, distanciaDaQueima = 0.0, duracaoDaQueima = 0.0, acelMaxima = 0.0;
 	private static double altP = 0.025, altI = 0.05, altD = 0.05;
 	private static double velP = 0.025, velI = 0.05, velD = 0.05;
+	// Multiplicadores dos ganhos da GUI em cada regime de voo do controlador,
+	// lidos do arquivo de config:
+	private static double[] fatoresPorRegime = ControladorSuicideBurn
+			.ganhosPorRegime(new double[] { 1, 1, 1, 1, 1, 1 });
+	private static boolean pousoMultiplo = false, controlePreditivo = false, pousoGuiado = false;
 
 	public SuicideBurn(Connection conexao) throws StreamException, RPCException, IOException, InterruptedException {
-		centroEspacial = SpaceCenter.newInstance(conexao);
-		naveAtual = centroEspacial.getActiveVessel();
-		new SuicideBurn(conexao, naveAtual);
+		this(conexao, SpaceCenter.newInstance(conexao).getActiveVessel(), GUI::setStatus);
 	}
 
-	public SuicideBurn(Connection conexao, Vessel nave)
+	/**
+	 * Executa o Suicide Burn em uma nave qualquer, para que várias naves possam
+	 * pousar ao mesmo tempo usando a mesma conexão. Apenas a nave ativa mostra
+	 * seus parâmetros na GUI.
+	 *
+	 * @param conexao        - Conexão com o kRPC
+	 * @param nave           - Nave que vai pousar
+	 * @param informarStatus - Recebe as mensagens de status dessa nave
+	 */
+	public SuicideBurn(Connection conexao, Vessel nave, Consumer<String> informarStatus)
 			throws StreamException, RPCException, IOException, InterruptedException {
-		naveAtual = nave;
-		Flight parametrosDeVoo = naveAtual.flight(naveAtual.getOrbit().getBody().getReferenceFrame());
-		altitude = conexao.addStream(parametrosDeVoo, "getSurfaceAltitude");
-		velVertical = conexao.addStream(parametrosDeVoo, "getVerticalSpeed");
-		velHorizontal = conexao.addStream(parametrosDeVoo, "getHorizontalSpeed");
-		massaTotal = conexao.addStream(naveAtual, "getMass");
-		acelGravidade = naveAtual.getOrbit().getBody().getSurfaceGravity();
-
-		iniciarPIDs();
-		atualizarParametros();
-		executarSuicideBurn();
+		this(conexao, nave, informarStatus, 0, 1);
+	}
 
-		MechPeste.finalizarTarefa();
+	/**
+	 * Executa o Suicide Burn em uma das naves que pousam juntas. No pouso guiado,
+	 * cada uma fica com o seu próprio ponto de pouso em volta do alvo.
+	 *
+	 * @param conexao        - Conexão com o kRPC
+	 * @param nave           - Nave que vai pousar
+	 * @param informarStatus - Recebe as mensagens de status dessa nave
+	 * @param indicePouso    - Posição da nave entre as que pousam, a partir de 0
+	 * @param navesPousando  - Quantidade de naves pousando juntas
+	 */
+	public SuicideBurn(Connection conexao, Vessel nave, Consumer<String> informarStatus, int indicePouso,
+			int navesPousando) throws StreamException, RPCException, IOException, InterruptedException {
+		centroEspacial = SpaceCenter.newInstance(conexao);
+		naveAtual = nave;
+		this.informarStatus = informarStatus;
+		this.indicePouso = indicePouso;
+		this.navesPousando = navesPousando;
+		exibirParametros = naveAtual.equals(centroEspacial.getActiveVessel());
+		telemetria = new Telemetria(conexao, naveAtual);
+		telemetria.registrarReferenciais();
+		alturaDoCorpo = new AlturaDoCorpo(naveAtual);
+		terreno = new CacheDeTerreno(alturaDoCorpo, telemetria.getRaioCorpo(), ESPACAMENTO_TERRENO, AMOSTRAS_TERRENO,
+				BLOCOS_TERRENO, LEITURAS_TERRENO);
+		comandos = new ComandosNave(naveAtual);
+		if (exibirParametros) {
+			GUI.setParametros("nome", telemetria.getNomeNave());
+		}
 
+		controlador = new ControladorSuicideBurn(telemetria.getAcelGravidade(), telemetria.getRaioCorpo(),
+				telemetria.getImpulsoEspecifico(), telemetria.getAlturaNave(), getGanhosPorRegime());
+		controlador.setControlePreditivo(controlePreditivo);
+		if (pousoGuiado) {
+			definirAlvo();
+		}
+		atualizarParametros();
+		gravador = new GravadorDeVoo("SuicideBurn_" + telemetria.getNomeNave(), CAMPOS_GRAVACAO);
+		try {
+			executarSuicideBurn();
+		} finally {
+			// Caso o módulo seja cancelado, libera os Streams sem fechar a conexão:
+			comandos.cancelar();
+			telemetria.remover();
+			terreno.fechar();
+			alturaDoCorpo.remover();
+			gravador.fechar();
+		}
 	}
 
 	private void executarSuicideBurn() throws RPCException, StreamException, IOException, InterruptedException {
-		naveAtual.getControl().setRCS(false);
+		comandos.setRCS(false);
 		naveAtual.getAutoPilot().engage();
 		naveAtual.getAutoPilot().setReferenceFrame(naveAtual.getSurfaceReferenceFrame());
 		aceleracao(0.0f);
-		GUI.setStatus(
-				"Iniciando Suicide Burn em: " + naveAtual.getOrbit().getBody().getName() + ", TEP em: " + valorTEP);
-		Navegacao navegacao = new Navegacao(centroEspacial, naveAtual);
+		informarStatus.accept(
+				"Iniciando Suicide Burn em: " + naveAtual.getOrbit().getBody().getName() + ", TEP em: "
+						+ controlador.getValorTEP());
+		Navegacao navegacao = new Navegacao(telemetria, comandos);
+		CicloDeControle ciclo = new CicloDeControle(50);
 		// Loop esperando para executar o Suicide Burn:
 		while (!executandoSuicideBurn) {
 			atualizarParametros();
 			navegacao.mirarRetrogrado();
-			if (!naveAtual.getControl().getBrakes() && velVertical.get() < 0) {
-				naveAtual.getControl().setBrakes(true);
+			if (!telemetria.getFreios() && telemetria.getVelVertical() < 0) {
+				comandos.setFreios(true);
 			}
 			// Checar altitude para o Suicide Burn:
-			if (altitude.get() < ALTITUDE_SUICIDEBURN) {
-				if ((altitude.get() < distanciaDaQueima) && velVertical.get() < -1) {
-					executandoSuicideBurn = true;
-					GUI.setStatus("Iniciando o Suicide Burn!");
-				}
+			if (verificarInicioDaQueima()) {
+				executandoSuicideBurn = true;
+				informarStatus.accept("Iniciando o Suicide Burn!");
 			}
-			Thread.sleep(50);
+			comandos.enviar();
+			gravarRegistro();
+			ciclo.aguardarProximoCiclo();
 		}
 		// Loop principal de Suicide Burn:
+		ciclo.setPeriodo(25);
 		while (executandoSuicideBurn) {
 			// Calcula os valores de aceleração e TWR do foguete:
 			atualizarParametros();
-			// Desce o trem de pouso da nave
-			if (altitude.get() < ALTITUDE_TREM_DE_POUSO) {
-				naveAtual.getControl().setGear(true);
+			if (guiagem != null) {
+				guiagem.controlar(telemetria, comandos);
+				comandos.enviar();
+				gravarRegistro();
+				checarPouso();
+				ciclo.aguardarProximoCiclo();
+				continue;
 			}
 			// Aponta nave para o retrograde se a velocidade horizontal for maior que 1m/s
-			if (velHorizontal.get() > 2) {
+			if (telemetria.getVelHorizontal() > 2) {
 				navegacao.mirarRetrogrado();
 			} else {
-				naveAtual.getAutoPilot().setTargetPitch(90);
+				comandos.setInclinacaoAlvo(90);
 			}
-			// Corrigir aceleração da nave:
-			aceleracao((float) ((altitudePID.computarPID()) + (velocidadePID.computarPID())));
+			// Trem de pouso e aceleração da nave:
+			controlador.controlar(telemetria, comandos);
+			comandos.enviar();
+			gravarRegistro();
 			checarPouso();
-			Thread.sleep(25);
+			ciclo.aguardarProximoCiclo();
 		}
 	}
 
-	public void iniciarPIDs() {
-		altitudePID.setAmostraTempo(25);
-		altitudePID.ajustarPID(valorTEP * altP, altI, valorTEP * altD);
-		altitudePID.limitarSaida(0, 1);
-		altitudePID.setLimitePID(0);
-		velocidadePID.setAmostraTempo(25);
-		velocidadePID.ajustarPID(valorTEP * velP, velI, valorTEP * velD);
-		velocidadePID.limitarSaida(0, 1);
-		velocidadePID.setLimitePID(0);
+	private void atualizarParametros() throws RPCException, StreamException, IOException {
+		telemetria.atualizar();
+		verificarTerreno();
+		controlador.atualizar(telemetria);
+		if (guiagem != null) {
+			atualizarPosicaoGuiagem();
+		}
+		if (exibirParametros) {
+			GUI.setParametros(Parametro.ALTITUDE, telemetria.getAltitude());
+			GUI.setParametros(Parametro.DISTANCIA_DA_QUEIMA, controlador.getDistanciaDaQueima());
+			GUI.setParametros(Parametro.VALOR_TEP, controlador.getValorTEP());
+			GUI.setParametros(Parametro.VEL_VERTICAL, telemetria.getVelVertical());
+			GUI.setParametros(Parametro.VEL_HORIZONTAL, telemetria.getVelHorizontal());
+		}
 	}
 
-	private void atualizarParametros() throws RPCException, StreamException, IOException {
-		try {
-			distanciaDaQueima = calcularDistanciaDaQueima();
-			informarPIDs(distanciaDaQueima);
-		} catch (Exception erro) {
-		}
-		GUI.setParametros("nome", naveAtual.getName());
-		GUI.setParametros("altitude", altitude.get());
-		GUI.setParametros("distanciaDaQueima", distanciaDaQueima);
-		GUI.setParametros("valorTEP", valorTEP);
-		GUI.setParametros("velVert", velVertical.get());
-		GUI.setParametros("velHorz", velHorizontal.get());
-	}
-
-	private double calcularDistanciaDaQueima() throws RPCException, StreamException {
-		double distanciaDaQueima = 0;
-		double empuxoDisponivel = naveAtual.getAvailableThrust() / 1000;
-		Vetor velocidade = new Vetor(velHorizontal.get(), velVertical.get(), 0);
-		valorTEP = empuxoDisponivel / ((massaTotal.get() / 1000) * acelGravidade);
-		acelMaxima = valorTEP * acelGravidade - acelGravidade;
-		double duracaoDaQueima = Math.abs(velocidade.Magnitude()) / acelMaxima;
-		distanciaDaQueima = (Math.abs(velocidade.Magnitude()) * duracaoDaQueima)
-				+ (0.5 * (acelMaxima * (duracaoDaQueima * duracaoDaQueima)));
-		return distanciaDaQueima;
+	/**
+	 * Informa ao controlador quanto o terreno no ponto de pouso previsto é mais
+	 * alto que sob a nave. Só os blocos desses dois pontos são carregados, e o
+	 * ponto de pouso percorre o caminho da nave conforme a previsão muda. Terreno
+	 * mais baixo no ponto de pouso é ignorado, para não atrasar a queima, e
+	 * enquanto os blocos não forem carregados o terreno é considerado plano.
+	 */
+	private void verificarTerreno() {
+		telemetria.getReferencialSuperficie().direcaoDoCorpo(telemetria.getVelocidade(), direcaoVelocidade);
+		// No referencial da superfície, y aponta para o norte e z para o leste:
+		double direcao = Math.toDegrees(Math.atan2(direcaoVelocidade.z, direcaoVelocidade.y));
+		double distancia = controlador.getDistanciaAtePouso();
+		double latitude = telemetria.getLatitude(), longitude = telemetria.getLongitude();
+		// O ponto de pouso é consultado primeiro, para que o seu bloco tenha
+		// prioridade na fila de carregamento:
+		double alturaNoPouso = terreno.getAltura(terreno.latitudeAFrente(latitude, direcao, distancia),
+				terreno.longitudeAFrente(latitude, longitude, direcao, distancia));
+		double alturaAqui = terreno.getAltura(latitude, longitude);
+		desnivelTerreno = Double.isNaN(alturaAqui - alturaNoPouso) ? 0 : Math.max(0, alturaNoPouso - alturaAqui);
+		controlador.setDesnivelTerreno(desnivelTerreno);
 	}
 
 	/**
-	 * Informa aos PIDs de altitude e velocidade, os limites e velocidade da nave,
-	 * utilizando a distancia da queima para ajustar velocidade limite.
-	 * 
-	 * @param distanciaDaQueima - A distância calculada para a queima
-	 * @throws RPCException
-	 * @throws StreamException
+	 * Escolhe o alvo do pouso guiado: a nave alvo, caso exista, ou o primeiro
+	 * marcador neste corpo com o nome de alvo do AutoRover. Sem nenhum dos dois,
+	 * a nave pousa no ponto previsto, como no Suicide Burn comum.
 	 */
-	private void informarPIDs(double distanciaDaQueima) throws RPCException, StreamException {
-		// Informa aos PIDs de altitude e velocidade, os limites e velocidade da nave
-		velocidadePID.ajustarPID(valorTEP * velP, velI, valorTEP * velD);
-		altitudePID.setEntradaPID(altitude.get() - distanciaDaQueima);
-		altitudePID.setLimitePID(naveAtual.boundingBox(naveAtual.getReferenceFrame()).getValue1().getValue1());
-		velocidadePID.setEntradaPID(velVertical.get());
-		double velFinal = (altitude.get() + (distanciaDaQueima)) / -10;
-		if (velFinal <= -5) {
-			velocidadePID.setLimitePID(velFinal);
+	private void definirAlvo() throws RPCException, StreamException {
+		CelestialBody corpo = naveAtual.getOrbit().getBody();
+		Vessel naveAlvo = centroEspacial.getTargetVessel();
+		Vetor alvo;
+		double raioAlvo = 0;
+		if (naveAlvo != null) {
+			telemetria.registrarPosicaoAlvo(naveAlvo);
+			alvo = telemetria.getPosicaoAlvo();
+			raioAlvo = raioHorizontal(naveAlvo);
+			informarStatus.accept("Pousando junto a: " + naveAlvo.getName());
 		} else {
-			velFinal = -5;
-			velocidadePID.setLimitePID(velFinal);
+			for (Waypoint marcador : centroEspacial.getWaypointManager().getWaypoints()) {
+				if (marcador.getBody().equals(corpo) && marcador.getName().contains(AutoRover.getAlvo())) {
+					posicaoMarcador = new Vetor(corpo.surfacePosition(marcador.getLatitude(), marcador.getLongitude(),
+							corpo.getReferenceFrame()));
+					informarStatus.accept("Pousando junto a: " + marcador.getName());
+					break;
+				}
+			}
+			if (posicaoMarcador == null) {
+				informarStatus.accept("Sem nave alvo ou marcador, pousando no ponto previsto");
+				return;
+			}
+			alvo = posicaoMarcador;
+		}
+		posicionarPontoDePouso(corpo, alvo, raioAlvo);
+		guiagem = new ControladorPousoGuiado(telemetria.getAcelGravidade(), telemetria.getAlturaNave());
+	}
+
+	/**
+	 * Escolhe o ponto de pouso no chão ao lado do alvo, do lado de onde a nave
+	 * chega, afastado pelos raios da nave e do alvo e pela margem. No pouso
+	 * múltiplo, cada nave fica com um ponto em um arco de até meio círculo em
+	 * volta do alvo, separado dos vizinhos pelo diâmetro da nave e pela margem.
+	 * Uma nave sozinha pousando em um marcador pousa sobre ele.
+	 *
+	 * @param corpo    - Corpo celeste do pouso
+	 * @param alvo     - Posição do alvo no referencial do corpo
+	 * @param raioAlvo - Raio horizontal da nave alvo, ou 0 para um marcador
+	 */
+	private void posicionarPontoDePouso(CelestialBody corpo, Vetor alvo, double raioAlvo) throws RPCException {
+		ReferenceFrame refCorpo = corpo.getReferenceFrame();
+		double raioNave = raioHorizontal(naveAtual);
+		double afastamento = raioAlvo > 0 ? raioAlvo + raioNave + margemAlvo : 0, desvio = 0;
+		if (navesPousando > 1) {
+			double separacao = 2 * raioNave + margemAlvo;
+			afastamento = Math.max(afastamento, separacao / (2 * Math.sin(Math.PI / (2 * (navesPousando - 1)))));
+			desvio = (indicePouso - (navesPousando - 1) / 2.0)
+					* Math.toDegrees(2 * Math.asin(Math.min(1, separacao / (2 * afastamento))));
+		}
+		// As naves que pousam juntas chegam quase do mesmo lado, então o rumo de
+		// cada uma até o alvo separa pouco os seus pontos:
+		double latitudeAlvo = corpo.latitudeAtPosition(alvo.paraTriplet(), refCorpo);
+		double longitudeAlvo = corpo.longitudeAtPosition(alvo.paraTriplet(), refCorpo);
+		double rumo = terreno.direcaoAte(latitudeAlvo, longitudeAlvo, telemetria.getLatitude(),
+				telemetria.getLongitude()) + desvio;
+		double latitude = terreno.latitudeAFrente(latitudeAlvo, rumo, afastamento);
+		double longitude = terreno.longitudeAFrente(latitudeAlvo, longitudeAlvo, rumo, afastamento);
+		pontoDePouso.setVetor(corpo.surfacePosition(latitude, longitude, refCorpo));
+		deslocamentoPouso.setVetor(pontoDePouso).subtraiEm(alvo);
+	}
+
+	/**
+	 * @return Distância horizontal do centro de massa até a borda mais afastada
+	 *         da nave.
+	 */
+	private static double raioHorizontal(Vessel nave) throws RPCException {
+		Pair<Triplet<Double, Double, Double>, Triplet<Double, Double, Double>> caixa = nave
+				.boundingBox(nave.getReferenceFrame());
+		// No referencial da nave, y aponta para o topo:
+		return Math.max(Math.max(-caixa.getValue0().getValue0(), caixa.getValue1().getValue0()),
+				Math.max(-caixa.getValue0().getValue2(), caixa.getValue1().getValue2()));
+	}
+
+	/**
+	 * Informa à guiagem a posição da nave em relação ao ponto de pouso e a
+	 * velocidade, no referencial da superfície.
+	 */
+	private void atualizarPosicaoGuiagem() {
+		Referencial superficie = telemetria.getReferencialSuperficie();
+		Vetor alvo = posicaoMarcador != null ? posicaoMarcador : telemetria.getPosicaoAlvo();
+		pontoDePouso.setVetor(alvo).somaEm(deslocamentoPouso);
+		superficie.doCorpo(pontoDePouso, posicaoGuiagem).multiplicaEm(-1);
+		superficie.direcaoDoCorpo(telemetria.getVelocidade(), velocidadeGuiagem);
+		guiagem.atualizar(posicaoGuiagem, velocidadeGuiagem, telemetria);
+	}
+
+	private boolean verificarInicioDaQueima() {
+		if (guiagem == null) {
+			return controlador.verificarInicioDaQueima(telemetria);
 		}
+		return guiagem.verificarInicioDaQueima(telemetria);
+	}
+
+	private void gravarRegistro() {
+		registro[0] = telemetria.getTempoUniversal();
+		registro[1] = telemetria.getAltitude();
+		registro[2] = telemetria.getVelVertical();
+		registro[3] = telemetria.getVelHorizontal();
+		registro[4] = telemetria.getMassa();
+		registro[5] = telemetria.getEmpuxoDisponivel();
+		registro[6] = comandos.getAceleracao();
+		registro[7] = controlador.getDistanciaDaQueima();
+		registro[8] = controlador.getAltitudePID().getEntradaPID();
+		registro[9] = controlador.getAltitudePID().getLimitePID();
+		registro[10] = controlador.getAltitudePID().getSaidaPID();
+		registro[11] = controlador.getVelocidadePID().getEntradaPID();
+		registro[12] = controlador.getVelocidadePID().getLimitePID();
+		registro[13] = controlador.getVelocidadePID().getSaidaPID();
+		registro[14] = telemetria.getAcelGravidade();
+		registro[15] = telemetria.getAlturaNave();
+		registro[16] = telemetria.getRaioCorpo();
+		registro[17] = telemetria.getImpulsoEspecifico();
+		registro[18] = controlador.getDistanciaAtePouso();
+		registro[19] = desnivelTerreno;
+		registro[20] = controlePreditivo ? 1 : 0;
+		gravador.gravar(registro);
 	}
 
 	private void checarPouso() throws RPCException, IOException, InterruptedException {
-		switch (naveAtual.getSituation()) {
+		switch (telemetria.getSituacao()) {
 		case LANDED:
 		case SPLASHED:
-			GUI.setStatus("Pouso finalizado.");
+			informarStatus.accept("Pouso finalizado.");
 			aceleracao(0);
+			comandos.enviarAgora();
 			naveAtual.getAutoPilot().disengage();
-			naveAtual.getControl().setSAS(true);
-			naveAtual.getControl().setRCS(true);
-			naveAtual.getControl().setBrakes(false);
+			comandos.setSAS(true);
+			comandos.setRCS(true);
+			comandos.setFreios(false);
+			comandos.finalizar();
 			executandoSuicideBurn = false;
-			altitude.remove();
-			velVertical.remove();
-			velHorizontal.remove();
-			massaTotal.remove();
+			telemetria.remover();
 		default:
 			break;
 		}
 	}
 
-	private void aceleracao(double acel) throws RPCException, IOException {
-		naveAtual.getControl().setThrottle((float) acel);
+	private void aceleracao(double acel) {
+		comandos.setAceleracao(acel);
+	}
+
+	/**
+	 * @return Ganhos ajustados na GUI: altP, altI, altD, velP, velI, velD
+	 */
+	public static double[] getGanhos() {
+		return new double[] { altP, altI, altD, velP, velI, velD };
+	}
+
+	/**
+	 * @return Ganhos da GUI multiplicados pelos fatores de cada regime do
+	 *         ControladorSuicideBurn, com o TEP variando primeiro
+	 */
+	public static double[] getGanhosPorRegime() {
+		double[] ganhos = ControladorSuicideBurn.ganhosPorRegime(getGanhos());
+		for (int i = 0; i < ganhos.length; i++) {
+			ganhos[i] *= fatoresPorRegime[i];
+		}
+		return ganhos;
+	}
+
+	/**
+	 * @return Multiplicadores dos ganhos da GUI em cada regime, na ordem de
+	 *         getGanhosPorRegime
+	 */
+	public static double[] getFatoresPorRegime() {
+		return fatoresPorRegime.clone();
+	}
+
+	public static void setFatoresPorRegime(double[] fatores) {
+		if (fatores.length == fatoresPorRegime.length) {
+			fatoresPorRegime = fatores.clone();
+		}
 	}
 
 	public static void setAjusteAltPID(double P, double I, double D) {
@@ -206,4 +432,38 @@ public class SuicideBurn {
 			velD = D;
 		}
 	}
+
+	public static void setPousoMultiplo(boolean multiplo) {
+		pousoMultiplo = multiplo;
+	}
+
+	public static boolean isPousoMultiplo() {
+		return pousoMultiplo;
+	}
+
+	public static void setControlePreditivo(boolean preditivo) {
+		controlePreditivo = preditivo;
+	}
+
+	public static boolean isControlePreditivo() {
+		return controlePreditivo;
+	}
+
+	/**
+	 * @param margem - Espaço livre, em metros, entre a nave e o alvo do pouso
+	 *               guiado ou as outras naves do pouso múltiplo
+	 */
+	public static void setMargemAlvo(double margem) {
+		if (margem >= 0) {
+			margemAlvo = margem;
+		}
+	}
+
+	public static void setPousoGuiado(boolean guiado) {
+		pousoGuiado = guiado;
+	}
+
+	public static boolean isPousoGuiado() {
+		return pousoGuiado;
+	}
 }
@@ -0,0 +1,108 @@
+package com.pesterenan.funcoes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.pesterenan.gui.Arquivos;
+import com.pesterenan.gui.GUI;
+
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.services.SpaceCenter;
+import krpc.client.services.SpaceCenter.Vessel;
+import krpc.client.services.SpaceCenter.VesselSituation;
+
+/**
+ * Executa o Suicide Burn ao mesmo tempo em todas as naves que têm o nome da
+ * nave ativa, como boosters separados do mesmo foguete. Cada nave tem seu
+ * próprio controlador, mas todos usam a mesma conexão e o mesmo Stream de tempo
+ * universal. No pouso guiado, os Streams da posição do alvo também são
+ * compartilhados, e cada nave pousa em um ponto próprio em volta do alvo.
+ */
+public class SuicideBurnMultiplo {
+
+	// O jogo só simula a física das naves próximas à nave ativa, então poucas
+	// naves podem pousar ao mesmo tempo:
+	private static final int MAXIMO_DE_NAVES = 8;
+
+	private final Map<String, String> statusNaves = new LinkedHashMap<>();
+
+	/**
+	 * @param conexao - Conexão com o kRPC
+	 * @param naves   - Naves que vão pousar, de buscarNaves()
+	 */
+	public SuicideBurnMultiplo(Connection conexao, List<Vessel> naves)
+			throws RPCException, IOException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(naves.size());
+		List<Future<?>> pousos = new ArrayList<Future<?>>();
+		List<String> nomesNaves = new ArrayList<String>();
+		for (Vessel nave : naves) {
+			int indicePouso = pousos.size();
+			String nomeNave = nave.getName() + " #" + (indicePouso + 1);
+			nomesNaves.add(nomeNave);
+			atualizarStatus(nomeNave, "Aguardando...");
+			pousos.add(executor.submit(() -> {
+				new SuicideBurn(conexao, nave, texto -> atualizarStatus(nomeNave, texto), indicePouso, naves.size());
+				return null;
+			}));
+		}
+		executor.shutdown();
+		try {
+			for (int i = 0; i < pousos.size(); i++) {
+				try {
+					pousos.get(i).get();
+				} catch (ExecutionException e) {
+					Arquivos.criarLogDeErros(e.getCause().getStackTrace());
+					atualizarStatus(nomesNaves.get(i), "Erro no pouso!");
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Busca as naves em voo que têm o nome da nave ativa, até o limite de naves
+	 * que o jogo simula ao mesmo tempo.
+	 *
+	 * @param conexao - Conexão com o kRPC
+	 * @return Naves encontradas, que pode ser uma lista vazia.
+	 */
+	public static List<Vessel> buscarNaves(Connection conexao) throws RPCException {
+		SpaceCenter centroEspacial = SpaceCenter.newInstance(conexao);
+		String nomeNaveAtiva = centroEspacial.getActiveVessel().getName();
+		List<Vessel> naves = new ArrayList<Vessel>();
+		for (Vessel nave : centroEspacial.getVessels()) {
+			if (naves.size() < MAXIMO_DE_NAVES && nave.getName().contains(nomeNaveAtiva) && estaVoando(nave)) {
+				naves.add(nave);
+			}
+		}
+		return naves;
+	}
+
+	private static boolean estaVoando(Vessel nave) throws RPCException {
+		VesselSituation situacao = nave.getSituation();
+		return situacao == VesselSituation.FLYING || situacao == VesselSituation.SUB_ORBITAL;
+	}
+
+	private void atualizarStatus(String nomeNave, String texto) {
+		StringBuilder status = new StringBuilder();
+		synchronized (statusNaves) {
+			statusNaves.put(nomeNave, texto);
+			for (Map.Entry<String, String> statusNave : statusNaves.entrySet()) {
+				if (status.length() > 0) {
+					status.append(" | ");
+				}
+				status.append(statusNave.getKey()).append(": ").append(statusNave.getValue());
+			}
+		}
+		GUI.setStatus(status.toString());
+	}
+}
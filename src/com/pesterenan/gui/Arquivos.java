@@ -7,11 +7,16 @@ import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 
+import com.pesterenan.funcoes.ControladorSuicideBurn;
+import com.pesterenan.funcoes.DecolagemOrbital;
+import com.pesterenan.funcoes.SuicideBurn;
+
 public class Arquivos {
 
-	private static File config;
+	private static final File config = new File("mp_config.cfg");
 	private static File logErros;
 	private static FileWriter escritor;
 	private static Scanner leitor;
@@ -20,10 +25,12 @@ public class Arquivos {
 	public static final String DO = "[Decolagem Orbital]";
 	public static final String SB = "[Suicide Burn]";
 	public static final String AR = "[Auto Rover]";
+	public static final String DG = "[Ganhos da Decolagem]";
+	public static final String SBR = "[Regimes do Suicide Burn]";
+	public static final String PG = "[Pouso Guiado]";
 
 	public Arquivos() {
 		try {
-			config = new File("mp_config.cfg");
 			if (config.createNewFile()) {
 				escritor = new FileWriter(config);
 				criarArquivoConfig();
@@ -42,7 +49,7 @@ public class Arquivos {
 		}
 	}
 
-	private void criarArquivoConfig() throws IOException {
+	private static void criarArquivoConfig() throws IOException {
 		escritor.write("[MechPeste - Configurações]\n");
 		escritor.write(DO + "\n");
 		escritor.write("apoastro=80000\n");
@@ -57,6 +64,12 @@ public class Arquivos {
 		escritor.write(AR + "\n");
 		escritor.write("marcador=ALVO\n");
 		escritor.write("velocidade=10\n");
+		escritor.write(DG + "\n");
+		escritor.write("acelp=0.25\n");
+		escritor.write("aceli=0.01\n");
+		escritor.write("aceld=0.025\n");
+		escritor.write(PG + "\n");
+		escritor.write("margem=10\n");
 	}
 
 	private void buscarConfiguracoes() {
@@ -79,6 +92,20 @@ public class Arquivos {
 					GUI.nomeMarcadorTextField.setText(retornarValor());
 					GUI.velMaxTextField.setText(retornarValor());
 					break;
+				case DG:
+					DecolagemOrbital.setAjusteAcelPID(Double.parseDouble(retornarValor()),
+							Double.parseDouble(retornarValor()), Double.parseDouble(retornarValor()));
+					break;
+				case SBR:
+					String[] regimes = new String[ControladorSuicideBurn.REGIMES];
+					for (int r = 0; r < regimes.length; r++) {
+						regimes[r] = retornarValor();
+					}
+					SuicideBurn.setFatoresPorRegime(lerFatores(regimes));
+					break;
+				case PG:
+					SuicideBurn.setMargemAlvo(Double.parseDouble(retornarValor()));
+					break;
 				default:
 					linha = leitor.nextLine();
 			}
@@ -86,6 +113,69 @@ public class Arquivos {
 
 	}
 
+	/**
+	 * Lê os ganhos do Suicide Burn e da Decolagem do arquivo de config sem passar
+	 * pela GUI, para os comandos da linha de comando. Os ganhos padrão são
+	 * mantidos caso o arquivo ou a seção não existam.
+	 */
+	public static void carregarGanhos() throws IOException {
+		if (!config.exists()) {
+			return;
+		}
+		List<String> linhas = Files.readAllLines(config.toPath());
+		for (int i = 0; i < linhas.size(); i++) {
+			switch (linhas.get(i).trim()) {
+				case SB:
+					SuicideBurn.setAjusteAltPID(lerValor(linhas, i + 1), lerValor(linhas, i + 2),
+							lerValor(linhas, i + 3));
+					SuicideBurn.setAjusteVelPID(lerValor(linhas, i + 4), lerValor(linhas, i + 5),
+							lerValor(linhas, i + 6));
+					break;
+				case DG:
+					DecolagemOrbital.setAjusteAcelPID(lerValor(linhas, i + 1), lerValor(linhas, i + 2),
+							lerValor(linhas, i + 3));
+					break;
+				case SBR:
+					String[] regimes = new String[ControladorSuicideBurn.REGIMES];
+					for (int r = 0; r < regimes.length; r++) {
+						regimes[r] = linhas.get(i + 1 + r).split("=")[1];
+					}
+					SuicideBurn.setFatoresPorRegime(lerFatores(regimes));
+					break;
+			}
+		}
+	}
+
+	private static double lerValor(List<String> linhas, int indice) {
+		return Double.parseDouble(linhas.get(indice).split("=")[1]);
+	}
+
+	/**
+	 * @param regimes - Fatores de cada regime, separados por espaços
+	 * @return Fatores de todos os regimes, na ordem de
+	 *         SuicideBurn.getFatoresPorRegime
+	 */
+	private static double[] lerFatores(String[] regimes) {
+		double[] fatores = new double[regimes.length * ControladorSuicideBurn.GANHOS_POR_REGIME];
+		for (int r = 0; r < regimes.length; r++) {
+			String[] valores = regimes[r].trim().split("\\s+");
+			for (int k = 0; k < ControladorSuicideBurn.GANHOS_POR_REGIME; k++) {
+				fatores[r * ControladorSuicideBurn.GANHOS_POR_REGIME + k] = Double.parseDouble(valores[k]);
+			}
+		}
+		return fatores;
+	}
+
+	/**
+	 * @return Nome da linha de um regime na seção SBR, com o TEP e a altitude
+	 *         do regime.
+	 */
+	private static String nomeDoRegime(int regime) {
+		int pontosTEP = ControladorSuicideBurn.TEP_REGIMES.length;
+		return String.format(Locale.ROOT, "tep%.1f_alt%.0f", ControladorSuicideBurn.TEP_REGIMES[regime % pontosTEP],
+				ControladorSuicideBurn.ALTITUDE_REGIMES[regime / pontosTEP]);
+	}
+
 	public static void criarLogDeErros(StackTraceElement[] elementos) throws IOException {
 		SimpleDateFormat formatar = new SimpleDateFormat("dd-MM-yy 'às' HH:mm:ss");
 		Date data = new Date(System.currentTimeMillis());
@@ -106,8 +196,26 @@ public class Arquivos {
 		return valor[1];
 	}
 
+	/**
+	 * Grava os valores de uma seção no arquivo de config, criando o arquivo com
+	 * os valores padrão caso ele não exista, e a seção no fim do arquivo caso
+	 * ela ainda não exista.
+	 *
+	 * @param dados - Nome da seção seguido dos seus valores
+	 */
 	public static void gravarDadosConfig(String[] dados) throws IOException {
+		if (config.createNewFile()) {
+			escritor = new FileWriter(config);
+			criarArquivoConfig();
+			escritor.close();
+		}
 		List<String> linhas = Files.readAllLines(config.toPath());
+		if (linhas.stream().noneMatch(linha -> linha.trim().contentEquals(dados[0]))) {
+			linhas.add(dados[0]);
+			for (int i = 1; i < dados.length; i++) {
+				linhas.add("");
+			}
+		}
 		for (String linha : linhas) {
 			if (linha.trim().contentEquals(dados[0])) {
 				switch (dados[0]) {
@@ -129,6 +237,18 @@ public class Arquivos {
 						linhas.set(linhas.indexOf(linha) + 1, "marcador=" + dados[1]);
 						linhas.set(linhas.indexOf(linha) + 2, "velocidade=" + dados[2]);
 						break;
+
+					case DG:
+						linhas.set(linhas.indexOf(linha) + 1, "acelp=" + dados[1]);
+						linhas.set(linhas.indexOf(linha) + 2, "aceli=" + dados[2]);
+						linhas.set(linhas.indexOf(linha) + 3, "aceld=" + dados[3]);
+						break;
+
+					case SBR:
+						for (int r = 1; r < dados.length; r++) {
+							linhas.set(linhas.indexOf(linha) + r, nomeDoRegime(r - 1) + "=" + dados[r]);
+						}
+						break;
 				}
 			}
 		}
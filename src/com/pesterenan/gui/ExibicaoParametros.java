@@ -0,0 +1,95 @@
+package com.pesterenan.gui;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.swing.JLabel;
+import javax.swing.Timer;
+
+/**
+ * Recebe os parâmetros e o status escritos pelos loops de controle e os exibe
+ * na GUI em uma taxa fixa. Os loops apenas guardam o valor mais recente, sem
+ * criar objetos nem formatar texto, e toda a formatação e alteração dos JLabels
+ * acontece na thread da GUI, através de um Timer do Swing.
+ */
+class ExibicaoParametros {
+
+	private static final int TAXA_EXIBICAO_MS = 100; // 10 vezes por segundo
+	private static final Parametro[] PARAMETROS = Parametro.values();
+
+	private final JLabel[] linhas;
+	private final JLabel statusLabel;
+	private final String[] textosExibidos;
+
+	// Valores escritos pelos loops de controle (double guardado como long):
+	private final AtomicLongArray valores = new AtomicLongArray(PARAMETROS.length);
+	// Último parâmetro escrito em cada linha (-1 = nenhum):
+	private final AtomicIntegerArray parametroDaLinha;
+	private final AtomicLong versao = new AtomicLong();
+	private volatile String nome, status;
+	private long versaoExibida;
+
+	/**
+	 * @param linhas      - Linhas do painel de parâmetros, a primeira mostra o nome
+	 * @param statusLabel - Barra de status
+	 */
+	ExibicaoParametros(JLabel[] linhas, JLabel statusLabel) {
+		this.linhas = linhas;
+		this.statusLabel = statusLabel;
+		textosExibidos = new String[linhas.length];
+		parametroDaLinha = new AtomicIntegerArray(linhas.length);
+		for (int i = 0; i < linhas.length; i++) {
+			parametroDaLinha.set(i, -1);
+		}
+		new Timer(TAXA_EXIBICAO_MS, e -> exibir()).start();
+	}
+
+	void setParametro(Parametro parametro, double valor) {
+		valores.set(parametro.ordinal(), Double.doubleToRawLongBits(valor));
+		parametroDaLinha.set(parametro.linha, parametro.ordinal());
+		versao.incrementAndGet();
+	}
+
+	void setNome(String nome) {
+		this.nome = nome;
+		versao.incrementAndGet();
+	}
+
+	void setStatus(String status) {
+		this.status = status;
+		versao.incrementAndGet();
+	}
+
+	/**
+	 * Atualiza os JLabels com os valores mais recentes. Roda na thread da GUI.
+	 */
+	private void exibir() {
+		long versaoAtual = versao.get();
+		if (versaoAtual == versaoExibida) {
+			return;
+		}
+		versaoExibida = versaoAtual;
+		String statusAtual = status;
+		if (statusAtual != null && !statusAtual.equals(statusLabel.getText())) {
+			statusLabel.setText(statusAtual);
+		}
+		String nomeAtual = nome;
+		if (nomeAtual != null) {
+			exibirLinha(0, "Alvo: " + nomeAtual);
+		}
+		for (int i = 1; i < linhas.length; i++) {
+			int indice = parametroDaLinha.get(i);
+			if (indice >= 0) {
+				exibirLinha(i, PARAMETROS[indice].formatar(Double.longBitsToDouble(valores.get(indice))));
+			}
+		}
+	}
+
+	private void exibirLinha(int linha, String texto) {
+		if (!texto.equals(textosExibidos[linha])) {
+			textosExibidos[linha] = texto;
+			linhas[linha].setText(texto);
+		}
+	}
+}
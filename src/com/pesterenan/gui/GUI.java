@@ -14,11 +14,13 @@ import java.io.IOException;
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 import javax.swing.border.BevelBorder;
 import javax.swing.border.EmptyBorder;
@@ -45,6 +47,7 @@ public class GUI extends JFrame implements ActionListener {
 
 	// Labels de parâmetros:
 	private static JLabel primeiraLinha, segundaLinha, terceiraLinha, quartaLinha, quintaLinha, sextaLinha;
+	private static ExibicaoParametros exibicao;
 	private JLabel iniciarFuncaoLabel;
 
 	// Propriedades da GUI:
@@ -68,6 +71,8 @@ public class GUI extends JFrame implements ActionListener {
 	public static JTextField apoastroFinalTextField, direcaoOrbitaTextField;
 	// Suicide Burn:
 	public static JTextField altP, altI, altD, velP, velI, velD;
+	public static JCheckBox pousoMultiploCheckBox, controlePreditivoCheckBox, pousoGuiadoCheckBox;
+	public static JCheckBox guiagemSubidaCheckBox;
 	// Auto Rover:
 	public static JTextField nomeMarcadorTextField, velMaxTextField;
 
@@ -87,6 +92,8 @@ public class GUI extends JFrame implements ActionListener {
 		pnlConfigSuicideBurn = painelSuicide();
 		pnlConfigAutoRover = painelAutoRover();
 		pnlStatus = painelStatus();
+		exibicao = new ExibicaoParametros(new JLabel[] { primeiraLinha, segundaLinha, terceiraLinha, quartaLinha,
+				quintaLinha, sextaLinha }, statusLabel);
 
 		painelMenu = new JPanel();
 		painelMenu.setLayout(new CardLayout());
@@ -241,6 +248,7 @@ public class GUI extends JFrame implements ActionListener {
 		apoastroFinalTextField = new JTextField("80000", 5);
 		JLabel direcaoDeOrbitaLabel = new JLabel("Direção de Inclinação de Órbita: ");
 		direcaoOrbitaTextField = new JTextField("90", 5);
+		guiagemSubidaCheckBox = new JCheckBox("Guiar até a órbita circular (PEG)");
 
 		pnlConfigDecolagem.setBorder(
 				BorderFactory.createCompoundBorder(bordaVazia, BorderFactory.createTitledBorder("Configurações:")));
@@ -279,6 +287,15 @@ public class GUI extends JFrame implements ActionListener {
 		gc.gridy++;
 		pnlConfigDecolagem.add(new JLabel(), gc);
 
+		gc.weighty = 0;
+		gc.gridy++;
+		gc.fill = GridBagConstraints.NONE;
+		pnlConfigDecolagem.add(guiagemSubidaCheckBox, gc);
+
+		gc.weighty = 1;
+		gc.gridy++;
+		pnlConfigDecolagem.add(new JLabel(), gc);
+
 		pnlConfigDecolagem.setVisible(true);
 		return pnlConfigDecolagem;
 	}
@@ -291,6 +308,9 @@ public class GUI extends JFrame implements ActionListener {
 		velP = new JTextField("0.025");
 		velI = new JTextField("0.05");
 		velD = new JTextField("0.05");
+		pousoMultiploCheckBox = new JCheckBox("Pousar todas as naves com este nome");
+		controlePreditivoCheckBox = new JCheckBox("Controlar a queima por previsão (MPC)");
+		pousoGuiadoCheckBox = new JCheckBox("Pousar junto à nave alvo ou ao marcador");
 
 		pnlConfigSuicideBurn.setBorder(
 				BorderFactory.createCompoundBorder(bordaVazia, BorderFactory.createTitledBorder("Configurações:")));
@@ -347,6 +367,15 @@ public class GUI extends JFrame implements ActionListener {
 		gc.gridy++;
 		pnlConfigSuicideBurn.add(new JLabel(), gc);
 
+		gc.weighty = 0;
+		gc.gridy++;
+		gc.anchor = GridBagConstraints.LINE_START;
+		pnlConfigSuicideBurn.add(pousoMultiploCheckBox, gc);
+		gc.gridy++;
+		pnlConfigSuicideBurn.add(controlePreditivoCheckBox, gc);
+		gc.gridy++;
+		pnlConfigSuicideBurn.add(pousoGuiadoCheckBox, gc);
+
 		gc.weighty = 1;
 		gc.gridx = 0;
 		gc.gridy++;
@@ -511,13 +540,8 @@ public class GUI extends JFrame implements ActionListener {
 				botIniciarCancelar.setText("Cancelar");
 			}
 		} else {
-			if (MechPeste.threadModulos != null) {
-				try {
-					MechPeste.finalizarTarefa();
-					MechPeste.iniciarConexao();
-				} catch (IOException e1) {
-					botConectarVisivel(true);
-				}
+			if (MechPeste.moduloEmExecucao()) {
+				MechPeste.finalizarTarefa();
 			}
 			CardLayout pp = (CardLayout) (painelPrincipal.getLayout());
 			pp.show(painelPrincipal, executarModulo);
@@ -561,6 +585,7 @@ public class GUI extends JFrame implements ActionListener {
 				GUI.setStatus("A direcao tem que ser um número entre 0 e 359 graus.");
 				return false;
 			}
+			DecolagemOrbital.setGuiagemFechada(guiagemSubidaCheckBox.isSelected());
 			try {
 				String[] dados = { Arquivos.DO, String.valueOf(apoastro), String.valueOf(direcao) };
 				Arquivos.gravarDadosConfig(dados);
@@ -578,6 +603,9 @@ public class GUI extends JFrame implements ActionListener {
 				double velDd = Double.parseDouble(velD.getText());
 				SuicideBurn.setAjusteAltPID(altPd, altId, altDd);
 				SuicideBurn.setAjusteVelPID(velPd, velId, velDd);
+				SuicideBurn.setPousoMultiplo(pousoMultiploCheckBox.isSelected());
+				SuicideBurn.setControlePreditivo(controlePreditivoCheckBox.isSelected());
+				SuicideBurn.setPousoGuiado(pousoGuiadoCheckBox.isSelected());
 				try {
 					String[] dados = { Arquivos.SB, String.valueOf(altPd), String.valueOf(altId), String.valueOf(altDd),
 							String.valueOf(velPd), String.valueOf(velId), String.valueOf(velDd), };
@@ -629,72 +657,44 @@ public class GUI extends JFrame implements ActionListener {
 		return false;
 	}
 
+	/**
+	 * Mostra o texto na barra de status. Pode ser chamado de qualquer thread, o
+	 * texto é exibido pela GUI no próximo quadro de exibição. Sem a janela, como
+	 * nas medições de desempenho, o texto é ignorado.
+	 */
 	public static void setStatus(String texto) {
-		statusLabel.setText(texto);
+		if (exibicao != null) {
+			exibicao.setStatus(texto);
+		}
 	}
 
-	public static void setParametros(String par, double val) {
-		String valor = String.format("%1$.1f", val);
-		switch (par) {
-		case "altitude":
-			segundaLinha.setText("Altitude: " + valor + "m");
-			break;
-		case "carga":
-			segundaLinha.setText("Carga Elétrica: " + String.format("%1$.0f", val) + "%");
-			break;
-		case "distanciaDaQueima":
-			terceiraLinha.setText("Distância da Queima: " + valor + "m");
-			break;
-		case "apoastro":
-			terceiraLinha.setText("Apoastro: " + valor + "m");
-			break;
-		case "distPercorrida":
-			terceiraLinha.setText("Distância Percorrida: " + valor + "m");
-			break;
-		case "distancia":
-			quartaLinha.setText("Distância Restante: " + valor + "m");
-			break;
-		case "periastro":
-			quartaLinha.setText("Periastro: " + valor + "m");
-			break;
-		case "valorTEP":
-			quartaLinha.setText("Valor TEP: " + valor);
-			break;
-		case "tempoDeMissao":
-			int segTotaisTdm = (int) val;
-			int horasTdm = segTotaisTdm / 3600;
-			int minutosTdm = (segTotaisTdm % 3600) / 60;
-			int segundosTdm = segTotaisTdm % 60;
-			quintaLinha
-					.setText("Tempo de Missão: " + String.format("%02d:%02d:%02d", horasTdm, minutosTdm, segundosTdm));
-			break;
-		case "velVert":
-			quintaLinha.setText("Vel Vert.: " + valor + "m/s");
-			break;
-		case "velHorz":
-			sextaLinha.setText("Vel Horz.: " + valor + "m/s");
-			break;
-		case "tempoRestante":
-			int segTotaisTr = (int) val;
-			int horasTr = segTotaisTr / 3600;
-			int minutosTr = (segTotaisTr % 3600) / 60;
-			int segundosTr = segTotaisTr % 60;
-			sextaLinha.setText("Tempo Restante: " + String.format("%02d:%02d:%02d", horasTr, minutosTr, segundosTr));
-			break;
-
+	/**
+	 * Guarda o valor mais recente do parâmetro para ser exibido pela GUI. Não
+	 * formata texto nem cria objetos, então pode ser chamado a cada ciclo dos
+	 * loops de controle.
+	 *
+	 * @param parametro - Parâmetro a ser exibido
+	 * @param valor     - Valor atual do parâmetro
+	 */
+	public static void setParametros(Parametro parametro, double valor) {
+		if (exibicao != null) {
+			exibicao.setParametro(parametro, valor);
 		}
 	}
 
 	public static void setParametros(String par, String val) {
+		if (exibicao == null) {
+			return;
+		}
 		switch (par) {
 		case "nome":
-			primeiraLinha.setText("Alvo: " + val);
+			exibicao.setNome(val);
 			break;
 		}
 	}
 
 	public static void botConectarVisivel(boolean visivel) {
-		botConectar.setVisible(visivel);
+		SwingUtilities.invokeLater(() -> botConectar.setVisible(visivel));
 	}
 
 }
@@ -0,0 +1,58 @@
+package com.pesterenan.gui;
+
+/**
+ * Parâmetros numéricos exibidos no painel de parâmetros da missão, com a linha
+ * do painel onde cada um aparece.
+ */
+public enum Parametro {
+	ALTITUDE(1), CARGA(1), DISTANCIA_DA_QUEIMA(2), APOASTRO(2), DISTANCIA_PERCORRIDA(2), DISTANCIA(3), PERIASTRO(3),
+	VALOR_TEP(3), TEMPO_DE_MISSAO(4), VEL_VERTICAL(4), VEL_HORIZONTAL(5), TEMPO_RESTANTE(5);
+
+	final int linha;
+
+	private Parametro(int linha) {
+		this.linha = linha;
+	}
+
+	/**
+	 * Monta o texto do parâmetro. Só é chamado na thread da GUI.
+	 */
+	String formatar(double val) {
+		String valor = String.format("%1$.1f", val);
+		switch (this) {
+		case ALTITUDE:
+			return "Altitude: " + valor + "m";
+		case CARGA:
+			return "Carga Elétrica: " + String.format("%1$.0f", val) + "%";
+		case DISTANCIA_DA_QUEIMA:
+			return "Distância da Queima: " + valor + "m";
+		case APOASTRO:
+			return "Apoastro: " + valor + "m";
+		case DISTANCIA_PERCORRIDA:
+			return "Distância Percorrida: " + valor + "m";
+		case DISTANCIA:
+			return "Distância Restante: " + valor + "m";
+		case PERIASTRO:
+			return "Periastro: " + valor + "m";
+		case VALOR_TEP:
+			return "Valor TEP: " + valor;
+		case TEMPO_DE_MISSAO:
+			return "Tempo de Missão: " + formatarTempo(val);
+		case VEL_VERTICAL:
+			return "Vel Vert.: " + valor + "m/s";
+		case VEL_HORIZONTAL:
+			return "Vel Horz.: " + valor + "m/s";
+		case TEMPO_RESTANTE:
+			return "Tempo Restante: " + formatarTempo(val);
+		}
+		return valor;
+	}
+
+	private static String formatarTempo(double val) {
+		int segTotais = (int) val;
+		int horas = segTotais / 3600;
+		int minutos = (segTotais % 3600) / 60;
+		int segundos = segTotais % 60;
+		return String.format("%02d:%02d:%02d", horas, minutos, segundos);
+	}
+}
@@ -4,9 +4,10 @@ public enum Status {
 	CONECTANDO("Conectando..."), CONECTADO("Conectado."), ERROCONEXAO("Erro na conexão!"),
 	ERRODECOLAGEM("Erro ao executar a Decolagem Orbital!"), ERROSUICIDE("Erro ao executar o Pouso Automático!"),
 	ERROROVER("Erro ao executar o Controle de Rover!"), ERROMANOBRAS("Erro ao executar a manobra!"),
-	EXECSUICIDE("Executando Suicide Burn..."), EXECDECOLAGEM("Executando Decolagem Orbital..."),
+	EXECSUICIDE("Executando Suicide Burn..."), EXECSUICIDEMULTI("Executando Suicide Burn em várias naves..."),
+	EXECDECOLAGEM("Executando Decolagem Orbital..."),
 	EXECROVER("Executando Auto Rover..."), JAEXEC("Já está em execução"), PRONTO("Pronto."),
-	EXECMANOBRAS("Executando Manobras...");
+	EXECMANOBRAS("Executando Manobras..."), CANCELADO("Cancelado.");
 
 	String t;
 
@@ -0,0 +1,276 @@
+package com.pesterenan.simulacao;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Ajusta os ganhos dos PIDs do Suicide Burn ou da Decolagem Orbital com voos
+ * no SimuladorDeVoo. Cada conjunto de ganhos voa alguns cenários e recebe uma
+ * nota, que soma o combustível gasto e o tempo de voo em relação aos ganhos
+ * iniciais e as penalidades de cada módulo. A busca usa o método de
+ * Nelder-Mead sobre o logaritmo dos ganhos, partindo de vários pontos em volta
+ * dos ganhos iniciais, com as partidas executadas em paralelo.
+ */
+public class AjusteDeGanhos {
+
+	private static final double PESO_TEMPO = 0.2, NOTA_FALHA = 100;
+	private static final double GANHO_MINIMO = 1e-5, PASSO_INICIAL = 0.3, ESPALHAMENTO_PARTIDAS = 0.5;
+	// Velocidade de toque tolerada no pouso e pressão dinâmica tolerada na
+	// subida, acima das quais a nota cresce rapidamente:
+	private static final double TOQUE_TOLERADO = 1, PRESSAO_TOLERADA = 25000;
+	private static final double TEMPO_MAXIMO = 600;
+
+	/**
+	 * Um voo simulado com um conjunto de ganhos.
+	 */
+	private interface Cenario {
+		/**
+		 * @return Combustível gasto, tempo de voo e penalidade do voo, ou null caso
+		 *         a nave não tenha pousado ou alcançado o apoastro.
+		 */
+		double[] voar(double[] ganhos);
+	}
+
+	/**
+	 * Melhor conjunto de ganhos encontrado.
+	 */
+	public static class Resultado {
+		double[] ganhos;
+		double nota, notaInicial;
+		int avaliacoes;
+
+		public double[] getGanhos() {
+			return ganhos.clone();
+		}
+
+		public double getNota() {
+			return nota;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder texto = new StringBuilder("Ganhos:");
+			for (double ganho : ganhos) {
+				texto.append(String.format(" %.4g", ganho));
+			}
+			return texto.append(String.format(", nota: %.4f (inicial: %.4f), avaliações: %d", nota, notaInicial,
+					avaliacoes)).toString();
+		}
+	}
+
+	private final Cenario[] cenarios;
+	private final double[] ganhosIniciais;
+	private final double[][] referencias;
+	private final AtomicInteger avaliacoes = new AtomicInteger();
+
+	private AjusteDeGanhos(Cenario[] cenarios, double[] ganhosIniciais) {
+		this.cenarios = cenarios;
+		this.ganhosIniciais = ganhosIniciais.clone();
+		referencias = new double[cenarios.length][];
+		for (int i = 0; i < cenarios.length; i++) {
+			referencias[i] = cenarios[i].voar(ganhosIniciais);
+			if (referencias[i] == null) {
+				throw new IllegalArgumentException("Os ganhos iniciais não completam o cenário " + (i + 1));
+			}
+		}
+	}
+
+	/**
+	 * Ajuste dos ganhos do Suicide Burn, com módulos de pouso de 6t e 9t
+	 * descendo na Mun de várias altitudes e velocidades.
+	 *
+	 * @param ganhosIniciais - Ganhos altP, altI, altD, velP, velI, velD de onde
+	 *                       a busca parte, iguais em todos os regimes ou para
+	 *                       cada regime do ControladorSuicideBurn
+	 */
+	public static AjusteDeGanhos paraSuicideBurn(double[] ganhosIniciais) {
+		// Massa, massa seca, empuxo máximo, altitude, velocidade vertical e
+		// velocidade horizontal:
+		double[][] voos = { { 6000, 3500, 60000, 8000, -150, 30 }, { 6000, 3500, 60000, 3000, -100, 20 },
+				{ 6000, 3500, 60000, 15000, -250, 60 }, { 6000, 3500, 60000, 2000, -30, 5 },
+				{ 9000, 5000, 45000, 6000, -120, 25 } };
+		Cenario[] cenarios = new Cenario[voos.length];
+		for (int i = 0; i < voos.length; i++) {
+			double[] voo = voos[i];
+			cenarios[i] = ganhos -> {
+				SimuladorDeVoo simulador = new SimuladorDeVoo(CorpoCeleste.MUN, voo[0], voo[1], voo[2], 320, 0);
+				simulador.posicionar(voo[3], voo[4], voo[5]);
+				SimulacaoSuicideBurn.Resultado pouso = SimulacaoSuicideBurn.simular(simulador, 2, ganhos,
+						TEMPO_MAXIMO);
+				if (!pouso.isPousou()) {
+					return null;
+				}
+				double toque = pouso.getVelocidadeDeToque();
+				double excesso = Math.max(0, toque - TOQUE_TOLERADO);
+				return new double[] { pouso.getCombustivelGasto(), pouso.getTempoDeVoo(),
+						0.1 * toque + 5 * excesso * excesso };
+			};
+		}
+		return new AjusteDeGanhos(cenarios, ganhosIniciais);
+	}
+
+	/**
+	 * Ajuste dos ganhos de aceleração da Decolagem Orbital, com foguetes de 20t
+	 * e 30t subindo de Kerbin.
+	 *
+	 * @param ganhosIniciais - Ganhos P, I, D de onde a busca parte
+	 */
+	public static AjusteDeGanhos paraDecolagem(double[] ganhosIniciais) {
+		// Massa, massa seca, empuxo máximo, impulso específico, coeficiente de
+		// arrasto e apoastro:
+		double[][] voos = { { 20000, 5000, 400000, 300, 1.0, 80000 }, { 30000, 8000, 500000, 290, 1.5, 100000 } };
+		Cenario[] cenarios = new Cenario[voos.length];
+		for (int i = 0; i < voos.length; i++) {
+			double[] voo = voos[i];
+			cenarios[i] = ganhos -> {
+				SimuladorDeVoo simulador = new SimuladorDeVoo(CorpoCeleste.KERBIN, voo[0], voo[1], voo[2], voo[3],
+						voo[4]);
+				SimulacaoDecolagem.Resultado subida = SimulacaoDecolagem.simular(simulador, voo[5], ganhos,
+						TEMPO_MAXIMO);
+				if (!subida.isApoastroAlcancado()) {
+					return null;
+				}
+				double excesso = Math.max(0, subida.getPressaoDinamicaMaxima() - PRESSAO_TOLERADA) / 5000;
+				return new double[] { subida.getCombustivelGasto(), subida.getTempoDeVoo(), excesso * excesso };
+			};
+		}
+		return new AjusteDeGanhos(cenarios, ganhosIniciais);
+	}
+
+	/**
+	 * Busca os melhores ganhos, dividindo as avaliações entre as partidas.
+	 *
+	 * @param avaliacoes - Quantidade total de conjuntos de ganhos avaliados
+	 * @param partidas   - Quantidade de buscas independentes
+	 * @param progresso  - Recebe uma mensagem ao fim de cada partida
+	 * @return Melhores ganhos encontrados
+	 */
+	public Resultado ajustar(int avaliacoes, int partidas, Consumer<String> progresso) {
+		this.avaliacoes.set(0);
+		int porPartida = Math.max(ganhosIniciais.length + 2, avaliacoes / partidas);
+		double[] inicio = new double[ganhosIniciais.length];
+		for (int i = 0; i < inicio.length; i++) {
+			inicio[i] = Math.log10(Math.max(GANHO_MINIMO, ganhosIniciais[i]));
+		}
+		// A primeira partida começa nos ganhos iniciais e as outras em volta deles:
+		double[] melhor = IntStream.range(0, partidas).parallel().mapToObj(partida -> {
+			Random aleatorio = new Random(partida);
+			double[] ponto = inicio.clone();
+			for (int i = 0; partida > 0 && i < ponto.length; i++) {
+				ponto[i] += aleatorio.nextGaussian() * ESPALHAMENTO_PARTIDAS;
+			}
+			double[] encontrado = nelderMead(ponto, porPartida);
+			progresso.accept(String.format("Partida %d: nota %.4f", partida + 1, encontrado[ponto.length]));
+			return encontrado;
+		}).min(Comparator.comparingDouble(ponto -> ponto[ponto.length - 1])).get();
+
+		Resultado resultado = new Resultado();
+		resultado.ganhos = new double[ganhosIniciais.length];
+		for (int i = 0; i < resultado.ganhos.length; i++) {
+			resultado.ganhos[i] = Math.pow(10, melhor[i]);
+		}
+		resultado.nota = melhor[melhor.length - 1];
+		resultado.notaInicial = nota(ganhosIniciais);
+		resultado.avaliacoes = this.avaliacoes.get();
+		return resultado;
+	}
+
+	/**
+	 * Nota média dos cenários voados com os ganhos informados. Quanto menor,
+	 * melhor; os ganhos iniciais sem penalidades têm nota 1 + PESO_TEMPO.
+	 */
+	public double nota(double[] ganhos) {
+		avaliacoes.incrementAndGet();
+		double soma = 0;
+		for (int i = 0; i < cenarios.length; i++) {
+			double[] voo = cenarios[i].voar(ganhos);
+			soma += voo == null ? NOTA_FALHA
+					: voo[0] / referencias[i][0] + PESO_TEMPO * voo[1] / referencias[i][1] + voo[2];
+		}
+		return soma / cenarios.length;
+	}
+
+	/**
+	 * Método de Nelder-Mead: move um simplex de n + 1 pontos refletindo,
+	 * expandindo ou contraindo o pior ponto em relação aos outros, até acabarem
+	 * as avaliações.
+	 *
+	 * @param inicio     - Logaritmo dos ganhos de onde a busca parte
+	 * @param avaliacoes - Avaliações disponíveis para esta busca
+	 * @return Logaritmo dos melhores ganhos, seguido da sua nota
+	 */
+	private double[] nelderMead(double[] inicio, int avaliacoes) {
+		int n = inicio.length;
+		// Cada ponto do simplex guarda as coordenadas e, na última posição, a nota:
+		double[][] simplex = new double[n + 1][];
+		for (int i = 0; i <= n; i++) {
+			double[] ponto = Arrays.copyOf(inicio, n + 1);
+			if (i > 0) {
+				ponto[i - 1] += PASSO_INICIAL;
+			}
+			simplex[i] = avaliar(ponto);
+		}
+		int restantes = avaliacoes - (n + 1);
+		Comparator<double[]> porNota = Comparator.comparingDouble(ponto -> ponto[n]);
+		while (restantes > 0) {
+			Arrays.sort(simplex, porNota);
+			double[] centro = new double[n + 1];
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					centro[j] += simplex[i][j] / n;
+				}
+			}
+			double[] pior = simplex[n];
+			double[] refletido = avaliar(combinar(centro, pior, 1));
+			restantes--;
+			if (refletido[n] < simplex[0][n]) {
+				double[] expandido = avaliar(combinar(centro, pior, 2));
+				restantes--;
+				simplex[n] = expandido[n] < refletido[n] ? expandido : refletido;
+			} else if (refletido[n] < simplex[n - 1][n]) {
+				simplex[n] = refletido;
+			} else {
+				// Contração para fora do simplex caso o refletido seja melhor que o
+				// pior ponto, e para dentro caso contrário:
+				boolean fora = refletido[n] < pior[n];
+				double[] contraido = avaliar(combinar(centro, pior, fora ? 0.5 : -0.5));
+				restantes--;
+				if (contraido[n] < Math.min(refletido[n], pior[n])) {
+					simplex[n] = contraido;
+				} else {
+					// Encolhe o simplex em volta do melhor ponto:
+					for (int i = 1; i <= n && restantes > 0; i++, restantes--) {
+						simplex[i] = avaliar(combinar(simplex[0], simplex[i], -0.5));
+					}
+				}
+			}
+		}
+		Arrays.sort(simplex, porNota);
+		return simplex[0];
+	}
+
+	/**
+	 * @return Ponto centro + coeficiente * (centro - ponto), sem a nota.
+	 */
+	private static double[] combinar(double[] centro, double[] ponto, double coeficiente) {
+		double[] combinado = new double[ponto.length];
+		for (int i = 0; i < ponto.length - 1; i++) {
+			combinado[i] = centro[i] + coeficiente * (centro[i] - ponto[i]);
+		}
+		return combinado;
+	}
+
+	private double[] avaliar(double[] ponto) {
+		int n = ponto.length - 1;
+		double[] ganhos = new double[n];
+		for (int i = 0; i < n; i++) {
+			ganhos[i] = Math.pow(10, ponto[i]);
+		}
+		ponto[n] = nota(ganhos);
+		return ponto;
+	}
+}
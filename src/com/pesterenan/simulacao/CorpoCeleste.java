@@ -0,0 +1,79 @@
+package com.pesterenan.simulacao;
+
+/**
+ * Corpo celeste simplificado usado pelo simulador: gravidade de um ponto,
+ * atmosfera exponencial e um terreno ondulado em volta da superfície.
+ */
+public class CorpoCeleste {
+
+	public static final CorpoCeleste KERBIN = new CorpoCeleste("Kerbin", 600000, 3.5316e12, 1.225, 5600, 70000, 0,
+			1);
+	public static final CorpoCeleste MUN = new CorpoCeleste("Mun", 200000, 6.5138e10, 0, 1, 0, 150, 2000);
+
+	private final String nome;
+	private final double raio, parametroGravitacional;
+	private final double densidadeNivelMar, escalaAltura, alturaAtmosfera;
+	private final double alturaMontanhas, distanciaMontanhas;
+
+	/**
+	 * @param nome                   - Nome do corpo
+	 * @param raio                   - Raio ao nível do mar, em metros
+	 * @param parametroGravitacional - Constante gravitacional vezes a massa do
+	 *                               corpo (m³/s²)
+	 * @param densidadeNivelMar      - Densidade do ar ao nível do mar (kg/m³), 0
+	 *                               para corpos sem atmosfera
+	 * @param escalaAltura           - Altitude em que a densidade do ar cai para
+	 *                               1/e
+	 * @param alturaAtmosfera        - Altitude do topo da atmosfera
+	 * @param alturaMontanhas        - Altura máxima do terreno acima do nível do
+	 *                               mar
+	 * @param distanciaMontanhas     - Distância entre dois picos do terreno
+	 */
+	public CorpoCeleste(String nome, double raio, double parametroGravitacional, double densidadeNivelMar,
+			double escalaAltura, double alturaAtmosfera, double alturaMontanhas, double distanciaMontanhas) {
+		this.nome = nome;
+		this.raio = raio;
+		this.parametroGravitacional = parametroGravitacional;
+		this.densidadeNivelMar = densidadeNivelMar;
+		this.escalaAltura = escalaAltura;
+		this.alturaAtmosfera = alturaAtmosfera;
+		this.alturaMontanhas = alturaMontanhas;
+		this.distanciaMontanhas = distanciaMontanhas;
+	}
+
+	public String getNome() {
+		return nome;
+	}
+
+	public double getRaio() {
+		return raio;
+	}
+
+	public double getParametroGravitacional() {
+		return parametroGravitacional;
+	}
+
+	public double getGravidadeSuperficie() {
+		return parametroGravitacional / (raio * raio);
+	}
+
+	/**
+	 * @param altitude - Altitude acima do nível do mar
+	 * @return Densidade do ar nessa altitude, em kg/m³
+	 */
+	public double densidadeDoAr(double altitude) {
+		if (altitude >= alturaAtmosfera) {
+			return 0;
+		}
+		return densidadeNivelMar * Math.exp(-Math.max(altitude, 0) / escalaAltura);
+	}
+
+	/**
+	 * @param angulo - Posição na superfície, em radianos a partir do eixo X
+	 * @return Altura do terreno acima do nível do mar nessa posição
+	 */
+	public double alturaTerreno(double angulo) {
+		double distancia = angulo * raio;
+		return alturaMontanhas * 0.5 * (1 - Math.cos(2 * Math.PI * distancia / distanciaMontanhas));
+	}
+}
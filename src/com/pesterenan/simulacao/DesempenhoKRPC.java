@@ -0,0 +1,214 @@
+package com.pesterenan.simulacao;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.pesterenan.GerenciadorDeModulos;
+import com.pesterenan.funcoes.DecolagemOrbital;
+import com.pesterenan.funcoes.SuicideBurn;
+import com.pesterenan.utils.CicloDeControle;
+
+import krpc.client.Connection;
+import krpc.client.services.SpaceCenter;
+
+/**
+ * Mede o custo da comunicação de um módulo com o kRPC, executando o módulo de
+ * verdade contra o ServidorKRPCFalso com diferentes latências de rede. Para
+ * cada latência, informa quantas chamadas RPC o módulo faz por ciclo de
+ * controle e a mediana e o percentil 99 do tempo de trabalho dos ciclos.
+ */
+public class DesempenhoKRPC {
+
+	/**
+	 * Latências de rede medidas por padrão, em milissegundos.
+	 */
+	public static final long[] LATENCIAS = { 1, 5, 20 };
+	// Tempo máximo da preparação do módulo, antes do primeiro ciclo, que não
+	// conta no tempo da medição:
+	private static final long TEMPO_PREPARACAO_MS = 60000;
+
+	/**
+	 * Resultado da medição de um módulo com uma latência.
+	 */
+	public static class Resultado {
+		long latencia, ciclos, chamadasNosCiclos;
+		double mediana, percentil99, maximo, altitudeFinal;
+		boolean pousada;
+		Map<String, Long> chamadasPorCiclo = new TreeMap<>();
+		Exception erro;
+
+		public double getChamadasPorCiclo() {
+			return ciclos > 1 ? (double) chamadasNosCiclos / (ciclos - 1) : 0;
+		}
+
+		/**
+		 * @return Mediana do tempo de trabalho dos ciclos, em milissegundos.
+		 */
+		public double getMediana() {
+			return mediana;
+		}
+
+		/**
+		 * @return Percentil 99 do tempo de trabalho dos ciclos, em milissegundos.
+		 */
+		public double getPercentil99() {
+			return percentil99;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder texto = new StringBuilder(String.format(
+					"Latência: %dms, ciclos: %d, RPCs por ciclo: %.2f, p50: %.2fms, p99: %.2fms, máximo: %.2fms",
+					latencia, ciclos, getChamadasPorCiclo(), mediana, percentil99, maximo));
+			texto.append(String.format("%n    Altitude final: %.1fm%s", altitudeFinal, pousada ? ", pousada" : ""));
+			chamadasPorCiclo.forEach((procedimento, total) -> texto
+					.append(String.format("%n    %-50s %.2f", procedimento, (double) total / Math.max(1, ciclos - 1))));
+			if (erro != null) {
+				texto.append("\n    Módulo interrompido por erro: ").append(erro);
+			}
+			return texto.toString();
+		}
+	}
+
+	/**
+	 * Guarda o tempo de cada ciclo e as chamadas feitas entre o primeiro e o
+	 * último ciclo, fora a preparação do módulo.
+	 */
+	private static class Medicao implements CicloDeControle.Medidor {
+		private final ServidorKRPCFalso servidor;
+		private long[] duracoes = new long[1024];
+		private int ciclos;
+		private long chamadasIniciais, chamadasFinais;
+		private Map<String, Long> procedimentosIniciais;
+		private final CountDownLatch primeiroCiclo = new CountDownLatch(1);
+
+		Medicao(ServidorKRPCFalso servidor) {
+			this.servidor = servidor;
+		}
+
+		@Override
+		public void registrar(long trabalhoNs) {
+			if (ciclos == 0) {
+				chamadasIniciais = servidor.getChamadas();
+				procedimentosIniciais = servidor.getChamadasPorProcedimento();
+				primeiroCiclo.countDown();
+			}
+			chamadasFinais = servidor.getChamadas();
+			if (ciclos == duracoes.length) {
+				duracoes = Arrays.copyOf(duracoes, ciclos * 2);
+			}
+			duracoes[ciclos++] = trabalhoNs;
+		}
+
+		/**
+		 * Espera o primeiro ciclo do módulo, ou o fim da tarefa caso ela termine
+		 * antes dele.
+		 *
+		 * @return true caso o primeiro ciclo tenha acontecido dentro do tempo.
+		 */
+		boolean aguardarPrimeiroCiclo(Thread tarefa, long tempoMs) throws InterruptedException {
+			long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tempoMs);
+			while (tarefa.isAlive() && System.nanoTime() < limite) {
+				if (primeiroCiclo.await(50, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+			return primeiroCiclo.getCount() == 0;
+		}
+	}
+
+	/**
+	 * Executa o módulo contra o servidor falso até ele terminar ou até acabar o
+	 * tempo da medição. O tempo começa a contar no primeiro ciclo de controle,
+	 * então a preparação do módulo, que com latência alta pode levar vários
+	 * segundos, não diminui os ciclos medidos.
+	 *
+	 * @param modulo     - "suicideburn" ou "decolagem"
+	 * @param latenciaMs - Atraso de cada mensagem, em cada sentido da conexão
+	 * @param duracaoMs  - Tempo máximo de execução do módulo, a partir do
+	 *                   primeiro ciclo
+	 * @return Chamadas por ciclo e tempos dos ciclos
+	 */
+	public static Resultado medir(String modulo, long latenciaMs, long duracaoMs)
+			throws IOException, InterruptedException {
+		SimuladorDeVoo simulador;
+		if (modulo.equals("decolagem")) {
+			simulador = new SimuladorDeVoo(CorpoCeleste.KERBIN, 20000, 5000, 400000, 300, 1.0);
+		} else {
+			simulador = new SimuladorDeVoo(CorpoCeleste.MUN, 6000, 3500, 60000, 320, 0);
+			simulador.posicionar(3000, -100, 20);
+		}
+		Resultado resultado = new Resultado();
+		resultado.latencia = latenciaMs;
+		try (ServidorKRPCFalso servidor = new ServidorKRPCFalso(simulador, "Simulada", 2, latenciaMs)) {
+			Connection conexao = Connection.newInstance("MechPeste", servidor.getEndereco(), servidor.getPortaRPC(),
+					servidor.getPortaStreams());
+			GerenciadorDeModulos.Modulo execucao;
+			if (modulo.equals("decolagem")) {
+				execucao = () -> new DecolagemOrbital(conexao);
+			} else {
+				execucao = () -> new SuicideBurn(conexao, SpaceCenter.newInstance(conexao).getActiveVessel(),
+						texto -> {
+						});
+			}
+			Medicao medicao = new Medicao(servidor);
+			CicloDeControle.setMedidor(medicao);
+			Thread tarefa = new Thread(() -> {
+				try {
+					execucao.executar();
+				} catch (InterruptedException e) {
+					// Fim do tempo da medição
+				} catch (Exception e) {
+					resultado.erro = e;
+				}
+			}, "MechPeste-Desempenho");
+			try {
+				tarefa.start();
+				if (medicao.aguardarPrimeiroCiclo(tarefa, TEMPO_PREPARACAO_MS)) {
+					tarefa.join(duracaoMs);
+				}
+				tarefa.interrupt();
+				tarefa.join();
+			} finally {
+				CicloDeControle.setMedidor(null);
+				conexao.close();
+			}
+			if (medicao.ciclos == 0) {
+				resultado.erro = new IllegalStateException("Nenhum ciclo medido: o módulo não chegou ao loop de "
+						+ "controle em " + TEMPO_PREPARACAO_MS + "ms", resultado.erro);
+			}
+			calcularResultado(medicao, resultado);
+			resultado.altitudeFinal = simulador.getAltitude();
+			resultado.pousada = simulador.isPousado();
+		}
+		return resultado;
+	}
+
+	private static void calcularResultado(Medicao medicao, Resultado resultado) {
+		resultado.ciclos = medicao.ciclos;
+		if (medicao.ciclos == 0) {
+			return;
+		}
+		resultado.chamadasNosCiclos = medicao.chamadasFinais - medicao.chamadasIniciais;
+		medicao.servidor.getChamadasPorProcedimento().forEach((procedimento, total) -> {
+			long noLoop = total - medicao.procedimentosIniciais.getOrDefault(procedimento, 0L);
+			if (noLoop > 0) {
+				resultado.chamadasPorCiclo.put(procedimento, noLoop);
+			}
+		});
+		long[] duracoes = Arrays.copyOf(medicao.duracoes, medicao.ciclos);
+		Arrays.sort(duracoes);
+		resultado.mediana = percentil(duracoes, 0.5);
+		resultado.percentil99 = percentil(duracoes, 0.99);
+		resultado.maximo = duracoes[duracoes.length - 1] / 1e6;
+	}
+
+	private static double percentil(long[] ordenados, double fracao) {
+		int indice = (int) Math.ceil(fracao * ordenados.length) - 1;
+		return ordenados[Math.max(0, indice)] / 1e6;
+	}
+}
@@ -0,0 +1,625 @@
+package com.pesterenan.simulacao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import krpc.schema.KRPC;
+import krpc.schema.KRPC.ConnectionRequest;
+import krpc.schema.KRPC.ConnectionResponse;
+import krpc.schema.KRPC.ProcedureCall;
+import krpc.schema.KRPC.ProcedureResult;
+import krpc.schema.KRPC.Request;
+import krpc.schema.KRPC.Response;
+import krpc.schema.KRPC.StreamResult;
+import krpc.schema.KRPC.StreamUpdate;
+
+/**
+ * Servidor local que fala o protocolo do kRPC no lugar do jogo, controlando a
+ * nave de um SimuladorDeVoo. Responde aos procedimentos usados pelos módulos
+ * de Suicide Burn e Decolagem Orbital, envia os Streams a cada quadro de física
+ * e atrasa cada mensagem pela latência configurada, para medir quantas
+ * chamadas os módulos fazem e quanto tempo cada ciclo leva sem abrir o KSP.
+ *
+ * A nave, a órbita, o corpo celeste e os referenciais têm ids fixos. Os
+ * referenciais seguem os eixos do kRPC: no do corpo, y aponta para o polo
+ * norte e a órbita fica no plano xz; no da superfície, x aponta para cima, y
+ * para o norte e z para o leste. Procedimentos não suportados devolvem um erro,
+ * como o kRPC faz com procedimentos desconhecidos. Atende um único cliente.
+ */
+public class ServidorKRPCFalso implements Closeable {
+
+	private static final long QUADRO_FISICA_MS = 20;
+	private static final int NAVE = 1, ORBITA = 2, CORPO = 3, CONTROLE = 4, PILOTO_AUTOMATICO = 5;
+	private static final int REF_CORPO = 10, REF_NAVE = 11, REF_SUPERFICIE = 12, REF_VELOCIDADE_SUPERFICIE = 13;
+	// O id de um Flight é VOO mais o id do seu referencial:
+	private static final int VOO = 100;
+	// Valores de VesselSituation:
+	private static final int PRE_LAUNCH = 0, FLYING = 4, LANDED = 5;
+
+	private interface Escrita {
+		void escrever(CodedOutputStream saida) throws IOException;
+	}
+
+	private final SimuladorDeVoo simulador;
+	private final String nomeNave;
+	private final double alturaNave;
+	private final long latenciaNs;
+	private final ServerSocket servidorRPC, servidorStreams;
+	private final ScheduledExecutorService fisica, envioStreams;
+	private final Thread atendimento;
+	private final ByteString idCliente;
+
+	// Streams registrados pelo cliente, na ordem em que foram criados:
+	private final Map<ByteString, Long> idsStreams = new HashMap<>();
+	private final Map<Long, ProcedureCall> streams = new LinkedHashMap<>();
+	private final Set<Long> streamsIniciados = new HashSet<>();
+	private final Map<Long, ProcedureResult> ultimosValores = new HashMap<>();
+	private long proximoStream = 1;
+
+	private final AtomicLong chamadas = new AtomicLong();
+	private final Map<String, LongAdder> chamadasPorProcedimento = new ConcurrentHashMap<>();
+	private Socket socketRPC, socketStreams;
+	private CodedOutputStream saidaStreams;
+	private boolean lancada, freios;
+	private double inclinacaoAlvo = 90, direcaoAlvo = 90;
+
+	/**
+	 * Abre as portas de RPC e de Streams no endereço local e espera o cliente.
+	 *
+	 * @param simulador  - Simulador com a nave na posição inicial
+	 * @param nomeNave   - Nome devolvido para a nave
+	 * @param alturaNave - Distância do centro de massa até a base da nave
+	 * @param latenciaMs - Atraso de cada mensagem, em cada sentido da conexão
+	 * @throws IOException - Caso as portas não possam ser abertas
+	 */
+	public ServidorKRPCFalso(SimuladorDeVoo simulador, String nomeNave, double alturaNave, long latenciaMs)
+			throws IOException {
+		this.simulador = simulador;
+		this.nomeNave = nomeNave;
+		this.alturaNave = alturaNave;
+		latenciaNs = TimeUnit.MILLISECONDS.toNanos(latenciaMs);
+		InetAddress local = InetAddress.getLoopbackAddress();
+		servidorRPC = new ServerSocket(0, 1, local);
+		servidorStreams = new ServerSocket(0, 1, local);
+		byte[] id = new byte[16];
+		new Random().nextBytes(id);
+		idCliente = ByteString.copyFrom(id);
+		fisica = Executors.newSingleThreadScheduledExecutor(criarThread("MechPeste-Fisica"));
+		envioStreams = Executors.newSingleThreadScheduledExecutor(criarThread("MechPeste-EnvioStreams"));
+		atendimento = criarThread("MechPeste-ServidorRPC").newThread(this::atender);
+		atendimento.start();
+	}
+
+	private static ThreadFactory criarThread(String nome) {
+		return tarefa -> {
+			Thread thread = new Thread(tarefa, nome);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	public InetAddress getEndereco() {
+		return servidorRPC.getInetAddress();
+	}
+
+	public int getPortaRPC() {
+		return servidorRPC.getLocalPort();
+	}
+
+	public int getPortaStreams() {
+		return servidorStreams.getLocalPort();
+	}
+
+	/**
+	 * @return Número de chamadas RPC recebidas, sem contar os valores enviados
+	 *         pelos Streams.
+	 */
+	public long getChamadas() {
+		return chamadas.get();
+	}
+
+	/**
+	 * @return Número de chamadas RPC recebidas de cada procedimento, pelo nome
+	 *         completo do procedimento.
+	 */
+	public Map<String, Long> getChamadasPorProcedimento() {
+		Map<String, Long> copia = new TreeMap<>();
+		chamadasPorProcedimento.forEach((procedimento, total) -> copia.put(procedimento, total.sum()));
+		return copia;
+	}
+
+	private void atender() {
+		try {
+			socketRPC = servidorRPC.accept();
+			socketRPC.setTcpNoDelay(true);
+			CodedInputStream entrada = CodedInputStream.newInstance(socketRPC.getInputStream());
+			CodedOutputStream saida = CodedOutputStream.newInstance(socketRPC.getOutputStream());
+			if (!aceitarConexao(entrada, saida, ConnectionRequest.Type.RPC)) {
+				return;
+			}
+			socketStreams = servidorStreams.accept();
+			socketStreams.setTcpNoDelay(true);
+			saidaStreams = CodedOutputStream.newInstance(socketStreams.getOutputStream());
+			if (!aceitarConexao(CodedInputStream.newInstance(socketStreams.getInputStream()), saidaStreams,
+					ConnectionRequest.Type.STREAM)) {
+				return;
+			}
+			fisica.scheduleAtFixedRate(this::quadroDeFisica, QUADRO_FISICA_MS, QUADRO_FISICA_MS,
+					TimeUnit.MILLISECONDS);
+			while (true) {
+				Request requisicao = Request.parseFrom(lerMensagem(entrada));
+				TimeUnit.NANOSECONDS.sleep(latenciaNs);
+				Response.Builder resposta = Response.newBuilder();
+				for (ProcedureCall chamada : requisicao.getCallsList()) {
+					chamadas.incrementAndGet();
+					chamadasPorProcedimento
+							.computeIfAbsent(chamada.getService() + "." + chamada.getProcedure(), p -> new LongAdder())
+							.increment();
+					resposta.addResults(executar(chamada));
+				}
+				TimeUnit.NANOSECONDS.sleep(latenciaNs);
+				saida.writeMessageNoTag(resposta.build());
+				saida.flush();
+			}
+		} catch (IOException | InterruptedException e) {
+			// O cliente desconectou ou o servidor foi fechado
+		}
+	}
+
+	private boolean aceitarConexao(CodedInputStream entrada, CodedOutputStream saida, ConnectionRequest.Type tipo)
+			throws IOException {
+		ConnectionRequest pedido = ConnectionRequest.parseFrom(lerMensagem(entrada));
+		ConnectionResponse.Builder resposta = ConnectionResponse.newBuilder();
+		boolean aceito = pedido.getType() == tipo
+				&& (tipo == ConnectionRequest.Type.RPC || pedido.getClientIdentifier().equals(idCliente));
+		if (aceito) {
+			resposta.setStatus(ConnectionResponse.Status.OK).setClientIdentifier(idCliente);
+		} else {
+			resposta.setStatus(ConnectionResponse.Status.WRONG_TYPE).setMessage("Conexão inesperada: " + pedido);
+		}
+		saida.writeMessageNoTag(resposta.build());
+		saida.flush();
+		return aceito;
+	}
+
+	private static byte[] lerMensagem(CodedInputStream entrada) throws IOException {
+		byte[] mensagem = entrada.readRawBytes(entrada.readRawVarint32());
+		entrada.resetSizeCounter();
+		return mensagem;
+	}
+
+	/**
+	 * Avança a simulação um quadro de física e envia os valores dos Streams que
+	 * mudaram, depois da latência da conexão.
+	 */
+	private void quadroDeFisica() {
+		StreamUpdate.Builder atualizacao = StreamUpdate.newBuilder();
+		synchronized (this) {
+			simulador.avancar(QUADRO_FISICA_MS / 1000.0);
+			if (!simulador.isPousado()) {
+				lancada = true;
+			}
+			for (Map.Entry<Long, ProcedureCall> stream : streams.entrySet()) {
+				long id = stream.getKey();
+				if (!streamsIniciados.contains(id)) {
+					continue;
+				}
+				ProcedureResult resultado = executar(stream.getValue());
+				if (!resultado.equals(ultimosValores.put(id, resultado))) {
+					atualizacao.addResults(StreamResult.newBuilder().setId(id).setResult(resultado));
+				}
+			}
+		}
+		if (atualizacao.getResultsCount() > 0) {
+			StreamUpdate mensagem = atualizacao.build();
+			envioStreams.schedule(() -> enviarStreams(mensagem), latenciaNs, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private void enviarStreams(StreamUpdate mensagem) {
+		try {
+			saidaStreams.writeMessageNoTag(mensagem);
+			saidaStreams.flush();
+		} catch (IOException e) {
+			// O cliente desconectou
+		}
+	}
+
+	private synchronized ProcedureResult executar(ProcedureCall chamada) {
+		try {
+			return ProcedureResult.newBuilder().setValue(procedimento(chamada)).build();
+		} catch (IOException | IllegalArgumentException e) {
+			return ProcedureResult.newBuilder()
+					.setError(KRPC.Error.newBuilder().setService(chamada.getService())
+							.setName(chamada.getProcedure()).setDescription(String.valueOf(e.getMessage())))
+					.build();
+		}
+	}
+
+	private ByteString procedimento(ProcedureCall chamada) throws IOException {
+		switch (chamada.getProcedure()) {
+		// Serviço KRPC:
+		case "GetClientID":
+			return codificar(s -> s.writeBytesNoTag(idCliente));
+		case "AddStream":
+			return adicionarStream(ProcedureCall.parseFrom(valor(chamada, 0)), lerBooleano(chamada, 1));
+		case "StartStream":
+			streamsIniciados.add(lerObjeto(chamada, 0));
+			return ByteString.EMPTY;
+		case "RemoveStream":
+			removerStream(lerObjeto(chamada, 0));
+			return ByteString.EMPTY;
+		case "SetStreamRate":
+			return ByteString.EMPTY;
+		// Serviço SpaceCenter:
+		case "get_ActiveVessel":
+			return objeto(NAVE);
+		case "get_UT":
+			return codificarDouble(simulador.getTempoUniversal());
+		case "TransformPosition":
+			return codificarVetor(
+					transformar(lerVetor(chamada, 0), lerObjeto(chamada, 1), lerObjeto(chamada, 2), true));
+		case "TransformRotation":
+			return codificarVetor(rotacionar(lerVetor(chamada, 0), lerObjeto(chamada, 1), lerObjeto(chamada, 2)));
+		case "TransformDirection":
+			return codificarVetor(
+					transformar(lerVetor(chamada, 0), lerObjeto(chamada, 1), lerObjeto(chamada, 2), false));
+		case "Vessel_get_Name":
+			return codificar(s -> s.writeStringNoTag(nomeNave));
+		case "Vessel_get_Orbit":
+			return objeto(ORBITA);
+		case "Vessel_get_ReferenceFrame":
+			return objeto(REF_NAVE);
+		case "Vessel_get_SurfaceReferenceFrame":
+			return objeto(REF_SUPERFICIE);
+		case "Vessel_get_SurfaceVelocityReferenceFrame":
+			return objeto(REF_VELOCIDADE_SUPERFICIE);
+		case "Vessel_get_Control":
+			return objeto(CONTROLE);
+		case "Vessel_get_AutoPilot":
+			return objeto(PILOTO_AUTOMATICO);
+		case "Vessel_Flight":
+			return objeto(VOO + lerObjeto(chamada, 1));
+		case "Vessel_Position":
+			return codificarVetor(transformar(new double[3], REF_SUPERFICIE, lerObjeto(chamada, 1), true));
+		case "Vessel_BoundingBox":
+			return KRPC.Tuple.newBuilder().addItems(codificarVetor(new double[] { -1, -alturaNave, -1 }))
+					.addItems(codificarVetor(new double[] { 1, alturaNave, 1 })).build().toByteString();
+		case "Vessel_get_Mass":
+			return codificarFloat(simulador.getMassa());
+		case "Vessel_get_AvailableThrust":
+			return codificarFloat(simulador.getEmpuxoDisponivel());
+		case "Vessel_get_SpecificImpulse":
+			return codificarFloat(simulador.getImpulsoEspecifico());
+		case "Vessel_get_Situation":
+			int situacao = !simulador.isPousado() ? FLYING : lancada ? LANDED : PRE_LAUNCH;
+			return codificar(s -> s.writeSInt32NoTag(situacao));
+		case "Orbit_get_Body":
+			return objeto(CORPO);
+		case "Orbit_get_ApoapsisAltitude":
+			return codificarDouble(simulador.getApoastro());
+		case "Orbit_get_PeriapsisAltitude":
+			return codificarDouble(simulador.getPeriastro());
+		case "CelestialBody_get_Name":
+			return codificar(s -> s.writeStringNoTag(simulador.getCorpo().getNome()));
+		case "CelestialBody_get_SurfaceGravity":
+			return codificarFloat(simulador.getCorpo().getGravidadeSuperficie());
+		case "CelestialBody_get_EquatorialRadius":
+			return codificarFloat(simulador.getCorpo().getRaio());
+		case "CelestialBody_SurfaceHeight":
+			// O plano da simulação é o equador, e a longitude é o ângulo a partir do eixo x:
+			return codificarDouble(simulador.getCorpo().alturaTerreno(Math.toRadians(lerDouble(chamada, 2))));
+		case "CelestialBody_get_ReferenceFrame":
+			return objeto(REF_CORPO);
+		case "Flight_get_SurfaceAltitude":
+			return codificarDouble(simulador.getAltitude());
+		case "Flight_get_MeanAltitude":
+			return codificarDouble(simulador.getAltitudeNivelMar());
+		case "Flight_get_VerticalSpeed":
+			return codificarDouble(simulador.getVelVertical());
+		case "Flight_get_HorizontalSpeed":
+			return codificarDouble(simulador.getVelHorizontal());
+		case "Flight_get_DynamicPressure":
+			return codificarFloat(simulador.getPressaoDinamica());
+		case "Flight_get_Latitude":
+			return codificarDouble(0);
+		case "Flight_get_Longitude":
+			double[] estado = simulador.getEstado();
+			return codificarDouble(Math.toDegrees(Math.atan2(estado[1], estado[0])));
+		case "Flight_get_Velocity":
+			return codificarVetor(velocidadeNoVoo(lerObjeto(chamada, 0), false, 1));
+		case "Flight_get_Prograde":
+			return codificarVetor(velocidadeNoVoo(lerObjeto(chamada, 0), true, 1));
+		case "Flight_get_Retrograde":
+			return codificarVetor(velocidadeNoVoo(lerObjeto(chamada, 0), true, -1));
+		case "Control_get_Brakes":
+			return codificar(s -> s.writeBoolNoTag(freios));
+		case "Control_set_Brakes":
+			freios = lerBooleano(chamada, 1);
+			return ByteString.EMPTY;
+		case "Control_set_Throttle":
+			simulador.setAceleracao(lerFloat(chamada, 1));
+			return ByteString.EMPTY;
+		case "Control_set_Gear":
+			simulador.setTremDePouso(lerBooleano(chamada, 1));
+			return ByteString.EMPTY;
+		case "Control_ActivateNextStage":
+			lancada = true;
+			return KRPC.List.getDefaultInstance().toByteString();
+		case "Control_set_SAS":
+		case "Control_set_SASMode":
+		case "Control_set_RCS":
+		case "Control_set_Lights":
+		case "AutoPilot_Engage":
+		case "AutoPilot_Disengage":
+		case "AutoPilot_set_ReferenceFrame":
+		case "AutoPilot_set_TargetRoll":
+			// Sem efeito na simulação em um plano:
+			return ByteString.EMPTY;
+		case "AutoPilot_TargetPitchAndHeading":
+			inclinacaoAlvo = lerFloat(chamada, 1);
+			direcaoAlvo = lerFloat(chamada, 2);
+			apontar();
+			return ByteString.EMPTY;
+		case "AutoPilot_set_TargetPitch":
+			inclinacaoAlvo = lerFloat(chamada, 1);
+			apontar();
+			return ByteString.EMPTY;
+		case "AutoPilot_set_TargetHeading":
+			direcaoAlvo = lerFloat(chamada, 1);
+			apontar();
+			return ByteString.EMPTY;
+		default:
+			throw new IllegalArgumentException(
+					"Procedimento não suportado: " + chamada.getService() + "." + chamada.getProcedure());
+		}
+	}
+
+	private ByteString adicionarStream(ProcedureCall chamada, boolean iniciar) {
+		// Chamadas iguais recebem o mesmo Stream, como no kRPC:
+		Long id = idsStreams.get(chamada.toByteString());
+		if (id == null) {
+			id = proximoStream++;
+			idsStreams.put(chamada.toByteString(), id);
+			streams.put(id, chamada);
+		}
+		if (iniciar) {
+			streamsIniciados.add(id);
+		}
+		return KRPC.Stream.newBuilder().setId(id).build().toByteString();
+	}
+
+	private void removerStream(long id) {
+		streams.remove(id);
+		streamsIniciados.remove(id);
+		ultimosValores.remove(id);
+		for (Iterator<Long> ids = idsStreams.values().iterator(); ids.hasNext();) {
+			if (ids.next() == id) {
+				ids.remove();
+			}
+		}
+	}
+
+	/**
+	 * Aponta a nave para a inclinação e direção do piloto automático.
+	 */
+	private void apontar() {
+		simulador.setInclinacaoEDirecaoAlvo(inclinacaoAlvo, direcaoAlvo);
+	}
+
+	/**
+	 * @param voo     - Id do Flight, que define o referencial do vetor
+	 * @param direcao - true para devolver apenas a direção da velocidade
+	 * @param sentido - 1 para o progrado, -1 para o retrógrado
+	 * @return Velocidade ou sua direção no referencial do Flight
+	 */
+	private double[] velocidadeNoVoo(long voo, boolean direcao, double sentido) {
+		double[] estado = simulador.getEstado();
+		double escala = sentido;
+		if (direcao) {
+			double magnitude = Math.hypot(estado[2], estado[3]);
+			escala = magnitude > 0 ? sentido / magnitude : 0;
+		}
+		return transformar(new double[] { estado[2] * escala, 0, estado[3] * escala }, REF_CORPO, voo - VOO,
+				false);
+	}
+
+	/**
+	 * @return Origem e eixos x, y e z do referencial, no referencial do corpo.
+	 */
+	private double[][] referencial(long id) {
+		double[] estado = simulador.getEstado();
+		double raio = Math.hypot(estado[0], estado[1]);
+		double[] origem = { estado[0], 0, estado[1] };
+		double[] cima = { estado[0] / raio, 0, estado[1] / raio };
+		double[] norte = { 0, 1, 0 };
+		double[] leste = { -cima[2], 0, cima[0] };
+		switch ((int) id) {
+		case REF_CORPO:
+			return new double[][] { { 0, 0, 0 }, { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 } };
+		case REF_NAVE:
+		case REF_SUPERFICIE:
+			return new double[][] { origem, cima, norte, leste };
+		case REF_VELOCIDADE_SUPERFICIE:
+			// y no sentido da velocidade, x perpendicular a ela no plano da órbita,
+			// com os eixos na mesma orientação dos outros referenciais:
+			double velocidade = Math.hypot(estado[2], estado[3]);
+			double[] frente = velocidade > 0 ? new double[] { estado[2] / velocidade, 0, estado[3] / velocidade }
+					: leste;
+			return new double[][] { origem, { -frente[2], 0, frente[0] }, frente, norte };
+		default:
+			throw new IllegalArgumentException("Referencial desconhecido: " + id);
+		}
+	}
+
+	/**
+	 * Converte uma posição ou direção de um referencial para outro.
+	 *
+	 * @param vetor   - Vetor no referencial de origem
+	 * @param de      - Id do referencial de origem
+	 * @param para    - Id do referencial de destino
+	 * @param posicao - true para posições, false para direções
+	 * @return Vetor no referencial de destino
+	 */
+	private double[] transformar(double[] vetor, long de, long para, boolean posicao) {
+		double[][] origem = referencial(de), destino = referencial(para);
+		double[] noCorpo = new double[3];
+		for (int i = 0; i < 3; i++) {
+			noCorpo[i] = vetor[0] * origem[1][i] + vetor[1] * origem[2][i] + vetor[2] * origem[3][i];
+			if (posicao) {
+				noCorpo[i] += origem[0][i] - destino[0][i];
+			}
+		}
+		double[] resultado = new double[3];
+		for (int eixo = 0; eixo < 3; eixo++) {
+			for (int i = 0; i < 3; i++) {
+				resultado[eixo] += noCorpo[i] * destino[eixo + 1][i];
+			}
+		}
+		return resultado;
+	}
+
+	/**
+	 * Converte uma rotação de um referencial para outro, compondo a rotação
+	 * entre os dois referenciais com a rotação informada.
+	 *
+	 * @param rotacao - Quaternio x, y, z, w no referencial de origem
+	 * @param de      - Id do referencial de origem
+	 * @param para    - Id do referencial de destino
+	 * @return Quaternio no referencial de destino
+	 */
+	private double[] rotacionar(double[] rotacao, long de, long para) {
+		double[][] origem = referencial(de), destino = referencial(para);
+		// Matriz que leva os eixos de origem para os eixos de destino:
+		double[][] m = new double[3][3];
+		for (int linha = 0; linha < 3; linha++) {
+			for (int coluna = 0; coluna < 3; coluna++) {
+				for (int i = 0; i < 3; i++) {
+					m[linha][coluna] += destino[linha + 1][i] * origem[coluna + 1][i];
+				}
+			}
+		}
+		double[] q;
+		double traco = m[0][0] + m[1][1] + m[2][2];
+		if (traco > 0) {
+			double s = 2 * Math.sqrt(traco + 1);
+			q = new double[] { (m[2][1] - m[1][2]) / s, (m[0][2] - m[2][0]) / s, (m[1][0] - m[0][1]) / s, s / 4 };
+		} else if (m[0][0] > m[1][1] && m[0][0] > m[2][2]) {
+			double s = 2 * Math.sqrt(1 + m[0][0] - m[1][1] - m[2][2]);
+			q = new double[] { s / 4, (m[0][1] + m[1][0]) / s, (m[0][2] + m[2][0]) / s, (m[2][1] - m[1][2]) / s };
+		} else if (m[1][1] > m[2][2]) {
+			double s = 2 * Math.sqrt(1 + m[1][1] - m[0][0] - m[2][2]);
+			q = new double[] { (m[0][1] + m[1][0]) / s, s / 4, (m[1][2] + m[2][1]) / s, (m[0][2] - m[2][0]) / s };
+		} else {
+			double s = 2 * Math.sqrt(1 + m[2][2] - m[0][0] - m[1][1]);
+			q = new double[] { (m[0][2] + m[2][0]) / s, (m[1][2] + m[2][1]) / s, s / 4, (m[1][0] - m[0][1]) / s };
+		}
+		// Produto q * rotacao:
+		double x = rotacao[0], y = rotacao[1], z = rotacao[2], w = rotacao[3];
+		return new double[] { q[3] * x + q[0] * w + q[1] * z - q[2] * y, q[3] * y - q[0] * z + q[1] * w + q[2] * x,
+				q[3] * z + q[0] * y - q[1] * x + q[2] * w, q[3] * w - q[0] * x - q[1] * y - q[2] * z };
+	}
+
+	private static ByteString valor(ProcedureCall chamada, int posicao) {
+		for (KRPC.Argument argumento : chamada.getArgumentsList()) {
+			if (argumento.getPosition() == posicao) {
+				return argumento.getValue();
+			}
+		}
+		throw new IllegalArgumentException("Argumento " + posicao + " ausente em " + chamada.getProcedure());
+	}
+
+	private static long lerObjeto(ProcedureCall chamada, int posicao) throws IOException {
+		return valor(chamada, posicao).newCodedInput().readUInt64();
+	}
+
+	private static boolean lerBooleano(ProcedureCall chamada, int posicao) throws IOException {
+		return valor(chamada, posicao).newCodedInput().readBool();
+	}
+
+	private static float lerFloat(ProcedureCall chamada, int posicao) throws IOException {
+		return valor(chamada, posicao).newCodedInput().readFloat();
+	}
+
+	private static double lerDouble(ProcedureCall chamada, int posicao) throws IOException {
+		return valor(chamada, posicao).newCodedInput().readDouble();
+	}
+
+	private static double[] lerVetor(ProcedureCall chamada, int posicao) throws IOException {
+		KRPC.Tuple tupla = KRPC.Tuple.parseFrom(valor(chamada, posicao));
+		double[] vetor = new double[tupla.getItemsCount()];
+		for (int i = 0; i < vetor.length; i++) {
+			vetor[i] = tupla.getItems(i).newCodedInput().readDouble();
+		}
+		return vetor;
+	}
+
+	private static ByteString codificar(Escrita escrita) throws IOException {
+		ByteString.Output bytes = ByteString.newOutput();
+		CodedOutputStream saida = CodedOutputStream.newInstance(bytes);
+		escrita.escrever(saida);
+		saida.flush();
+		return bytes.toByteString();
+	}
+
+	private static ByteString objeto(long id) throws IOException {
+		return codificar(s -> s.writeUInt64NoTag(id));
+	}
+
+	private static ByteString codificarDouble(double valor) throws IOException {
+		return codificar(s -> s.writeDoubleNoTag(valor));
+	}
+
+	private static ByteString codificarFloat(double valor) throws IOException {
+		return codificar(s -> s.writeFloatNoTag((float) valor));
+	}
+
+	private static ByteString codificarVetor(double[] vetor) throws IOException {
+		KRPC.Tuple.Builder tupla = KRPC.Tuple.newBuilder();
+		for (double componente : vetor) {
+			tupla.addItems(codificarDouble(componente));
+		}
+		return tupla.build().toByteString();
+	}
+
+	/**
+	 * Fecha as portas e para a simulação. A conexão do cliente cai como se o
+	 * jogo tivesse sido fechado.
+	 */
+	@Override
+	public void close() throws IOException {
+		fisica.shutdownNow();
+		envioStreams.shutdownNow();
+		atendimento.interrupt();
+		servidorRPC.close();
+		servidorStreams.close();
+		if (socketRPC != null) {
+			socketRPC.close();
+		}
+		if (socketStreams != null) {
+			socketStreams.close();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.pesterenan.simulacao;
+
+import com.pesterenan.funcoes.ControladorDecolagem;
+
+/**
+ * Executa a subida da Decolagem Orbital no SimuladorDeVoo, com o mesmo
+ * controlador e o mesmo período de ciclo do módulo, até o motor ser desligado
+ * no apoastro desejado, ou na órbita circular com a guiagem ativada.
+ */
+public class SimulacaoDecolagem {
+
+	private static final double CICLO = 0.05, GRAVIDADE_PADRAO = 9.80665;
+
+	/**
+	 * Resultado de uma subida simulada.
+	 */
+	public static class Resultado {
+		boolean apoastroAlcancado;
+		double apoastro, periastro, combustivelGasto, combustivelCircularizacao, tempoDeVoo, pressaoDinamicaMaxima;
+		long ciclos;
+
+		public boolean isApoastroAlcancado() {
+			return apoastroAlcancado;
+		}
+
+		public double getApoastro() {
+			return apoastro;
+		}
+
+		public double getCombustivelGasto() {
+			return combustivelGasto;
+		}
+
+		/**
+		 * @return Combustível que a queima de circularização no apoastro ainda
+		 *         gastaria, pela equação do foguete, ou 0 caso a guiagem tenha
+		 *         levado a nave direto à órbita.
+		 */
+		public double getCombustivelCircularizacao() {
+			return combustivelCircularizacao;
+		}
+
+		public double getTempoDeVoo() {
+			return tempoDeVoo;
+		}
+
+		public double getPressaoDinamicaMaxima() {
+			return pressaoDinamicaMaxima;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Apoastro alcançado: %s, apoastro: %.0fm, periastro: %.0fm, "
+					+ "combustível gasto: %.1fkg (+%.1fkg na circularização), tempo de voo: %.1fs, "
+					+ "pressão dinâmica máxima: %.1fkPa, ciclos: %d", apoastroAlcancado ? "sim" : "não", apoastro,
+					periastro, combustivelGasto, combustivelCircularizacao, tempoDeVoo, pressaoDinamicaMaxima / 1000,
+					ciclos);
+		}
+	}
+
+	/**
+	 * Simula a subida até o apoastro ou até o tempo acabar.
+	 *
+	 * @param simulador        - Simulador com a nave na plataforma de lançamento
+	 * @param altApoastroFinal - Altitude do apoastro desejado
+	 * @param tempoMaximo      - Tempo máximo de voo simulado, em segundos
+	 * @return Resultado da subida
+	 */
+	public static Resultado simular(SimuladorDeVoo simulador, double altApoastroFinal, double tempoMaximo) {
+		return simular(simulador, altApoastroFinal, ControladorDecolagem.GANHOS_PADRAO, tempoMaximo);
+	}
+
+	/**
+	 * Simula a subida até o apoastro ou até o tempo acabar.
+	 *
+	 * @param simulador        - Simulador com a nave na plataforma de lançamento
+	 * @param altApoastroFinal - Altitude do apoastro desejado
+	 * @param ganhos           - Ganhos do PID de aceleração: P, I, D
+	 * @param tempoMaximo      - Tempo máximo de voo simulado, em segundos
+	 * @return Resultado da subida
+	 */
+	public static Resultado simular(SimuladorDeVoo simulador, double altApoastroFinal, double[] ganhos,
+			double tempoMaximo) {
+		return simular(simulador, altApoastroFinal, ganhos, false, tempoMaximo);
+	}
+
+	/**
+	 * Simula a subida até o apoastro, ou até a órbita com a guiagem, ou até o
+	 * tempo acabar.
+	 *
+	 * @param simulador        - Simulador com a nave na plataforma de lançamento
+	 * @param altApoastroFinal - Altitude do apoastro desejado
+	 * @param ganhos           - Ganhos do PID de aceleração: P, I, D
+	 * @param guiagem          - true para guiar a nave até a órbita circular
+	 * @param tempoMaximo      - Tempo máximo de voo simulado, em segundos
+	 * @return Resultado da subida
+	 */
+	public static Resultado simular(SimuladorDeVoo simulador, double altApoastroFinal, double[] ganhos,
+			boolean guiagem, double tempoMaximo) {
+		ControladorDecolagem controlador = new ControladorDecolagem(altApoastroFinal, 90, ganhos, status -> {
+		});
+		CorpoCeleste corpo = simulador.getCorpo();
+		if (guiagem) {
+			controlador.ativarGuiagem(corpo.getGravidadeSuperficie(), corpo.getRaio(),
+					simulador.getImpulsoEspecifico());
+		}
+		Resultado resultado = new Resultado();
+		double combustivelInicial = simulador.getCombustivel();
+		double inicio = simulador.getTempoUniversal();
+
+		while (controlador.getEtapaAtual() != ControladorDecolagem.PLANEJAR_ORBITA
+				&& controlador.getEtapaAtual() != ControladorDecolagem.ORBITA_ALCANCADA
+				&& simulador.getTempoUniversal() - inicio < tempoMaximo) {
+			resultado.ciclos++;
+			controlador.controlar(simulador, simulador);
+			simulador.avancar(CICLO);
+			resultado.pressaoDinamicaMaxima = Math.max(resultado.pressaoDinamicaMaxima,
+					simulador.getPressaoDinamica());
+		}
+		resultado.apoastroAlcancado = controlador.getEtapaAtual() != ControladorDecolagem.GIRO_GRAVITACIONAL;
+		resultado.apoastro = simulador.getApoastro();
+		resultado.periastro = simulador.getPeriastro();
+		resultado.combustivelGasto = combustivelInicial - simulador.getCombustivel();
+		if (controlador.getEtapaAtual() == ControladorDecolagem.PLANEJAR_ORBITA) {
+			resultado.combustivelCircularizacao = combustivelCircularizacao(simulador);
+		}
+		resultado.tempoDeVoo = simulador.getTempoUniversal() - inicio;
+		return resultado;
+	}
+
+	/**
+	 * @return Combustível da queima que circulariza a órbita no apoastro, pela
+	 *         equação do foguete, sem contar o arrasto até lá.
+	 */
+	private static double combustivelCircularizacao(SimuladorDeVoo simulador) {
+		CorpoCeleste corpo = simulador.getCorpo();
+		double mu = corpo.getParametroGravitacional();
+		double raioApoastro = corpo.getRaio() + simulador.getApoastro();
+		double raioPeriastro = Math.max(0, corpo.getRaio() + simulador.getPeriastro());
+		double velApoastro = Math.sqrt(2 * mu * raioPeriastro / (raioApoastro * (raioApoastro + raioPeriastro)));
+		double deltaV = Math.sqrt(mu / raioApoastro) - velApoastro;
+		double velocidadeDeExaustao = simulador.getImpulsoEspecifico() * GRAVIDADE_PADRAO;
+		return simulador.getMassa() * (1 - Math.exp(-deltaV / velocidadeDeExaustao));
+	}
+}
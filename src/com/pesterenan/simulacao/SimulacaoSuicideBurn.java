@@ -0,0 +1,165 @@
+package com.pesterenan.simulacao;
+
+import com.pesterenan.funcoes.ControladorPousoGuiado;
+import com.pesterenan.funcoes.ControladorSuicideBurn;
+import com.pesterenan.utils.Vetor;
+
+/**
+ * Executa o Suicide Burn no SimuladorDeVoo, com o mesmo controlador e os
+ * mesmos períodos de ciclo do módulo, e mede o resultado do pouso.
+ */
+public class SimulacaoSuicideBurn {
+
+	private static final double CICLO_ESPERA = 0.05, CICLO_QUEIMA = 0.025;
+
+	/**
+	 * Resultado de um pouso simulado.
+	 */
+	public static class Resultado {
+		boolean pousou;
+		double velocidadeDeToque = Double.NaN, combustivelGasto, tempoDeVoo, erroDePouso = Double.NaN;
+		long ciclos;
+
+		public boolean isPousou() {
+			return pousou;
+		}
+
+		public double getVelocidadeDeToque() {
+			return velocidadeDeToque;
+		}
+
+		public double getCombustivelGasto() {
+			return combustivelGasto;
+		}
+
+		public double getTempoDeVoo() {
+			return tempoDeVoo;
+		}
+
+		/**
+		 * @return Distância entre o ponto de pouso e o alvo, no sentido do voo, ou
+		 *         NaN caso o pouso não tenha alvo.
+		 */
+		public double getErroDePouso() {
+			return erroDePouso;
+		}
+
+		@Override
+		public String toString() {
+			String texto = String.format("Pousou: %s, velocidade de toque: %.2fm/s, combustível gasto: %.1fkg, "
+					+ "tempo de voo: %.1fs, ciclos: %d", pousou ? "sim" : "não", velocidadeDeToque,
+					combustivelGasto, tempoDeVoo, ciclos);
+			return Double.isNaN(erroDePouso) ? texto : texto + String.format(", erro de pouso: %.1fm", erroDePouso);
+		}
+	}
+
+	/**
+	 * Simula um pouso até a nave tocar o chão ou o tempo acabar.
+	 *
+	 * @param simulador   - Simulador com a nave já posicionada
+	 * @param alturaNave  - Distância do centro de massa até a base da nave
+	 * @param ganhos      - Ganhos dos PIDs: altP, altI, altD, velP, velI, velD
+	 * @param tempoMaximo - Tempo máximo de voo simulado, em segundos
+	 * @return Resultado do pouso
+	 */
+	public static Resultado simular(SimuladorDeVoo simulador, double alturaNave, double[] ganhos,
+			double tempoMaximo) {
+		return simular(simulador, alturaNave, ganhos, false, tempoMaximo);
+	}
+
+	/**
+	 * Simula um pouso até a nave tocar o chão ou o tempo acabar.
+	 *
+	 * @param simulador         - Simulador com a nave já posicionada
+	 * @param alturaNave        - Distância do centro de massa até a base da nave
+	 * @param ganhos            - Ganhos dos PIDs: altP, altI, altD, velP, velI,
+	 *                          velD
+	 * @param controlePreditivo - true para controlar a queima por previsão, em
+	 *                          vez dos PIDs
+	 * @param tempoMaximo       - Tempo máximo de voo simulado, em segundos
+	 * @return Resultado do pouso
+	 */
+	public static Resultado simular(SimuladorDeVoo simulador, double alturaNave, double[] ganhos,
+			boolean controlePreditivo, double tempoMaximo) {
+		ControladorSuicideBurn controlador = new ControladorSuicideBurn(
+				simulador.getCorpo().getGravidadeSuperficie(), simulador.getCorpo().getRaio(),
+				simulador.getImpulsoEspecifico(), alturaNave, ganhos);
+		controlador.setControlePreditivo(controlePreditivo);
+		Resultado resultado = new Resultado();
+		double combustivelInicial = simulador.getCombustivel();
+		double inicio = simulador.getTempoUniversal();
+		simulador.setAceleracao(0);
+
+		while (!simulador.isPousado() && simulador.getTempoUniversal() - inicio < tempoMaximo) {
+			resultado.ciclos++;
+			controlador.atualizar(simulador);
+			if (!controlador.isExecutandoQueima()) {
+				simulador.mirarRetrogrado();
+				controlador.verificarInicioDaQueima(simulador);
+				simulador.avancar(CICLO_ESPERA);
+				continue;
+			}
+			// Aponta nave para o retrograde se a velocidade horizontal for maior que 2m/s
+			if (simulador.getVelHorizontal() > 2) {
+				simulador.mirarRetrogrado();
+			} else {
+				simulador.setInclinacaoAlvo(90);
+			}
+			controlador.controlar(simulador, simulador);
+			simulador.avancar(CICLO_QUEIMA);
+		}
+		resultado.pousou = simulador.isPousado();
+		resultado.velocidadeDeToque = simulador.getVelocidadeDeToque();
+		resultado.combustivelGasto = combustivelInicial - simulador.getCombustivel();
+		resultado.tempoDeVoo = simulador.getTempoUniversal() - inicio;
+		return resultado;
+	}
+
+	/**
+	 * Simula um pouso guiado até um alvo na superfície, à frente ou atrás da
+	 * nave no plano do voo, até a nave tocar o chão ou o tempo acabar, com o
+	 * mesmo controlador do pouso guiado do módulo.
+	 *
+	 * @param simulador   - Simulador com a nave já posicionada
+	 * @param alturaNave  - Distância do centro de massa até a base da nave
+	 * @param alvo        - Distância do alvo pela superfície, a partir do ponto
+	 *                    inicial do simulador
+	 * @param tempoMaximo - Tempo máximo de voo simulado, em segundos
+	 * @return Resultado do pouso, com o erro em relação ao alvo
+	 */
+	public static Resultado simularPousoGuiado(SimuladorDeVoo simulador, double alturaNave, double alvo,
+			double tempoMaximo) {
+		CorpoCeleste corpo = simulador.getCorpo();
+		ControladorPousoGuiado controlador = new ControladorPousoGuiado(corpo.getGravidadeSuperficie(), alturaNave);
+		double alturaAlvo = corpo.alturaTerreno(alvo / corpo.getRaio());
+		// O plano do voo segue para o leste, então z aponta no sentido da órbita e
+		// y fica sempre zerado:
+		Vetor posicao = new Vetor(0, 0, 0), velocidade = new Vetor(0, 0, 0);
+		Resultado resultado = new Resultado();
+		double combustivelInicial = simulador.getCombustivel();
+		double inicio = simulador.getTempoUniversal();
+		simulador.setAceleracao(0);
+
+		while (!simulador.isPousado() && simulador.getTempoUniversal() - inicio < tempoMaximo) {
+			resultado.ciclos++;
+			posicao.setVetor(simulador.getAltitudeNivelMar() - alturaAlvo, 0,
+					simulador.getDistanciaPercorrida() - alvo);
+			velocidade.setVetor(simulador.getVelVertical(), 0, simulador.getVelHorizontalNoSentido());
+			controlador.atualizar(posicao, velocidade, simulador);
+			if (!controlador.isExecutandoQueima()) {
+				simulador.mirarRetrogrado();
+				controlador.verificarInicioDaQueima(simulador);
+				simulador.avancar(CICLO_ESPERA);
+				continue;
+			}
+			controlador.controlar(simulador, simulador);
+			simulador.avancar(CICLO_QUEIMA);
+		}
+		resultado.pousou = simulador.isPousado();
+		resultado.velocidadeDeToque = simulador.getVelocidadeDeToque();
+		resultado.combustivelGasto = combustivelInicial - simulador.getCombustivel();
+		resultado.tempoDeVoo = simulador.getTempoUniversal() - inicio;
+		resultado.erroDePouso = simulador.getDistanciaPercorrida() - alvo;
+		return resultado;
+	}
+}
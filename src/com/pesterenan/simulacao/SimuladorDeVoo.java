@@ -0,0 +1,306 @@
+package com.pesterenan.simulacao;
+
+import com.pesterenan.utils.FonteTelemetriaOrbital;
+import com.pesterenan.utils.SaidaDeComandos;
+
+/**
+ * Simula uma nave como um ponto com massa em um plano que passa pelo centro do
+ * corpo celeste, no lugar do jogo. Considera a gravidade, o empuxo e o consumo
+ * de combustível do motor, o arrasto da atmosfera e a altura do terreno. A
+ * nave aponta instantaneamente para a inclinação pedida, e a rotação do corpo
+ * é ignorada.
+ *
+ * Como implementa FonteTelemetriaOrbital e SaidaDeComandos, os controladores
+ * dos módulos podem rodar sobre ele sem o kRPC, e a simulação avança tão rápido
+ * quanto o processador permitir.
+ */
+public class SimuladorDeVoo implements FonteTelemetriaOrbital, SaidaDeComandos {
+
+	private static final double GRAVIDADE_PADRAO = 9.80665;
+	private static final double PASSO_INTEGRACAO = 0.005;
+
+	private final CorpoCeleste corpo;
+	private final double massaSeca, empuxoMaximo, isp, coeficienteArrasto;
+
+	// Posição e velocidade em relação ao centro do corpo:
+	private double x, y, vx, vy;
+	private double massa, ut;
+	private double aceleracao, inclinacao = 90;
+	private boolean mirandoRetrogrado, tremDePouso, pousado;
+	private double velocidadeDeToque = Double.NaN;
+
+	/**
+	 * @param corpo              - Corpo celeste onde a nave voa
+	 * @param massa              - Massa inicial da nave, em kg
+	 * @param massaSeca          - Massa da nave sem combustível, em kg
+	 * @param empuxoMaximo       - Empuxo do motor com aceleração máxima, em N
+	 * @param isp                - Impulso específico do motor, em segundos
+	 * @param coeficienteArrasto - Coeficiente de arrasto vezes a área frontal, em
+	 *                           m²
+	 */
+	public SimuladorDeVoo(CorpoCeleste corpo, double massa, double massaSeca, double empuxoMaximo, double isp,
+			double coeficienteArrasto) {
+		this.corpo = corpo;
+		this.massa = massa;
+		this.massaSeca = massaSeca;
+		this.empuxoMaximo = empuxoMaximo;
+		this.isp = isp;
+		this.coeficienteArrasto = coeficienteArrasto;
+		posicionar(0, 0, 0);
+	}
+
+	/**
+	 * Coloca a nave acima do terreno no ponto inicial da simulação.
+	 *
+	 * @param altitude      - Altitude acima do terreno
+	 * @param velVertical   - Velocidade vertical, positiva para cima
+	 * @param velHorizontal - Velocidade horizontal, no sentido da órbita
+	 */
+	public void posicionar(double altitude, double velVertical, double velHorizontal) {
+		x = corpo.getRaio() + corpo.alturaTerreno(0) + altitude;
+		y = 0;
+		vx = velVertical;
+		vy = velHorizontal;
+		pousado = altitude <= 0;
+		velocidadeDeToque = Double.NaN;
+	}
+
+	/**
+	 * Avança a simulação, em passos pequenos de integração. Para antes do fim
+	 * caso a nave toque o chão, para que o toque seja visto no próximo ciclo e
+	 * não seja encoberto por um quique com o motor ainda ligado.
+	 *
+	 * @param segundos - Tempo de voo a simular
+	 */
+	public void avancar(double segundos) {
+		double fim = ut + segundos;
+		boolean estavaPousado = pousado;
+		while (ut < fim - 1e-9) {
+			passo(Math.min(PASSO_INTEGRACAO, fim - ut));
+			if (pousado && !estavaPousado) {
+				return;
+			}
+		}
+	}
+
+	private void passo(double dt) {
+		double r = Math.hypot(x, y);
+		double rx = x / r, ry = y / r;
+		double mu = corpo.getParametroGravitacional();
+		// Gravidade:
+		double ax = -mu * rx / (r * r);
+		double ay = -mu * ry / (r * r);
+		// Empuxo:
+		double empuxo = getEmpuxoDisponivel() * aceleracao;
+		if (empuxo > 0) {
+			double dx, dy;
+			double velocidade = Math.hypot(vx, vy);
+			if (mirandoRetrogrado && velocidade > 0.1) {
+				dx = -vx / velocidade;
+				dy = -vy / velocidade;
+			} else {
+				// Inclinação em relação ao horizonte, no sentido da órbita:
+				double angulo = Math.toRadians(inclinacao);
+				dx = Math.sin(angulo) * rx - Math.cos(angulo) * ry;
+				dy = Math.sin(angulo) * ry + Math.cos(angulo) * rx;
+			}
+			ax += empuxo / massa * dx;
+			ay += empuxo / massa * dy;
+			massa = Math.max(massaSeca, massa - empuxo / (isp * GRAVIDADE_PADRAO) * dt);
+		}
+		// Arrasto:
+		double densidade = corpo.densidadeDoAr(r - corpo.getRaio());
+		if (densidade > 0) {
+			double velocidade = Math.hypot(vx, vy);
+			double arrasto = 0.5 * densidade * velocidade * coeficienteArrasto / massa;
+			ax -= arrasto * vx;
+			ay -= arrasto * vy;
+		}
+
+		if (pousado) {
+			// Parado no chão até que o empuxo vença a gravidade:
+			if (ax * rx + ay * ry <= 0) {
+				vx = 0;
+				vy = 0;
+				ut += dt;
+				return;
+			}
+			pousado = false;
+		}
+		vx += ax * dt;
+		vy += ay * dt;
+		x += vx * dt;
+		y += vy * dt;
+		ut += dt;
+
+		if (getAltitude() <= 0) {
+			// Toque no chão, volta para a superfície:
+			velocidadeDeToque = Math.hypot(vx, vy);
+			double rSolo = corpo.getRaio() + corpo.alturaTerreno(Math.atan2(y, x));
+			double rAtual = Math.hypot(x, y);
+			x *= rSolo / rAtual;
+			y *= rSolo / rAtual;
+			vx = 0;
+			vy = 0;
+			pousado = true;
+		}
+	}
+
+	/**
+	 * Aponta o motor contra a velocidade da nave, como o SAS em retrógrado.
+	 */
+	public void mirarRetrogrado() {
+		mirandoRetrogrado = true;
+	}
+
+	public void setInclinacaoAlvo(double inclinacao) {
+		mirandoRetrogrado = false;
+		this.inclinacao = inclinacao;
+	}
+
+	@Override
+	public void setAceleracao(double acel) {
+		aceleracao = Math.max(0, Math.min(1, acel));
+	}
+
+	@Override
+	public void setTremDePouso(boolean ativo) {
+		tremDePouso = ativo;
+	}
+
+	/**
+	 * O plano do voo segue para o leste, então apenas a componente da direção no
+	 * sentido leste e oeste é considerada: uma direção para o oeste aponta o
+	 * motor contra o sentido da órbita.
+	 */
+	@Override
+	public void setInclinacaoEDirecaoAlvo(double inclinacao, double direcao) {
+		double angulo = Math.toRadians(inclinacao);
+		setInclinacaoAlvo(
+				Math.toDegrees(Math.atan2(Math.sin(angulo), Math.cos(angulo) * Math.sin(Math.toRadians(direcao)))));
+	}
+
+	@Override
+	public double getTempoUniversal() {
+		return ut;
+	}
+
+	@Override
+	public double getAltitude() {
+		return getAltitudeNivelMar() - corpo.alturaTerreno(Math.atan2(y, x));
+	}
+
+	@Override
+	public double getAltitudeNivelMar() {
+		return Math.hypot(x, y) - corpo.getRaio();
+	}
+
+	@Override
+	public double getVelVertical() {
+		double r = Math.hypot(x, y);
+		return (vx * x + vy * y) / r;
+	}
+
+	@Override
+	public double getVelHorizontal() {
+		double r = Math.hypot(x, y);
+		return Math.abs(vy * x - vx * y) / r;
+	}
+
+	/**
+	 * @return Velocidade horizontal no sentido da órbita, negativa no sentido
+	 *         contrário.
+	 */
+	public double getVelHorizontalNoSentido() {
+		double r = Math.hypot(x, y);
+		return (vy * x - vx * y) / r;
+	}
+
+	/**
+	 * @return Distância pela superfície, no nível do mar, desde o ponto inicial.
+	 */
+	public double getDistanciaPercorrida() {
+		return corpo.getRaio() * Math.atan2(y, x);
+	}
+
+	@Override
+	public double getMassa() {
+		return massa;
+	}
+
+	@Override
+	public double getEmpuxoDisponivel() {
+		return massa > massaSeca ? empuxoMaximo : 0;
+	}
+
+	@Override
+	public double getApoastro() {
+		double a = semiEixoMaior();
+		if (a <= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return a * (1 + excentricidade(a)) - corpo.getRaio();
+	}
+
+	@Override
+	public double getPeriastro() {
+		double a = semiEixoMaior();
+		if (a <= 0) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return a * (1 - excentricidade(a)) - corpo.getRaio();
+	}
+
+	@Override
+	public double getPressaoDinamica() {
+		double velocidade = Math.hypot(vx, vy);
+		return 0.5 * corpo.densidadeDoAr(getAltitudeNivelMar()) * velocidade * velocidade;
+	}
+
+	private double semiEixoMaior() {
+		double mu = corpo.getParametroGravitacional();
+		double energia = (vx * vx + vy * vy) / 2 - mu / Math.hypot(x, y);
+		return -mu / (2 * energia);
+	}
+
+	private double excentricidade(double semiEixoMaior) {
+		double mu = corpo.getParametroGravitacional();
+		double momentoAngular = x * vy - y * vx;
+		return Math.sqrt(Math.max(0, 1 - momentoAngular * momentoAngular / (mu * semiEixoMaior)));
+	}
+
+	/**
+	 * @return Posição e velocidade em relação ao centro do corpo: x, y, vx e vy
+	 */
+	double[] getEstado() {
+		return new double[] { x, y, vx, vy };
+	}
+
+	public double getImpulsoEspecifico() {
+		return isp;
+	}
+
+	public CorpoCeleste getCorpo() {
+		return corpo;
+	}
+
+	public boolean isPousado() {
+		return pousado;
+	}
+
+	public boolean isTremDePouso() {
+		return tremDePouso;
+	}
+
+	/**
+	 * @return Velocidade no último toque com o chão, ou NaN caso a nave não
+	 *         tenha tocado o chão.
+	 */
+	public double getVelocidadeDeToque() {
+		return velocidadeDeToque;
+	}
+
+	public double getCombustivel() {
+		return massa - massaSeca;
+	}
+}
@@ -0,0 +1,56 @@
+package com.pesterenan.utils;
+
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.services.SpaceCenter.CelestialBody;
+import krpc.client.services.SpaceCenter.Vessel;
+
+/**
+ * Altura do terreno do corpo em que a nave está, por CelestialBody.surfaceHeight.
+ * O corpo é buscado uma única vez, e novamente depois de uma reconexão, já que
+ * o objeto remoto da conexão anterior deixa de responder.
+ */
+public class AlturaDoCorpo implements FonteDeAltura, GerenciadorDeConexao.AoReconectar {
+
+	private Vessel nave;
+	private volatile CelestialBody corpo;
+
+	/**
+	 * @param nave - Nave cujo corpo celeste fornece as alturas
+	 */
+	public AlturaDoCorpo(Vessel nave) throws RPCException {
+		this.nave = nave;
+		corpo = nave.getOrbit().getBody();
+		GerenciadorDeConexao.getInstancia().adicionarOuvinte(this);
+	}
+
+	@Override
+	public double alturaDoTerreno(double latitude, double longitude) throws RPCException {
+		return corpo.surfaceHeight(latitude, longitude);
+	}
+
+	/**
+	 * @return Corpo celeste em que a nave está, da conexão atual.
+	 */
+	public CelestialBody getCorpo() {
+		return corpo;
+	}
+
+	/**
+	 * Busca o corpo novamente pela nova conexão.
+	 *
+	 * @param novaConexao - Conexão aberta pelo GerenciadorDeConexao
+	 */
+	@Override
+	public void reconectar(Connection novaConexao) throws RPCException {
+		nave = GerenciadorDeConexao.localizarNave(novaConexao, nave);
+		corpo = nave.getOrbit().getBody();
+	}
+
+	/**
+	 * Deixa de acompanhar as reconexões.
+	 */
+	public void remover() {
+		GerenciadorDeConexao.getInstancia().removerOuvinte(this);
+	}
+}
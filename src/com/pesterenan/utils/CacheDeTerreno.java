@@ -0,0 +1,251 @@
+package com.pesterenan.utils;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import krpc.client.RPCException;
+
+/**
+ * Guarda a altura do terreno em blocos de latitude e longitude, carregados com
+ * antecedência em uma thread separada. Os módulos pedem os blocos ao longo do
+ * caminho que a nave vai percorrer, e depois consultam a altura de qualquer
+ * ponto já carregado sem nenhuma chamada RPC, interpolando entre as amostras
+ * do bloco. Os blocos menos usados são descartados quando o limite é atingido.
+ *
+ * No jogo, as leituras usam a mesma conexão do loop de controle, que responde
+ * uma chamada por vez. Por isso a thread de carregamento lê no máximo um
+ * número fixo de amostras por segundo, e só alguns blocos ficam na fila: os
+ * pedidos além dela são descartados e feitos de novo na próxima consulta,
+ * quando a nave já estiver mais perto deles.
+ */
+public class CacheDeTerreno {
+
+	private static final int PENDENTES_MAXIMOS = 2;
+
+	private final FonteDeAltura fonte;
+	private final double raioCorpo, tamanhoBloco;
+	// Intervalo mínimo entre duas leituras da fonte, em nanossegundos:
+	private final long intervaloLeitura;
+	private long proximaLeitura;
+	private final int amostrasPorLado;
+	private final ExecutorService carregamento;
+	private final Map<Long, float[]> blocos;
+	private final Set<Long> carregando = new HashSet<>();
+	// Último bloco consultado, para que consultas seguidas no mesmo bloco não
+	// passem pelo mapa:
+	private long ultimaChave = Long.MIN_VALUE;
+	private float[] ultimoBloco;
+	private long amostrasLidas;
+
+	/**
+	 * @param fonte         - De onde as alturas são lidas
+	 * @param raioCorpo     - Raio do corpo celeste, em metros
+	 * @param espacamento   - Distância entre as amostras de um bloco, em metros
+	 *                      no equador
+	 * @param amostras      - Intervalos entre amostras em cada lado do bloco
+	 * @param blocosMaximos - Quantidade de blocos mantidos na memória
+	 * @param leituras      - Leituras da fonte por segundo, no máximo, ou 0 sem
+	 *                      limite
+	 */
+	public CacheDeTerreno(FonteDeAltura fonte, double raioCorpo, double espacamento, int amostras,
+			int blocosMaximos, double leituras) {
+		this.fonte = fonte;
+		this.raioCorpo = raioCorpo;
+		this.amostrasPorLado = amostras;
+		intervaloLeitura = leituras > 0 ? (long) (1e9 / leituras) : 0;
+		tamanhoBloco = Math.toDegrees(espacamento * amostras / raioCorpo);
+		blocos = new LinkedHashMap<Long, float[]>(blocosMaximos * 2, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, float[]> maisAntigo) {
+				return size() > blocosMaximos;
+			}
+		};
+		carregamento = Executors.newSingleThreadExecutor(tarefa -> {
+			Thread thread = new Thread(tarefa, "MechPeste-Terreno");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Consulta a altura do terreno com as amostras já carregadas. Caso o bloco
+	 * do ponto ainda não esteja na memória, pede o seu carregamento.
+	 *
+	 * @param latitude  - Latitude em graus
+	 * @param longitude - Longitude em graus
+	 * @return Altura do terreno acima do nível do mar, ou NaN caso o bloco ainda
+	 *         não tenha sido carregado.
+	 */
+	public synchronized double getAltura(double latitude, double longitude) {
+		longitude = normalizarLongitude(longitude);
+		long linha = (long) Math.floor(latitude / tamanhoBloco);
+		long coluna = (long) Math.floor(longitude / tamanhoBloco);
+		long chave = chave(linha, coluna);
+		float[] bloco = chave == ultimaChave ? ultimoBloco : blocos.get(chave);
+		if (bloco == null) {
+			carregar(linha, coluna, chave);
+			return Double.NaN;
+		}
+		ultimaChave = chave;
+		ultimoBloco = bloco;
+		// Interpolação bilinear entre as quatro amostras em volta do ponto:
+		double passo = tamanhoBloco / amostrasPorLado;
+		double y = (latitude - linha * tamanhoBloco) / passo, x = (longitude - coluna * tamanhoBloco) / passo;
+		int i = Math.min((int) y, amostrasPorLado - 1), j = Math.min((int) x, amostrasPorLado - 1);
+		double fy = y - i, fx = x - j;
+		int lado = amostrasPorLado + 1;
+		double abaixo = bloco[i * lado + j] * (1 - fx) + bloco[i * lado + j + 1] * fx;
+		double acima = bloco[(i + 1) * lado + j] * (1 - fx) + bloco[(i + 1) * lado + j + 1] * fx;
+		return abaixo * (1 - fy) + acima * fy;
+	}
+
+	/**
+	 * Pede o carregamento dos blocos ao longo de um trecho de círculo máximo.
+	 *
+	 * @param latitude  - Latitude do início do trecho, em graus
+	 * @param longitude - Longitude do início do trecho, em graus
+	 * @param direcao   - Direção do trecho em graus, a partir do norte
+	 * @param distancia - Comprimento do trecho, em metros
+	 */
+	public synchronized void carregarTrajeto(double latitude, double longitude, double direcao, double distancia) {
+		double passo = Math.toRadians(tamanhoBloco) * raioCorpo / 2;
+		for (double percorrido = 0; percorrido <= distancia + passo; percorrido += passo) {
+			double alcance = Math.min(percorrido, distancia);
+			double lat = latitudeAFrente(latitude, direcao, alcance);
+			double lon = normalizarLongitude(longitudeAFrente(latitude, longitude, direcao, alcance));
+			long linha = (long) Math.floor(lat / tamanhoBloco), coluna = (long) Math.floor(lon / tamanhoBloco);
+			long chave = chave(linha, coluna);
+			if (!blocos.containsKey(chave)) {
+				carregar(linha, coluna, chave);
+			}
+		}
+	}
+
+	/**
+	 * @return Latitude, em graus, do ponto a uma distância na direção informada.
+	 */
+	public double latitudeAFrente(double latitude, double direcao, double distancia) {
+		double lat = Math.toRadians(latitude), angulo = distancia / raioCorpo, rumo = Math.toRadians(direcao);
+		return Math.toDegrees(
+				Math.asin(Math.sin(lat) * Math.cos(angulo) + Math.cos(lat) * Math.sin(angulo) * Math.cos(rumo)));
+	}
+
+	/**
+	 * @return Longitude, em graus, do ponto a uma distância na direção informada.
+	 */
+	public double longitudeAFrente(double latitude, double longitude, double direcao, double distancia) {
+		double lat = Math.toRadians(latitude), angulo = distancia / raioCorpo, rumo = Math.toRadians(direcao);
+		double latFinal = Math.toRadians(latitudeAFrente(latitude, direcao, distancia));
+		return longitude + Math.toDegrees(Math.atan2(Math.sin(rumo) * Math.sin(angulo) * Math.cos(lat),
+				Math.cos(angulo) - Math.sin(lat) * Math.sin(latFinal)));
+	}
+
+	/**
+	 * @return Distância em metros entre dois pontos, pelo círculo máximo.
+	 */
+	public double distanciaAte(double latitude, double longitude, double latitudeFinal, double longitudeFinal) {
+		double lat = Math.toRadians(latitude), latFinal = Math.toRadians(latitudeFinal);
+		double meioLat = (latFinal - lat) / 2, meioLon = Math.toRadians(longitudeFinal - longitude) / 2;
+		double a = Math.sin(meioLat) * Math.sin(meioLat)
+				+ Math.cos(lat) * Math.cos(latFinal) * Math.sin(meioLon) * Math.sin(meioLon);
+		return 2 * raioCorpo * Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+
+	/**
+	 * @return Direção inicial, em graus a partir do norte, do círculo máximo
+	 *         entre dois pontos.
+	 */
+	public double direcaoAte(double latitude, double longitude, double latitudeFinal, double longitudeFinal) {
+		double lat = Math.toRadians(latitude), latFinal = Math.toRadians(latitudeFinal);
+		double deltaLon = Math.toRadians(longitudeFinal - longitude);
+		return Math.toDegrees(Math.atan2(Math.sin(deltaLon) * Math.cos(latFinal),
+				Math.cos(lat) * Math.sin(latFinal) - Math.sin(lat) * Math.cos(latFinal) * Math.cos(deltaLon)));
+	}
+
+	private void carregar(long linha, long coluna, long chave) {
+		if (carregando.size() >= PENDENTES_MAXIMOS || !carregando.add(chave)) {
+			return;
+		}
+		carregamento.execute(() -> {
+			float[] bloco = null;
+			try {
+				bloco = lerBloco(linha, coluna);
+			} catch (RPCException e) {
+				// O bloco será pedido novamente na próxima consulta.
+			} catch (InterruptedException e) {
+				// O cache foi fechado.
+			}
+			synchronized (this) {
+				carregando.remove(chave);
+				if (bloco != null) {
+					blocos.put(chave, bloco);
+				}
+			}
+		});
+	}
+
+	private float[] lerBloco(long linha, long coluna) throws RPCException, InterruptedException {
+		int lado = amostrasPorLado + 1;
+		double passo = tamanhoBloco / amostrasPorLado;
+		float[] bloco = new float[lado * lado];
+		for (int i = 0; i < lado; i++) {
+			double latitude = linha * tamanhoBloco + i * passo;
+			for (int j = 0; j < lado; j++) {
+				aguardarLeitura();
+				bloco[i * lado + j] = (float) fonte.alturaDoTerreno(latitude, coluna * tamanhoBloco + j * passo);
+			}
+		}
+		synchronized (this) {
+			amostrasLidas += bloco.length;
+		}
+		return bloco;
+	}
+
+	/**
+	 * Espera até que a próxima leitura respeite o limite de leituras por segundo.
+	 */
+	private void aguardarLeitura() throws InterruptedException {
+		long agora = System.nanoTime();
+		if (proximaLeitura > agora) {
+			TimeUnit.NANOSECONDS.sleep(proximaLeitura - agora);
+			agora = proximaLeitura;
+		}
+		proximaLeitura = agora + intervaloLeitura;
+	}
+
+	private static long chave(long linha, long coluna) {
+		return (linha << 32) | (coluna & 0xFFFFFFFFL);
+	}
+
+	private static double normalizarLongitude(double longitude) {
+		return longitude - 360 * Math.floor((longitude + 180) / 360);
+	}
+
+	/**
+	 * @return Quantidade de blocos na memória.
+	 */
+	public synchronized int getBlocos() {
+		return blocos.size();
+	}
+
+	/**
+	 * @return Quantidade de alturas lidas da fonte desde a criação do cache.
+	 */
+	public synchronized long getAmostrasLidas() {
+		return amostrasLidas;
+	}
+
+	/**
+	 * Para a thread de carregamento, descartando os blocos ainda pendentes.
+	 */
+	public void fechar() {
+		carregamento.shutdownNow();
+	}
+}
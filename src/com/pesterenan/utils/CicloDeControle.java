@@ -0,0 +1,126 @@
+package com.pesterenan.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marca o ritmo de um loop de controle com período fixo. Em vez de dormir um
+ * tempo fixo depois do trabalho, espera até o prazo do próximo ciclo, então o
+ * tempo gasto com RPCs e cálculos não atrasa o ritmo do loop.
+ *
+ * Quando um ciclo atrasa menos que um período, o próximo começa mais cedo para
+ * voltar ao ritmo. Quando atrasa um período ou mais, os ciclos perdidos são
+ * pulados e o loop continua no próximo prazo, sem rodar vários ciclos seguidos
+ * para compensar.
+ */
+public class CicloDeControle {
+
+	/**
+	 * Recebe o tempo de trabalho de cada ciclo, do fim da espera anterior até a
+	 * próxima espera. Usado para medir o desempenho dos módulos.
+	 */
+	public interface Medidor {
+		void registrar(long trabalhoNs);
+	}
+
+	private static volatile Medidor medidor;
+
+	private long periodo;
+	private long proximoCiclo, inicioTrabalho;
+	private long ciclos, ciclosAtrasados, ciclosPulados, atrasoMaximo;
+
+	/**
+	 * @param periodoMs - Período do ciclo em milissegundos
+	 */
+	public CicloDeControle(long periodoMs) {
+		setPeriodo(periodoMs);
+		reiniciar();
+	}
+
+	/**
+	 * Muda o período do ciclo, a partir do próximo prazo.
+	 *
+	 * @param periodoMs - Novo período do ciclo em milissegundos
+	 */
+	public void setPeriodo(long periodoMs) {
+		if (periodoMs > 0) {
+			long novoPeriodo = TimeUnit.MILLISECONDS.toNanos(periodoMs);
+			proximoCiclo += novoPeriodo - periodo;
+			periodo = novoPeriodo;
+		}
+	}
+
+	/**
+	 * Começa a contar os prazos a partir de agora. Deve ser usado depois de
+	 * esperas longas fora do loop, como um warp.
+	 */
+	public void reiniciar() {
+		inicioTrabalho = System.nanoTime();
+		proximoCiclo = inicioTrabalho + periodo;
+	}
+
+	/**
+	 * Espera até o prazo do próximo ciclo.
+	 *
+	 * @throws InterruptedException - Caso a thread do módulo seja interrompida
+	 */
+	public void aguardarProximoCiclo() throws InterruptedException {
+		ciclos++;
+		long agora = System.nanoTime();
+		Medidor medidorAtual = medidor;
+		if (medidorAtual != null) {
+			medidorAtual.registrar(agora - inicioTrabalho);
+		}
+		long espera = proximoCiclo - agora;
+		if (espera > 0) {
+			TimeUnit.NANOSECONDS.sleep(espera);
+			proximoCiclo += periodo;
+			inicioTrabalho = System.nanoTime();
+			return;
+		}
+		long atraso = -espera;
+		ciclosAtrasados++;
+		if (atraso > atrasoMaximo) {
+			atrasoMaximo = atraso;
+		}
+		// Pula os ciclos perdidos, mantendo os prazos no mesmo ritmo:
+		long perdidos = atraso / periodo;
+		ciclosPulados += perdidos;
+		proximoCiclo += (perdidos + 1) * periodo;
+		inicioTrabalho = agora;
+	}
+
+	/**
+	 * Passa a informar o tempo de trabalho dos ciclos de todos os loops de
+	 * controle ao medidor.
+	 *
+	 * @param novoMedidor - Medidor dos ciclos, ou null para parar de medir
+	 */
+	public static void setMedidor(Medidor novoMedidor) {
+		medidor = novoMedidor;
+	}
+
+	public long getCiclos() {
+		return ciclos;
+	}
+
+	public long getCiclosAtrasados() {
+		return ciclosAtrasados;
+	}
+
+	public long getCiclosPulados() {
+		return ciclosPulados;
+	}
+
+	/**
+	 * @return Maior atraso de um ciclo em relação ao seu prazo, em milissegundos.
+	 */
+	public double getAtrasoMaximo() {
+		return atrasoMaximo / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Ciclos: %d, atrasados: %d, pulados: %d, atraso máximo: %.1fms", ciclos,
+				ciclosAtrasados, ciclosPulados, getAtrasoMaximo());
+	}
+}
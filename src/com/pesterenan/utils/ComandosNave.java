@@ -0,0 +1,312 @@
+package com.pesterenan.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.services.SpaceCenter.AutoPilot;
+import krpc.client.services.SpaceCenter.Control;
+import krpc.client.services.SpaceCenter.SASMode;
+import krpc.client.services.SpaceCenter.Vessel;
+
+/**
+ * Guarda os comandos de controle da nave e envia ao kRPC, uma vez por ciclo,
+ * apenas os que mudaram desde o último envio. O envio é feito em uma thread
+ * separada, para que o loop de controle não espere a resposta de cada comando.
+ */
+public class ComandosNave implements SaidaDeComandos, GerenciadorDeConexao.AoReconectar {
+
+	private enum Comando {
+		ACELERACAO, ACELERACAO_RODAS, DIRECAO_RODAS, FREIOS, TREM_DE_POUSO, LUZES, SAS, MODO_SAS, RCS,
+		INCLINACAO_ALVO, DIRECAO_ALVO, ROLAGEM_ALVO
+	}
+
+	private static final Comando[] COMANDOS = Comando.values();
+	private static final SASMode[] MODOS_SAS = SASMode.values();
+
+	private Vessel naveAtual;
+	private volatile Control controle;
+	private volatile AutoPilot pilotoAutomatico;
+	private volatile boolean reenviarTudo;
+	private final ExecutorService envio;
+	private Future<?> envioAtual;
+	private volatile RPCException erroEnvio;
+
+	// Valores pedidos pelo módulo e valores já enviados ao kRPC (NaN = desconhecido):
+	private final double[] valores = new double[COMANDOS.length];
+	private final double[] enviados = new double[COMANDOS.length];
+	// Lote sendo enviado pela thread de envio:
+	private final double[] loteValores = new double[COMANDOS.length];
+	private final boolean[] lotePendentes = new boolean[COMANDOS.length];
+
+	public ComandosNave(Vessel nave) throws RPCException {
+		naveAtual = nave;
+		controle = nave.getControl();
+		pilotoAutomatico = nave.getAutoPilot();
+		Arrays.fill(valores, Double.NaN);
+		Arrays.fill(enviados, Double.NaN);
+		envio = Executors.newSingleThreadExecutor(tarefa -> {
+			Thread thread = new Thread(tarefa, "MechPeste-Comandos");
+			thread.setDaemon(true);
+			return thread;
+		});
+		GerenciadorDeConexao.getInstancia().adicionarOuvinte(this);
+	}
+
+	@Override
+	public void setAceleracao(double acel) {
+		definir(Comando.ACELERACAO, (float) acel);
+	}
+
+	/**
+	 * @return Última aceleração pedida pelo módulo, ou NaN caso nunca tenha sido
+	 *         definida.
+	 */
+	public double getAceleracao() {
+		return valores[Comando.ACELERACAO.ordinal()];
+	}
+
+	public void setAceleracaoRodas(double acel) {
+		definir(Comando.ACELERACAO_RODAS, (float) acel);
+	}
+
+	public void setDirecaoRodas(double direcao) {
+		definir(Comando.DIRECAO_RODAS, (float) direcao);
+	}
+
+	public void setFreios(boolean ativo) {
+		definir(Comando.FREIOS, ativo ? 1 : 0);
+	}
+
+	@Override
+	public void setTremDePouso(boolean ativo) {
+		definir(Comando.TREM_DE_POUSO, ativo ? 1 : 0);
+	}
+
+	public void setLuzes(boolean ativo) {
+		definir(Comando.LUZES, ativo ? 1 : 0);
+	}
+
+	public void setSAS(boolean ativo) {
+		definir(Comando.SAS, ativo ? 1 : 0);
+	}
+
+	public void setModoSAS(SASMode modo) {
+		definir(Comando.MODO_SAS, modo.ordinal());
+	}
+
+	public void setRCS(boolean ativo) {
+		definir(Comando.RCS, ativo ? 1 : 0);
+	}
+
+	public void setInclinacaoAlvo(double inclinacao) {
+		definir(Comando.INCLINACAO_ALVO, (float) inclinacao);
+	}
+
+	@Override
+	public void setInclinacaoEDirecaoAlvo(double inclinacao, double direcao) {
+		definir(Comando.INCLINACAO_ALVO, (float) inclinacao);
+		definir(Comando.DIRECAO_ALVO, (float) direcao);
+	}
+
+	public void setRolagemAlvo(double rolagem) {
+		definir(Comando.ROLAGEM_ALVO, (float) rolagem);
+	}
+
+	private void definir(Comando comando, double valor) {
+		valores[comando.ordinal()] = valor;
+	}
+
+	/**
+	 * Envia os comandos que mudaram neste ciclo sem esperar a resposta do kRPC.
+	 * Caso o envio do ciclo anterior ainda não tenha terminado, os comandos
+	 * continuam pendentes e são enviados no próximo ciclo com o valor mais
+	 * recente.
+	 *
+	 * @throws RPCException - Caso o envio anterior tenha falhado
+	 */
+	public void enviar() throws RPCException {
+		verificarErro();
+		if (envioAtual != null && !envioAtual.isDone()) {
+			return;
+		}
+		if (montarLote()) {
+			envioAtual = envio.submit(this::enviarLote);
+		}
+	}
+
+	/**
+	 * Envia os comandos pendentes e espera que todos cheguem ao kRPC. Deve ser
+	 * usado antes de ações que dependem do estado dos controles, como ativar um
+	 * estágio, ou ao finalizar o módulo.
+	 */
+	public void enviarAgora() throws RPCException, InterruptedException {
+		esperarEnvio();
+		verificarErro();
+		if (montarLote()) {
+			enviarLote();
+			verificarErro();
+		}
+	}
+
+	/**
+	 * Envia os comandos pendentes e encerra a thread de envio.
+	 */
+	public void finalizar() throws RPCException, InterruptedException {
+		try {
+			enviarAgora();
+		} finally {
+			GerenciadorDeConexao.getInstancia().removerOuvinte(this);
+			envio.shutdown();
+		}
+	}
+
+	/**
+	 * Encerra a thread de envio sem enviar os comandos pendentes, usado quando o
+	 * módulo é cancelado. Não faz nada caso o envio já tenha sido finalizado.
+	 */
+	public void cancelar() {
+		GerenciadorDeConexao.getInstancia().removerOuvinte(this);
+		envio.shutdownNow();
+	}
+
+	/**
+	 * Passa a enviar os comandos pela nova conexão, depois que a anterior caiu.
+	 * Como não se sabe quais comandos chegaram ao jogo, todos são reenviados.
+	 *
+	 * @param novaConexao - Conexão aberta pelo GerenciadorDeConexao
+	 */
+	@Override
+	public synchronized void reconectar(Connection novaConexao) throws RPCException {
+		naveAtual = GerenciadorDeConexao.localizarNave(novaConexao, naveAtual);
+		controle = naveAtual.getControl();
+		pilotoAutomatico = naveAtual.getAutoPilot();
+		reenviarTudo = true;
+	}
+
+	private void esperarEnvio() throws InterruptedException {
+		if (envioAtual != null) {
+			try {
+				envioAtual.get();
+			} catch (ExecutionException e) {
+				// Erros de envio são guardados em erroEnvio
+			}
+		}
+	}
+
+	private void verificarErro() throws RPCException {
+		RPCException erro = erroEnvio;
+		if (erro != null) {
+			erroEnvio = null;
+			throw erro;
+		}
+	}
+
+	private boolean montarLote() {
+		if (reenviarTudo) {
+			reenviarTudo = false;
+			Arrays.fill(enviados, Double.NaN);
+		}
+		boolean haPendentes = false;
+		for (int i = 0; i < COMANDOS.length; i++) {
+			double valor = valores[i];
+			lotePendentes[i] = !Double.isNaN(valor) && valor != enviados[i];
+			if (lotePendentes[i]) {
+				loteValores[i] = valor;
+				enviados[i] = valor;
+				haPendentes = true;
+			}
+		}
+		// Ao ligar o SAS o jogo volta ao modo padrão, então o modo precisa ser reenviado:
+		int sas = Comando.SAS.ordinal(), modoSAS = Comando.MODO_SAS.ordinal();
+		if (lotePendentes[sas] && !Double.isNaN(valores[modoSAS])) {
+			lotePendentes[modoSAS] = true;
+			loteValores[modoSAS] = valores[modoSAS];
+			enviados[modoSAS] = valores[modoSAS];
+		}
+		// Inclinação e direção do piloto automático são enviadas juntas:
+		int inclinacao = Comando.INCLINACAO_ALVO.ordinal(), direcao = Comando.DIRECAO_ALVO.ordinal();
+		if (lotePendentes[inclinacao] != lotePendentes[direcao] && !Double.isNaN(enviados[inclinacao])
+				&& !Double.isNaN(enviados[direcao])) {
+			lotePendentes[inclinacao] = true;
+			lotePendentes[direcao] = true;
+			loteValores[inclinacao] = enviados[inclinacao];
+			loteValores[direcao] = enviados[direcao];
+		}
+		return haPendentes;
+	}
+
+	private void enviarLote() {
+		try {
+			for (int i = 0; i < COMANDOS.length; i++) {
+				if (lotePendentes[i]) {
+					enviarComando(COMANDOS[i], loteValores[i]);
+				}
+			}
+		} catch (RPCException e) {
+			// Os valores desse lote passam a ser desconhecidos, para serem reenviados:
+			for (int i = 0; i < COMANDOS.length; i++) {
+				if (lotePendentes[i]) {
+					enviados[i] = Double.NaN;
+				}
+			}
+			erroEnvio = e;
+		}
+	}
+
+	private void enviarComando(Comando comando, double valor) throws RPCException {
+		switch (comando) {
+		case ACELERACAO:
+			controle.setThrottle((float) valor);
+			break;
+		case ACELERACAO_RODAS:
+			controle.setWheelThrottle((float) valor);
+			break;
+		case DIRECAO_RODAS:
+			controle.setWheelSteering((float) valor);
+			break;
+		case FREIOS:
+			controle.setBrakes(valor != 0);
+			break;
+		case TREM_DE_POUSO:
+			controle.setGear(valor != 0);
+			break;
+		case LUZES:
+			controle.setLights(valor != 0);
+			break;
+		case SAS:
+			controle.setSAS(valor != 0);
+			break;
+		case MODO_SAS:
+			try {
+				controle.setSASMode(MODOS_SAS[(int) valor]);
+			} catch (RPCException e) {
+				// Nem toda nave tem todos os modos de SAS disponíveis
+			}
+			break;
+		case RCS:
+			controle.setRCS(valor != 0);
+			break;
+		case INCLINACAO_ALVO:
+			if (lotePendentes[Comando.DIRECAO_ALVO.ordinal()]) {
+				pilotoAutomatico.targetPitchAndHeading((float) valor,
+						(float) loteValores[Comando.DIRECAO_ALVO.ordinal()]);
+			} else {
+				pilotoAutomatico.setTargetPitch((float) valor);
+			}
+			break;
+		case DIRECAO_ALVO:
+			if (!lotePendentes[Comando.INCLINACAO_ALVO.ordinal()]) {
+				pilotoAutomatico.setTargetHeading((float) valor);
+			}
+			break;
+		case ROLAGEM_ALVO:
+			pilotoAutomatico.setTargetRoll((float) valor);
+			break;
+		}
+	}
+}
@@ -9,46 +9,73 @@ public class ControlePID {
 	private double saidaMin = -1;
 	private double saidaMax = 1;
 	// Vari�veis padr�o de ajuste do PID:
-	private double kp = 0.025;
-	private double ki = 0.001;
-	private double kd = 0.1;
+	protected double kp = 0.025;
+	protected double ki = 0.001;
+	protected double kd = 0.1;
 	private double amostraTempo = 25; // Tempo para amostragem
 
 	private double valorEntrada, valorSaida, valorLimite; // vari�veis de valores
 	private double termoIntegral, ultimaEntrada; // vari�veis de c�lculo de erro
-	private double ultimoCalculo = 0; // tempo do �ltimo c�lculo
+	private double ultimoCalculo = Double.NaN; // tempo do �ltimo c�lculo, em segundos
 
 	public double computarPID() {
-		// M�todo que computa o incremento do PID
-		double agora = System.currentTimeMillis(); // Buscar tempo imediato
-		double mudancaTempo = agora - this.ultimoCalculo; // Comparar com o �ltimo c�lculo
-
-		if (mudancaTempo >= this.amostraTempo) {
-			// Vari�veis para o c�lculo do valor de sa�da:
-			double erro = this.valorLimite - this.valorEntrada;
-			termoIntegral += ki * erro;
-			if (termoIntegral > saidaMax) {
-				termoIntegral = saidaMax;
-			} else if (termoIntegral < saidaMin) {
-				termoIntegral = saidaMin;
-			}
-			double diferencaEntrada = (this.valorEntrada - this.ultimaEntrada);
-
-			// Computar o valor de sa�da:
-			this.valorSaida = kp * erro + ki * termoIntegral - kd * diferencaEntrada;
+		// Sem o tempo da amostra, usa o relógio do sistema e só recalcula depois
+		// de passado o tempo de amostragem:
+		double agora = System.nanoTime() / 1e9;
+		if (!Double.isNaN(this.ultimoCalculo) && (agora - this.ultimoCalculo) * 1000 < this.amostraTempo) {
+			return this.valorSaida;
+		}
+		return computarPID(agora);
+	}
 
-			// Limitar valor de sa�da:
-			if (this.valorSaida > saidaMax) {
-				this.valorSaida = saidaMax;
-			} else if (this.valorSaida < saidaMin) {
-				this.valorSaida = saidaMin;
+	/**
+	 * Computa o PID para uma amostra tirada no instante informado, como o UT do
+	 * jogo. Os termos integral e derivativo são escalados pelo tempo realmente
+	 * passado desde a última amostra, em relação ao tempo de amostragem, então os
+	 * ajustes continuam valendo com o jogo lento, em warp, ou com loops de
+	 * ritmos diferentes. Não use instantes de relógios diferentes no mesmo PID.
+	 *
+	 * @param tempoAmostra - Instante da amostra em segundos
+	 * @return Valor de saída do PID. Caso o tempo não tenha avançado desde a
+	 *         última amostra, retorna a saída anterior.
+	 */
+	public double computarPID(double tempoAmostra) {
+		double fatorTempo = 1;
+		if (!Double.isNaN(this.ultimoCalculo)) {
+			double mudancaTempo = (tempoAmostra - this.ultimoCalculo) * 1000;
+			if (mudancaTempo <= 0) {
+				// Mesma amostra, ou o tempo voltou (jogo carregado): só guarda o novo instante
+				if (mudancaTempo < 0) {
+					this.ultimoCalculo = tempoAmostra;
+				}
+				return this.valorSaida;
 			}
+			fatorTempo = mudancaTempo / this.amostraTempo;
+		}
+		// Variáveis para o cálculo do valor de saída:
+		double erro = this.valorLimite - this.valorEntrada;
+		termoIntegral += ki * erro * fatorTempo;
+		if (termoIntegral > saidaMax) {
+			termoIntegral = saidaMax;
+		} else if (termoIntegral < saidaMin) {
+			termoIntegral = saidaMin;
+		}
+		double diferencaEntrada = (this.valorEntrada - this.ultimaEntrada) / fatorTempo;
+
+		// Computar o valor de saída:
+		this.valorSaida = kp * erro + ki * termoIntegral - kd * diferencaEntrada;
 
-			// Guardando os valores atuais para o pr�ximo c�lculo:
-			this.ultimaEntrada = this.valorEntrada;
-			this.ultimoCalculo = agora;
+		// Limitar valor de saída:
+		if (this.valorSaida > saidaMax) {
+			this.valorSaida = saidaMax;
+		} else if (this.valorSaida < saidaMin) {
+			this.valorSaida = saidaMin;
 		}
-		// Retorna o valor de sa�da calculado:
+
+		// Guardando os valores atuais para o próximo cálculo:
+		this.ultimaEntrada = this.valorEntrada;
+		this.ultimoCalculo = tempoAmostra;
+		// Retorna o valor de saída calculado:
 		return this.valorSaida;
 	}
 
@@ -62,6 +89,18 @@ public class ControlePID {
 		this.valorLimite = valor;
 	}
 
+	public double getEntradaPID() {
+		return this.valorEntrada;
+	}
+
+	public double getLimitePID() {
+		return this.valorLimite;
+	}
+
+	public double getSaidaPID() {
+		return this.valorSaida;
+	}
+
 	public void limitarSaida(double Min, double Max) {
 		if (Min > Max)
 			return;
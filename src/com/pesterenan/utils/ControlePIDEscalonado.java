@@ -0,0 +1,104 @@
+package com.pesterenan.utils;
+
+/**
+ * ControlePID com os ganhos escalonados por duas variáveis de voo, como o TEP
+ * e a altitude. Os ganhos ficam em uma tabela com pontos igualmente espaçados
+ * em cada eixo, guardada em vetores de primitivos, e são interpolados
+ * bilinearmente entre os quatro pontos em volta dos valores atuais. Como os
+ * pontos são igualmente espaçados, a célula da tabela é achada com uma divisão,
+ * sem busca e sem criar objetos a cada ciclo. Fora da tabela, os ganhos seguem
+ * a inclinação das células da borda, sem ficarem negativos.
+ */
+public class ControlePIDEscalonado extends ControlePID {
+
+	private final double minimoX, passoX, minimoY, passoY;
+	private final int pontosX, pontosY;
+	private final double[] tabelaP, tabelaI, tabelaD;
+
+	/**
+	 * @param minimoX - Primeiro valor do eixo X da tabela
+	 * @param maximoX - Último valor do eixo X da tabela
+	 * @param pontosX - Quantidade de pontos no eixo X, pelo menos 2
+	 * @param minimoY - Primeiro valor do eixo Y da tabela
+	 * @param maximoY - Último valor do eixo Y da tabela
+	 * @param pontosY - Quantidade de pontos no eixo Y, pelo menos 2
+	 */
+	public ControlePIDEscalonado(double minimoX, double maximoX, int pontosX, double minimoY, double maximoY,
+			int pontosY) {
+		if (pontosX < 2 || pontosY < 2 || maximoX <= minimoX || maximoY <= minimoY) {
+			throw new IllegalArgumentException("A tabela de ganhos precisa de pelo menos 2 pontos em cada eixo");
+		}
+		this.minimoX = minimoX;
+		this.minimoY = minimoY;
+		this.pontosX = pontosX;
+		this.pontosY = pontosY;
+		passoX = (maximoX - minimoX) / (pontosX - 1);
+		passoY = (maximoY - minimoY) / (pontosY - 1);
+		tabelaP = new double[pontosX * pontosY];
+		tabelaI = new double[pontosX * pontosY];
+		tabelaD = new double[pontosX * pontosY];
+	}
+
+	/**
+	 * Define os ganhos de um ponto da tabela.
+	 *
+	 * @param i  - Índice do ponto no eixo X
+	 * @param j  - Índice do ponto no eixo Y
+	 * @param kp - Ganho proporcional
+	 * @param ki - Ganho integral
+	 * @param kd - Ganho derivativo
+	 */
+	public void setGanhos(int i, int j, double kp, double ki, double kd) {
+		int indice = j * pontosX + i;
+		tabelaP[indice] = kp;
+		tabelaI[indice] = ki;
+		tabelaD[indice] = kd;
+	}
+
+	/**
+	 * Ajusta os ganhos do PID para os valores atuais das variáveis da tabela.
+	 *
+	 * @param x - Valor atual da variável do eixo X
+	 * @param y - Valor atual da variável do eixo Y
+	 */
+	public void escalonar(double x, double y) {
+		double posicaoX = (x - minimoX) / passoX, posicaoY = (y - minimoY) / passoY;
+		// Célula da tabela, limitada às células da borda para extrapolar fora dela:
+		int i = Math.max(0, Math.min(pontosX - 2, (int) Math.floor(posicaoX)));
+		int j = Math.max(0, Math.min(pontosY - 2, (int) Math.floor(posicaoY)));
+		double fx = posicaoX - i, fy = posicaoY - j;
+		int indice = j * pontosX + i;
+		// Os ganhos são definidos direto, já que ajustarPID ignoraria um kp zerado:
+		kp = Math.max(0, interpolar(tabelaP, indice, fx, fy));
+		ki = Math.max(0, interpolar(tabelaI, indice, fx, fy));
+		kd = Math.max(0, interpolar(tabelaD, indice, fx, fy));
+	}
+
+	private double interpolar(double[] tabela, int indice, double fx, double fy) {
+		double abaixo = tabela[indice] + (tabela[indice + 1] - tabela[indice]) * fx;
+		double acima = tabela[indice + pontosX] + (tabela[indice + pontosX + 1] - tabela[indice + pontosX]) * fx;
+		return abaixo + (acima - abaixo) * fy;
+	}
+
+	/**
+	 * @return Valor da variável do eixo X no ponto i da tabela.
+	 */
+	public double getX(int i) {
+		return minimoX + i * passoX;
+	}
+
+	/**
+	 * @return Valor da variável do eixo Y no ponto j da tabela.
+	 */
+	public double getY(int j) {
+		return minimoY + j * passoY;
+	}
+
+	public int getPontosX() {
+		return pontosX;
+	}
+
+	public int getPontosY() {
+		return pontosY;
+	}
+}
@@ -0,0 +1,194 @@
+package com.pesterenan.utils;
+
+/**
+ * Controle preditivo da aceleração na descida final. A cada ciclo, prevê a
+ * altura e a velocidade vertical nos próximos segundos com um modelo vertical
+ * simples e escolhe a aceleração de cada passo do horizonte que mantém a nave
+ * na curva de frenagem: a velocidade com que, freando com uma fração do empuxo,
+ * a nave chega ao chão na velocidade de toque. Seguindo a curva a nave não
+ * flutua acima do chão, que é onde os PIDs somados gastam mais combustível.
+ *
+ * As acelerações são otimizadas por gradiente projetado nos limites de 0 a 1,
+ * com o gradiente calculado de trás para a frente pelo horizonte e o passo
+ * ajustado a cada iteração. A solução do ciclo anterior, deslocada pelo tempo
+ * passado, é o ponto de partida, então poucas iterações bastam, e o limite de
+ * iterações mantém o tempo de cada ciclo limitado.
+ */
+public class ControlePreditivo {
+
+	// Pesos do custo: erro de velocidade em relação à curva, aceleração usada e
+	// mudança da aceleração entre passos:
+	private static final double PESO_VELOCIDADE = 1, PESO_COMBUSTIVEL = 0.01, PESO_SUAVIDADE = 0.05;
+	private static final int REDUCOES_MAXIMAS = 40;
+	private static final double REDUCAO_MINIMA = 1e-9;
+
+	private final int passos, iteracoes;
+	private final double duracaoPasso, velocidadeDeToque, fracaoFrenagem;
+	private final double[] aceleracoes, tentativa, gradiente;
+	private final double[] alturas, velocidades, adjuntoAltura, adjuntoVelocidade;
+	private double ultimoCalculo = Double.NaN, passo = 1e-3;
+
+	/**
+	 * @param passos            - Passos do horizonte de previsão
+	 * @param duracaoPasso      - Duração de cada passo, em segundos
+	 * @param iteracoes         - Iterações do otimizador por ciclo
+	 * @param velocidadeDeToque - Velocidade de descida ao tocar o chão, em m/s
+	 * @param fracaoFrenagem    - Fração da aceleração máxima usada na curva de
+	 *                          frenagem
+	 */
+	public ControlePreditivo(int passos, double duracaoPasso, int iteracoes, double velocidadeDeToque,
+			double fracaoFrenagem) {
+		this.passos = passos;
+		this.duracaoPasso = duracaoPasso;
+		this.iteracoes = iteracoes;
+		this.velocidadeDeToque = velocidadeDeToque;
+		this.fracaoFrenagem = fracaoFrenagem;
+		aceleracoes = new double[passos];
+		tentativa = new double[passos];
+		gradiente = new double[passos];
+		alturas = new double[passos + 1];
+		velocidades = new double[passos + 1];
+		adjuntoAltura = new double[passos + 2];
+		adjuntoVelocidade = new double[passos + 2];
+	}
+
+	/**
+	 * Calcula a aceleração do ciclo atual.
+	 *
+	 * @param tempoAmostra     - Instante da amostra, em segundos
+	 * @param altura           - Altura da base da nave acima do chão
+	 * @param velVertical      - Velocidade vertical, negativa na descida
+	 * @param aceleracaoMaxima - Aceleração vertical do empuxo máximo, em m/s²
+	 * @param gravidade        - Aceleração da gravidade, em m/s²
+	 * @return Aceleração do motor, de 0 a 1.
+	 */
+	public double calcular(double tempoAmostra, double altura, double velVertical, double aceleracaoMaxima,
+			double gravidade) {
+		if (aceleracaoMaxima <= 0) {
+			return 0;
+		}
+		deslocarSolucao(tempoAmostra);
+		double frenagem = Math.max(0.1, fracaoFrenagem * aceleracaoMaxima - gravidade);
+		double custo = calcularGradiente(aceleracoes, altura, velVertical, aceleracaoMaxima, gravidade, frenagem);
+		for (int iteracao = 0; iteracao < iteracoes; iteracao++) {
+			// Busca do passo: a curvatura do custo cresce muito perto do chão, então o
+			// passo é reduzido até o custo cair o esperado, e aumentado a cada acerto:
+			double novoCusto = Double.POSITIVE_INFINITY, reducaoEsperada = 0;
+			for (int tentativas = 0; tentativas < REDUCOES_MAXIMAS; tentativas++) {
+				reducaoEsperada = 0;
+				for (int k = 0; k < passos; k++) {
+					tentativa[k] = Math.max(0, Math.min(1, aceleracoes[k] - passo * gradiente[k]));
+					double mudanca = tentativa[k] - aceleracoes[k];
+					reducaoEsperada += mudanca * mudanca;
+				}
+				reducaoEsperada /= 2 * passo;
+				novoCusto = custo(tentativa, altura, velVertical, aceleracaoMaxima, gravidade, frenagem);
+				if (novoCusto <= custo - reducaoEsperada) {
+					break;
+				}
+				passo /= 2;
+			}
+			if (!(novoCusto < custo)) {
+				break;
+			}
+			System.arraycopy(tentativa, 0, aceleracoes, 0, passos);
+			custo = calcularGradiente(aceleracoes, altura, velVertical, aceleracaoMaxima, gravidade, frenagem);
+			passo *= 2;
+			if (reducaoEsperada < REDUCAO_MINIMA) {
+				break;
+			}
+		}
+		return aceleracoes[0];
+	}
+
+	/**
+	 * Desloca a solução do ciclo anterior pelo tempo passado desde ele,
+	 * repetindo a última aceleração no fim do horizonte.
+	 */
+	private void deslocarSolucao(double tempoAmostra) {
+		double deslocamento = Double.isNaN(ultimoCalculo) ? 0
+				: Math.max(0, (tempoAmostra - ultimoCalculo) / duracaoPasso);
+		ultimoCalculo = tempoAmostra;
+		if (deslocamento == 0) {
+			return;
+		}
+		for (int k = 0; k < passos; k++) {
+			double posicao = Math.min(passos - 1, k + deslocamento);
+			int i = (int) posicao;
+			double fracao = posicao - i;
+			aceleracoes[k] = i + 1 < passos ? aceleracoes[i] * (1 - fracao) + aceleracoes[i + 1] * fracao
+					: aceleracoes[i];
+		}
+	}
+
+	/**
+	 * Prevê o voo com as acelerações informadas.
+	 *
+	 * @return Custo da previsão.
+	 */
+	private double custo(double[] acel, double altura, double velVertical, double aceleracaoMaxima,
+			double gravidade, double frenagem) {
+		double dt = duracaoPasso;
+		alturas[0] = altura;
+		velocidades[0] = velVertical;
+		double custo = 0;
+		for (int k = 0; k < passos; k++) {
+			velocidades[k + 1] = velocidades[k] + (aceleracaoMaxima * acel[k] - gravidade) * dt;
+			alturas[k + 1] = alturas[k] + velocidades[k + 1] * dt;
+			double erro = velocidades[k + 1] + velocidadeDaCurva(alturas[k + 1], frenagem);
+			double mudanca = k > 0 ? acel[k] - acel[k - 1] : 0;
+			custo += PESO_VELOCIDADE * erro * erro + PESO_COMBUSTIVEL * acel[k] + PESO_SUAVIDADE * mudanca * mudanca;
+		}
+		return custo;
+	}
+
+	/**
+	 * Prevê o voo com as acelerações informadas e calcula o gradiente do custo em
+	 * relação a cada uma delas, voltando pelo horizonte com os adjuntos da altura
+	 * e da velocidade.
+	 *
+	 * @return Custo da previsão.
+	 */
+	private double calcularGradiente(double[] acel, double altura, double velVertical, double aceleracaoMaxima,
+			double gravidade, double frenagem) {
+		double custo = custo(acel, altura, velVertical, aceleracaoMaxima, gravidade, frenagem);
+		double dt = duracaoPasso;
+		adjuntoAltura[passos + 1] = 0;
+		adjuntoVelocidade[passos + 1] = 0;
+		for (int k = passos; k >= 1; k--) {
+			double raiz = velocidadeDaCurva(alturas[k], frenagem);
+			double erro = velocidades[k] + raiz;
+			// Derivada da velocidade da curva, -raiz, em relação à altura:
+			double derivadaCurva = alturas[k] > 0 ? -frenagem / raiz : 0;
+			adjuntoAltura[k] = -2 * PESO_VELOCIDADE * erro * derivadaCurva + adjuntoAltura[k + 1];
+			adjuntoVelocidade[k] = 2 * PESO_VELOCIDADE * erro + adjuntoVelocidade[k + 1]
+					+ adjuntoAltura[k + 1] * dt;
+		}
+		for (int k = 0; k < passos; k++) {
+			double efeito = adjuntoVelocidade[k + 1] + adjuntoAltura[k + 1] * dt;
+			gradiente[k] = efeito * aceleracaoMaxima * dt + PESO_COMBUSTIVEL;
+			if (k > 0) {
+				gradiente[k] += 2 * PESO_SUAVIDADE * (acel[k] - acel[k - 1]);
+			}
+			if (k + 1 < passos) {
+				gradiente[k] -= 2 * PESO_SUAVIDADE * (acel[k + 1] - acel[k]);
+			}
+		}
+		return custo;
+	}
+
+	/**
+	 * @return Velocidade de descida da curva de frenagem na altura informada,
+	 *         positiva.
+	 */
+	private double velocidadeDaCurva(double altura, double frenagem) {
+		return Math.sqrt(velocidadeDeToque * velocidadeDeToque + 2 * frenagem * Math.max(0, altura));
+	}
+
+	/**
+	 * @return Aceleração prevista para cada passo do horizonte, no último ciclo.
+	 */
+	public double[] getAceleracoes() {
+		return aceleracoes.clone();
+	}
+}
@@ -0,0 +1,17 @@
+package com.pesterenan.utils;
+
+import krpc.client.RPCException;
+
+/**
+ * Altura do terreno de um corpo celeste. No jogo ela vem de
+ * CelestialBody.surfaceHeight, e fora dele do terreno da simulação.
+ */
+public interface FonteDeAltura {
+
+	/**
+	 * @param latitude  - Latitude em graus
+	 * @param longitude - Longitude em graus
+	 * @return Altura do terreno acima do nível do mar, em metros
+	 */
+	double alturaDoTerreno(double latitude, double longitude) throws RPCException;
+}
@@ -0,0 +1,20 @@
+package com.pesterenan.utils;
+
+/**
+ * Valores de voo lidos pelos controladores a cada ciclo. No jogo eles vêm da
+ * Telemetria, e fora dele de um voo gravado ou de uma simulação.
+ */
+public interface FonteTelemetria {
+
+	double getTempoUniversal();
+
+	double getAltitude();
+
+	double getVelVertical();
+
+	double getVelHorizontal();
+
+	double getMassa();
+
+	double getEmpuxoDisponivel();
+}
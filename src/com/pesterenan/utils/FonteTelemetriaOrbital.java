@@ -0,0 +1,16 @@
+package com.pesterenan.utils;
+
+/**
+ * Valores de voo usados pelos controladores de subida, além dos da
+ * FonteTelemetria.
+ */
+public interface FonteTelemetriaOrbital extends FonteTelemetria {
+
+	double getAltitudeNivelMar();
+
+	double getApoastro();
+
+	double getPeriastro();
+
+	double getPressaoDinamica();
+}
@@ -0,0 +1,163 @@
+package com.pesterenan.utils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.StreamException;
+import krpc.client.services.KRPC;
+import krpc.client.services.SpaceCenter;
+import krpc.client.services.SpaceCenter.Vessel;
+
+/**
+ * Mantém uma única conexão com o kRPC aberta entre as execuções dos módulos.
+ * Uma thread verifica periodicamente se a conexão continua ativa e, caso o
+ * socket tenha caído, reconecta esperando cada vez mais entre as tentativas.
+ * Depois de reconectar, avisa os ouvintes para que registrem novamente seus
+ * Streams na nova conexão.
+ */
+public class GerenciadorDeConexao {
+
+	/**
+	 * Recebe a nova conexão depois de uma reconexão.
+	 */
+	public interface AoReconectar {
+		void reconectar(Connection novaConexao) throws RPCException, StreamException;
+	}
+
+	private static final String NOME_CLIENTE = "MechPeste";
+	private static final long INTERVALO_VERIFICACAO = 1000;
+	private static final long ESPERA_INICIAL = 500, ESPERA_MAXIMA = 10000;
+	private static final GerenciadorDeConexao instancia = new GerenciadorDeConexao();
+
+	private final List<AoReconectar> ouvintes = new CopyOnWriteArrayList<>();
+	private final ScheduledExecutorService verificacao;
+	private volatile Connection conexao;
+	private volatile Consumer<String> informarStatus = texto -> {
+	};
+
+	private GerenciadorDeConexao() {
+		verificacao = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+			Thread thread = new Thread(tarefa, "MechPeste-Conexao");
+			thread.setDaemon(true);
+			return thread;
+		});
+		verificacao.scheduleWithFixedDelay(this::verificarConexao, INTERVALO_VERIFICACAO, INTERVALO_VERIFICACAO,
+				TimeUnit.MILLISECONDS);
+	}
+
+	public static GerenciadorDeConexao getInstancia() {
+		return instancia;
+	}
+
+	/**
+	 * Devolve a conexão aberta, ou abre uma nova caso ainda não exista.
+	 *
+	 * @return Conexão com o kRPC
+	 * @throws IOException - Caso não seja possível conectar ao jogo
+	 */
+	public synchronized Connection obterConexao() throws IOException {
+		if (conexao == null) {
+			conexao = Connection.newInstance(NOME_CLIENTE);
+		}
+		return conexao;
+	}
+
+	/**
+	 * @return Conexão aberta, ou null caso ainda não tenha conectado.
+	 */
+	public Connection getConexao() {
+		return conexao;
+	}
+
+	/**
+	 * @param informarStatus - Recebe as mensagens de reconexão
+	 */
+	public void setInformarStatus(Consumer<String> informarStatus) {
+		this.informarStatus = informarStatus;
+	}
+
+	public void adicionarOuvinte(AoReconectar ouvinte) {
+		ouvintes.add(ouvinte);
+	}
+
+	public void removerOuvinte(AoReconectar ouvinte) {
+		ouvintes.remove(ouvinte);
+	}
+
+	private void verificarConexao() {
+		Connection atual = conexao;
+		if (atual == null) {
+			return;
+		}
+		try {
+			KRPC.newInstance(atual).getClientID();
+		} catch (RPCException e) {
+			// O kRPC transforma erros de socket em RPCException com a causa original:
+			if (e.getCause() instanceof IOException) {
+				reconectar(atual);
+			}
+		}
+	}
+
+	private void reconectar(Connection conexaoPerdida) {
+		synchronized (this) {
+			if (conexao != conexaoPerdida) {
+				return;
+			}
+			conexao = null;
+		}
+		try {
+			conexaoPerdida.close();
+		} catch (IOException e) {
+		}
+		long espera = ESPERA_INICIAL;
+		Connection novaConexao = null;
+		while (novaConexao == null) {
+			informarStatus.accept("Conexão perdida, reconectando...");
+			try {
+				novaConexao = obterConexao();
+			} catch (IOException e) {
+				try {
+					Thread.sleep(espera);
+				} catch (InterruptedException e1) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				espera = Math.min(espera * 2, ESPERA_MAXIMA);
+			}
+		}
+		for (AoReconectar ouvinte : ouvintes) {
+			try {
+				ouvinte.reconectar(novaConexao);
+			} catch (RPCException | StreamException e) {
+				e.printStackTrace();
+			}
+		}
+		informarStatus.accept("Reconectado.");
+	}
+
+	/**
+	 * Busca, na nova conexão, a mesma nave de uma conexão anterior. Os objetos do
+	 * kRPC continuam com o mesmo id enquanto o jogo estiver aberto.
+	 *
+	 * @param novaConexao - Conexão onde a nave será buscada
+	 * @param nave        - Nave obtida pela conexão anterior
+	 * @return A mesma nave, ligada à nova conexão
+	 * @throws RPCException - Caso a nave não exista mais
+	 */
+	public static Vessel localizarNave(Connection novaConexao, Vessel nave) throws RPCException {
+		for (Vessel outraNave : SpaceCenter.newInstance(novaConexao).getVessels()) {
+			if (outraNave.equals(nave)) {
+				return outraNave;
+			}
+		}
+		throw new RPCException("A nave não existe mais após a reconexão.");
+	}
+}
@@ -0,0 +1,197 @@
+package com.pesterenan.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Grava a telemetria de cada ciclo de um módulo em um arquivo binário de
+ * registros com tamanho fixo, para analisar o voo depois que ele terminar.
+ *
+ * O arquivo é pré-alocado em blocos e escrito através de um MappedByteBuffer,
+ * então gravar um registro apenas copia os valores para a memória, sem
+ * chamadas ao sistema nem criação de objetos. O número de registros fica no
+ * cabeçalho e é atualizado a cada gravação, então mesmo um voo interrompido
+ * pode ser lido. Caso o arquivo não possa ser criado ou aumentado, a gravação é
+ * desligada sem interromper o módulo.
+ *
+ * Formato do arquivo (little-endian):
+ *
+ * <pre>
+ * int   MAGICO ("MPVO")
+ * int   VERSAO
+ * int   número de campos
+ * int   tamanho do cabeçalho em bytes
+ * long  número de registros gravados
+ * para cada campo: short tamanho + nome em UTF-8
+ * registros: um double por campo, na ordem do cabeçalho
+ * </pre>
+ */
+public class GravadorDeVoo {
+
+	public static final String PASTA_VOOS = "voos";
+	public static final String EXTENSAO = ".mpv";
+
+	static final int MAGICO = 0x4F56504D; // "MPVO" em little-endian
+	static final int VERSAO = 1;
+	private static final int POSICAO_REGISTROS = 16;
+	private static final int REGISTROS_POR_BLOCO = 8192;
+	// Numera os arquivos criados nesta execução, para que naves com o mesmo nome
+	// iniciadas no mesmo milissegundo, como no pouso múltiplo, não usem o mesmo
+	// arquivo:
+	private static final AtomicInteger sequencia = new AtomicInteger();
+
+	private final int numCampos, tamanhoRegistro;
+	private Path arquivo;
+	private FileChannel canal;
+	private MappedByteBuffer cabecalho, bloco;
+	private int tamanhoCabecalho;
+	private long registros;
+	private boolean ativo;
+
+	/**
+	 * Cria um novo arquivo de voo na pasta de voos.
+	 *
+	 * @param nome   - Nome do voo, usado no nome do arquivo
+	 * @param campos - Nomes dos valores de cada registro
+	 */
+	public GravadorDeVoo(String nome, String... campos) {
+		numCampos = campos.length;
+		tamanhoRegistro = numCampos * Double.BYTES;
+		try {
+			criarArquivo(nome, campos);
+			ativo = true;
+		} catch (IOException e) {
+			System.out.println("Não foi possível criar o arquivo de voo: " + e.getMessage());
+		}
+	}
+
+	private void criarArquivo(String nome, String[] campos) throws IOException {
+		Files.createDirectories(Paths.get(PASTA_VOOS));
+		String nomeArquivo = nome.replaceAll("[^\\w-]", "_") + "_" + System.currentTimeMillis() + "_"
+				+ sequencia.incrementAndGet() + EXTENSAO;
+		arquivo = Paths.get(PASTA_VOOS, nomeArquivo);
+
+		byte[][] nomesCampos = new byte[numCampos][];
+		int tamanho = POSICAO_REGISTROS + Long.BYTES;
+		for (int i = 0; i < numCampos; i++) {
+			nomesCampos[i] = campos[i].getBytes(StandardCharsets.UTF_8);
+			tamanho += Short.BYTES + nomesCampos[i].length;
+		}
+		// Alinha os registros em 8 bytes:
+		tamanhoCabecalho = (tamanho + 7) & ~7;
+
+		canal = FileChannel.open(arquivo, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		cabecalho = canal.map(MapMode.READ_WRITE, 0, tamanhoCabecalho);
+		cabecalho.order(ByteOrder.LITTLE_ENDIAN);
+		cabecalho.putInt(MAGICO).putInt(VERSAO).putInt(numCampos).putInt(tamanhoCabecalho).putLong(0);
+		for (byte[] nomeCampo : nomesCampos) {
+			cabecalho.putShort((short) nomeCampo.length).put(nomeCampo);
+		}
+		mapearBloco();
+	}
+
+	/**
+	 * Grava um registro com os valores do ciclo atual.
+	 *
+	 * @param valores - Um valor para cada campo, na ordem do construtor
+	 */
+	public void gravar(double[] valores) {
+		if (!ativo) {
+			return;
+		}
+		if (bloco.remaining() < tamanhoRegistro) {
+			try {
+				mapearBloco();
+			} catch (IOException e) {
+				System.out.println("Gravação do voo interrompida: " + e.getMessage());
+				fechar();
+				return;
+			}
+		}
+		for (int i = 0; i < numCampos; i++) {
+			bloco.putDouble(valores[i]);
+		}
+		registros++;
+		cabecalho.putLong(POSICAO_REGISTROS, registros);
+	}
+
+	/**
+	 * Salva os registros no disco e fecha o arquivo, cortando o espaço
+	 * pré-alocado que não foi usado.
+	 */
+	public void fechar() {
+		if (!ativo) {
+			return;
+		}
+		ativo = false;
+		try {
+			bloco.force();
+			cabecalho.force();
+			try {
+				canal.truncate(tamanhoCabecalho + registros * tamanhoRegistro);
+			} catch (IOException e) {
+				// Alguns sistemas não cortam arquivos ainda mapeados. O arquivo fica
+				// maior, mas continua legível pelo número de registros do cabeçalho.
+			}
+			canal.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public Path getArquivo() {
+		return arquivo;
+	}
+
+	public long getRegistros() {
+		return registros;
+	}
+
+	private void mapearBloco() throws IOException {
+		long posicao = tamanhoCabecalho + registros * tamanhoRegistro;
+		if (bloco != null) {
+			bloco.force();
+		}
+		bloco = canal.map(MapMode.READ_WRITE, posicao, (long) REGISTROS_POR_BLOCO * tamanhoRegistro);
+		bloco.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Converte um arquivo de voo em CSV, com uma linha de cabeçalho com os nomes
+	 * dos campos.
+	 *
+	 * @param voo - Arquivo de voo gravado
+	 * @param csv - Arquivo CSV a ser criado
+	 * @return Número de registros exportados
+	 * @throws IOException - Caso o arquivo de voo seja inválido
+	 */
+	public static long exportarCSV(Path voo, Path csv) throws IOException {
+		LeitorDeVoo leitor = new LeitorDeVoo(voo);
+		int campos = leitor.getCampos().length;
+		try (BufferedWriter escritor = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+			escritor.write(String.join(",", leitor.getCampos()));
+			escritor.newLine();
+			for (long r = 0; r < leitor.getRegistros(); r++) {
+				for (int i = 0; i < campos; i++) {
+					if (i > 0) {
+						escritor.write(',');
+					}
+					escritor.write(Double.toString(leitor.getValor(r, i)));
+				}
+				escritor.newLine();
+			}
+		}
+		return leitor.getRegistros();
+	}
+}
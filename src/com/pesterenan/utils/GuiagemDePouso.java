@@ -0,0 +1,170 @@
+package com.pesterenan.utils;
+
+/**
+ * Guiagem da descida motorizada até um ponto de pouso escolhido, pela lei
+ * ZEM/ZEV: a cada ciclo calcula quanto a nave erraria a posição e a velocidade
+ * finais se desligasse o motor agora (Zero Effort Miss e Zero Effort
+ * Velocity), e comanda a aceleração que anula os dois erros no tempo
+ * restante, a = 6·ZEM/t² - 2·ZEV/t, que é a de menor esforço para esse tempo.
+ * O tempo restante vem do canal vertical, como uma frenagem constante até o
+ * ponto final acima do alvo, então a trajetória acompanha a do Suicide Burn e
+ * a parte horizontal usa a folga do empuxo. Abaixo do ponto final a nave desce
+ * na vertical, na velocidade de toque, corrigindo o que sobrou do erro
+ * horizontal.
+ *
+ * A frenagem vertical tem prioridade sobre a correção horizontal, e a nave só
+ * mira até onde a folga do empuxo ainda a deixa parar, então um alvo fora de
+ * alcance termina em um pouso seguro antes ou depois dele.
+ *
+ * Os vetores estão no referencial da superfície: x para cima, y para o norte e
+ * z para o leste.
+ */
+public class GuiagemDePouso {
+
+	// Fração do empuxo que a frenagem vertical usa ao iniciar a descida. O
+	// restante fica para a correção horizontal:
+	private static final double FRACAO_INICIO = 0.8;
+	// Tempo restante abaixo do qual a guiagem termina, pois os ganhos crescem
+	// sem limite perto do fim:
+	private static final double TEMPO_MINIMO = 1;
+	// Tempo de resposta da descida vertical final:
+	private static final double TEMPO_RESPOSTA = 1;
+	// Alcance horizontal em tempo t com a aceleração a: a·t²/4 acelerando e
+	// freando no máximo, reduzido porque esta lei pede no fim mais que a média:
+	private static final double DIVISOR_ALCANCE = 4.5;
+
+	private final double alturaFinal, velocidadeFinal;
+	private final Vetor direcao = new Vetor(0, 1, 0);
+	private double tempoRestante = Double.NaN;
+
+	/**
+	 * @param alturaFinal     - Altura acima do alvo onde a descida vertical
+	 *                        começa
+	 * @param velocidadeFinal - Velocidade de descida na parte vertical e no toque
+	 */
+	public GuiagemDePouso(double alturaFinal, double velocidadeFinal) {
+		this.alturaFinal = alturaFinal;
+		this.velocidadeFinal = velocidadeFinal;
+	}
+
+	/**
+	 * @param altura           - Altura da base da nave acima do alvo
+	 * @param velVertical      - Velocidade vertical, negativa na descida
+	 * @param gravidade        - Aceleração da gravidade, em m/s²
+	 * @param aceleracaoMaxima - Aceleração do empuxo máximo, em m/s²
+	 * @return true quando a frenagem vertical até o ponto final precisa de
+	 *         FRACAO_INICIO do empuxo, e a descida motorizada deve começar.
+	 */
+	public boolean deveIniciar(double altura, double velVertical, double gravidade, double aceleracaoMaxima) {
+		double distancia = altura - alturaFinal;
+		if (distancia <= 0) {
+			return true;
+		}
+		if (velVertical >= -velocidadeFinal) {
+			return false;
+		}
+		double frenagem = (velVertical * velVertical - velocidadeFinal * velocidadeFinal) / (2 * distancia);
+		return frenagem + gravidade >= FRACAO_INICIO * aceleracaoMaxima;
+	}
+
+	/**
+	 * Calcula a direção e a aceleração do motor para este ciclo.
+	 *
+	 * @param posicao          - Posição da base da nave em relação ao alvo
+	 * @param velocidade       - Velocidade da nave em relação à superfície
+	 * @param gravidade        - Aceleração da gravidade, em m/s²
+	 * @param aceleracaoMaxima - Aceleração do empuxo máximo, em m/s²
+	 * @return Aceleração do motor, de 0 a 1. A direção fica em getDirecao().
+	 */
+	public double calcular(Vetor posicao, Vetor velocidade, double gravidade, double aceleracaoMaxima) {
+		if (aceleracaoMaxima <= 0) {
+			return 0;
+		}
+		double distancia = posicao.x - alturaFinal;
+		tempoRestante = distancia > 0 ? 2 * distancia / (Math.max(0, -velocidade.x) + velocidadeFinal) : 0;
+		double acelCima, acelNorte, acelLeste;
+		if (tempoRestante > TEMPO_MINIMO) {
+			double t = tempoRestante;
+			// Erros de posição e velocidade no fim, sem empuxo, com a gravidade -g em x:
+			double zemCima = alturaFinal - (posicao.x + velocidade.x * t - 0.5 * gravidade * t * t);
+			double zevCima = -velocidadeFinal - (velocidade.x - gravidade * t);
+			acelCima = 6 * zemCima / (t * t) - 2 * zevCima / t;
+			// Nunca menos que a frenagem constante que para a nave no ponto final,
+			// para que um alvo fora de alcance faça a nave errar o alvo, e não o
+			// chão:
+			double velDescida = Math.max(velocidadeFinal, -velocidade.x);
+			double frenagem = (velDescida * velDescida - velocidadeFinal * velocidadeFinal) / (2 * distancia);
+			acelCima = Math.min(aceleracaoMaxima, Math.max(acelCima, frenagem + gravidade));
+			// Na horizontal, a nave mira o ponto mais próximo do alvo que a sobra do
+			// empuxo alcança parando no fim, em volta de onde ela pararia freando
+			// por igual:
+			double sobra = Math.sqrt(Math.max(0, aceleracaoMaxima * aceleracaoMaxima - acelCima * acelCima));
+			double paradaNorte = posicao.y + velocidade.y * t / 2, paradaLeste = posicao.z + velocidade.z * t / 2;
+			double alcance = sobra * t * t / DIVISOR_ALCANCE, erro = Math.hypot(paradaNorte, paradaLeste);
+			double mira = erro > alcance ? 1 - alcance / erro : 0;
+			double zemNorte = mira * paradaNorte - (posicao.y + velocidade.y * t);
+			double zemLeste = mira * paradaLeste - (posicao.z + velocidade.z * t);
+			acelNorte = 6 * zemNorte / (t * t) + 2 * velocidade.y / t;
+			acelLeste = 6 * zemLeste / (t * t) + 2 * velocidade.z / t;
+		} else {
+			// Descida vertical: mantém a velocidade final e leva a velocidade
+			// horizontal ao valor que fecha o erro de posição, limitado para que a
+			// nave chegue ao chão quase parada mesmo sem alcançar o alvo:
+			double tau = TEMPO_RESPOSTA;
+			acelCima = gravidade + (-velocidadeFinal - velocidade.x) / tau;
+			double erro = Math.hypot(posicao.y, posicao.z);
+			double velocidadeMaxima = Math.max(0, posicao.x) / (2 * tau);
+			double correcao = erro / (2 * tau) > velocidadeMaxima ? velocidadeMaxima / erro : 1 / (2 * tau);
+			acelNorte = (-posicao.y * correcao - velocidade.y) / tau;
+			acelLeste = (-posicao.z * correcao - velocidade.z) / tau;
+		}
+		// Acima do empuxo máximo, a parte vertical tem prioridade:
+		double horizontal = Math.hypot(acelNorte, acelLeste);
+		if (Math.hypot(acelCima, horizontal) > aceleracaoMaxima) {
+			acelCima = Math.min(acelCima, aceleracaoMaxima);
+			double sobra = Math.sqrt(Math.max(0, aceleracaoMaxima * aceleracaoMaxima - acelCima * acelCima));
+			if (horizontal > sobra) {
+				acelNorte *= sobra / horizontal;
+				acelLeste *= sobra / horizontal;
+			}
+		}
+		// O motor não puxa para baixo: acelerações para baixo viram zero na vertical.
+		acelCima = Math.max(0, acelCima);
+		double modulo = Math.sqrt(acelCima * acelCima + acelNorte * acelNorte + acelLeste * acelLeste);
+		if (modulo < 1e-9) {
+			direcao.setVetor(1, 0, 0);
+			return 0;
+		}
+		direcao.setVetor(acelCima / modulo, acelNorte / modulo, acelLeste / modulo);
+		return Math.min(1, modulo / aceleracaoMaxima);
+	}
+
+	/**
+	 * @return Direção do motor calculada no último ciclo, unitária.
+	 */
+	public Vetor getDirecao() {
+		return direcao;
+	}
+
+	/**
+	 * @return Inclinação do motor acima do horizonte, em graus.
+	 */
+	public double getInclinacao() {
+		return Math.toDegrees(Math.asin(Math.max(-1, Math.min(1, direcao.x))));
+	}
+
+	/**
+	 * @return Direção do motor em graus a partir do norte, de 0 a 360.
+	 */
+	public double getRumo() {
+		double rumo = Math.toDegrees(Math.atan2(direcao.z, direcao.y));
+		return rumo < 0 ? rumo + 360 : rumo;
+	}
+
+	/**
+	 * @return Tempo restante até o ponto final acima do alvo, em segundos.
+	 */
+	public double getTempoRestante() {
+		return tempoRestante;
+	}
+}
@@ -0,0 +1,150 @@
+package com.pesterenan.utils;
+
+/**
+ * Guiagem da subida até uma órbita circular, no estilo da PEG (Powered
+ * Explicit Guidance), no plano da órbita. A fração radial do empuxo segue a lei
+ * linear fr = A + B·t, com A e B escolhidos para levar a velocidade vertical a
+ * zero e o raio ao raio da órbita em T segundos. A gravidade menos a aceleração
+ * centrífuga entra como uma aceleração que cai linearmente do valor atual até
+ * zero no corte, onde a órbita é circular. T, o tempo até o corte do motor, vem
+ * do momento angular que ainda falta, pela equação do foguete. A cada ciclo A,
+ * B e T são recalculados a partir do estado atual, partindo da solução
+ * anterior, então poucas iterações bastam. Nos últimos segundos a solução fica
+ * mal condicionada, e A e B ficam fixos até o corte.
+ */
+public class GuiagemDeSubida {
+
+	private static final int ITERACOES = 3;
+	// Tempo restante abaixo do qual A e B deixam de ser recalculados:
+	private static final double TEMPO_FINAL = 10;
+	// Mudança relativa de T na última iteração abaixo da qual a solução
+	// convergiu:
+	private static final double TOLERANCIA = 0.01;
+
+	private final double parametroGravitacional, raioAlvo, velocidadeAlvo, velocidadeDeExaustao;
+	private double a, b, tempoRestante, ultimoCalculo = Double.NaN;
+	private double fracaoRadial;
+	private boolean convergiu;
+
+	/**
+	 * @param parametroGravitacional - Parâmetro gravitacional do corpo, em m³/s²
+	 * @param raioAlvo               - Raio da órbita circular desejada, a partir
+	 *                               do centro do corpo
+	 * @param impulsoEspecifico      - Impulso específico do motor, em segundos
+	 */
+	public GuiagemDeSubida(double parametroGravitacional, double raioAlvo, double impulsoEspecifico) {
+		this.parametroGravitacional = parametroGravitacional;
+		this.raioAlvo = raioAlvo;
+		this.velocidadeAlvo = Math.sqrt(parametroGravitacional / raioAlvo);
+		this.velocidadeDeExaustao = impulsoEspecifico * 9.80665;
+	}
+
+	/**
+	 * Atualiza a solução com o estado do ciclo atual.
+	 *
+	 * @param tempoAmostra     - Instante da amostra, em segundos
+	 * @param raio             - Distância da nave ao centro do corpo
+	 * @param velVertical      - Velocidade vertical, positiva para cima
+	 * @param velHorizontal    - Velocidade horizontal orbital
+	 * @param aceleracaoMaxima - Aceleração do empuxo máximo, em m/s²
+	 * @return true caso a solução tenha convergido e a inclinação possa ser
+	 *         seguida.
+	 */
+	public boolean atualizar(double tempoAmostra, double raio, double velVertical, double velHorizontal,
+			double aceleracaoMaxima) {
+		if (aceleracaoMaxima <= 0) {
+			return convergiu = false;
+		}
+		double passado = Double.isNaN(ultimoCalculo) ? 0 : tempoAmostra - ultimoCalculo;
+		ultimoCalculo = tempoAmostra;
+		// A lei de guiagem é contada a partir do último cálculo:
+		a += b * passado;
+		tempoRestante -= passado;
+		if (convergiu && tempoRestante < TEMPO_FINAL) {
+			fracaoRadial = a;
+			return true;
+		}
+		// Gravidade menos a aceleração centrífuga:
+		double gravidade = parametroGravitacional / (raio * raio) - velHorizontal * velHorizontal / raio;
+		double ve = velocidadeDeExaustao, tau = ve / aceleracaoMaxima;
+		double tempo = convergiu && tempoRestante > 0 ? tempoRestante : estimarTempo(raio, velHorizontal, 0, 0, tau);
+		double novoA = 0, novoB = 0, mudanca = Double.POSITIVE_INFINITY;
+		for (int iteracao = 0; iteracao < ITERACOES; iteracao++) {
+			double t = Math.min(tempo, 0.999 * tau);
+			// Integrais do empuxo até o corte, em velocidade (b0, b1) e posição (c0, c1):
+			double b0 = -ve * Math.log(1 - t / tau);
+			double b1 = b0 * tau - ve * t;
+			double c0 = b0 * t - b1;
+			double c1 = c0 * tau - ve * t * t / 2;
+			double determinante = b0 * c1 - b1 * c0;
+			// O que o empuxo precisa mudar na velocidade vertical e no raio, com a
+			// gravidade caindo linearmente até zero no corte:
+			double erroVelocidade = -velVertical + gravidade * t / 2;
+			double erroPosicao = raioAlvo - raio - velVertical * t + gravidade * t * t / 3;
+			novoA = (erroVelocidade * c1 - b1 * erroPosicao) / determinante;
+			novoB = (b0 * erroPosicao - c0 * erroVelocidade) / determinante;
+			double novoTempo = estimarTempo(raio, velHorizontal, novoA, novoA + novoB * t, tau);
+			mudanca = Math.abs(novoTempo - tempo);
+			tempo = novoTempo;
+		}
+		// Sem solução, como quando a subida até o raio não cabe na queima, a
+		// estimativa de T oscila, e a solução anterior continua valendo:
+		convergiu = Double.isFinite(tempo) && tempo > 0 && mudanca < TOLERANCIA * tempo
+				&& Math.abs(novoA) < 1;
+		if (convergiu) {
+			a = novoA;
+			b = novoB;
+			tempoRestante = tempo;
+			fracaoRadial = a;
+		}
+		return convergiu;
+	}
+
+	/**
+	 * Tempo até o corte pelo momento angular que falta, com o empuxo horizontal
+	 * médio entre o início e o fim da queima.
+	 *
+	 * @param fracaoInicio - Fração radial do empuxo agora
+	 * @param fracaoFim    - Fração radial do empuxo no corte
+	 */
+	private double estimarTempo(double raio, double velHorizontal, double fracaoInicio, double fracaoFim,
+			double tau) {
+		double momentoQueFalta = raioAlvo * velocidadeAlvo - raio * velHorizontal;
+		double raioMedio = (raio + raioAlvo) / 2;
+		double horizontal = (cosseno(fracaoInicio) + cosseno(fracaoFim)) / 2;
+		double deltaV = momentoQueFalta / raioMedio / Math.max(0.1, horizontal);
+		return tau * (1 - Math.exp(-deltaV / velocidadeDeExaustao));
+	}
+
+	private static double cosseno(double seno) {
+		return Math.sqrt(Math.max(0, 1 - seno * seno));
+	}
+
+	/**
+	 * @param raio          - Distância da nave ao centro do corpo
+	 * @param velHorizontal - Velocidade horizontal orbital
+	 * @return true quando o momento angular da órbita desejada foi alcançado e o
+	 *         motor deve ser desligado.
+	 */
+	public boolean deveCortar(double raio, double velHorizontal) {
+		return raio * velHorizontal >= raioAlvo * velocidadeAlvo;
+	}
+
+	/**
+	 * @return Inclinação do motor acima do horizonte, em graus.
+	 */
+	public double getInclinacao() {
+		return Math.toDegrees(Math.asin(Math.max(-1, Math.min(1, fracaoRadial))));
+	}
+
+	/**
+	 * @return Tempo restante até o corte do motor, em segundos.
+	 */
+	public double getTempoRestante() {
+		return tempoRestante;
+	}
+
+	public boolean isConvergiu() {
+		return convergiu;
+	}
+}
@@ -0,0 +1,86 @@
+package com.pesterenan.utils;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lê um arquivo de voo gravado pelo GravadorDeVoo. O arquivo inteiro é mapeado
+ * na memória e os valores são lidos diretamente dele, então o mesmo voo pode
+ * ser percorrido várias vezes sem custo de leitura.
+ */
+public class LeitorDeVoo {
+
+	private final Path arquivo;
+	private final MappedByteBuffer dados;
+	private final String[] campos;
+	private final int inicioRegistros, tamanhoRegistro;
+	private final long registros;
+
+	/**
+	 * @param arquivo - Arquivo de voo (.mpv)
+	 * @throws IOException - Caso o arquivo não exista ou não seja um arquivo de
+	 *                     voo
+	 */
+	public LeitorDeVoo(Path arquivo) throws IOException {
+		this.arquivo = arquivo;
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+			dados = canal.map(MapMode.READ_ONLY, 0, canal.size());
+		}
+		dados.order(ByteOrder.LITTLE_ENDIAN);
+		if (dados.getInt() != GravadorDeVoo.MAGICO || dados.getInt() != GravadorDeVoo.VERSAO) {
+			throw new IOException("Arquivo de voo inválido: " + arquivo);
+		}
+		campos = new String[dados.getInt()];
+		inicioRegistros = dados.getInt();
+		tamanhoRegistro = campos.length * Double.BYTES;
+		// Um voo interrompido pode ter o contador à frente dos dados salvos:
+		long registrosNoArquivo = (dados.capacity() - inicioRegistros) / tamanhoRegistro;
+		registros = Math.min(dados.getLong(), registrosNoArquivo);
+		for (int i = 0; i < campos.length; i++) {
+			byte[] nomeCampo = new byte[dados.getShort()];
+			dados.get(nomeCampo);
+			campos[i] = new String(nomeCampo, StandardCharsets.UTF_8);
+		}
+	}
+
+	public Path getArquivo() {
+		return arquivo;
+	}
+
+	public String[] getCampos() {
+		return campos.clone();
+	}
+
+	public long getRegistros() {
+		return registros;
+	}
+
+	/**
+	 * @param nome - Nome do campo
+	 * @return Posição do campo em cada registro, ou -1 caso o voo não tenha esse
+	 *         campo.
+	 */
+	public int indiceDoCampo(String nome) {
+		for (int i = 0; i < campos.length; i++) {
+			if (campos[i].equals(nome)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param registro - Número do registro, a partir de 0
+	 * @param campo    - Posição do campo no registro
+	 * @return Valor gravado
+	 */
+	public double getValor(long registro, int campo) {
+		return dados.getDouble((int) (inicioRegistros + registro * tamanhoRegistro + (long) campo * Double.BYTES));
+	}
+}
@@ -1,65 +1,69 @@
 package com.pesterenan.utils;
 
-import java.io.IOException;
-
-import org.javatuples.Triplet;
-
 import krpc.client.RPCException;
 import krpc.client.StreamException;
-import krpc.client.services.SpaceCenter;
-import krpc.client.services.SpaceCenter.Flight;
-import krpc.client.services.SpaceCenter.ReferenceFrame;
 import krpc.client.services.SpaceCenter.Vessel;
 
+/**
+ * Aponta a nave para o retrógrado ou para um alvo. As posições são convertidas
+ * entre referenciais com os referenciais lidos pela Telemetria no ciclo, sem
+ * chamadas RPC.
+ */
 public class Navegacao {
 
-	static SpaceCenter centroEspacial;
-	private Vessel naveAtual;
-	private ReferenceFrame pontoRefOrbital, pontoRefSuperficie;
-	private Flight parametrosDeVoo;
-	private Vetor vetorDirecaoHorizontal = new Vetor(0, 0, 0);
-	private Triplet<Double, Double, Double> posicaoAlvo = new Triplet<Double, Double, Double>(0.0, 0.0, 0.0);
+	private final Telemetria telemetria;
+	private final ComandosNave comandos;
+	// Vetores reaproveitados a cada ciclo, para não criar objetos ao mirar a nave:
+	private final Vetor vetorDirecaoHorizontal = new Vetor(0, 0, 0), velocidade = new Vetor(0, 0, 0),
+			alinharDirecao = new Vetor(0, 0, 0), posicaoAlvo = new Vetor(0, 0, 0), posicaoNave = new Vetor(0, 0, 0);
 
-	public Navegacao(SpaceCenter centro, Vessel nave)
-			throws IOException, RPCException, InterruptedException, StreamException {
-		centroEspacial = centro;
-		naveAtual = nave;
-		pontoRefOrbital = naveAtual.getOrbit().getBody().getReferenceFrame();
-		pontoRefSuperficie = naveAtual.getSurfaceReferenceFrame();
-		parametrosDeVoo = naveAtual.flight(pontoRefOrbital);
+	public Navegacao(Telemetria telemetria, ComandosNave comandosNave) throws RPCException, StreamException {
+		this.telemetria = telemetria;
+		comandos = comandosNave;
+		telemetria.registrarReferenciais();
 	}
 
-	public void mirarRetrogrado() throws IOException, RPCException, InterruptedException, StreamException {
+	public void mirarRetrogrado() {
+		Referencial superficie = telemetria.getReferencialSuperficie();
 		// Buscar Direção Retrógrada:
-		posicaoAlvo = centroEspacial.transformPosition(parametrosDeVoo.getRetrograde(),
-				naveAtual.getSurfaceVelocityReferenceFrame(), pontoRefOrbital);
+		telemetria.getReferencialVelSuperficie().paraCorpo(telemetria.getRetrogrado(), posicaoAlvo);
+		superficie.doCorpo(posicaoAlvo, posicaoAlvo);
+		superficie.doCorpo(telemetria.getReferencialNave().getOrigem(), posicaoNave);
 
-		vetorDirecaoHorizontal = Vetor.direcaoAlvoContraria(naveAtual.position(pontoRefSuperficie),
-				centroEspacial.transformPosition(posicaoAlvo, pontoRefOrbital, pontoRefSuperficie));
+		vetorDirecaoHorizontal.setDirecaoAlvoContraria(posicaoNave, posicaoAlvo);
 
-		Vetor alinharDirecao = getElevacaoDirecaoDoVetor(vetorDirecaoHorizontal);
+		calcularElevacaoDirecao(vetorDirecaoHorizontal);
 
-		naveAtual.getAutoPilot().targetPitchAndHeading((float) alinharDirecao.y, (float) alinharDirecao.x);
-		naveAtual.getAutoPilot().setTargetRoll((float) Vetor.anguloDirecao(alinharDirecao));
+		comandos.setInclinacaoEDirecaoAlvo(alinharDirecao.y, alinharDirecao.x);
+		comandos.setRolagemAlvo(Vetor.anguloDirecao(alinharDirecao));
 	}
 
-	public void mirarAlvo(Vessel alvo) throws IOException, RPCException, InterruptedException, StreamException {
+	public void mirarAlvo(Vessel alvo) throws RPCException, StreamException {
 		// Buscar Alvo:
-		vetorDirecaoHorizontal = Vetor.direcaoAlvo(naveAtual.position(pontoRefSuperficie),
-				centroEspacial.transformPosition(alvo.position(pontoRefOrbital), pontoRefOrbital, pontoRefSuperficie));
+		telemetria.registrarPosicaoAlvo(alvo);
+		Referencial superficie = telemetria.getReferencialSuperficie();
+		superficie.doCorpo(telemetria.getPosicaoAlvo(), posicaoAlvo);
+		superficie.doCorpo(telemetria.getReferencialNave().getOrigem(), posicaoNave);
+
+		vetorDirecaoHorizontal.setDirecaoAlvo(posicaoNave, posicaoAlvo);
 
-		Vetor alinharDirecao = getElevacaoDirecaoDoVetor(vetorDirecaoHorizontal);
+		calcularElevacaoDirecao(vetorDirecaoHorizontal);
 
-		naveAtual.getAutoPilot().targetPitchAndHeading((float) alinharDirecao.y, (float) alinharDirecao.x);
+		comandos.setInclinacaoEDirecaoAlvo(alinharDirecao.y, alinharDirecao.x);
 		// naveAtual.getAutoPilot().setTargetRoll((float) alinharDirecao.x);
 	}
 
-	private Vetor getElevacaoDirecaoDoVetor(Vetor alvo) throws RPCException, IOException, StreamException {
-		Vetor velocidade = new Vetor(
-				centroEspacial.transformPosition(parametrosDeVoo.getVelocity(), pontoRefOrbital, pontoRefSuperficie));
-		Vetor vetorVelocidade = new Vetor(velocidade.y, velocidade.z, velocidade.x);
-		alvo = alvo.subtrai(vetorVelocidade);
-		return new Vetor(Vetor.anguloDirecao(alvo), Math.max(30, (int) (90 - (alvo.Magnitude()))), 0);
+	/**
+	 * Calcula a direção (x) e a elevação (y) para a nave seguir o alvo,
+	 * descontando a velocidade atual, e guarda em alinharDirecao.
+	 *
+	 * @param alvo - Direção horizontal até o alvo, modificada pelo cálculo
+	 */
+	private void calcularElevacaoDirecao(Vetor alvo) {
+		telemetria.getReferencialSuperficie().doCorpo(telemetria.getVelocidade(), velocidade);
+		velocidade.setVetor(velocidade.y, velocidade.z, velocidade.x);
+		alvo.subtraiEm(velocidade);
+		alinharDirecao.setVetor(Vetor.anguloDirecao(alvo), Math.max(30, (int) (90 - (alvo.Magnitude()))), 0);
 	}
 
 }
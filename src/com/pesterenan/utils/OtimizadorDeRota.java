@@ -0,0 +1,159 @@
+package com.pesterenan.utils;
+
+/**
+ * Escolhe a ordem de visita de uma lista de pontos, partindo de um ponto fixo
+ * e terminando em qualquer um deles, para percorrer a menor distância. Começa
+ * indo sempre ao ponto mais próximo ainda não visitado, e melhora a rota com
+ * os movimentos 2-opt, que desfazem cruzamentos invertendo um trecho, e
+ * Or-opt, que mudam trechos de até três pontos de lugar, até nenhum deles
+ * encurtar a rota.
+ */
+public class OtimizadorDeRota {
+
+	private static final int TRECHO_MAXIMO = 3;
+	private static final double MELHORIA_MINIMA = 1e-6;
+
+	private final double[][] distancias;
+	private final int pontos;
+	private int[] rota;
+	private int melhorias;
+
+	/**
+	 * @param distancias - Distâncias entre os pontos, sendo o ponto 0 a partida
+	 */
+	public OtimizadorDeRota(double[][] distancias) {
+		this.distancias = distancias;
+		pontos = distancias.length;
+	}
+
+	/**
+	 * @return Pontos na ordem de visita, sem o ponto de partida.
+	 */
+	public int[] otimizar() {
+		rota = new int[pontos];
+		melhorias = 0;
+		maisProximoPrimeiro();
+		boolean melhorou = true;
+		while (melhorou) {
+			melhorou = doisOpt() || orOpt();
+		}
+		int[] ordem = new int[pontos - 1];
+		System.arraycopy(rota, 1, ordem, 0, ordem.length);
+		return ordem;
+	}
+
+	private void maisProximoPrimeiro() {
+		boolean[] visitados = new boolean[pontos];
+		visitados[0] = true;
+		for (int i = 1; i < pontos; i++) {
+			int atual = rota[i - 1], proximo = -1;
+			for (int candidato = 1; candidato < pontos; candidato++) {
+				if (!visitados[candidato]
+						&& (proximo < 0 || distancias[atual][candidato] < distancias[atual][proximo])) {
+					proximo = candidato;
+				}
+			}
+			rota[i] = proximo;
+			visitados[proximo] = true;
+		}
+	}
+
+	/**
+	 * Inverte o primeiro trecho da rota cuja inversão a encurta.
+	 */
+	private boolean doisOpt() {
+		for (int i = 1; i < pontos - 1; i++) {
+			for (int j = i + 1; j < pontos; j++) {
+				int depois = j + 1 < pontos ? rota[j + 1] : -1;
+				double antes = distancia(rota[i - 1], rota[i]) + distancia(rota[j], depois);
+				double invertido = distancia(rota[i - 1], rota[j]) + distancia(rota[i], depois);
+				if (invertido < antes - MELHORIA_MINIMA) {
+					for (int a = i, b = j; a < b; a++, b--) {
+						int ponto = rota[a];
+						rota[a] = rota[b];
+						rota[b] = ponto;
+					}
+					melhorias++;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Muda de lugar o primeiro trecho de até três pontos cuja mudança encurta a
+	 * rota, no mesmo sentido ou invertido.
+	 */
+	private boolean orOpt() {
+		for (int tamanho = 1; tamanho <= TRECHO_MAXIMO; tamanho++) {
+			for (int i = 1; i + tamanho <= pontos; i++) {
+				int primeiro = rota[i], ultimo = rota[i + tamanho - 1];
+				int anterior = rota[i - 1], seguinte = i + tamanho < pontos ? rota[i + tamanho] : -1;
+				double retirada = distancia(anterior, primeiro) + distancia(ultimo, seguinte)
+						- distancia(anterior, seguinte);
+				// Insere o trecho entre os pontos p e p + 1, fora do próprio trecho:
+				for (int p = 0; p < pontos; p++) {
+					if (p >= i - 1 && p < i + tamanho) {
+						continue;
+					}
+					int a = rota[p], b = p + 1 < pontos ? rota[p + 1] : -1;
+					double mesmoSentido = distancia(a, primeiro) + distancia(ultimo, b) - distancia(a, b);
+					double invertido = distancia(a, ultimo) + distancia(primeiro, b) - distancia(a, b);
+					if (Math.min(mesmoSentido, invertido) < retirada - MELHORIA_MINIMA) {
+						moverTrecho(i, tamanho, p, invertido < mesmoSentido);
+						melhorias++;
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private void moverTrecho(int inicio, int tamanho, int posicao, boolean inverter) {
+		int[] novaRota = new int[pontos];
+		int n = 0;
+		for (int k = 0; k < pontos; k++) {
+			if (k >= inicio && k < inicio + tamanho) {
+				continue;
+			}
+			novaRota[n++] = rota[k];
+			if (k == posicao) {
+				for (int t = 0; t < tamanho; t++) {
+					novaRota[n++] = rota[inverter ? inicio + tamanho - 1 - t : inicio + t];
+				}
+			}
+		}
+		rota = novaRota;
+	}
+
+	/**
+	 * @return Distância entre dois pontos, ou 0 caso um deles seja o fim da rota
+	 *         (-1).
+	 */
+	private double distancia(int de, int para) {
+		return de < 0 || para < 0 ? 0 : distancias[de][para];
+	}
+
+	/**
+	 * @return Comprimento da rota a partir do ponto 0, passando pelos pontos na
+	 *         ordem informada.
+	 */
+	public double comprimento(int[] ordem) {
+		double total = 0;
+		int anterior = 0;
+		for (int ponto : ordem) {
+			total += distancias[anterior][ponto];
+			anterior = ponto;
+		}
+		return total;
+	}
+
+	/**
+	 * @return Movimentos 2-opt e Or-opt aplicados na última otimização.
+	 */
+	public int getMelhorias() {
+		return melhorias;
+	}
+}
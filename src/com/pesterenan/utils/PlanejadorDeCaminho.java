@@ -0,0 +1,413 @@
+package com.pesterenan.utils;
+
+import java.util.Arrays;
+
+/**
+ * Procura o caminho de menor custo em uma grade de alturas do terreno, andando
+ * entre as células vizinhas, inclusive nas diagonais. O custo de cada passo
+ * cresce com a inclinação do terreno, e passos mais inclinados que o limite são
+ * proibidos, então o caminho contorna encostas e crateras.
+ *
+ * A busca usa o algoritmo D* Lite: a primeira busca é um A* do destino até a
+ * origem, e depois dela a origem pode ser movida e as alturas alteradas, e o
+ * replanejar corrige somente a parte da busca afetada pelas mudanças, em vez
+ * de refazer a busca inteira. Todos os dados da busca ficam em vetores de
+ * tipos primitivos, criados uma única vez.
+ */
+public class PlanejadorDeCaminho {
+
+	private static final int[] PASSO_COLUNA = { 1, 1, 0, -1, -1, -1, 0, 1 };
+	private static final int[] PASSO_LINHA = { 0, 1, 1, 1, 0, -1, -1, -1 };
+	private static final double INFINITO = Double.POSITIVE_INFINITY;
+	// Diferença aceita entre a reta e o caminho pela grade, por arredondamento:
+	private static final double FOLGA_DA_RETA = 1.001;
+
+	private final int colunas, linhas;
+	private final double tamanhoCelula, inclinacaoMaxima, pesoInclinacao;
+	private final double[] alturas;
+	// Custo de cada célula até o destino, e o custo calculado pelos vizinhos, que
+	// difere do primeiro nas células afetadas por mudanças ainda não corrigidas:
+	private final double[] custos, custosPelosVizinhos;
+	// Fila de prioridade das células a corrigir, em um heap binário de mínimo
+	// ordenado pela chave e, nos empates, pelo desempate:
+	private final double[] chaves, desempates;
+	private final int[] heap, posicaoNoHeap;
+	private int tamanhoHeap, nosExpandidos;
+	private int origem = -1, destino = -1;
+	// Soma das distâncias que a origem andou, somada às chaves novas para que as
+	// chaves já na fila continuem válidas sem serem recalculadas:
+	private double acrescimoDasChaves;
+
+	/**
+	 * @param colunas          - Quantidade de colunas da grade
+	 * @param linhas           - Quantidade de linhas da grade
+	 * @param tamanhoCelula    - Lado de uma célula, em metros
+	 * @param inclinacaoMaxima - Inclinação máxima de um passo, em graus
+	 * @param pesoInclinacao   - Quanto a inclinação encarece um passo: o custo é
+	 *                         a distância vezes 1 + peso * inclinação²
+	 */
+	public PlanejadorDeCaminho(int colunas, int linhas, double tamanhoCelula, double inclinacaoMaxima,
+			double pesoInclinacao) {
+		this.colunas = colunas;
+		this.linhas = linhas;
+		this.tamanhoCelula = tamanhoCelula;
+		this.inclinacaoMaxima = Math.tan(Math.toRadians(inclinacaoMaxima));
+		this.pesoInclinacao = pesoInclinacao;
+		int nos = colunas * linhas;
+		alturas = new double[nos];
+		custos = new double[nos];
+		custosPelosVizinhos = new double[nos];
+		chaves = new double[nos];
+		desempates = new double[nos];
+		heap = new int[nos];
+		posicaoNoHeap = new int[nos];
+	}
+
+	/**
+	 * Altera a altura de uma célula. Depois da primeira busca, marca a célula e
+	 * os vizinhos para serem corrigidos no próximo replanejar.
+	 */
+	public void setAltura(int coluna, int linha, double altura) {
+		int no = linha * colunas + coluna;
+		if (alturas[no] == altura) {
+			return;
+		}
+		alturas[no] = altura;
+		if (destino < 0) {
+			return;
+		}
+		corrigir(no);
+		for (int direcao = 0; direcao < PASSO_COLUNA.length; direcao++) {
+			int vizinho = vizinho(no, direcao);
+			if (vizinho >= 0) {
+				corrigir(vizinho);
+			}
+		}
+	}
+
+	/**
+	 * Faz uma busca nova entre duas células, descartando as buscas anteriores.
+	 *
+	 * @return Células do caminho, da origem ao destino, no formato linha *
+	 *         colunas + coluna, ou null caso o destino não possa ser alcançado.
+	 */
+	public int[] planejar(int colunaOrigem, int linhaOrigem, int colunaDestino, int linhaDestino) {
+		origem = linhaOrigem * colunas + colunaOrigem;
+		destino = linhaDestino * colunas + colunaDestino;
+		Arrays.fill(custos, INFINITO);
+		Arrays.fill(custosPelosVizinhos, INFINITO);
+		Arrays.fill(posicaoNoHeap, -1);
+		tamanhoHeap = 0;
+		acrescimoDasChaves = 0;
+		custosPelosVizinhos[destino] = 0;
+		atualizarNaFila(destino);
+		return replanejar();
+	}
+
+	/**
+	 * Move a origem do caminho, como quando o rover sai da rota. O destino e as
+	 * buscas anteriores são mantidos.
+	 */
+	public void moverOrigem(int coluna, int linha) {
+		int novaOrigem = linha * colunas + coluna;
+		acrescimoDasChaves += distancia(origem, novaOrigem);
+		origem = novaOrigem;
+	}
+
+	/**
+	 * Corrige a busca depois das mudanças na origem e nas alturas, aproveitando
+	 * as buscas anteriores.
+	 *
+	 * @return Células do caminho, da origem ao destino, ou null caso o destino
+	 *         não possa ser alcançado.
+	 */
+	public int[] replanejar() {
+		nosExpandidos = 0;
+		while (tamanhoHeap > 0 && (menorQueChaveDaOrigem(heap[0]) || custosPelosVizinhos[origem] > custos[origem])) {
+			int atual = heap[0];
+			double chave = chave(atual), desempate = desempate(atual);
+			nosExpandidos++;
+			if (chaves[atual] < chave || (chaves[atual] == chave && desempates[atual] < desempate)) {
+				// A chave ficou velha depois de a origem se mover:
+				chaves[atual] = chave;
+				desempates[atual] = desempate;
+				descer(0);
+			} else if (custos[atual] > custosPelosVizinhos[atual]) {
+				// O custo da célula caiu, e pode baratear os vizinhos:
+				custos[atual] = custosPelosVizinhos[atual];
+				remover(atual);
+				for (int direcao = 0; direcao < PASSO_COLUNA.length; direcao++) {
+					int vizinho = vizinho(atual, direcao);
+					if (vizinho >= 0 && vizinho != destino) {
+						double custo = custoDoPasso(vizinho, atual, direcao) + custos[atual];
+						if (custo < custosPelosVizinhos[vizinho]) {
+							custosPelosVizinhos[vizinho] = custo;
+							atualizarNaFila(vizinho);
+						}
+					}
+				}
+			} else {
+				// O custo da célula subiu, e os vizinhos que passavam por ela precisam
+				// ser recalculados:
+				custos[atual] = INFINITO;
+				corrigir(atual);
+				for (int direcao = 0; direcao < PASSO_COLUNA.length; direcao++) {
+					int vizinho = vizinho(atual, direcao);
+					if (vizinho >= 0) {
+						corrigir(vizinho);
+					}
+				}
+			}
+		}
+		return montarCaminho();
+	}
+
+	/**
+	 * Recalcula o custo de uma célula pelos vizinhos e atualiza a sua posição na
+	 * fila.
+	 */
+	private void corrigir(int no) {
+		if (no != destino) {
+			double melhor = INFINITO;
+			for (int direcao = 0; direcao < PASSO_COLUNA.length; direcao++) {
+				int vizinho = vizinho(no, direcao);
+				if (vizinho >= 0) {
+					melhor = Math.min(melhor, custoDoPasso(no, vizinho, direcao) + custos[vizinho]);
+				}
+			}
+			custosPelosVizinhos[no] = melhor;
+		}
+		atualizarNaFila(no);
+	}
+
+	/**
+	 * Coloca na fila as células cujos dois custos diferem, e retira as demais.
+	 */
+	private void atualizarNaFila(int no) {
+		boolean naFila = posicaoNoHeap[no] >= 0;
+		if (custos[no] != custosPelosVizinhos[no]) {
+			chaves[no] = chave(no);
+			desempates[no] = desempate(no);
+			if (naFila) {
+				subir(posicaoNoHeap[no]);
+				descer(posicaoNoHeap[no]);
+			} else {
+				heap[tamanhoHeap] = no;
+				posicaoNoHeap[no] = tamanhoHeap;
+				subir(tamanhoHeap++);
+			}
+		} else if (naFila) {
+			remover(no);
+		}
+	}
+
+	private double chave(int no) {
+		return desempate(no) + distancia(origem, no) + acrescimoDasChaves;
+	}
+
+	private double desempate(int no) {
+		return Math.min(custos[no], custosPelosVizinhos[no]);
+	}
+
+	private boolean menorQueChaveDaOrigem(int no) {
+		double chaveOrigem = chave(origem), desempateOrigem = desempate(origem);
+		return chaves[no] < chaveOrigem || (chaves[no] == chaveOrigem && desempates[no] < desempateOrigem);
+	}
+
+	/**
+	 * Segue da origem ao destino pelos vizinhos de menor custo.
+	 */
+	private int[] montarCaminho() {
+		// A busca pode terminar sem copiar o custo pelos vizinhos para a origem:
+		if (desempate(origem) == INFINITO) {
+			return null;
+		}
+		int[] caminho = new int[64];
+		int passos = 0;
+		caminho[passos++] = origem;
+		for (int atual = origem; atual != destino;) {
+			int proximo = -1;
+			double menorCusto = INFINITO;
+			for (int direcao = 0; direcao < PASSO_COLUNA.length; direcao++) {
+				int vizinho = vizinho(atual, direcao);
+				if (vizinho >= 0) {
+					double custo = custoDoPasso(atual, vizinho, direcao) + custos[vizinho];
+					if (custo < menorCusto) {
+						menorCusto = custo;
+						proximo = vizinho;
+					}
+				}
+			}
+			if (proximo < 0 || passos == custos.length) {
+				return null;
+			}
+			if (passos == caminho.length) {
+				caminho = Arrays.copyOf(caminho, passos * 2);
+			}
+			caminho[passos++] = proximo;
+			atual = proximo;
+		}
+		return Arrays.copyOf(caminho, passos);
+	}
+
+	/**
+	 * Remove as células intermediárias do caminho onde a linha reta entre as
+	 * células restantes não é mais cara que o trecho do caminho que ela
+	 * substitui, desfazendo os zigue-zagues das oito direções da grade.
+	 *
+	 * @param caminho - Células de um caminho encontrado pelo planejador
+	 * @return Células em que o caminho muda de direção, da origem ao destino.
+	 */
+	public int[] suavizar(int[] caminho) {
+		// Custo do caminho da origem até cada célula:
+		double[] percorrido = new double[caminho.length];
+		for (int i = 1; i < caminho.length; i++) {
+			percorrido[i] = percorrido[i - 1] + custoDaReta(caminho[i - 1], caminho[i]);
+		}
+		int[] pontos = new int[caminho.length];
+		int total = 0, ancora = 0;
+		pontos[total++] = caminho[0];
+		while (ancora < caminho.length - 1) {
+			int proximo = ancora + 1;
+			while (proximo + 1 < caminho.length && custoDaReta(caminho[ancora], caminho[proximo + 1])
+					<= (percorrido[proximo + 1] - percorrido[ancora]) * FOLGA_DA_RETA) {
+				proximo++;
+			}
+			pontos[total++] = caminho[proximo];
+			ancora = proximo;
+		}
+		return Arrays.copyOf(pontos, total);
+	}
+
+	/**
+	 * Custo de andar em linha reta entre duas células, com alturas
+	 * interpoladas a cada meia célula.
+	 */
+	private double custoDaReta(int de, int para) {
+		double colunaInicial = de % colunas, linhaInicial = de / colunas;
+		double deltaColuna = para % colunas - colunaInicial, deltaLinha = para / colunas - linhaInicial;
+		int amostras = (int) Math.ceil(2 * Math.max(Math.abs(deltaColuna), Math.abs(deltaLinha)));
+		double distancia = Math.hypot(deltaColuna, deltaLinha) * tamanhoCelula / amostras;
+		double custo = 0, alturaAnterior = alturas[de];
+		for (int i = 1; i <= amostras; i++) {
+			double fracao = (double) i / amostras;
+			double altura = alturaInterpolada(colunaInicial + deltaColuna * fracao, linhaInicial + deltaLinha * fracao);
+			double inclinacao = Math.abs(altura - alturaAnterior) / distancia;
+			if (inclinacao > inclinacaoMaxima) {
+				return INFINITO;
+			}
+			custo += distancia * (1 + pesoInclinacao * inclinacao * inclinacao);
+			alturaAnterior = altura;
+		}
+		return custo;
+	}
+
+	private double alturaInterpolada(double coluna, double linha) {
+		int j = Math.min((int) coluna, colunas - 2), i = Math.min((int) linha, linhas - 2);
+		double fx = coluna - j, fy = linha - i;
+		int no = i * colunas + j;
+		double abaixo = alturas[no] * (1 - fx) + alturas[no + 1] * fx;
+		double acima = alturas[no + colunas] * (1 - fx) + alturas[no + colunas + 1] * fx;
+		return abaixo * (1 - fy) + acima * fy;
+	}
+
+	/**
+	 * @return Célula vizinha na direção informada, ou -1 fora da grade.
+	 */
+	private int vizinho(int no, int direcao) {
+		int coluna = no % colunas + PASSO_COLUNA[direcao], linha = no / colunas + PASSO_LINHA[direcao];
+		if (coluna < 0 || coluna >= colunas || linha < 0 || linha >= linhas) {
+			return -1;
+		}
+		return linha * colunas + coluna;
+	}
+
+	/**
+	 * Custo de um passo entre células vizinhas, igual nos dois sentidos.
+	 */
+	private double custoDoPasso(int de, int para, int direcao) {
+		double distancia = (direcao & 1) == 1 ? tamanhoCelula * Math.sqrt(2) : tamanhoCelula;
+		double inclinacao = Math.abs(alturas[para] - alturas[de]) / distancia;
+		if (inclinacao > inclinacaoMaxima) {
+			return INFINITO;
+		}
+		return distancia * (1 + pesoInclinacao * inclinacao * inclinacao);
+	}
+
+	/**
+	 * Distância em linha reta entre duas células. Nunca é maior que o custo
+	 * real, então a busca encontra o caminho de menor custo.
+	 */
+	private double distancia(int de, int para) {
+		return Math.hypot(de % colunas - para % colunas, de / colunas - para / colunas) * tamanhoCelula;
+	}
+
+	// Operações do heap:
+
+	private void remover(int no) {
+		int posicao = posicaoNoHeap[no];
+		posicaoNoHeap[no] = -1;
+		int ultimo = heap[--tamanhoHeap];
+		if (posicao < tamanhoHeap) {
+			colocar(posicao, ultimo);
+			subir(posicao);
+			descer(posicaoNoHeap[ultimo]);
+		}
+	}
+
+	private void subir(int posicao) {
+		int no = heap[posicao];
+		while (posicao > 0) {
+			int pai = (posicao - 1) / 2;
+			if (!menor(no, heap[pai])) {
+				break;
+			}
+			colocar(posicao, heap[pai]);
+			posicao = pai;
+		}
+		colocar(posicao, no);
+	}
+
+	private void descer(int posicao) {
+		int no = heap[posicao];
+		while (true) {
+			int filho = 2 * posicao + 1;
+			if (filho >= tamanhoHeap) {
+				break;
+			}
+			if (filho + 1 < tamanhoHeap && menor(heap[filho + 1], heap[filho])) {
+				filho++;
+			}
+			if (!menor(heap[filho], no)) {
+				break;
+			}
+			colocar(posicao, heap[filho]);
+			posicao = filho;
+		}
+		colocar(posicao, no);
+	}
+
+	private boolean menor(int a, int b) {
+		return chaves[a] < chaves[b] || (chaves[a] == chaves[b] && desempates[a] < desempates[b]);
+	}
+
+	private void colocar(int posicao, int no) {
+		heap[posicao] = no;
+		posicaoNoHeap[no] = posicao;
+	}
+
+	public int getColunas() {
+		return colunas;
+	}
+
+	public int getLinhas() {
+		return linhas;
+	}
+
+	/**
+	 * @return Células retiradas ou corrigidas na fila na última busca.
+	 */
+	public int getNosExpandidos() {
+		return nosExpandidos;
+	}
+}
@@ -0,0 +1,212 @@
+package com.pesterenan.utils;
+
+/**
+ * Prevê uma queima com o motor todo contra a velocidade, a partir do estado
+ * atual da nave, integrando a trajetória com Runge-Kutta de 4ª ordem e passo
+ * adaptativo. Considera a perda de massa durante a queima, a variação da
+ * gravidade com a altitude e o acoplamento da velocidade horizontal com a
+ * curvatura do corpo, que a fórmula de aceleração constante ignora.
+ *
+ * Não cria objetos durante a previsão, para poder ser executado a cada ciclo.
+ */
+public class PrevisorDeQueima {
+
+	private static final double GRAVIDADE_PADRAO = 9.80665;
+	private static final double TOLERANCIA = 0.01, PASSO_INICIAL = 0.5, PASSO_MINIMO = 1e-4, PASSO_MAXIMO = 5;
+	private static final double TEMPO_MAXIMO = 1200;
+	private static final int ALTITUDE = 0, VEL_VERTICAL = 1, VEL_HORIZONTAL = 2, MASSA = 3, DISTANCIA = 4;
+
+	private final double acelGravidade, raioCorpo, fluxoPorEmpuxo;
+	private double empuxo;
+	// Estado atual e vetores de trabalho do integrador:
+	private final double[] estado = new double[5], passoInteiro = new double[5], meioPasso = new double[5],
+			doisMeiosPassos = new double[5], k1 = new double[5], k2 = new double[5], k3 = new double[5],
+			k4 = new double[5], temporario = new double[5];
+	private double altitudePerdida, distanciaHorizontal, duracao;
+	private int passos;
+
+	/**
+	 * @param acelGravidade - Gravidade na superfície do corpo celeste
+	 * @param raioCorpo     - Raio do corpo celeste, ou 0 para gravidade
+	 *                      constante em uma superfície plana
+	 * @param isp           - Impulso específico do motor em segundos, ou 0 para
+	 *                      ignorar a perda de massa
+	 */
+	public PrevisorDeQueima(double acelGravidade, double raioCorpo, double isp) {
+		this.acelGravidade = acelGravidade;
+		this.raioCorpo = raioCorpo;
+		fluxoPorEmpuxo = isp > 0 ? 1 / (isp * GRAVIDADE_PADRAO) : 0;
+	}
+
+	/**
+	 * Integra a queima até a velocidade vertical chegar a zero.
+	 *
+	 * @param velVertical   - Velocidade vertical atual, negativa na descida
+	 * @param velHorizontal - Velocidade horizontal atual
+	 * @param massa         - Massa atual da nave, em kg
+	 * @param empuxo        - Empuxo usado na queima, em N
+	 * @return Altitude perdida até parar a descida. Infinito caso o empuxo não
+	 *         vença a gravidade, e 0 caso não haja empuxo ou a nave não esteja
+	 *         descendo.
+	 */
+	public double prever(double velVertical, double velHorizontal, double massa, double empuxo) {
+		altitudePerdida = 0;
+		distanciaHorizontal = 0;
+		duracao = 0;
+		passos = 0;
+		if (empuxo <= 0 || massa <= 0 || velVertical >= 0) {
+			return 0;
+		}
+		if (empuxo / massa <= acelGravidade) {
+			altitudePerdida = Double.POSITIVE_INFINITY;
+			return altitudePerdida;
+		}
+		this.empuxo = empuxo;
+		estado[ALTITUDE] = 0;
+		estado[VEL_VERTICAL] = velVertical;
+		estado[VEL_HORIZONTAL] = Math.abs(velHorizontal);
+		estado[MASSA] = massa;
+		estado[DISTANCIA] = 0;
+
+		double dt = PASSO_INICIAL;
+		while (duracao < TEMPO_MAXIMO) {
+			double erro = passoComErro(dt);
+			if (erro > TOLERANCIA && dt > PASSO_MINIMO) {
+				dt = Math.max(PASSO_MINIMO, dt * Math.max(0.1, 0.9 * Math.pow(TOLERANCIA / erro, 0.2)));
+				continue;
+			}
+			if (doisMeiosPassos[VEL_VERTICAL] >= 0) {
+				// A descida termina dentro deste passo:
+				pararDescida(dt);
+				altitudePerdida = -estado[ALTITUDE];
+				distanciaHorizontal = estado[DISTANCIA];
+				return altitudePerdida;
+			}
+			aceitar(dt);
+			dt = Math.min(PASSO_MAXIMO, dt * (erro > 0 ? Math.min(2, 0.9 * Math.pow(TOLERANCIA / erro, 0.2)) : 2));
+		}
+		altitudePerdida = Double.POSITIVE_INFINITY;
+		return altitudePerdida;
+	}
+
+	/**
+	 * Procura dentro do passo o momento em que a velocidade vertical chega a
+	 * zero, pelo método da falsa posição, e avança o estado até ele.
+	 *
+	 * @param dt - Passo em que a velocidade vertical passa de negativa a positiva
+	 */
+	private void pararDescida(double dt) {
+		double inicio = 0, velInicio = estado[VEL_VERTICAL];
+		double fim = dt, velFim = doisMeiosPassos[VEL_VERTICAL];
+		double tempo = dt;
+		for (int i = 0; i < 30 && Math.abs(doisMeiosPassos[VEL_VERTICAL]) > 1e-4; i++) {
+			tempo = inicio + (fim - inicio) * -velInicio / (velFim - velInicio);
+			passoComErro(tempo);
+			if (doisMeiosPassos[VEL_VERTICAL] < 0) {
+				inicio = tempo;
+				velInicio = doisMeiosPassos[VEL_VERTICAL];
+				// Evita que a falsa posição fique presa em um dos lados:
+				velFim /= 2;
+			} else {
+				fim = tempo;
+				velFim = doisMeiosPassos[VEL_VERTICAL];
+				velInicio /= 2;
+			}
+		}
+		aceitar(tempo);
+	}
+
+	private void aceitar(double dt) {
+		System.arraycopy(doisMeiosPassos, 0, estado, 0, estado.length);
+		duracao += dt;
+		passos++;
+	}
+
+	/**
+	 * Dá um passo inteiro e dois meios passos a partir do estado atual. O
+	 * resultado dos meios passos, mais preciso, fica em doisMeiosPassos.
+	 *
+	 * @return Diferença entre os dois resultados, em metros
+	 */
+	private double passoComErro(double dt) {
+		rk4(estado, dt, passoInteiro);
+		rk4(estado, dt / 2, meioPasso);
+		rk4(meioPasso, dt / 2, doisMeiosPassos);
+		return Math.max(Math.abs(passoInteiro[ALTITUDE] - doisMeiosPassos[ALTITUDE]),
+				Math.abs(passoInteiro[VEL_VERTICAL] - doisMeiosPassos[VEL_VERTICAL]));
+	}
+
+	private void rk4(double[] inicio, double dt, double[] fim) {
+		derivar(inicio, k1);
+		somar(inicio, k1, dt / 2, temporario);
+		derivar(temporario, k2);
+		somar(inicio, k2, dt / 2, temporario);
+		derivar(temporario, k3);
+		somar(inicio, k3, dt, temporario);
+		derivar(temporario, k4);
+		for (int i = 0; i < fim.length; i++) {
+			fim[i] = inicio[i] + dt / 6 * (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i]);
+		}
+	}
+
+	private static void somar(double[] inicio, double[] derivada, double dt, double[] fim) {
+		for (int i = 0; i < fim.length; i++) {
+			fim[i] = inicio[i] + derivada[i] * dt;
+		}
+	}
+
+	private void derivar(double[] y, double[] dy) {
+		double vVertical = y[VEL_VERTICAL], vHorizontal = y[VEL_HORIZONTAL];
+		double massa = Math.max(y[MASSA], 1e-3);
+		double gravidade = acelGravidade, curvatura = 0;
+		if (raioCorpo > 0) {
+			double raio = raioCorpo + y[ALTITUDE];
+			gravidade = acelGravidade * (raioCorpo / raio) * (raioCorpo / raio);
+			curvatura = 1 / raio;
+		}
+		// Empuxo contra a velocidade, como a nave apontando para o retrógrado. Ao
+		// parar a descida o empuxo fica para cima, para a velocidade vertical
+		// passar por zero sem o empuxo inverter de sentido:
+		double velocidade = Math.hypot(vVertical, vHorizontal);
+		double acelEmpuxo = empuxo / massa;
+		double dirVertical = 1, dirHorizontal = 0;
+		if (vVertical < 0 && velocidade > 1e-6) {
+			dirVertical = -vVertical / velocidade;
+			dirHorizontal = -vHorizontal / velocidade;
+		}
+		dy[ALTITUDE] = vVertical;
+		dy[VEL_VERTICAL] = -gravidade + vHorizontal * vHorizontal * curvatura + acelEmpuxo * dirVertical;
+		dy[VEL_HORIZONTAL] = acelEmpuxo * dirHorizontal - vVertical * vHorizontal * curvatura;
+		dy[MASSA] = -empuxo * fluxoPorEmpuxo;
+		dy[DISTANCIA] = vHorizontal;
+	}
+
+	/**
+	 * @return Altitude perdida na última previsão, até parar a descida.
+	 */
+	public double getAltitudePerdida() {
+		return altitudePerdida;
+	}
+
+	/**
+	 * @return Distância horizontal percorrida durante a queima prevista, até o
+	 *         ponto de pouso.
+	 */
+	public double getDistanciaHorizontal() {
+		return distanciaHorizontal;
+	}
+
+	/**
+	 * @return Duração da queima prevista, em segundos.
+	 */
+	public double getDuracao() {
+		return duracao;
+	}
+
+	/**
+	 * @return Passos de integração aceitos na última previsão.
+	 */
+	public int getPassos() {
+		return passos;
+	}
+}
@@ -0,0 +1,69 @@
+package com.pesterenan.utils;
+
+import org.javatuples.Quartet;
+
+/**
+ * Rotação no formato usado pelo kRPC: componentes x, y, z e w, com w sendo a
+ * parte escalar. Usado para converter vetores entre referenciais sem pedir a
+ * conversão ao jogo.
+ */
+public class Quaternio {
+
+	public double x = 0;
+	public double y = 0;
+	public double z = 0;
+	public double w = 1;
+
+	/**
+	 * Modifica este quaternio com os valores de uma tupla (Quartet) do kRPC
+	 * 
+	 * @param tupla - Quartet com valores X,Y,Z,W em conjunto
+	 * @return Este quaternio, com os novos valores
+	 */
+	public Quaternio setQuaternio(Quartet<Double, Double, Double, Double> tupla) {
+		this.x = tupla.getValue0();
+		this.y = tupla.getValue1();
+		this.z = tupla.getValue2();
+		this.w = tupla.getValue3();
+		return this;
+	}
+
+	/**
+	 * Aplica esta rotação ao vetor, modificando seus componentes
+	 * 
+	 * @param vetor - Vetor a ser rotacionado
+	 * @return O próprio vetor, rotacionado
+	 */
+	public Vetor rotacionar(Vetor vetor) {
+		return rotacionar(vetor, 1);
+	}
+
+	/**
+	 * Aplica a rotação inversa a esta ao vetor, modificando seus componentes
+	 * 
+	 * @param vetor - Vetor a ser rotacionado
+	 * @return O próprio vetor, rotacionado
+	 */
+	public Vetor rotacionarInverso(Vetor vetor) {
+		return rotacionar(vetor, -1);
+	}
+
+	/**
+	 * v' = v + 2w(u × v) + 2u × (u × v), com u = (x, y, z). O inverso de um
+	 * quaternio unitário é o mesmo com u negativo.
+	 */
+	private Vetor rotacionar(Vetor vetor, double sentido) {
+		double ux = x * sentido, uy = y * sentido, uz = z * sentido;
+		double tx = 2 * (uy * vetor.z - uz * vetor.y);
+		double ty = 2 * (uz * vetor.x - ux * vetor.z);
+		double tz = 2 * (ux * vetor.y - uy * vetor.x);
+		vetor.setVetor(vetor.x + w * tx + (uy * tz - uz * ty), vetor.y + w * ty + (uz * tx - ux * tz),
+				vetor.z + w * tz + (ux * ty - uy * tx));
+		return vetor;
+	}
+
+	@Override
+	public String toString() {
+		return "( X: " + x + ", Y: " + y + ", Z:" + z + ", W:" + w + ")";
+	}
+}
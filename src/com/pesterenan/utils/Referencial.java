@@ -0,0 +1,75 @@
+package com.pesterenan.utils;
+
+/**
+ * Posição e rotação de um referencial do kRPC em relação ao referencial do
+ * corpo celeste, lidas por Stream a cada ciclo. Com elas as posições são
+ * convertidas entre referenciais localmente, no lugar de uma chamada a
+ * transformPosition para cada conversão.
+ */
+public class Referencial {
+
+	private final Vetor origem = new Vetor(0, 0, 0);
+	private final Quaternio rotacao = new Quaternio();
+
+	/**
+	 * Converte uma posição deste referencial para o referencial do corpo, como
+	 * transformPosition(ponto, este, corpo).
+	 * 
+	 * @param ponto   - Posição neste referencial
+	 * @param destino - Vetor que recebe a posição, pode ser o próprio ponto
+	 * @return O destino, com a posição no referencial do corpo
+	 */
+	public Vetor paraCorpo(Vetor ponto, Vetor destino) {
+		return rotacao.rotacionar(destino.setVetor(ponto)).somaEm(origem);
+	}
+
+	/**
+	 * Converte uma posição do referencial do corpo para este referencial, como
+	 * transformPosition(ponto, corpo, este).
+	 * 
+	 * @param ponto   - Posição no referencial do corpo
+	 * @param destino - Vetor que recebe a posição, pode ser o próprio ponto
+	 * @return O destino, com a posição neste referencial
+	 */
+	public Vetor doCorpo(Vetor ponto, Vetor destino) {
+		return rotacao.rotacionarInverso(destino.setVetor(ponto).subtraiEm(origem));
+	}
+
+	/**
+	 * Converte uma direção deste referencial para o referencial do corpo, como
+	 * transformDirection(direcao, este, corpo).
+	 * 
+	 * @param direcao - Direção neste referencial
+	 * @param destino - Vetor que recebe a direção, pode ser a própria direção
+	 * @return O destino, com a direção no referencial do corpo
+	 */
+	public Vetor direcaoParaCorpo(Vetor direcao, Vetor destino) {
+		return rotacao.rotacionar(destino.setVetor(direcao));
+	}
+
+	/**
+	 * Converte uma direção do referencial do corpo para este referencial, como
+	 * transformDirection(direcao, corpo, este).
+	 * 
+	 * @param direcao - Direção no referencial do corpo
+	 * @param destino - Vetor que recebe a direção, pode ser a própria direção
+	 * @return O destino, com a direção neste referencial
+	 */
+	public Vetor direcaoDoCorpo(Vetor direcao, Vetor destino) {
+		return rotacao.rotacionarInverso(destino.setVetor(direcao));
+	}
+
+	/**
+	 * @return Posição da origem deste referencial no referencial do corpo.
+	 */
+	public Vetor getOrigem() {
+		return origem;
+	}
+
+	/**
+	 * @return Rotação deste referencial em relação ao referencial do corpo.
+	 */
+	public Quaternio getRotacao() {
+		return rotacao;
+	}
+}
@@ -0,0 +1,14 @@
+package com.pesterenan.utils;
+
+/**
+ * Comandos calculados pelos controladores a cada ciclo. No jogo eles vão para
+ * os ComandosNave, e fora dele são guardados para avaliar o controlador.
+ */
+public interface SaidaDeComandos {
+
+	void setAceleracao(double acel);
+
+	void setTremDePouso(boolean ativo);
+
+	void setInclinacaoEDirecaoAlvo(double inclinacao, double direcao);
+}
@@ -0,0 +1,589 @@
+package com.pesterenan.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.javatuples.Quartet;
+import org.javatuples.Triplet;
+
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.Stream;
+import krpc.client.StreamException;
+import krpc.client.services.SpaceCenter;
+import krpc.client.services.SpaceCenter.Flight;
+import krpc.client.services.SpaceCenter.Node;
+import krpc.client.services.SpaceCenter.ReferenceFrame;
+import krpc.client.services.SpaceCenter.Resources;
+import krpc.client.services.SpaceCenter.Vessel;
+import krpc.client.services.SpaceCenter.VesselSituation;
+
+/**
+ * Registra como Stream todos os valores lidos pelos módulos e guarda uma cópia
+ * consistente deles a cada ciclo, para que os loops de controle não façam
+ * chamadas RPC síncronas para ler a nave.
+ */
+public class Telemetria implements FonteTelemetriaOrbital, GerenciadorDeConexao.AoReconectar {
+
+	private static final int TENTATIVAS_LEITURA = 3;
+	private static final String CARGA_ELETRICA = "ElectricCharge";
+	private static final Triplet<Double, Double, Double> ORIGEM = new Triplet<>(0.0, 0.0, 0.0);
+	private static final Quartet<Double, Double, Double, Double> SEM_ROTACAO = new Quartet<>(0.0, 0.0, 0.0, 1.0);
+
+	// O kRPC devolve o mesmo Stream para chamadas iguais, então o tempo universal
+	// é compartilhado entre as telemetrias da mesma conexão e só é removido
+	// quando a última delas for removida:
+	private static final Map<Connection, Stream<Double>> temposUniversais = new HashMap<>();
+	private static final Map<Connection, Integer> usosTempoUniversal = new HashMap<>();
+	// Pelo mesmo motivo, a posição de uma nave alvo é compartilhada entre as
+	// telemetrias que acompanham o mesmo alvo, como no pouso múltiplo, com a
+	// conexão, o alvo e o referencial como chave:
+	private static final Map<List<Object>, Stream<Triplet<Double, Double, Double>>> posicoesDosAlvos = new HashMap<>();
+	private static final Map<List<Object>, Integer> usosPosicaoAlvo = new HashMap<>();
+
+	private Connection conexao;
+	private Vessel naveAtual;
+	private Node manobraAtual;
+	private Vessel naveAlvo;
+	private List<Object> chaveAlvo;
+	private final String nomeNave;
+	private final float acelGravidade;
+	private final double alturaNave, raioCorpo, impulsoEspecifico;
+
+	// Streams registrados uma única vez:
+	private Stream<Double> tempoUniversal, altitudeSuperficie, altitudeMedia, velVertical, velHorizontal, apoastro,
+			periastro;
+	private Stream<Float> massaTotal, empuxoDisponivel, pressaoDinamica;
+	private Stream<Boolean> freios;
+	private Stream<VesselSituation> situacao;
+	private Stream<Float> cargaAtual, cargaMaxima;
+	private Stream<Double> tempoAteManobra, deltaVManobra;
+	private Stream<Triplet<Double, Double, Double>> queimaRestante;
+	// Origem e rotação dos referenciais da nave, e vetores no referencial do corpo:
+	private Stream<Triplet<Double, Double, Double>> origemNave, origemSuperficie, origemVelSuperficie, velocidade,
+			retrogrado, posicaoDoAlvo;
+	private Stream<Quartet<Double, Double, Double, Double>> rotacaoNave, rotacaoSuperficie, rotacaoVelSuperficie;
+	private Stream<Double> latitude, longitude;
+
+	// Cópia dos valores do ciclo atual:
+	private double ut, altitude, altitudeNivelMar, velocidadeVertical, velocidadeHorizontal, apoastroAtual,
+			periastroAtual, massa, empuxo, pressao, carga, cargaTotal, tempoManobra, deltaV, queimaRestanteY,
+			latitudeAtual, longitudeAtual;
+	private boolean freiosAtivos, removida;
+	private final Referencial refNave = new Referencial(), refSuperficie = new Referencial(),
+			refVelSuperficie = new Referencial();
+	private final Vetor velocidadeAtual = new Vetor(0, 0, 0), retrogradoAtual = new Vetor(0, 0, 0),
+			posicaoAlvo = new Vetor(0, 0, 0);
+	private VesselSituation situacaoAtual;
+
+	/**
+	 * Cria a telemetria da nave, registrando os Streams de voo em relação ao
+	 * referencial do corpo celeste que ela orbita.
+	 *
+	 * @param conexao - Conexão com o kRPC
+	 * @param nave    - Nave que terá seus valores lidos
+	 */
+	public Telemetria(Connection conexao, Vessel nave) throws RPCException, StreamException {
+		this.conexao = conexao;
+		this.naveAtual = nave;
+		// Valores constantes, buscados apenas uma vez:
+		nomeNave = naveAtual.getName();
+		acelGravidade = naveAtual.getOrbit().getBody().getSurfaceGravity();
+		alturaNave = naveAtual.boundingBox(naveAtual.getReferenceFrame()).getValue1().getValue1();
+		raioCorpo = naveAtual.getOrbit().getBody().getEquatorialRadius();
+		impulsoEspecifico = naveAtual.getSpecificImpulse();
+		registrarStreams();
+		GerenciadorDeConexao.getInstancia().adicionarOuvinte(this);
+		atualizar();
+	}
+
+	private void registrarStreams() throws RPCException, StreamException {
+		Flight parametrosDeVoo = naveAtual.flight(naveAtual.getOrbit().getBody().getReferenceFrame());
+		tempoUniversal = obterTempoUniversal(conexao);
+		altitudeSuperficie = conexao.addStream(parametrosDeVoo, "getSurfaceAltitude");
+		altitudeMedia = conexao.addStream(parametrosDeVoo, "getMeanAltitude");
+		velVertical = conexao.addStream(parametrosDeVoo, "getVerticalSpeed");
+		velHorizontal = conexao.addStream(parametrosDeVoo, "getHorizontalSpeed");
+		pressaoDinamica = conexao.addStream(parametrosDeVoo, "getDynamicPressure");
+		apoastro = conexao.addStream(naveAtual.getOrbit(), "getApoapsisAltitude");
+		periastro = conexao.addStream(naveAtual.getOrbit(), "getPeriapsisAltitude");
+		massaTotal = conexao.addStream(naveAtual, "getMass");
+		empuxoDisponivel = conexao.addStream(naveAtual, "getAvailableThrust");
+		situacao = conexao.addStream(naveAtual, "getSituation");
+		freios = conexao.addStream(naveAtual.getControl(), "getBrakes");
+	}
+
+	/**
+	 * Registra os Streams de carga elétrica da nave, usados pelo Auto Rover.
+	 */
+	public synchronized void registrarCargaEletrica() throws RPCException, StreamException {
+		if (cargaAtual == null) {
+			Resources recursos = naveAtual.getResources();
+			cargaAtual = conexao.addStream(recursos, "amount", CARGA_ELETRICA);
+			cargaMaxima = conexao.addStream(recursos, "max", CARGA_ELETRICA);
+			atualizar();
+		}
+	}
+
+	/**
+	 * Registra os Streams da posição e rotação dos referenciais da nave, da
+	 * velocidade, da direção retrógrada e da latitude e longitude, para que a
+	 * Navegacao converta posições entre referenciais sem chamadas RPC a cada
+	 * ciclo.
+	 */
+	public synchronized void registrarReferenciais() throws RPCException, StreamException {
+		if (origemNave == null) {
+			ReferenceFrame corpo = naveAtual.getOrbit().getBody().getReferenceFrame();
+			ReferenceFrame nave = naveAtual.getReferenceFrame();
+			ReferenceFrame superficie = naveAtual.getSurfaceReferenceFrame();
+			ReferenceFrame velSuperficie = naveAtual.getSurfaceVelocityReferenceFrame();
+			origemNave = conexao.addStream(SpaceCenter.class, "transformPosition", ORIGEM, nave, corpo);
+			rotacaoNave = conexao.addStream(SpaceCenter.class, "transformRotation", SEM_ROTACAO, nave, corpo);
+			origemSuperficie = conexao.addStream(SpaceCenter.class, "transformPosition", ORIGEM, superficie, corpo);
+			rotacaoSuperficie = conexao.addStream(SpaceCenter.class, "transformRotation", SEM_ROTACAO, superficie,
+					corpo);
+			origemVelSuperficie = conexao.addStream(SpaceCenter.class, "transformPosition", ORIGEM, velSuperficie,
+					corpo);
+			rotacaoVelSuperficie = conexao.addStream(SpaceCenter.class, "transformRotation", SEM_ROTACAO,
+					velSuperficie, corpo);
+			Flight parametrosDeVoo = naveAtual.flight(corpo);
+			velocidade = conexao.addStream(parametrosDeVoo, "getVelocity");
+			retrogrado = conexao.addStream(parametrosDeVoo, "getRetrograde");
+			latitude = conexao.addStream(parametrosDeVoo, "getLatitude");
+			longitude = conexao.addStream(parametrosDeVoo, "getLongitude");
+			atualizar();
+		}
+	}
+
+	/**
+	 * Registra o Stream da posição de outra nave no referencial do corpo,
+	 * substituindo o alvo anterior.
+	 *
+	 * @param alvo - Nave que será acompanhada
+	 */
+	public synchronized void registrarPosicaoAlvo(Vessel alvo) throws RPCException, StreamException {
+		if (alvo.equals(naveAlvo)) {
+			return;
+		}
+		removerPosicaoAlvo();
+		naveAlvo = alvo;
+		chaveAlvo = Arrays.asList(conexao, alvo, naveAtual.getOrbit().getBody().getReferenceFrame());
+		posicaoDoAlvo = obterPosicaoAlvo(chaveAlvo);
+		atualizar();
+	}
+
+	/**
+	 * Registra os Streams de acompanhamento de um nó de manobra.
+	 *
+	 * @param noDeManobra - Nó de manobra que será executado
+	 */
+	public synchronized void registrarManobra(Node noDeManobra) throws RPCException, StreamException {
+		removerManobra();
+		manobraAtual = noDeManobra;
+		tempoAteManobra = conexao.addStream(noDeManobra, "getTimeTo");
+		deltaVManobra = conexao.addStream(noDeManobra, "getDeltaV");
+		queimaRestante = conexao.addStream(noDeManobra, "remainingBurnVector", noDeManobra.getReferenceFrame());
+		atualizar();
+	}
+
+	/**
+	 * Copia os valores de todos os Streams para a telemetria do ciclo atual. Caso
+	 * o tempo do jogo mude durante a cópia, ela é refeita para que todos os
+	 * valores sejam do mesmo quadro de física.
+	 */
+	public synchronized void atualizar() throws RPCException, StreamException {
+		for (int i = 0; i < TENTATIVAS_LEITURA; i++) {
+			double inicio = tempoUniversal.get();
+			copiarValores();
+			if (inicio == tempoUniversal.get()) {
+				break;
+			}
+		}
+	}
+
+	private void copiarValores() throws RPCException, StreamException {
+		ut = tempoUniversal.get();
+		altitude = altitudeSuperficie.get();
+		altitudeNivelMar = altitudeMedia.get();
+		velocidadeVertical = velVertical.get();
+		velocidadeHorizontal = velHorizontal.get();
+		pressao = pressaoDinamica.get();
+		apoastroAtual = apoastro.get();
+		periastroAtual = periastro.get();
+		massa = massaTotal.get();
+		empuxo = empuxoDisponivel.get();
+		situacaoAtual = situacao.get();
+		freiosAtivos = freios.get();
+		if (cargaAtual != null) {
+			carga = cargaAtual.get();
+			cargaTotal = cargaMaxima.get();
+		}
+		if (tempoAteManobra != null) {
+			tempoManobra = tempoAteManobra.get();
+			deltaV = deltaVManobra.get();
+			queimaRestanteY = queimaRestante.get().getValue1();
+		}
+		if (origemNave != null) {
+			copiarReferencial(refNave, origemNave, rotacaoNave);
+			copiarReferencial(refSuperficie, origemSuperficie, rotacaoSuperficie);
+			copiarReferencial(refVelSuperficie, origemVelSuperficie, rotacaoVelSuperficie);
+			velocidadeAtual.setVetor(velocidade.get());
+			retrogradoAtual.setVetor(retrogrado.get());
+			latitudeAtual = latitude.get();
+			longitudeAtual = longitude.get();
+		}
+		if (posicaoDoAlvo != null) {
+			posicaoAlvo.setVetor(posicaoDoAlvo.get());
+		}
+	}
+
+	private static void copiarReferencial(Referencial referencial, Stream<Triplet<Double, Double, Double>> origem,
+			Stream<Quartet<Double, Double, Double, Double>> rotacao) throws RPCException, StreamException {
+		referencial.getOrigem().setVetor(origem.get());
+		referencial.getRotacao().setQuaternio(rotacao.get());
+	}
+
+	/**
+	 * Remove os Streams do nó de manobra, caso existam.
+	 */
+	public synchronized void removerManobra() throws RPCException {
+		manobraAtual = null;
+		if (tempoAteManobra != null) {
+			tempoAteManobra.remove();
+			deltaVManobra.remove();
+			queimaRestante.remove();
+			tempoAteManobra = null;
+			deltaVManobra = null;
+			queimaRestante = null;
+		}
+	}
+
+	private void removerPosicaoAlvo() throws RPCException {
+		naveAlvo = null;
+		if (posicaoDoAlvo != null) {
+			liberarPosicaoAlvo(chaveAlvo);
+			posicaoDoAlvo = null;
+			chaveAlvo = null;
+		}
+	}
+
+	private void removerReferenciais() throws RPCException {
+		if (origemNave != null) {
+			origemNave.remove();
+			rotacaoNave.remove();
+			origemSuperficie.remove();
+			rotacaoSuperficie.remove();
+			origemVelSuperficie.remove();
+			rotacaoVelSuperficie.remove();
+			velocidade.remove();
+			retrogrado.remove();
+			latitude.remove();
+			longitude.remove();
+			origemNave = null;
+		}
+	}
+
+	/**
+	 * Remove todos os Streams registrados por essa telemetria. Pode ser chamado
+	 * mais de uma vez, como ao cancelar um módulo que já estava finalizando.
+	 */
+	public synchronized void remover() throws RPCException {
+		if (removida) {
+			return;
+		}
+		removida = true;
+		GerenciadorDeConexao.getInstancia().removerOuvinte(this);
+		removerManobra();
+		removerPosicaoAlvo();
+		removerReferenciais();
+		if (cargaAtual != null) {
+			cargaAtual.remove();
+			cargaMaxima.remove();
+			cargaAtual = null;
+			cargaMaxima = null;
+		}
+		liberarTempoUniversal(conexao);
+		altitudeSuperficie.remove();
+		altitudeMedia.remove();
+		velVertical.remove();
+		velHorizontal.remove();
+		pressaoDinamica.remove();
+		apoastro.remove();
+		periastro.remove();
+		massaTotal.remove();
+		empuxoDisponivel.remove();
+		situacao.remove();
+		freios.remove();
+	}
+
+	/**
+	 * Registra novamente todos os Streams na nova conexão, depois que a anterior
+	 * caiu. Os Streams antigos morreram junto com o socket e não são removidos.
+	 *
+	 * @param novaConexao - Conexão aberta pelo GerenciadorDeConexao
+	 */
+	@Override
+	public synchronized void reconectar(Connection novaConexao) throws RPCException, StreamException {
+		if (removida) {
+			return;
+		}
+		descartarTempoUniversal(conexao);
+		conexao = novaConexao;
+		naveAtual = GerenciadorDeConexao.localizarNave(novaConexao, naveAtual);
+		registrarStreams();
+		if (cargaAtual != null) {
+			cargaAtual = null;
+			registrarCargaEletrica();
+		}
+		if (origemNave != null) {
+			origemNave = null;
+			registrarReferenciais();
+		}
+		if (naveAlvo != null) {
+			Vessel alvoAnterior = naveAlvo;
+			descartarPosicaoAlvo(chaveAlvo);
+			naveAlvo = null;
+			posicaoDoAlvo = null;
+			chaveAlvo = null;
+			registrarPosicaoAlvo(GerenciadorDeConexao.localizarNave(novaConexao, alvoAnterior));
+		}
+		if (manobraAtual != null) {
+			Node manobraAnterior = manobraAtual;
+			manobraAtual = null;
+			tempoAteManobra = null;
+			for (Node noDeManobra : naveAtual.getControl().getNodes()) {
+				if (noDeManobra.equals(manobraAnterior)) {
+					registrarManobra(noDeManobra);
+				}
+			}
+		}
+		atualizar();
+	}
+
+	private static synchronized Stream<Double> obterTempoUniversal(Connection conexao)
+			throws RPCException, StreamException {
+		Stream<Double> tempo = temposUniversais.get(conexao);
+		if (tempo == null) {
+			tempo = conexao.addStream(SpaceCenter.class, "getUT");
+			temposUniversais.put(conexao, tempo);
+		}
+		usosTempoUniversal.merge(conexao, 1, Integer::sum);
+		return tempo;
+	}
+
+	private static synchronized void liberarTempoUniversal(Connection conexao) throws RPCException {
+		int usos = usosTempoUniversal.merge(conexao, -1, Integer::sum);
+		if (usos <= 0) {
+			usosTempoUniversal.remove(conexao);
+			temposUniversais.remove(conexao).remove();
+		}
+	}
+
+	private static synchronized void descartarTempoUniversal(Connection conexaoPerdida) {
+		if (usosTempoUniversal.merge(conexaoPerdida, -1, Integer::sum) <= 0) {
+			usosTempoUniversal.remove(conexaoPerdida);
+			temposUniversais.remove(conexaoPerdida);
+		}
+	}
+
+	private static synchronized Stream<Triplet<Double, Double, Double>> obterPosicaoAlvo(List<Object> chave)
+			throws RPCException, StreamException {
+		Stream<Triplet<Double, Double, Double>> posicao = posicoesDosAlvos.get(chave);
+		if (posicao == null) {
+			Connection conexao = (Connection) chave.get(0);
+			posicao = conexao.addStream((Vessel) chave.get(1), "position", (ReferenceFrame) chave.get(2));
+			posicoesDosAlvos.put(chave, posicao);
+		}
+		usosPosicaoAlvo.merge(chave, 1, Integer::sum);
+		return posicao;
+	}
+
+	private static synchronized void liberarPosicaoAlvo(List<Object> chave) throws RPCException {
+		if (usosPosicaoAlvo.merge(chave, -1, Integer::sum) <= 0) {
+			usosPosicaoAlvo.remove(chave);
+			posicoesDosAlvos.remove(chave).remove();
+		}
+	}
+
+	private static synchronized void descartarPosicaoAlvo(List<Object> chaveDaConexaoPerdida) {
+		if (usosPosicaoAlvo.merge(chaveDaConexaoPerdida, -1, Integer::sum) <= 0) {
+			usosPosicaoAlvo.remove(chaveDaConexaoPerdida);
+			posicoesDosAlvos.remove(chaveDaConexaoPerdida);
+		}
+	}
+
+	public Vessel getNave() {
+		return naveAtual;
+	}
+
+	public String getNomeNave() {
+		return nomeNave;
+	}
+
+	public float getAcelGravidade() {
+		return acelGravidade;
+	}
+
+	/**
+	 * @return Distância do centro de massa até o topo da nave, no eixo Y.
+	 */
+	public double getAlturaNave() {
+		return alturaNave;
+	}
+
+	public double getRaioCorpo() {
+		return raioCorpo;
+	}
+
+	/**
+	 * @return Impulso específico dos motores ativos quando a telemetria foi
+	 *         criada, ou 0 caso nenhum motor estivesse ativo.
+	 */
+	public double getImpulsoEspecifico() {
+		return impulsoEspecifico;
+	}
+
+	@Override
+	public double getTempoUniversal() {
+		return ut;
+	}
+
+	@Override
+	public double getAltitude() {
+		return altitude;
+	}
+
+	@Override
+	public double getAltitudeNivelMar() {
+		return altitudeNivelMar;
+	}
+
+	@Override
+	public double getVelVertical() {
+		return velocidadeVertical;
+	}
+
+	@Override
+	public double getVelHorizontal() {
+		return velocidadeHorizontal;
+	}
+
+	@Override
+	public double getPressaoDinamica() {
+		return pressao;
+	}
+
+	@Override
+	public double getApoastro() {
+		return apoastroAtual;
+	}
+
+	@Override
+	public double getPeriastro() {
+		return periastroAtual;
+	}
+
+	@Override
+	public double getMassa() {
+		return massa;
+	}
+
+	@Override
+	public double getEmpuxoDisponivel() {
+		return empuxo;
+	}
+
+	public VesselSituation getSituacao() {
+		return situacaoAtual;
+	}
+
+	public boolean getFreios() {
+		return freiosAtivos;
+	}
+
+	public double getCargaEletrica() {
+		return carga;
+	}
+
+	public double getCargaEletricaMaxima() {
+		return cargaTotal;
+	}
+
+	public double getTempoAteManobra() {
+		return tempoManobra;
+	}
+
+	public double getDeltaVManobra() {
+		return deltaV;
+	}
+
+	/**
+	 * @return Referencial da nave, com origem no centro de massa e eixo y para
+	 *         onde a nave aponta. Requer registrarReferenciais.
+	 */
+	public Referencial getReferencialNave() {
+		return refNave;
+	}
+
+	/**
+	 * @return Referencial da superfície sob a nave. Requer registrarReferenciais.
+	 */
+	public Referencial getReferencialSuperficie() {
+		return refSuperficie;
+	}
+
+	/**
+	 * @return Referencial da velocidade de superfície da nave. Requer
+	 *         registrarReferenciais.
+	 */
+	public Referencial getReferencialVelSuperficie() {
+		return refVelSuperficie;
+	}
+
+	/**
+	 * @return Velocidade da nave no referencial do corpo. Requer
+	 *         registrarReferenciais.
+	 */
+	public Vetor getVelocidade() {
+		return velocidadeAtual;
+	}
+
+	/**
+	 * @return Direção retrógrada da nave no referencial do corpo. Requer
+	 *         registrarReferenciais.
+	 */
+	public Vetor getRetrogrado() {
+		return retrogradoAtual;
+	}
+
+	/**
+	 * @return Latitude da nave, em graus. Requer registrarReferenciais.
+	 */
+	public double getLatitude() {
+		return latitudeAtual;
+	}
+
+	/**
+	 * @return Longitude da nave, em graus. Requer registrarReferenciais.
+	 */
+	public double getLongitude() {
+		return longitudeAtual;
+	}
+
+	/**
+	 * @return Posição da nave alvo no referencial do corpo. Requer
+	 *         registrarPosicaoAlvo.
+	 */
+	public Vetor getPosicaoAlvo() {
+		return posicaoAlvo;
+	}
+
+	/**
+	 * @return Componente Y (progrado do nó) do vetor de queima restante.
+	 */
+	public double getQueimaRestante() {
+		return queimaRestanteY;
+	}
+}
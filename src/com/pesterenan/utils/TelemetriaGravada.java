@@ -0,0 +1,100 @@
+package com.pesterenan.utils;
+
+import java.io.IOException;
+
+/**
+ * Fornece aos controladores os valores de um voo gravado, um registro por
+ * ciclo, no lugar da Telemetria do jogo.
+ */
+public class TelemetriaGravada implements FonteTelemetria {
+
+	private final LeitorDeVoo voo;
+	private final int ut, altitude, velVertical, velHorizontal, massa, empuxo;
+	private long registro = -1;
+
+	/**
+	 * @param voo - Voo gravado, com os campos ut, altitude, velVertical,
+	 *            velHorizontal, massa e empuxo
+	 * @throws IOException - Caso o voo não tenha algum desses campos
+	 */
+	public TelemetriaGravada(LeitorDeVoo voo) throws IOException {
+		this.voo = voo;
+		ut = buscarCampo("ut");
+		altitude = buscarCampo("altitude");
+		velVertical = buscarCampo("velVertical");
+		velHorizontal = buscarCampo("velHorizontal");
+		massa = buscarCampo("massa");
+		empuxo = buscarCampo("empuxo");
+	}
+
+	/**
+	 * @param nome - Nome do campo
+	 * @return Posição do campo nos registros do voo
+	 * @throws IOException - Caso o voo não tenha esse campo
+	 */
+	public int buscarCampo(String nome) throws IOException {
+		int indice = voo.indiceDoCampo(nome);
+		if (indice < 0) {
+			throw new IOException("O voo " + voo.getArquivo() + " não tem o campo " + nome);
+		}
+		return indice;
+	}
+
+	/**
+	 * Volta para antes do primeiro registro do voo.
+	 */
+	public void reiniciar() {
+		registro = -1;
+	}
+
+	/**
+	 * Passa para o próximo registro do voo.
+	 *
+	 * @return false quando não houver mais registros
+	 */
+	public boolean avancar() {
+		if (registro + 1 >= voo.getRegistros()) {
+			return false;
+		}
+		registro++;
+		return true;
+	}
+
+	/**
+	 * @param campo - Posição do campo, obtida com buscarCampo
+	 * @return Valor do campo no registro atual
+	 */
+	public double getValor(int campo) {
+		return voo.getValor(registro, campo);
+	}
+
+	@Override
+	public double getTempoUniversal() {
+		return voo.getValor(registro, ut);
+	}
+
+	@Override
+	public double getAltitude() {
+		return voo.getValor(registro, altitude);
+	}
+
+	@Override
+	public double getVelVertical() {
+		return voo.getValor(registro, velVertical);
+	}
+
+	@Override
+	public double getVelHorizontal() {
+		return voo.getValor(registro, velHorizontal);
+	}
+
+	@Override
+	public double getMassa() {
+		return voo.getValor(registro, massa);
+	}
+
+	@Override
+	public double getEmpuxoDisponivel() {
+		return voo.getValor(registro, empuxo);
+	}
+}
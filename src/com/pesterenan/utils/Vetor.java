@@ -59,6 +59,33 @@ public class Vetor {
 		this.z = Z;
 	}
 
+	/**
+	 * Modifica um vetor com os valores de uma tupla (Triplet), para reaproveitar
+	 * o mesmo Vetor com os resultados do kRPC a cada ciclo
+	 * 
+	 * @param tupla - Triplet com valores X,Y,Z em conjunto
+	 * @return Este vetor, com os novos valores
+	 */
+	public Vetor setVetor(Triplet<Double, Double, Double> tupla) {
+		this.x = tupla.getValue0();
+		this.y = tupla.getValue1();
+		this.z = tupla.getValue2();
+		return this;
+	}
+
+	/**
+	 * Copia os valores de outro vetor para este
+	 * 
+	 * @param outroVetor - Vetor a ser copiado
+	 * @return Este vetor, com os valores copiados
+	 */
+	public Vetor setVetor(Vetor outroVetor) {
+		this.x = outroVetor.x;
+		this.y = outroVetor.y;
+		this.z = outroVetor.z;
+		return this;
+	}
+
 	/**
 	 * @return Retorna um novo Vetor com os valores X e Y invertidos
 	 */
@@ -100,12 +127,14 @@ public class Vetor {
 	/**
 	 * Limitar Vetor
 	 * 
-	 * @return Limita a magnitude do vetor a um valor de uma escalar .
+	 * Limita a magnitude deste vetor a um valor de uma escalar, modificando seus
+	 * componentes.
+	 * 
+	 * @param max - Magnitude máxima do vetor
 	 */
 	void Limitar(double max) {
 		if (Magnitude() > max) {
-			Normalizar();
-			multiplica(max);
+			normalizarEm().multiplicaEm(max);
 		}
 	}
 
@@ -168,6 +197,108 @@ public class Vetor {
 		return new Vetor(0, 0, 0);
 	}
 
+	/*
+	 * As operações terminadas em "Em" modificam este vetor em vez de criar um
+	 * novo, para que os loops de controle não criem objetos a cada ciclo. Todas
+	 * retornam o próprio vetor, para encadear as operações.
+	 */
+
+	/**
+	 * Soma os componentes de outro vetor a este vetor
+	 * 
+	 * @param outroVetor - Vetor para somar os componentes
+	 * @return Este vetor, com a soma dos componentes dos dois
+	 */
+	public Vetor somaEm(Vetor outroVetor) {
+		x += outroVetor.x;
+		y += outroVetor.y;
+		z += outroVetor.z;
+		return this;
+	}
+
+	/**
+	 * Subtrai os componentes de outro vetor deste vetor
+	 * 
+	 * @param outroVetor - Vetor para subtrair os componentes
+	 * @return Este vetor, com a subtração dos componentes dos dois
+	 */
+	public Vetor subtraiEm(Vetor outroVetor) {
+		x -= outroVetor.x;
+		y -= outroVetor.y;
+		z -= outroVetor.z;
+		return this;
+	}
+
+	/**
+	 * Multiplica os componentes deste vetor por uma escalar
+	 * 
+	 * @param escalar - Fator para multiplicar os componentes
+	 * @return Este vetor, com os componentes multiplicados pela escalar
+	 */
+	public Vetor multiplicaEm(double escalar) {
+		x *= escalar;
+		y *= escalar;
+		z *= escalar;
+		return this;
+	}
+
+	/**
+	 * Divide os componentes deste vetor por uma escalar
+	 * 
+	 * @param escalar - Fator para dividir os componentes
+	 * @return Este vetor, com os componentes divididos pela escalar. Caso a
+	 *         escalar informada for 0, os componentes passam a ser 0.
+	 */
+	public Vetor divideEm(double escalar) {
+		if (escalar != 0) {
+			x /= escalar;
+			y /= escalar;
+			z /= escalar;
+			return this;
+		}
+		return multiplicaEm(0);
+	}
+
+	/**
+	 * Normaliza este vetor (magnitude de 1). Um vetor de magnitude 0 continua
+	 * igual.
+	 * 
+	 * @return Este vetor, normalizado
+	 */
+	public Vetor normalizarEm() {
+		double m = Magnitude3d();
+		if (m != 0) {
+			return divideEm(m);
+		}
+		return this;
+	}
+
+	/**
+	 * Modifica este vetor com a direção do ponto de origem até o alvo, como em
+	 * direcaoAlvo
+	 * 
+	 * @param origem - Vetor com a posição do ponto de origem.
+	 * @param alvo   - Vetor com a posição do alvo.
+	 * @return Este vetor, com a direção até o alvo
+	 */
+	public Vetor setDirecaoAlvo(Vetor origem, Vetor alvo) {
+		setVetor(alvo.y - origem.y, alvo.z - origem.z, alvo.x - origem.x);
+		return this;
+	}
+
+	/**
+	 * Modifica este vetor com a direção CONTRÁRIA do ponto de origem até o alvo,
+	 * como em direcaoAlvoContraria
+	 * 
+	 * @param origem - Vetor com a posição do ponto de origem.
+	 * @param alvo   - Vetor com a posição do alvo.
+	 * @return Este vetor, com a direção contrária ao alvo
+	 */
+	public Vetor setDirecaoAlvoContraria(Vetor origem, Vetor alvo) {
+		setVetor(-alvo.z + origem.z, -alvo.y + origem.y, alvo.x - origem.x);
+		return this;
+	}
+
 	/**
 	 * Calcula o ângulo do vetor de direção informado
 	 * 